@@ -0,0 +1,103 @@
+package com.java.sms.config;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Size-bounded concurrent map for the in-memory caches whose values know when they expire.
+ *
+ * <p>A put into a full map first drops everything that has expired and, if it is still full, ~10% of the
+ * entries. Never the whole map: a full clear sends every caller back to the database / upstream at the same
+ * moment. Every entry that leaves the map (expired, dropped, removed, cleared) counts as an eviction.
+ */
+public final class BoundedTtlMap<K, V> {
+
+    /** Whether a value is past its lifetime at {@code nowMillis}. */
+    @FunctionalInterface
+    public interface Expiry<V> {
+        boolean isExpired(V value, long nowMillis);
+    }
+
+    private final ConcurrentHashMap<K, V> entries = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final Expiry<V> expiry;
+    private final LongAdder evictions = new LongAdder();
+
+    public BoundedTtlMap(int maxSize, Expiry<V> expiry) {
+        this.maxSize = Math.max(1, maxSize);
+        this.expiry = expiry;
+    }
+
+    /** Value for the key if it has not expired yet, else null (an expired value stays until it is replaced). */
+    public V getFresh(K key) {
+        V value = entries.get(key);
+        return value != null && !expiry.isExpired(value, System.currentTimeMillis()) ? value : null;
+    }
+
+    /** Value for the key, expired or not. */
+    public V get(K key) {
+        return entries.get(key);
+    }
+
+    public void put(K key, V value) {
+        if (entries.size() >= maxSize) {
+            makeRoom();
+        }
+        entries.put(key, value);
+    }
+
+    public V remove(K key) {
+        V removed = entries.remove(key);
+        if (removed != null) evictions.increment();
+        return removed;
+    }
+
+    /** Remove the key only while it still maps to {@code value}. */
+    public boolean remove(K key, V value) {
+        boolean removed = entries.remove(key, value);
+        if (removed) evictions.increment();
+        return removed;
+    }
+
+    public void removeIf(Predicate<V> filter) {
+        entries.values().removeIf(v -> {
+            boolean match = filter.test(v);
+            if (match) evictions.increment();
+            return match;
+        });
+    }
+
+    public void clear() {
+        int size = entries.size();
+        entries.clear();
+        evictions.add(size);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    private void makeRoom() {
+        long now = System.currentTimeMillis();
+        removeIf(v -> expiry.isExpired(v, now));
+        if (entries.size() < maxSize) return;
+
+        int toDrop = entries.size() - maxSize + Math.max(1, maxSize / 10);
+        Iterator<V> it = entries.values().iterator();
+        while (toDrop-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.increment();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.java.sms.config;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/** Utility to fingerprint errors so repeats of the same failure can share one ErrorLog row. */
+public final class ErrorFingerprint {
+    private ErrorFingerprint() {}
+
+    private static final int MAX_MESSAGE_LENGTH = 500;
+
+    private static final Pattern UUID = Pattern.compile("[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+    private static final Pattern LONG_HEX = Pattern.compile("\\b[0-9a-fA-F]{16,}\\b");
+    private static final Pattern NUMBER = Pattern.compile("\\d+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    /**
+     * e.g. "/student-fees/42/history" -> "/student-fees/#/history", "Student 17 not found" -> "student # not found"
+     */
+    public static String of(String endpoint, String errorType, String message) {
+        String key = normalize(endpoint) + '|' + (errorType != null ? errorType : "") + '|' + normalizeMessage(message);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public static String normalizeMessage(String message) {
+        // do not run the regexes over a huge upstream response body
+        if (message != null && message.length() > MAX_MESSAGE_LENGTH * 4) {
+            message = message.substring(0, MAX_MESSAGE_LENGTH * 4);
+        }
+        String normalized = normalize(message).toLowerCase();
+        return normalized.length() > MAX_MESSAGE_LENGTH ? normalized.substring(0, MAX_MESSAGE_LENGTH) : normalized;
+    }
+
+    // ids, hashes and numbers vary per request but do not make it a different error
+    private static String normalize(String value) {
+        if (value == null) return "";
+        String out = UUID.matcher(value).replaceAll("?");
+        out = LONG_HEX.matcher(out).replaceAll("?");
+        out = NUMBER.matcher(out).replaceAll("#");
+        return SPACES.matcher(out).replaceAll(" ").trim();
+    }
+}
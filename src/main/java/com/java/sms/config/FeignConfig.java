@@ -1,6 +1,7 @@
 package com.java.sms.config;
 
 import com.java.sms.security.JwtTokenProvider;
+import com.java.sms.security.VerifiedToken;
 import feign.RequestInterceptor;
 import feign.RequestTemplate;
 import org.springframework.context.annotation.Configuration;
@@ -18,7 +19,9 @@ public class FeignConfig implements RequestInterceptor {
             return;
         }
 
-        String token = JwtTokenProvider.getCurrentToken();
+        // Prefer the token already verified by JwtAuthenticationFilter; fall back to the raw header
+        VerifiedToken verified = VerifiedToken.current();
+        String token = verified != null ? verified.getToken() : JwtTokenProvider.getCurrentToken();
 
         if (token != null) {
             template.header("Authorization", "Bearer " + token);
@@ -1,8 +1,7 @@
 package com.java.sms.config;
 
-import com.java.sms.model.ErrorLog;
-import com.java.sms.model.User;
-import com.java.sms.repository.UserRepository;
+import com.java.sms.DataClass.ErrorLogDto;
+import com.java.sms.security.VerifiedToken;
 import com.java.sms.service.ErrorLogService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -20,7 +19,7 @@ import java.io.IOException;
 import java.security.Principal;
 
 /**
- * Logs exceptions and non-2xx responses to DB. Runs after security filters (LOWEST_PRECEDENCE).
+ * Logs exceptions and non-2xx responses to DB (through the async ErrorLogWriter). Runs after security filters (LOWEST_PRECEDENCE).
  */
 @Component
 @Order(Ordered.LOWEST_PRECEDENCE)
@@ -28,11 +27,9 @@ import java.security.Principal;
 public class GlobalErrorLoggingFilter extends OncePerRequestFilter {
 
     private final ErrorLogService errorLogService;
-    private final UserRepository userRepository;
 
-    public GlobalErrorLoggingFilter(ErrorLogService errorLogService, UserRepository userRepository) {
+    public GlobalErrorLoggingFilter(ErrorLogService errorLogService) {
         this.errorLogService = errorLogService;
-        this.userRepository = userRepository;
     }
 
     @Override
@@ -62,20 +59,19 @@ public class GlobalErrorLoggingFilter extends OncePerRequestFilter {
         try {
             Authentication auth = SecurityContextHolder.getContext().getAuthentication();
             Principal principal = auth != null ? auth : request.getUserPrincipal();
+            // user is stored by id only, no User lookup on the request thread
             Long userId = PrincipalUtils.extractUserId(principal);
 
-            User userEntity = null;
-            if (userId != null) {
-                userEntity = userRepository.findById(userId).orElse(null);
-            }
+            VerifiedToken verified = VerifiedToken.from(request);
+            String subject = verified != null ? verified.getSubject() : null;
 
             String errorType = ex != null ? ex.getClass().getName() : "HTTPError";
             String errorMessage = ex != null ? ex.getMessage() :
                     (response != null ? ("HTTP " + statusCode) : "HTTP error");
             String traceback = ex != null ? ExceptionUtils.stackTraceAsString(ex) : "";
 
-            ErrorLog e = new ErrorLog();
-            e.setUser(userEntity);
+            ErrorLogDto e = new ErrorLogDto();
+            e.setUserId(userId);
             e.setEndpoint(request.getRequestURI());
             e.setMethod(request.getMethod());
             e.setStatusCode(statusCode);
@@ -83,8 +79,8 @@ public class GlobalErrorLoggingFilter extends OncePerRequestFilter {
             e.setErrorMessage(errorMessage);
             e.setTracebackInfo(traceback);
 
-            errorLogService.save(e);
-            log.info("Logged error {} at {} (userId={})", statusCode, request.getRequestURI(), userId);
+            errorLogService.record(e);
+            log.info("Queued error {} at {} (userId={}, subject={})", statusCode, request.getRequestURI(), userId, subject);
         } catch (Exception e) {
             log.error("Failed to log error in filter: {}", e.getMessage(), e);
         }
@@ -1,12 +1,14 @@
 package com.java.sms.config;
 
+import com.java.sms.model.User;
+import com.java.sms.security.PrincipalSnapshot;
 import org.springframework.security.core.Authentication;
 
 import java.security.Principal;
 
 /**
  * Extract user id from Principal / Authentication safely (reflection fallback).
- * Works when your JwtAuthenticationFilter sets the User entity as the principal.
+ * Works when JwtAuthenticationFilter sets a PrincipalSnapshot (or the User entity) as the principal.
  */
 public final class PrincipalUtils {
     private PrincipalUtils() {}
@@ -29,6 +31,9 @@ public final class PrincipalUtils {
 
     private static Long tryExtractIdFromObject(Object obj) {
         if (obj == null) return null;
+        // fast path: JwtAuthenticationFilter sets a PrincipalSnapshot as principal, no reflection needed
+        if (obj instanceof PrincipalSnapshot snapshot) return snapshot.getId();
+        if (obj instanceof User user) return user.getId();
         try {
             var m = obj.getClass().getMethod("getId");
             Object id = m.invoke(obj);
@@ -0,0 +1,137 @@
+package com.java.sms.controller;
+
+
+import com.java.sms.customAnnotation.DirectorOnly;
+import com.java.sms.openFeignClient.StudentYearLevelCache;
+import com.java.sms.openFeignClient.YearLevelDirectory;
+import com.java.sms.security.JwtBlacklistService;
+import com.java.sms.security.PrincipalCache;
+import com.java.sms.security.VerifiedTokenCache;
+import com.java.sms.serviceImpl.ErrorLogWriter;
+import com.java.sms.serviceImpl.FeeCollectionRollupWriter;
+import com.java.sms.serviceImpl.FeeDiscountResolver;
+import com.java.sms.serviceImpl.FeeLedgerExporter;
+import com.java.sms.serviceImpl.FeeLedgerUpdater;
+import com.java.sms.serviceImpl.PaymentIdempotencyGuard;
+import com.java.sms.serviceImpl.PaymentReconciler;
+import com.java.sms.serviceImpl.RazorpayOrderOutbox;
+import com.java.sms.serviceImpl.WebhookInboxProcessor;
+import com.java.sms.serviceImpl.ReceiptNumberAllocator;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Read-only counters for the in-process caches (hits / misses / evictions) and background writers.
+ * Director only, meant for support dashboards.
+ */
+@RestController
+@RequestMapping("/cache-stats")
+public class CacheStatsController {
+
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final PrincipalCache principalCache;
+    private final JwtBlacklistService jwtBlacklistService;
+    private final ErrorLogWriter errorLogWriter;
+    private final StudentYearLevelCache studentYearLevelCache;
+    private final YearLevelDirectory yearLevelDirectory;
+    private final ReceiptNumberAllocator receiptNumberAllocator;
+    private final FeeDiscountResolver feeDiscountResolver;
+    private final FeeLedgerUpdater feeLedgerUpdater;
+    private final FeeCollectionRollupWriter feeCollectionRollupWriter;
+    private final FeeLedgerExporter feeLedgerExporter;
+    private final PaymentIdempotencyGuard paymentIdempotencyGuard;
+    private final WebhookInboxProcessor webhookInboxProcessor;
+    private final RazorpayOrderOutbox razorpayOrderOutbox;
+    private final PaymentReconciler paymentReconciler;
+
+    public CacheStatsController(VerifiedTokenCache verifiedTokenCache, PrincipalCache principalCache,
+                                JwtBlacklistService jwtBlacklistService, ErrorLogWriter errorLogWriter,
+                                StudentYearLevelCache studentYearLevelCache, YearLevelDirectory yearLevelDirectory,
+                                ReceiptNumberAllocator receiptNumberAllocator, FeeDiscountResolver feeDiscountResolver,
+                                FeeLedgerUpdater feeLedgerUpdater, FeeCollectionRollupWriter feeCollectionRollupWriter,
+                                FeeLedgerExporter feeLedgerExporter, PaymentIdempotencyGuard paymentIdempotencyGuard,
+                                WebhookInboxProcessor webhookInboxProcessor, RazorpayOrderOutbox razorpayOrderOutbox,
+                                PaymentReconciler paymentReconciler) {
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.principalCache = principalCache;
+        this.jwtBlacklistService = jwtBlacklistService;
+        this.errorLogWriter = errorLogWriter;
+        this.studentYearLevelCache = studentYearLevelCache;
+        this.yearLevelDirectory = yearLevelDirectory;
+        this.receiptNumberAllocator = receiptNumberAllocator;
+        this.feeDiscountResolver = feeDiscountResolver;
+        this.feeLedgerUpdater = feeLedgerUpdater;
+        this.feeCollectionRollupWriter = feeCollectionRollupWriter;
+        this.feeLedgerExporter = feeLedgerExporter;
+        this.paymentIdempotencyGuard = paymentIdempotencyGuard;
+        this.webhookInboxProcessor = webhookInboxProcessor;
+        this.razorpayOrderOutbox = razorpayOrderOutbox;
+        this.paymentReconciler = paymentReconciler;
+    }
+
+    @GetMapping
+    @DirectorOnly
+    public ResponseEntity<Map<String, Object>> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("verified_tokens", verifiedTokenCache.stats());
+        out.put("principals", principalCache.stats());
+        out.put("revoked_tokens", jwtBlacklistService.stats());
+        out.put("error_log_writer", errorLogWriter.stats());
+        out.put("student_year_levels", studentYearLevelCache.stats());
+        out.put("year_level_directory", yearLevelDirectory.stats());
+        out.put("receipt_numbers", receiptNumberAllocator.stats());
+        out.put("fee_discounts", feeDiscountResolver.stats());
+        out.put("fee_ledger", feeLedgerUpdater.stats());
+        out.put("fee_collection_rollup", feeCollectionRollupWriter.stats());
+        out.put("fee_export", feeLedgerExporter.stats());
+        out.put("payment_confirmations", paymentIdempotencyGuard.stats());
+        out.put("webhook_inbox", webhookInboxProcessor.stats());
+        out.put("razorpay_orders", razorpayOrderOutbox.stats());
+        out.put("payment_reconciliation", paymentReconciler.stats());
+        return ResponseEntity.ok(out);
+    }
+
+    /**
+     * Drop cached Django student-year lookups, e.g. after promotions were run on the Django side.
+     */
+    @DeleteMapping("/student-years")
+    @DirectorOnly
+    public ResponseEntity<Void> invalidateStudentYears() {
+        studentYearLevelCache.invalidateAll();
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping("/student-years/{id}")
+    @DirectorOnly
+    public ResponseEntity<Void> invalidateStudentYear(@PathVariable Long id) {
+        studentYearLevelCache.invalidate(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Drop cached discount amounts (e.g. after discounts were edited directly in the database).
+     */
+    @DeleteMapping("/fee-discounts")
+    @DirectorOnly
+    public ResponseEntity<Void> invalidateFeeDiscounts() {
+        feeDiscountResolver.invalidateAll();
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Make the next lookup reload the YearLevel list from Django (after adding / renaming a level).
+     */
+    @DeleteMapping("/year-levels")
+    @DirectorOnly
+    public ResponseEntity<Void> invalidateYearLevels() {
+        yearLevelDirectory.invalidate();
+        return ResponseEntity.noContent().build();
+    }
+}
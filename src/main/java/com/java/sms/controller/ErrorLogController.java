@@ -3,13 +3,16 @@ package com.java.sms.controller;
 
 
 import com.java.sms.model.ErrorLog;
+import com.java.sms.response.ErrorLogSummaryResponse;
+import com.java.sms.response.KeysetPageResponse;
 import com.java.sms.service.ErrorLogService;
 import com.java.sms.repository.ErrorLogRepository;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
+import java.time.OffsetDateTime;
 
 /**
  * Read-only endpoints for ErrorLog entries.
@@ -29,9 +32,23 @@ public class ErrorLogController {
         this.service = service;
     }
 
+    /**
+     * Cursor paginated list, newest first, without traceback.
+     * Example: /error-logs?size=50&statusCode=500&endpoint=/student-fees&from=2025-01-01T00:00:00Z
+     * Next page: pass the returned nextCursor as cursor.
+     */
     @GetMapping
-    public ResponseEntity<List<ErrorLog>> listAll() {
-        return ResponseEntity.ok(repo.findAll());
+    public ResponseEntity<KeysetPageResponse<ErrorLogSummaryResponse>> list(
+            @RequestParam(value = "cursor", required = false) Long cursor,
+            @RequestParam(value = "size", defaultValue = "50") int size,
+            @RequestParam(value = "statusCode", required = false) Integer statusCode,
+            @RequestParam(value = "endpoint", required = false) String endpointPrefix,
+            @RequestParam(value = "errorType", required = false) String errorType,
+            @RequestParam(value = "userId", required = false) Long userId,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to
+    ) {
+        return ResponseEntity.ok(service.search(cursor, size, statusCode, endpointPrefix, errorType, userId, from, to));
     }
 
     @GetMapping("/{id}")
@@ -0,0 +1,46 @@
+package com.java.sms.controller;
+
+
+import com.java.sms.customAnnotation.DirectorOnly;
+import com.java.sms.response.FeeCollectionSummaryResponse;
+import com.java.sms.service.FeeCollectionService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * School-wide collection analytics (collected vs. due by period, fee type and payment method).
+ */
+@RestController
+@RequestMapping("/fee-collections")
+@RequiredArgsConstructor
+public class FeeCollectionController {
+
+    private final FeeCollectionService service;
+
+    @GetMapping
+    @DirectorOnly
+    public ResponseEntity<FeeCollectionSummaryResponse> summary(
+            @RequestParam("school_year_id") Long schoolYearId,
+            @RequestParam(value = "granularity", defaultValue = "month") String granularity,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "fee_type", required = false) String feeType,
+            @RequestParam(value = "payment_method", required = false) String paymentMethod
+    ) {
+        return ResponseEntity.ok(service.getSummary(schoolYearId, granularity, from, to, feeType, paymentMethod));
+    }
+
+    /**
+     * Recompute one school year's rollup from the payment rows (backfill after deploy, or repair).
+     */
+    @PostMapping("/rebuild")
+    @DirectorOnly
+    public ResponseEntity<Map<String, Object>> rebuild(@RequestParam("school_year_id") Long schoolYearId) {
+        return ResponseEntity.ok(Map.of("rows", service.rebuild(schoolYearId)));
+    }
+}
@@ -0,0 +1,59 @@
+package com.java.sms.controller;
+
+
+import com.java.sms.customAnnotation.DirectorOnly;
+import com.java.sms.response.KeysetPageResponse;
+import com.java.sms.response.PaymentDiscrepancyResponse;
+import com.java.sms.response.PaymentReconciliationRunResponse;
+import com.java.sms.service.PaymentReconciliationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Razorpay reconciliation: runs (nightly, or started here) and their discrepancy reports.
+ */
+@RestController
+@RequestMapping("/payment-reconciliations")
+@RequiredArgsConstructor
+public class PaymentReconciliationController {
+
+    private final PaymentReconciliationService service;
+
+    /**
+     * Start a run now, or resume the unfinished one from its checkpoint. Runs in the background.
+     */
+    @PostMapping
+    @DirectorOnly
+    public ResponseEntity<Map<String, Object>> start() {
+        boolean started = service.start();
+        return ResponseEntity.status(started ? 202 : 409)
+                .body(Map.of("status", started ? "started" : "already_running"));
+    }
+
+    @GetMapping
+    @DirectorOnly
+    public ResponseEntity<List<PaymentReconciliationRunResponse>> recentRuns() {
+        return ResponseEntity.ok(service.recentRuns());
+    }
+
+    @GetMapping("/{id}")
+    @DirectorOnly
+    public ResponseEntity<PaymentReconciliationRunResponse> run(@PathVariable Long id) {
+        return ResponseEntity.ok(service.getRun(id));
+    }
+
+    @GetMapping("/{id}/discrepancies")
+    @DirectorOnly
+    public ResponseEntity<KeysetPageResponse<PaymentDiscrepancyResponse>> discrepancies(
+            @PathVariable Long id,
+            @RequestParam(value = "type", required = false) String type,
+            @RequestParam(value = "cursor", required = false) Long cursor,
+            @RequestParam(value = "size", defaultValue = "100") int size
+    ) {
+        return ResponseEntity.ok(service.getDiscrepancies(id, type, cursor, size));
+    }
+}
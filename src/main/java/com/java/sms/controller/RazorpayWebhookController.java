@@ -0,0 +1,35 @@
+package com.java.sms.controller;
+
+
+import com.java.sms.service.RazorpayWebhookService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Razorpay webhook endpoint (configured in the Razorpay dashboard). Not behind JWT: requests are
+ * authenticated by the X-Razorpay-Signature HMAC instead.
+ */
+@RestController
+@RequestMapping("/razorpay")
+@RequiredArgsConstructor
+public class RazorpayWebhookController {
+
+    private final RazorpayWebhookService service;
+
+    /**
+     * Raw bytes on purpose: the signature is computed over the exact body Razorpay sent.
+     * Always 200 once the event is stored (or was stored before), so Razorpay stops retrying.
+     */
+    @PostMapping("/webhook")
+    public ResponseEntity<Map<String, Object>> webhook(
+            @RequestBody byte[] body,
+            @RequestHeader(value = "X-Razorpay-Signature", required = false) String signature,
+            @RequestHeader(value = "X-Razorpay-Event-Id", required = false) String eventId
+    ) {
+        boolean appended = service.receive(body, signature, eventId);
+        return ResponseEntity.ok(Map.of("status", appended ? "queued" : "duplicate"));
+    }
+}
@@ -5,16 +5,33 @@ import com.java.sms.DataClass.ConfirmPaymentRequest;
 import com.java.sms.DataClass.FeePreviewItem;
 import com.java.sms.DataClass.InitiatePaymentRequest;
 import com.java.sms.DataClass.StudentFeeRequest;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.java.sms.response.ConfirmPaymentResponse;
+import com.java.sms.response.FeeHistoryResponse;
+import com.java.sms.model.enums.OrderOutboxStatus;
 import com.java.sms.response.InitiatePaymentResponse;
+import com.java.sms.response.PaymentOrderResponse;
+import com.java.sms.response.StudentFeeLedgerResponse;
+import com.java.sms.response.KeysetPageResponse;
+import com.java.sms.response.StudentUnpaidFeesPageResponse;
+import com.java.sms.customAnnotation.DirectorOnly;
+import com.java.sms.service.RazorpayOrderService;
 import com.java.sms.service.StudentFeeService;
 import jakarta.validation.Valid;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import com.java.sms.DataClass.SubmitFeeRequest;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Controller exposing endpoints:
@@ -30,9 +47,14 @@ import java.util.Map;
 public class StudentFeeController {
 
     private final StudentFeeService service;
+    private final ObjectMapper objectMapper;
+    private final RazorpayOrderService razorpayOrderService;
 
-    public StudentFeeController(StudentFeeService service) {
+    public StudentFeeController(StudentFeeService service, ObjectMapper objectMapper,
+                                RazorpayOrderService razorpayOrderService) {
         this.service = service;
+        this.objectMapper = objectMapper;
+        this.razorpayOrderService = razorpayOrderService;
     }
 
     @PostMapping
@@ -52,7 +74,25 @@ public class StudentFeeController {
     @PostMapping("/initiate_payment")
 //    @PreAuthorize("isAuthenticated()")
     public ResponseEntity<InitiatePaymentResponse> initiatePayment(@RequestBody InitiatePaymentRequest req) throws Exception {
-        return ResponseEntity.ok(service.initiatePayment(req));
+        InitiatePaymentResponse out = service.initiatePayment(req);
+
+        // committed by now; give the background worker a moment so most clients get the order id right away
+        String orderId = razorpayOrderService.awaitOrderId(out.getReceiptNumber());
+        if (orderId != null) {
+            out.setRazorpayOrderId(orderId);
+            out.setOrderStatus(OrderOutboxStatus.CREATED.name());
+        }
+        return ResponseEntity.ok(out);
+    }
+
+    /**
+     * Poll for the Razorpay order of an initiate_payment / online submit_fee call that came back with
+     * order_status PENDING, using the order_token from that response.
+     */
+    @GetMapping("/payment_orders/{token}")
+//    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<PaymentOrderResponse> paymentOrder(@PathVariable String token) {
+        return ResponseEntity.ok(razorpayOrderService.getByToken(token));
     }
 
     @PostMapping("/confirm_payment")
@@ -65,8 +105,11 @@ public class StudentFeeController {
 
     @GetMapping("/student_unpaid_fees")
 //    @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<Map<String, Object>> studentUnpaidFees() {
-        Map<String, Object> out = service.getStudentUnpaidFees();
+    public ResponseEntity<StudentUnpaidFeesPageResponse> studentUnpaidFees(
+            @RequestParam(value = "cursor", required = false) Long cursor,
+            @RequestParam(value = "size", defaultValue = "50") int size
+    ) {
+        StudentUnpaidFeesPageResponse out = service.getStudentUnpaidFees(cursor, size);
         return ResponseEntity.ok(out);
     }
 
@@ -74,12 +117,14 @@ public class StudentFeeController {
 
     @GetMapping("/overdue_fees")
 //    @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<List<Map<String,Object>>> overdueFees(
+    public ResponseEntity<KeysetPageResponse<Map<String,Object>>> overdueFees(
             @RequestParam(value = "student_year_id", required = false) Long studentYearId,
             @RequestParam(value = "month", required = false) Integer month,
-            @RequestParam(value = "school_year_id", required = false) Long schoolYearId
+            @RequestParam(value = "school_year_id", required = false) Long schoolYearId,
+            @RequestParam(value = "cursor", required = false) Long cursor,
+            @RequestParam(value = "size", defaultValue = "100") int size
     ) {
-        List<Map<String,Object>> out = service.getOverdueFees(studentYearId, month, schoolYearId);
+        KeysetPageResponse<Map<String,Object>> out = service.getOverdueFees(studentYearId, month, schoolYearId, cursor, size);
         return ResponseEntity.ok(out);
     }
 
@@ -92,6 +137,17 @@ public class StudentFeeController {
     public ResponseEntity<?> submitFee(@RequestBody @Valid SubmitFeeRequest req) throws Exception {
         // returns initiate payment result if payment_mode == online, else created records
         Object out = service.submitFee(req);
+
+        // online: same short wait for the order id as initiate_payment
+        if (out instanceof Map<?, ?> map && map.get("receipt_number") instanceof String receipt) {
+            String orderId = razorpayOrderService.awaitOrderId(receipt);
+            if (orderId != null) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> resp = (Map<String, Object>) map;
+                resp.put("razorpay_order_id", orderId);
+                resp.put("order_status", OrderOutboxStatus.CREATED.name());
+            }
+        }
         return ResponseEntity.status(201).body(out);
     }
 
@@ -100,12 +156,25 @@ public class StudentFeeController {
 
     @GetMapping("/fee_history")
 //    @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<List<Map<String,Object>>> feeHistory(
+    public ResponseEntity<StreamingResponseBody> feeHistory(
             @RequestParam("student_year_id") Long studentYearId,
             @RequestParam("school_year_id") Long schoolYearId
     ) {
-        List<Map<String,Object>> out = service.getFeeHistory(studentYearId, schoolYearId);
-        return ResponseEntity.ok(out);
+        // queries run here (errors still become normal error responses); rows are written one by one
+        Stream<FeeHistoryResponse> rows = service.getFeeHistory(studentYearId, schoolYearId);
+
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+                gen.writeStartArray();
+                for (Iterator<FeeHistoryResponse> it = rows.iterator(); it.hasNext(); ) {
+                    gen.writeObject(it.next());
+                }
+                gen.writeEndArray();
+            } finally {
+                rows.close();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
     }
 
     @GetMapping("/pending_fees")
@@ -115,6 +184,49 @@ public class StudentFeeController {
         return ResponseEntity.ok(out);
     }
 
+    @GetMapping("/ledger")
+//    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<StudentFeeLedgerResponse> ledger(
+            @RequestParam("student_year_id") Long studentYearId,
+            @RequestParam("school_year_id") Long schoolYearId
+    ) {
+        return ResponseEntity.ok(service.getLedger(studentYearId, schoolYearId));
+    }
+
+    /**
+     * Reconcile the ledger with the raw fee rows now (also runs nightly).
+     */
+    @PostMapping("/ledger/verify")
+    @DirectorOnly
+    public ResponseEntity<Map<String, Object>> verifyLedger() {
+        return ResponseEntity.ok(Map.of("repaired_student_years", service.verifyLedger()));
+    }
+
+    /**
+     * Whole-year StudentFee export as CSV, streamed row by row (no Content-Length, chunked).
+     */
+    @GetMapping("/export/fees")
+    @DirectorOnly
+    public ResponseEntity<StreamingResponseBody> exportFees(@RequestParam("school_year_id") Long schoolYearId) {
+        StreamingResponseBody body = out -> service.exportFees(schoolYearId, out);
+        return csv("student_fees_" + schoolYearId + ".csv", body);
+    }
+
+    @GetMapping("/export/payments")
+    @DirectorOnly
+    public ResponseEntity<StreamingResponseBody> exportPayments(@RequestParam("school_year_id") Long schoolYearId) {
+        StreamingResponseBody body = out -> service.exportPayments(schoolYearId, out);
+        return csv("fee_payments_" + schoolYearId + ".csv", body);
+    }
+
+    private static ResponseEntity<StreamingResponseBody> csv(String fileName, StreamingResponseBody body) {
+        return ResponseEntity.ok()
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(body);
+    }
+
 
 
 }
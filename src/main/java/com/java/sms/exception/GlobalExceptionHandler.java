@@ -3,12 +3,10 @@ package com.java.sms.exception;
 
 import com.java.sms.config.ExceptionUtils;
 import com.java.sms.config.PrincipalUtils;
-import com.java.sms.model.ErrorLog;
+import com.java.sms.DataClass.ErrorLogDto;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.security.core.Authentication;
-import com.java.sms.model.User;
-import com.java.sms.repository.UserRepository;
 import com.java.sms.service.ErrorLogService;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.http.HttpStatus;
@@ -26,12 +24,10 @@ import java.util.Map;
 public class GlobalExceptionHandler {
 
     private final ErrorLogService errorLogService;
-    private final UserRepository userRepository;
 
 
-    public GlobalExceptionHandler(ErrorLogService errorLogService, UserRepository userRepository) {
+    public GlobalExceptionHandler(ErrorLogService errorLogService) {
         this.errorLogService = errorLogService;
-        this.userRepository = userRepository;
     }
 
     @ExceptionHandler(InvalidTokenException.class)
@@ -85,7 +81,7 @@ public class GlobalExceptionHandler {
             Long userId = PrincipalUtils.extractUserId(principal);
 
 //            // we don't fetch User from DB here to avoid extra failures; keep user null if unknown
-            User userEntity = null;
+//            User userEntity = null;
 //
 //            ErrorLog ErrorLog = new ErrorLog();
 //            ErrorLog.setUser(userEntity);
@@ -109,8 +105,9 @@ public class GlobalExceptionHandler {
             String shortMeaning = ex.getClass().getSimpleName() + ": " + ex.getMessage();
             // Example: "ApiException: User not found"
 
-            ErrorLog errorLog = new ErrorLog();
-            errorLog.setUser(userEntity);
+            // user by id only; the row is written later by the batched ErrorLogWriter
+            ErrorLogDto errorLog = new ErrorLogDto();
+            errorLog.setUserId(userId);
             errorLog.setEndpoint(request.getRequestURI());
             errorLog.setMethod(request.getMethod());
             errorLog.setStatusCode(statusCode);
@@ -118,10 +115,10 @@ public class GlobalExceptionHandler {
             errorLog.setErrorMessage(ex.getMessage());            // "User not found"
             errorLog.setTracebackInfo(shortMeaning);              // "ApiException: User not found"
 
-            errorLogService.save(errorLog);
+            errorLogService.record(errorLog);
             request.setAttribute("ERROR_LOGGED", true);
 
-            log.info("Saved ErrorLog for endpoint {} (userId={})", request.getRequestURI(), userId);
+            log.info("Queued ErrorLog for endpoint {} (userId={})", request.getRequestURI(), userId);
 
         } catch (Exception e) {
             log.error("Failed to persist error log: {}", e.getMessage(), e);
@@ -0,0 +1,26 @@
+package com.java.sms.mapper;
+
+
+import com.java.sms.model.StudentFeeLedger;
+import com.java.sms.response.StudentFeeLedgerResponse;
+
+public final class StudentFeeLedgerMapper {
+
+    public static StudentFeeLedgerResponse toResponse(StudentFeeLedger l) {
+        return StudentFeeLedgerResponse.builder()
+                .studentYearId(l.getId().getStudentYearId())
+                .schoolYearId(l.getId().getSchoolYearId())
+                .totalOriginal(l.getTotalOriginal())
+                .totalPaid(l.getTotalPaid())
+                .totalDue(l.getTotalDue())
+                .totalPenalty(l.getTotalPenalty())
+                .totalDiscount(l.getTotalDiscount())
+                .paymentsReceived(l.getPaymentsReceived())
+                .feeCount(l.getFeeCount())
+                .pendingCount(l.getPendingCount())
+                .partialCount(l.getPartialCount())
+                .paidCount(l.getPaidCount())
+                .updatedAt(l.getUpdatedAt())
+                .build();
+    }
+}
@@ -11,10 +11,15 @@ import java.time.OffsetDateTime;
 /**
  * Represents any error that occurs in the system,
  * Captures request info, user, error type, message, and full stacktrace.
+ * Identical errors (same fingerprint) within the dedup window share one row with an occurrence count.
  */
 
 @Entity
-@Table(name = "ErrorLog")
+@Table(name = "ErrorLog", indexes = {
+        @Index(name = "idx_error_log_fingerprint", columnList = "fingerprint"),
+        @Index(name = "idx_error_log_timestamp_status", columnList = "timestamp, status_code"),
+        @Index(name = "idx_error_log_type_timestamp", columnList = "error_type, timestamp")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -52,8 +57,24 @@ public class ErrorLog {
     @Column(name = "timestamp")
     private OffsetDateTime timestamp;
 
+    // sha-256 of endpoint + error_type + normalized message
+    @Column(name = "fingerprint", length = 64)
+    private String fingerprint;
+
+    @Column(name = "occurrence_count")
+    private Integer occurrenceCount;
+
+    @Column(name = "first_seen")
+    private OffsetDateTime firstSeen;
+
+    @Column(name = "last_seen")
+    private OffsetDateTime lastSeen;
+
     @PrePersist
     public void prePersist() {
         this.timestamp = OffsetDateTime.now();
+        if (this.occurrenceCount == null) this.occurrenceCount = 1;
+        if (this.firstSeen == null) this.firstSeen = this.timestamp;
+        if (this.lastSeen == null) this.lastSeen = this.timestamp;
     }
 }
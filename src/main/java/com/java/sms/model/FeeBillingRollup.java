@@ -0,0 +1,61 @@
+package com.java.sms.model;
+
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * Billed / paid / due of student_fee pre-aggregated per school year x month x fee structure.
+ *
+ * <p>Sibling of {@link FeeCollectionRollup}, maintained by FeeCollectionRollupWriter in the same transaction as
+ * every StudentFee write. The "due" half of the collection analytics reads these rows (joined to the small
+ * fee_structure table for the fee type) instead of grouping the whole student_fee table.
+ */
+@Entity
+@Table(name = "fee_billing_rollup")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FeeBillingRollup {
+
+    /** {@code fee_month} of fees without a month (one-off fees); the key column cannot be null. */
+    public static final int NO_MONTH = 0;
+
+    @EmbeddedId
+    private Key id;
+
+    @Column(name = "original_amount", precision = 16, scale = 2, nullable = false)
+    private BigDecimal originalAmount;
+
+    @Column(name = "paid_amount", precision = 16, scale = 2, nullable = false)
+    private BigDecimal paidAmount;
+
+    @Column(name = "due_amount", precision = 16, scale = 2, nullable = false)
+    private BigDecimal dueAmount;
+
+    @Column(name = "fee_count", nullable = false)
+    private Long feeCount;
+
+    @Embeddable
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+
+        @Column(name = "school_year_id", nullable = false)
+        private Long schoolYearId;
+
+        @Column(name = "fee_month", nullable = false)
+        private Integer feeMonth;
+
+        @Column(name = "fee_structure_id", nullable = false)
+        private Long feeStructureId;
+    }
+}
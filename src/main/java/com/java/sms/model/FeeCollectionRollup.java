@@ -0,0 +1,59 @@
+package com.java.sms.model;
+
+
+import com.java.sms.model.enums.FeeType;
+import com.java.sms.model.enums.PaymentMethod;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Successful fee collections pre-aggregated per school year x day x fee type x payment method.
+ *
+ * <p>Maintained by FeeCollectionRollupWriter in the same transaction as every FeePayment write; analytics
+ * read a few hundred of these rows instead of joining fee_payment / student_fee / fee_structure.
+ */
+@Entity
+@Table(name = "fee_collection_rollup")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FeeCollectionRollup {
+
+    @EmbeddedId
+    private Key id;
+
+    @Column(name = "amount_collected", precision = 16, scale = 2, nullable = false)
+    private BigDecimal amountCollected;
+
+    @Column(name = "payment_count", nullable = false)
+    private Long paymentCount;
+
+    @Embeddable
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+
+        @Column(name = "school_year_id", nullable = false)
+        private Long schoolYearId;
+
+        @Column(name = "collection_date", nullable = false)
+        private LocalDate collectionDate;
+
+        @Enumerated(EnumType.STRING)
+        @Column(name = "fee_type", length = 100, nullable = false)
+        private FeeType feeType;
+
+        @Enumerated(EnumType.STRING)
+        @Column(name = "payment_method", length = 50, nullable = false)
+        private PaymentMethod paymentMethod;
+    }
+}
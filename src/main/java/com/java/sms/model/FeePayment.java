@@ -11,7 +11,12 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "fee_payment")
+@Table(name = "fee_payment",
+        indexes = {
+                @Index(name = "idx_fee_payment_razorpay_payment", columnList = "razorpay_payment_id"),
+                @Index(name = "idx_fee_payment_razorpay_order", columnList = "razorpay_order_id, status"),
+                @Index(name = "idx_fee_payment_order_request", columnList = "razorpay_order_request_id")
+        })
 @Getter
 @Setter
 @NoArgsConstructor
@@ -69,6 +74,10 @@ public class FeePayment {
     @Column(name = "razorpay_signature", length = 255)
     private String razorpaySignature;
 
+    // RazorpayOrderRequest that will carry the order id; razorpayOrderId is filled in once it is created
+    @Column(name = "razorpay_order_request_id")
+    private Long razorpayOrderRequestId;
+
 
 
     @Override
@@ -0,0 +1,42 @@
+package com.java.sms.model;
+
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * One row per Razorpay payment that went through confirm_payment. The primary key makes a payment id
+ * claimable exactly once; {@code responseJson} is the response sent the first time, replayed on retries.
+ */
+@Entity
+@Table(name = "payment_confirmation")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentConfirmation {
+
+    @Id
+    @Column(name = "razorpay_payment_id", length = 100, nullable = false)
+    private String razorpayPaymentId;
+
+    @Column(name = "razorpay_order_id", length = 100, nullable = false)
+    private String razorpayOrderId;
+
+    @Column(name = "student_year_id", nullable = false)
+    private Long studentYearId;
+
+    /**
+     * ConfirmPaymentResponse as sent to the client; null only while the claiming transaction is open.
+     */
+    @Column(name = "response_json", columnDefinition = "text")
+    private String responseJson;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,68 @@
+package com.java.sms.model;
+
+
+import com.java.sms.model.enums.DiscrepancyType;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One line of a reconciliation report. Unique per run, payment and type, so a resumed run that repeats a
+ * page does not report the same finding twice.
+ */
+@Entity
+@Table(name = "payment_discrepancy",
+        uniqueConstraints = @UniqueConstraint(name = "uk_payment_discrepancy_run_payment_type",
+                columnNames = {"run_id", "fee_payment_id", "type"}),
+        indexes = @Index(name = "idx_payment_discrepancy_run", columnList = "run_id, id"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentDiscrepancy {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "run_id", nullable = false)
+    private Long runId;
+
+    @Column(name = "fee_payment_id", nullable = false)
+    private Long feePaymentId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", length = 40, nullable = false)
+    private DiscrepancyType type;
+
+    @Column(name = "razorpay_order_id", length = 100)
+    private String razorpayOrderId;
+
+    @Column(name = "razorpay_payment_id", length = 100)
+    private String razorpayPaymentId;
+
+    @Column(name = "local_status", length = 20)
+    private String localStatus;
+
+    @Column(name = "remote_status", length = 20)
+    private String remoteStatus;
+
+    @Column(name = "local_amount", precision = 14, scale = 2)
+    private BigDecimal localAmount;
+
+    @Column(name = "remote_amount_paise")
+    private Long remoteAmountPaise;
+
+    // CREDITED / EXPIRED when the job fixed it, null when it needs a human
+    @Column(name = "resolution", length = 20)
+    private String resolution;
+
+    @Column(name = "detail", length = 500)
+    private String detail;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
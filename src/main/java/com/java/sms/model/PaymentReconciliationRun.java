@@ -0,0 +1,80 @@
+package com.java.sms.model;
+
+
+import com.java.sms.model.enums.ReconciliationRunStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * One pass of the Razorpay reconciliation job. {@code checkpointPaymentId} is the last fee_payment id whose
+ * page was fully applied, so an interrupted run resumes right after it.
+ * {@code activeKey} is 'ACTIVE' while the run is unfinished and NULL afterwards; being unique it allows only
+ * one unfinished run across all replicas.
+ */
+@Entity
+@Table(name = "payment_reconciliation_run",
+        uniqueConstraints = @UniqueConstraint(name = "uk_payment_reconciliation_run_active", columnNames = "active_key"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentReconciliationRun {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 20, nullable = false)
+    private ReconciliationRunStatus status;
+
+    @Column(name = "active_key", length = 10)
+    private String activeKey;
+
+    // node currently working the run; a stale owner loses its checkpoint updates
+    @Column(name = "owner", length = 36)
+    private String owner;
+
+    /**
+     * SUCCESS payments created before this are not checked again (PENDING ones always are).
+     */
+    @Column(name = "window_from", nullable = false)
+    private LocalDateTime windowFrom;
+
+    // highest fee_payment id when the run started; newer rows belong to the next run
+    @Column(name = "upper_payment_id", nullable = false)
+    private Long upperPaymentId;
+
+    @Column(name = "checkpoint_payment_id", nullable = false)
+    private Long checkpointPaymentId;
+
+    @Column(name = "scanned", nullable = false)
+    private Long scanned;
+
+    @Column(name = "orders_checked", nullable = false)
+    private Long ordersChecked;
+
+    @Column(name = "credited", nullable = false)
+    private Long credited;
+
+    @Column(name = "expired", nullable = false)
+    private Long expired;
+
+    @Column(name = "discrepancies", nullable = false)
+    private Long discrepancies;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(name = "heartbeat_at")
+    private LocalDateTime heartbeatAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+}
@@ -0,0 +1,83 @@
+package com.java.sms.model;
+
+
+import com.java.sms.model.enums.OrderOutboxStatus;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Outbox row for a Razorpay order that still has to be created. It is written in the same transaction as the
+ * fee rows; {@code RazorpayOrderOutbox} makes the API call after commit and stores the order id here
+ * (and on the pending FeePayments pointing at this row).
+ */
+@Entity
+@Table(name = "razorpay_order_request",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_razorpay_order_request_receipt", columnNames = "receipt"),
+                @UniqueConstraint(name = "uk_razorpay_order_request_token", columnNames = "token")},
+        indexes = @Index(name = "idx_razorpay_order_request_status", columnList = "status, next_attempt_at, id"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RazorpayOrderRequest {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * Receipt sent to Razorpay.
+     */
+    @Column(name = "receipt", length = 50, nullable = false)
+    private String receipt;
+
+    /**
+     * Random handle the client polls with. Receipts are sequential, so they are not used for lookups.
+     */
+    @Column(name = "token", length = 36)
+    private String token;
+
+    @Column(name = "student_year_id")
+    private Long studentYearId;
+
+    @Column(name = "amount_paise", nullable = false)
+    private Long amountPaise;
+
+    @Column(name = "currency", length = 3, nullable = false)
+    private String currency;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 20, nullable = false)
+    @Builder.Default
+    private OrderOutboxStatus status = OrderOutboxStatus.PENDING;
+
+    @Column(name = "razorpay_order_id", length = 100)
+    private String razorpayOrderId;
+
+    @Column(name = "attempts", nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,71 @@
+package com.java.sms.model;
+
+
+import com.java.sms.model.enums.WebhookEventStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Inbox of verified Razorpay webhook deliveries. The endpoint only appends the raw body here;
+ * {@code WebhookInboxProcessor} applies the events to FeePayment / StudentFee in the background.
+ * {@code eventId} is unique, so Razorpay's redeliveries of the same event are dropped on insert.
+ */
+@Entity
+@Table(name = "razorpay_webhook_event",
+        uniqueConstraints = @UniqueConstraint(name = "uk_razorpay_webhook_event_event_id", columnNames = "event_id"),
+        indexes = @Index(name = "idx_razorpay_webhook_event_status", columnList = "status, next_attempt_at, id"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RazorpayWebhookEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * X-Razorpay-Event-Id header (SHA-256 of the body when the header is missing).
+     */
+    @Column(name = "event_id", length = 100, nullable = false)
+    private String eventId;
+
+    /**
+     * e.g. payment.captured; filled in by the processor, the endpoint does not parse the body.
+     */
+    @Column(name = "event_type", length = 100)
+    private String eventType;
+
+    @Column(name = "payload", columnDefinition = "mediumtext", nullable = false)
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 20, nullable = false)
+    @Builder.Default
+    private WebhookEventStatus status = WebhookEventStatus.PENDING;
+
+    @Column(name = "attempts", nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+
+    /**
+     * What processing did (e.g. "credited 2 payments", "no matching fee payment") or the last error.
+     */
+    @Column(name = "outcome", length = 500)
+    private String outcome;
+
+    @Column(name = "received_at", nullable = false, updatable = false)
+    private LocalDateTime receivedAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+}
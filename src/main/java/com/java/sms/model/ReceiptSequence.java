@@ -0,0 +1,29 @@
+package com.java.sms.model;
+
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Per-day receipt counter. {@code nextValue} is the first receipt number of that day not yet
+ * reserved by any node; every block reservation of ReceiptNumberAllocator moves it forward by the block size.
+ */
+@Entity
+@Table(name = "receipt_sequence")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReceiptSequence {
+
+    /**
+     * Receipt day, yyyyMMdd.
+     */
+    @Id
+    @Column(name = "seq_day", length = 8, nullable = false)
+    private String seqDay;
+
+    @Column(name = "next_value", nullable = false)
+    private Long nextValue;
+}
@@ -0,0 +1,43 @@
+package com.java.sms.model;
+
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * A revoked (logged-out) JWT, stored by a compact hash instead of the full token string.
+ * Rows are only needed until the token would have expired anyway, then they are purged.
+ */
+@Entity
+@Table(name = "revoked_token", indexes = {
+        @Index(name = "idx_revoked_token_expires_at", columnList = "expires_at"),
+        @Index(name = "idx_revoked_token_revoked_at", columnList = "revoked_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RevokedToken {
+
+    /**
+     * Base64url SHA-256 of the token (43 chars).
+     */
+    @Id
+    @Column(name = "token_hash", length = 64, nullable = false)
+    private String tokenHash;
+
+    /**
+     * String.hashCode() of the raw token; lets every replica rebuild the same Bloom filter bits.
+     */
+    @Column(name = "bloom_hint", nullable = false)
+    private Integer bloomHint;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    @Column(name = "revoked_at", nullable = false)
+    private Instant revokedAt;
+}
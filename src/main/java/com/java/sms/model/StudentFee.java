@@ -2,6 +2,7 @@ package com.java.sms.model;
 
 
 import com.java.sms.model.enums.FeeStatus;
+import com.java.sms.serviceImpl.StudentFeeBillingListener;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
@@ -12,11 +13,18 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
+@EntityListeners(StudentFeeBillingListener.class)
 @Table(name = "student_fee",
         uniqueConstraints = @UniqueConstraint(
                 name = "uk_student_year_fee_month_schoolyear",
                 columnNames = {"student_year_id", "fee_structure_id", "month", "school_year_id"}
-        ))
+        ),
+        indexes = {
+                @Index(name = "idx_student_fee_status_student_year", columnList = "status, student_year_id"),
+                // overdue list: school year filter + due_date range, due_amount checked from the index
+                @Index(name = "idx_student_fee_schoolyear_due", columnList = "school_year_id, due_date, due_amount"),
+                @Index(name = "idx_student_fee_student_year_due", columnList = "student_year_id, due_date")
+        })
 @Getter
 @Setter
 @NoArgsConstructor
@@ -84,27 +92,37 @@ public class StudentFee {
     private LocalDateTime updatedAt;
 
     /**
-     * Unique receipt number. generated if missing before persist.
+     * Unique receipt number, assigned from ReceiptNumberAllocator before the row is stored.
      */
     @Column(name = "receipt_number", length = 50, unique = true, nullable = false, updatable = false)
     private String receiptNumber;
 
-    @PrePersist
-    public void ensureReceiptNumber() {
-        if (this.receiptNumber == null || this.receiptNumber.isBlank()) {
-            this.receiptNumber = generateReceiptNumber();
+    /**
+     * Amounts as last loaded or written, so the billing rollup gets the change and not the new total.
+     */
+    @Transient
+    private Billed billed;
+
+    /**
+     * The part of a StudentFee that fee_billing_rollup aggregates.
+     */
+    public record Billed(Long schoolYearId, Integer month, Long feeStructureId,
+                         BigDecimal originalAmount, BigDecimal paidAmount, BigDecimal dueAmount) {
+
+        // feeStructure.getId() does not initialize a lazy proxy
+        public static Billed of(StudentFee fee) {
+            return new Billed(fee.getSchoolYearId(), fee.getMonth(),
+                    fee.getFeeStructure() != null ? fee.getFeeStructure().getId() : null,
+                    fee.getOriginalAmount(), fee.getPaidAmount(), fee.getDueAmount());
         }
     }
 
-    private String generateReceiptNumber() {
-        // simple random alphanumeric, 10 chars
-        final String ALPHANUM = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
-        java.security.SecureRandom rnd = new java.security.SecureRandom();
-        StringBuilder sb = new StringBuilder(10);
-        for (int i = 0; i < 10; i++) {
-            sb.append(ALPHANUM.charAt(rnd.nextInt(ALPHANUM.length())));
+    @PrePersist
+    public void ensureReceiptNumber() {
+        if (this.receiptNumber == null || this.receiptNumber.isBlank()) {
+            // a random fallback would break the REC-yyyyMMdd-NNNNN sequence; every writer must allocate one
+            throw new IllegalStateException("StudentFee has no receipt number; assign one from ReceiptNumberAllocator");
         }
-        return sb.toString();
     }
 
     @Override
@@ -0,0 +1,82 @@
+package com.java.sms.model;
+
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Per (studentYearId, schoolYearId) balance summary of student_fee / fee_payment / applied_fee_discount rows.
+ *
+ * <p>Maintained by FeeLedgerUpdater in the same transaction as every fee / payment / discount write, and
+ * reconciled against the raw rows by its verify job. "What does this student owe" is a primary-key read.
+ */
+@Entity
+@Table(name = "student_fee_ledger")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StudentFeeLedger {
+
+    @EmbeddedId
+    private Key id;
+
+    @Column(name = "total_original", precision = 14, scale = 2, nullable = false)
+    private BigDecimal totalOriginal;
+
+    @Column(name = "total_paid", precision = 14, scale = 2, nullable = false)
+    private BigDecimal totalPaid;
+
+    @Column(name = "total_due", precision = 14, scale = 2, nullable = false)
+    private BigDecimal totalDue;
+
+    @Column(name = "total_penalty", precision = 14, scale = 2, nullable = false)
+    private BigDecimal totalPenalty;
+
+    /**
+     * Sum of AppliedFeeDiscount amounts of the student-year.
+     */
+    @Column(name = "total_discount", precision = 14, scale = 2, nullable = false)
+    private BigDecimal totalDiscount;
+
+    /**
+     * Sum of SUCCESS FeePayments against these fees.
+     */
+    @Column(name = "payments_received", precision = 14, scale = 2, nullable = false)
+    private BigDecimal paymentsReceived;
+
+    @Column(name = "fee_count", nullable = false)
+    private Integer feeCount;
+
+    @Column(name = "pending_count", nullable = false)
+    private Integer pendingCount;
+
+    @Column(name = "partial_count", nullable = false)
+    private Integer partialCount;
+
+    @Column(name = "paid_count", nullable = false)
+    private Integer paidCount;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Embeddable
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+
+        @Column(name = "student_year_id", nullable = false)
+        private Long studentYearId;
+
+        @Column(name = "school_year_id", nullable = false)
+        private Long schoolYearId;
+    }
+}
@@ -0,0 +1,25 @@
+package com.java.sms.model.enums;
+
+/**
+ * What the reconciliation job found for one FeePayment when comparing it with Razorpay.
+ */
+public enum DiscrepancyType {
+    // PENDING locally, captured on Razorpay: credited by the job
+    CAPTURED_WHILE_PENDING,
+    // PENDING locally, order never paid within the expiry window: marked FAILED by the job
+    EXPIRED_UNPAID,
+    // PENDING locally, captured amount differs from the pending payments
+    AMOUNT_MISMATCH,
+    // PENDING locally, the captured payment is already recorded on other rows
+    CAPTURE_ALREADY_RECORDED,
+    // PENDING locally, payment authorized but never captured
+    AUTHORIZED_NOT_CAPTURED,
+    // PENDING locally and no Razorpay order was ever created
+    ORDER_NOT_CREATED,
+    // SUCCESS locally, Razorpay has no captured payment with that id
+    SUCCESS_WITHOUT_CAPTURE,
+    // SUCCESS locally, refunded on Razorpay
+    REFUNDED_REMOTELY,
+    ORDER_NOT_FOUND,
+    LOOKUP_FAILED
+}
@@ -0,0 +1,8 @@
+package com.java.sms.model.enums;
+
+public enum OrderOutboxStatus {
+    PENDING,
+    PROCESSING,
+    CREATED,
+    FAILED
+}
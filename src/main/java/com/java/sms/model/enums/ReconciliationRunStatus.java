@@ -0,0 +1,7 @@
+package com.java.sms.model.enums;
+
+public enum ReconciliationRunStatus {
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,9 @@
+package com.java.sms.model.enums;
+
+public enum WebhookEventStatus {
+    PENDING,
+    PROCESSING,
+    PROCESSED,
+    IGNORED,
+    FAILED
+}
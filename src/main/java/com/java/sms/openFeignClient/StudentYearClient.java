@@ -5,6 +5,9 @@ import com.java.sms.response.StudentYearLevelResponse;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.List;
 
 // StudentYearLevel fetch (Django)
 @FeignClient(name = "django-student-year", url = "${external.django.base-url}",
@@ -17,5 +20,10 @@ public interface StudentYearClient {
     StudentYearLevelResponse getStudentYearLevel(@PathVariable("id") Long id);
 
 
+    // bulk lookup: ids as a comma separated list, e.g. ?ids=4,7,9
+    @GetMapping("/s/studentyearlevels/")
+    List<StudentYearLevelResponse> getStudentYearLevels(@RequestParam("ids") String ids);
+
+
 
 }
@@ -10,6 +10,8 @@ import org.springframework.cloud.openfeign.FallbackFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 /**
  * FallbackFactory for StudentYearClient.
  * Triggered if Django service is DOWN, returns 5xx, or Feign decoding fails.
@@ -35,6 +37,16 @@ public class StudentYearClientFallbackFactory implements FallbackFactory<Student
                 // Option B: Strict fallback — Uncomment to throw exception instead
                 // throw new ApiException("StudentYear service is unavailable", HttpStatus.SERVICE_UNAVAILABLE);
             }
+
+            @Override
+            public List<StudentYearLevelResponse> getStudentYearLevels(String ids) {
+                log.error("Fallback triggered for StudentYearClient.getStudentYearLevels(ids={}) - cause={}",
+                        ids, cause == null ? "unknown" : cause.getMessage(), cause);
+
+                // null, not an empty list: "Django did not answer" must not look like "Django knows none of
+                // these ids" (StudentYearLevelCache then serves what it still has instead of asking per id)
+                return null;
+            }
         };
     }
 }
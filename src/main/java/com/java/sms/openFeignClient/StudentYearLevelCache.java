@@ -0,0 +1,293 @@
+package com.java.sms.openFeignClient;
+
+
+import com.java.sms.config.BoundedTtlMap;
+import com.java.sms.response.StudentYearLevelResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Read-through cache in front of {@link StudentYearClient} (Django StudentYearLevel).
+ *
+ * <p>Entries live for {@code django.student-year-cache.ttl-seconds} and the map is bounded by
+ * {@code django.student-year-cache.max-size}. Concurrent misses for the same id share a single
+ * upstream call. Null answers (Feign fallback, Django down) are never cached.
+ *
+ * <p>Use {@link #invalidate(Long)} / {@link #invalidateAll()} when a student-year changes on the
+ * Django side (promotion, section change, etc.).
+ */
+@Component
+@Slf4j
+public class StudentYearLevelCache {
+
+    private record Entry(StudentYearLevelResponse value, long loadedAtMillis) {
+    }
+
+    private final StudentYearClient studentYearClient;
+    private final BoundedTtlMap<Long, Entry> entries;
+    private final ConcurrentHashMap<Long, CompletableFuture<StudentYearLevelResponse>> inFlight = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final int bulkChunkSize;
+    private final int bulkParallelism;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder upstreamCalls = new LongAdder();
+    private final LongAdder bulkCalls = new LongAdder();
+    private final LongAdder upstreamErrors = new LongAdder();
+    private final LongAdder staleServed = new LongAdder();
+    private final LongAdder upstreamNanos = new LongAdder();
+    private final AtomicLong upstreamMaxNanos = new AtomicLong();
+
+    public StudentYearLevelCache(StudentYearClient studentYearClient,
+                                 @Value("${django.student-year-cache.max-size:5000}") int maxSize,
+                                 @Value("${django.student-year-cache.ttl-seconds:300}") long ttlSeconds,
+                                 @Value("${django.student-year-cache.bulk-chunk-size:100}") int bulkChunkSize,
+                                 @Value("${django.student-year-cache.bulk-parallelism:4}") int bulkParallelism) {
+        this.studentYearClient = studentYearClient;
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(Math.max(1L, ttlSeconds));
+        this.entries = new BoundedTtlMap<>(maxSize, (e, now) -> now - e.loadedAtMillis() >= ttlMillis);
+        this.bulkChunkSize = Math.max(1, bulkChunkSize);
+        this.bulkParallelism = Math.max(1, bulkParallelism);
+    }
+
+    /**
+     * Same contract as {@link StudentYearClient#getStudentYearLevel(Long)}: null if Django has no answer.
+     */
+    public StudentYearLevelResponse get(Long id) {
+        if (id == null) return null;
+
+        Entry cached = entries.getFresh(id);
+        if (cached != null) {
+            hits.increment();
+            return cached.value();
+        }
+        misses.increment();
+        return loadCoalesced(id);
+    }
+
+    /**
+     * Resolve many ids with O(1) upstream round-trips: fresh entries come from the cache, the rest are
+     * fetched through the bulk {@code ?ids=} endpoint in chunks of {@code django.student-year-cache.bulk-chunk-size},
+     * at most {@code django.student-year-cache.bulk-parallelism} chunks at a time on virtual threads.
+     * Ids Django does not know are absent from the map. If a chunk fails (Django down, fallback), its ids are served
+     * from expired entries where the cache still has them and are otherwise absent; there is no per-id retry, which
+     * would turn one failed call into one call per row exactly when Django is struggling.
+     */
+    public Map<Long, StudentYearLevelResponse> getAll(Collection<Long> ids) {
+        Map<Long, StudentYearLevelResponse> out = new HashMap<>();
+        if (ids == null || ids.isEmpty()) return out;
+
+        List<Long> missing = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            if (id == null) continue;
+            Entry cached = entries.getFresh(id);
+            if (cached != null) {
+                hits.increment();
+                out.put(id, cached.value());
+            } else {
+                misses.increment();
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) return out;
+
+        Map<Long, StudentYearLevelResponse> fetched = new ConcurrentHashMap<>();
+        Set<Long> unanswered = ConcurrentHashMap.newKeySet();
+        List<Runnable> chunkTasks = new ArrayList<>();
+        for (int i = 0; i < missing.size(); i += bulkChunkSize) {
+            List<Long> chunk = missing.subList(i, Math.min(missing.size(), i + bulkChunkSize));
+            chunkTasks.add(() -> {
+                if (!fetchChunk(chunk, fetched)) unanswered.addAll(chunk);
+            });
+        }
+        runBounded(chunkTasks);
+        out.putAll(fetched);
+
+        if (!unanswered.isEmpty()) {
+            // stale beats nothing for names/levels on a listing; ids never cached stay absent
+            int served = 0;
+            for (Long id : unanswered) {
+                Entry stale = entries.get(id);
+                if (stale != null) {
+                    out.put(id, stale.value());
+                    served++;
+                }
+            }
+            staleServed.add(served);
+            log.warn("StudentYear bulk lookup unanswered for {} ids, served {} from stale entries",
+                    unanswered.size(), served);
+        }
+        return out;
+    }
+
+    private StudentYearLevelResponse loadCoalesced(Long id) {
+        // only one caller per id goes upstream, the rest wait on its future
+        CompletableFuture<StudentYearLevelResponse> mine = new CompletableFuture<>();
+        CompletableFuture<StudentYearLevelResponse> running = inFlight.putIfAbsent(id, mine);
+        if (running != null) {
+            coalesced.increment();
+            return await(running);
+        }
+
+        try {
+            StudentYearLevelResponse loaded = load(id);
+            mine.complete(loaded);
+            return loaded;
+        } catch (RuntimeException ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(id, mine);
+        }
+    }
+
+    public void invalidate(Long id) {
+        if (id != null) entries.remove(id);
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    public Map<String, Object> stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long calls = upstreamCalls.sum();
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("size", entries.size());
+        out.put("max_size", entries.maxSize());
+        out.put("ttl_seconds", TimeUnit.MILLISECONDS.toSeconds(ttlMillis));
+        out.put("hits", hitCount);
+        out.put("misses", missCount);
+        out.put("hit_ratio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        out.put("coalesced", coalesced.sum());
+        out.put("evictions", entries.evictions());
+        out.put("upstream_calls", calls);
+        out.put("bulk_calls", bulkCalls.sum());
+        out.put("upstream_errors", upstreamErrors.sum());
+        out.put("stale_served", staleServed.sum());
+        out.put("upstream_avg_ms", calls == 0 ? 0.0 : upstreamNanos.sum() / (double) calls / 1_000_000.0);
+        out.put("upstream_max_ms", upstreamMaxNanos.get() / 1_000_000.0);
+        return out;
+    }
+
+    private StudentYearLevelResponse load(Long id) {
+        long start = System.nanoTime();
+        try {
+            StudentYearLevelResponse loaded = studentYearClient.getStudentYearLevel(id);
+            if (loaded == null) {
+                upstreamErrors.increment(); // fallback answered
+            } else {
+                entries.put(id, new Entry(loaded, System.currentTimeMillis()));
+            }
+            return loaded;
+        } catch (RuntimeException ex) {
+            upstreamErrors.increment();
+            throw ex;
+        } finally {
+            recordUpstream(System.nanoTime() - start);
+        }
+    }
+
+    // false if Django gave no answer for the chunk (error or fallback)
+    private boolean fetchChunk(List<Long> chunk, Map<Long, StudentYearLevelResponse> fetched) {
+        String ids = chunk.stream().map(String::valueOf).collect(Collectors.joining(","));
+        Set<Long> wanted = new HashSet<>(chunk);
+        long start = System.nanoTime();
+        try {
+            List<StudentYearLevelResponse> rows = studentYearClient.getStudentYearLevels(ids);
+            if (rows == null) {
+                upstreamErrors.increment(); // fallback answered
+                return false;
+            }
+            for (StudentYearLevelResponse row : rows) {
+                // ignore anything we did not ask for (e.g. an endpoint that ignores ?ids=)
+                if (row == null || row.getId() == null || !wanted.contains(row.getId())) continue;
+                entries.put(row.getId(), new Entry(row, System.currentTimeMillis()));
+                fetched.put(row.getId(), row);
+            }
+            bulkCalls.increment();
+            return true;
+        } catch (Exception ex) {
+            upstreamErrors.increment();
+            log.warn("Bulk StudentYear fetch failed for {} ids: {}", chunk.size(), ex.getMessage());
+            return false;
+        } finally {
+            recordUpstream(System.nanoTime() - start);
+        }
+    }
+
+    // Run tasks on virtual threads, at most bulkParallelism at a time, and wait for all of them.
+    // The caller's request attributes are carried over so FeignConfig still forwards the JWT.
+    private void runBounded(List<Runnable> tasks) {
+        if (tasks.isEmpty()) return;
+        if (tasks.size() == 1) {
+            tasks.get(0).run();
+            return;
+        }
+
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        Semaphore permits = new Semaphore(bulkParallelism);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Runnable task : tasks) {
+                executor.submit(() -> {
+                    try {
+                        permits.acquire();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    RequestContextHolder.setRequestAttributes(attributes);
+                    try {
+                        task.run();
+                    } finally {
+                        RequestContextHolder.resetRequestAttributes();
+                        permits.release();
+                    }
+                });
+            }
+        }
+    }
+
+    private void recordUpstream(long nanos) {
+        upstreamCalls.increment();
+        upstreamNanos.add(nanos);
+        upstreamMaxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    private static StudentYearLevelResponse await(CompletableFuture<StudentYearLevelResponse> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            // rethrow what the leading caller got
+            if (ex.getCause() instanceof RuntimeException re) throw re;
+            throw ex;
+        }
+    }
+}
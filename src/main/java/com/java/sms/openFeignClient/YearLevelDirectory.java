@@ -0,0 +1,286 @@
+package com.java.sms.openFeignClient;
+
+
+import com.java.sms.exception.ApiException;
+import com.java.sms.response.YearLevelResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process copy of the Django YearLevel list with precomputed lookups
+ * (case-insensitive name -> id, id -> name).
+ *
+ * <p>Year levels change a couple of times a year, so the list is refreshed in the background every
+ * {@code django.year-levels.refresh-ms}. Once the copy is older than {@code django.year-levels.ttl-seconds}
+ * a request that notices it hands a refresh to the background thread and keeps reading the stale copy
+ * (stale-while-revalidate); request threads never call Django themselves. If Django is down the last good copy
+ * keeps being served and no new refresh starts for {@code django.year-levels.retry-seconds}. Only a cold start
+ * without any copy waits (at most {@code django.year-levels.wait-ms}) and fails with 503.
+ * A lookup miss triggers at most one extra refresh per {@code django.year-levels.miss-refresh-seconds}
+ * and waits for it the same bounded time, so a freshly created year level is picked up without waiting for the TTL.
+ * Refreshes run without the caller's JWT, like the scheduled one.
+ */
+@Component
+@Slf4j
+public class YearLevelDirectory {
+
+    private record Snapshot(List<YearLevelResponse> levels,
+                            Map<String, Long> idByName,
+                            Map<Long, String> nameById,
+                            long loadedAtMillis) {
+    }
+
+    private final YearLevelClient yearLevelClient;
+    private final long ttlMillis;
+    private final long missRefreshMillis;
+    private final long retryMillis;
+    private final long waitMillis;
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "year-level-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile Snapshot snapshot;
+    // the refresh queued or running on the refresher thread, shared by everyone who wants one
+    private final AtomicReference<CompletableFuture<Snapshot>> inFlight = new AtomicReference<>();
+    // after a failed refresh, none is started before this (the failure is not retried on every request)
+    private volatile long nextAttemptAtMillis;
+    private volatile String lastError;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder lookupMisses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+
+    public YearLevelDirectory(YearLevelClient yearLevelClient,
+                              @Value("${django.year-levels.ttl-seconds:900}") long ttlSeconds,
+                              @Value("${django.year-levels.miss-refresh-seconds:60}") long missRefreshSeconds,
+                              @Value("${django.year-levels.retry-seconds:30}") long retrySeconds,
+                              @Value("${django.year-levels.wait-ms:5000}") long waitMillis) {
+        this.yearLevelClient = yearLevelClient;
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(Math.max(1L, ttlSeconds));
+        this.missRefreshMillis = TimeUnit.SECONDS.toMillis(Math.max(1L, missRefreshSeconds));
+        this.retryMillis = TimeUnit.SECONDS.toMillis(Math.max(1L, retrySeconds));
+        this.waitMillis = Math.max(0L, waitMillis);
+    }
+
+    /**
+     * Year level id for a name (trimmed, case-insensitive), e.g. "class 1 " -> id of "Class 1".
+     */
+    public Optional<Long> findIdByName(String levelName) {
+        if (levelName == null || levelName.isBlank()) return Optional.empty();
+        lookups.increment();
+
+        String key = normalize(levelName);
+        Long id = current().idByName().get(key);
+        if (id == null && refreshAfterMiss()) {
+            id = snapshot.idByName().get(key);
+        }
+        if (id == null) lookupMisses.increment();
+        return Optional.ofNullable(id);
+    }
+
+    public Optional<String> findNameById(Long id) {
+        if (id == null) return Optional.empty();
+        lookups.increment();
+
+        String name = current().nameById().get(id);
+        if (name == null && refreshAfterMiss()) {
+            name = snapshot.nameById().get(id);
+        }
+        if (name == null) lookupMisses.increment();
+        return Optional.ofNullable(name);
+    }
+
+    public List<YearLevelResponse> all() {
+        return current().levels();
+    }
+
+    /**
+     * Background refresh; failures keep the previous copy.
+     */
+    @Scheduled(fixedDelayString = "${django.year-levels.refresh-ms:600000}",
+            initialDelayString = "${django.year-levels.refresh-ms:600000}")
+    public void scheduledRefresh() {
+        try {
+            refreshAsync().join();
+        } catch (Exception ex) {
+            log.warn("Background YearLevel refresh failed: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Force the next lookup to go to Django (e.g. after a year level was created or renamed).
+     */
+    public void invalidate() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            snapshot = new Snapshot(current.levels(), current.idByName(), current.nameById(), 0L);
+        }
+        nextAttemptAtMillis = 0L;
+    }
+
+    public Map<String, Object> stats() {
+        Snapshot current = snapshot;
+        long retryIn = nextAttemptAtMillis - System.currentTimeMillis();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("size", current != null ? current.levels().size() : 0);
+        out.put("age_seconds", current != null
+                ? TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - current.loadedAtMillis()) : null);
+        out.put("lookups", lookups.sum());
+        out.put("lookup_misses", lookupMisses.sum());
+        out.put("refreshes", refreshes.sum());
+        out.put("refresh_failures", refreshFailures.sum());
+        out.put("refreshing", inFlight.get() != null);
+        out.put("retry_in_seconds", retryIn > 0 ? TimeUnit.MILLISECONDS.toSeconds(retryIn) : 0);
+        out.put("last_error", lastError);
+        return out;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+
+        if (current == null) {
+            // cold start: nothing to serve, wait (bounded) for the shared first load
+            if (!backingOff()) {
+                awaitRefresh();
+            }
+            current = snapshot;
+            if (current == null) {
+                throw new ApiException("Failed to fetch YearLevel list from Django: "
+                        + (lastError != null ? lastError : "no answer yet"), HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            return current;
+        }
+
+        if (System.currentTimeMillis() - current.loadedAtMillis() >= ttlMillis && !backingOff()) {
+            // stale: revalidate in the background, this request uses the old copy
+            refreshAsync();
+        }
+        return current;
+    }
+
+    // one extra refresh after a lookup miss, rate limited; true if a newer copy is in place afterwards
+    private boolean refreshAfterMiss() {
+        Snapshot current = snapshot;
+        if (current == null || System.currentTimeMillis() - current.loadedAtMillis() < missRefreshMillis
+                || backingOff()) {
+            return false;
+        }
+        awaitRefresh();
+        return snapshot != current;
+    }
+
+    private boolean backingOff() {
+        return System.currentTimeMillis() < nextAttemptAtMillis;
+    }
+
+    private void awaitRefresh() {
+        try {
+            refreshAsync().get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            log.warn("YearLevel refresh still running after {} ms", waitMillis);
+        } catch (ExecutionException ex) {
+            // already logged and counted by the refresher
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // start a refresh on the refresher thread unless one is already queued or running
+    private CompletableFuture<Snapshot> refreshAsync() {
+        CompletableFuture<Snapshot> running = inFlight.get();
+        if (running != null) return running;
+
+        CompletableFuture<Snapshot> mine = new CompletableFuture<>();
+        if (!inFlight.compareAndSet(null, mine)) {
+            running = inFlight.get();
+            return running != null ? running : CompletableFuture.completedFuture(snapshot);
+        }
+        try {
+            refresher.execute(() -> {
+                try {
+                    refresh();
+                    mine.complete(snapshot);
+                } catch (Exception ex) {
+                    nextAttemptAtMillis = System.currentTimeMillis() + retryMillis;
+                    lastError = ex.getMessage();
+                    log.warn("YearLevel refresh failed, next attempt in {}s: {}",
+                            TimeUnit.MILLISECONDS.toSeconds(retryMillis), ex.getMessage());
+                    mine.completeExceptionally(ex);
+                } finally {
+                    inFlight.compareAndSet(mine, null);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            // shutting down
+            inFlight.compareAndSet(mine, null);
+            mine.completeExceptionally(ex);
+        }
+        return mine;
+    }
+
+    // runs on the refresher thread only
+    private void refresh() {
+        List<YearLevelResponse> levels;
+        try {
+            levels = yearLevelClient.getAllYearLevels();
+        } catch (Exception ex) {
+            refreshFailures.increment();
+            throw ex;
+        }
+
+        if (levels == null || levels.isEmpty()) {
+            // keeps the previous copy, if any
+            refreshFailures.increment();
+            throw new IllegalStateException("YearLevel service returned empty list");
+        }
+
+        Map<String, Long> idByName = new HashMap<>();
+        Map<Long, String> nameById = new HashMap<>();
+        for (YearLevelResponse level : levels) {
+            if (level == null || level.getId() == null) continue;
+            if (level.getLevelName() != null) {
+                // first one wins, same as the old findFirst() scan
+                idByName.putIfAbsent(normalize(level.getLevelName()), level.getId());
+                nameById.put(level.getId(), level.getLevelName());
+            }
+        }
+
+        snapshot = new Snapshot(levels.stream().filter(Objects::nonNull).toList(), Map.copyOf(idByName), Map.copyOf(nameById),
+                System.currentTimeMillis());
+        refreshes.increment();
+        lastError = null;
+    }
+
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -60,10 +61,26 @@ public interface AppliedFeeDiscountRepository extends JpaRepository<AppliedFeeDi
 
     List<AppliedFeeDiscount> findByStudentYearId(Long studentId);
 
+
 //    Optional<AppliedFeeDiscount> findFirstByStudentYearIdAndFeeStructure(Long studentId, FeeStructure feeType);
 
     boolean existsByStudentYearIdAndFeeStructure(Long studentId, FeeStructure feeType);
 
+    /**
+     * Discount amounts of many student-years in one query (ids only, no entities), oldest first.
+     */
+    @Query("SELECT d.studentYearId AS studentYearId, d.feeStructure.id AS feeStructureId, d.discountAmount AS discountAmount " +
+            "FROM AppliedFeeDiscount d WHERE d.studentYearId IN :studentYearIds ORDER BY d.id")
+    List<DiscountLine> findDiscountLines(@Param("studentYearIds") Collection<Long> studentYearIds);
+
+    interface DiscountLine {
+        Long getStudentYearId();
+
+        Long getFeeStructureId();
+
+        BigDecimal getDiscountAmount();
+    }
+
 
 }
 
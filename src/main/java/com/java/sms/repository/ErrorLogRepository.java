@@ -2,9 +2,62 @@ package com.java.sms.repository;
 
 
 import com.java.sms.model.ErrorLog;
+import com.java.sms.response.ErrorLogSummaryResponse;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.List;
 
 @Repository
 public interface ErrorLogRepository extends JpaRepository<ErrorLog, Long> {
+
+    /**
+     * Keyset page, newest first (id follows insertion order). Every filter is optional (null = ignored).
+     * Selects into a summary DTO so the TEXT traceback is never read for list views.
+     * Pass PageRequest.of(0, limit) as pageable; cursor is the last id of the previous page. The escape character
+     * is spelled out because Hibernate otherwise renders {@code escape ''} and a backslash-escaped prefix never matches.
+     */
+    @Query("""
+        select new com.java.sms.response.ErrorLogSummaryResponse(
+            e.id, e.user.id, e.endpoint, e.method, e.statusCode, e.errorType, e.errorMessage,
+            e.timestamp, e.occurrenceCount, e.firstSeen, e.lastSeen)
+        from ErrorLog e
+        where (:cursor is null or e.id < :cursor)
+          and (:statusCode is null or e.statusCode = :statusCode)
+          and (:endpointPrefix is null or e.endpoint like :endpointPrefix escape '\\')
+          and (:errorType is null or e.errorType = :errorType)
+          and (:userId is null or e.user.id = :userId)
+          and (:from is null or e.timestamp >= :from)
+          and (:to is null or e.timestamp < :to)
+        order by e.id desc
+        """)
+    List<ErrorLogSummaryResponse> findPage(@Param("cursor") Long cursor,
+                                           @Param("statusCode") Integer statusCode,
+                                           @Param("endpointPrefix") String endpointPrefix,
+                                           @Param("errorType") String errorType,
+                                           @Param("userId") Long userId,
+                                           @Param("from") OffsetDateTime from,
+                                           @Param("to") OffsetDateTime to,
+                                           Pageable pageable);
+
+    /**
+     * Delete at most {@code chunkSize} rows older than the cutoff (MySQL single-table DELETE ... LIMIT).
+     * Rows still being aggregated (last_seen after the cutoff) are kept. error_log is the entity's physical table name.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+        DELETE FROM error_log
+        WHERE timestamp < :cutoff
+          AND (last_seen IS NULL OR last_seen < :cutoff)
+        ORDER BY id
+        LIMIT :chunkSize
+        """, nativeQuery = true)
+    int deleteOlderThan(@Param("cutoff") OffsetDateTime cutoff, @Param("chunkSize") int chunkSize);
 }
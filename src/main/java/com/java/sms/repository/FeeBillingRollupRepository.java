@@ -0,0 +1,41 @@
+package com.java.sms.repository;
+
+
+import com.java.sms.model.FeeBillingRollup;
+import com.java.sms.model.enums.FeeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface FeeBillingRollupRepository extends JpaRepository<FeeBillingRollup, FeeBillingRollup.Key> {
+
+    /**
+     * Billed / paid / due per month and fee type for a school year, optionally one fee type only.
+     * Month is null for fees without a month.
+     */
+    @Query("select nullif(r.id.feeMonth, 0) as month, fs.feeType as feeType, " +
+            "sum(r.originalAmount) as originalAmount, sum(r.paidAmount) as paidAmount, sum(r.dueAmount) as dueAmount " +
+            "from FeeBillingRollup r join FeeStructure fs on fs.id = r.id.feeStructureId " +
+            "where r.id.schoolYearId = :schoolYearId and (:feeType is null or fs.feeType = :feeType) " +
+            "group by r.id.feeMonth, fs.feeType having sum(r.feeCount) > 0 " +
+            "order by r.id.feeMonth, fs.feeType")
+    List<MonthFeeTypeDue> sumByMonthAndFeeType(@Param("schoolYearId") Long schoolYearId,
+                                               @Param("feeType") FeeType feeType);
+
+    interface MonthFeeTypeDue {
+        Integer getMonth();
+
+        FeeType getFeeType();
+
+        BigDecimal getOriginalAmount();
+
+        BigDecimal getPaidAmount();
+
+        BigDecimal getDueAmount();
+    }
+}
@@ -0,0 +1,79 @@
+package com.java.sms.repository;
+
+
+import com.java.sms.model.FeeCollectionRollup;
+import com.java.sms.model.enums.FeeType;
+import com.java.sms.model.enums.PaymentMethod;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface FeeCollectionRollupRepository extends JpaRepository<FeeCollectionRollup, FeeCollectionRollup.Key> {
+
+    /**
+     * Collections per day x fee type x method; every filter except the school year is optional.
+     */
+    @Query("select r.id.collectionDate as collectionDate, r.id.feeType as feeType, r.id.paymentMethod as paymentMethod, " +
+            "sum(r.amountCollected) as amount, sum(r.paymentCount) as paymentCount " +
+            "from FeeCollectionRollup r where r.id.schoolYearId = :schoolYearId " +
+            "and (:from is null or r.id.collectionDate >= :from) and (:to is null or r.id.collectionDate <= :to) " +
+            "and (:feeType is null or r.id.feeType = :feeType) " +
+            "and (:paymentMethod is null or r.id.paymentMethod = :paymentMethod) " +
+            "group by r.id.collectionDate, r.id.feeType, r.id.paymentMethod " +
+            "order by r.id.collectionDate, r.id.feeType, r.id.paymentMethod")
+    List<DailyCollection> sumByDay(@Param("schoolYearId") Long schoolYearId,
+                                   @Param("from") LocalDate from,
+                                   @Param("to") LocalDate to,
+                                   @Param("feeType") FeeType feeType,
+                                   @Param("paymentMethod") PaymentMethod paymentMethod);
+
+    /**
+     * Same as {@link #sumByDay} rolled up to calendar months.
+     */
+    @Query("select year(r.id.collectionDate) as year, month(r.id.collectionDate) as month, " +
+            "r.id.feeType as feeType, r.id.paymentMethod as paymentMethod, " +
+            "sum(r.amountCollected) as amount, sum(r.paymentCount) as paymentCount " +
+            "from FeeCollectionRollup r where r.id.schoolYearId = :schoolYearId " +
+            "and (:from is null or r.id.collectionDate >= :from) and (:to is null or r.id.collectionDate <= :to) " +
+            "and (:feeType is null or r.id.feeType = :feeType) " +
+            "and (:paymentMethod is null or r.id.paymentMethod = :paymentMethod) " +
+            "group by year(r.id.collectionDate), month(r.id.collectionDate), r.id.feeType, r.id.paymentMethod " +
+            "order by year(r.id.collectionDate), month(r.id.collectionDate), r.id.feeType, r.id.paymentMethod")
+    List<MonthlyCollection> sumByMonth(@Param("schoolYearId") Long schoolYearId,
+                                       @Param("from") LocalDate from,
+                                       @Param("to") LocalDate to,
+                                       @Param("feeType") FeeType feeType,
+                                       @Param("paymentMethod") PaymentMethod paymentMethod);
+
+    interface DailyCollection {
+        LocalDate getCollectionDate();
+
+        FeeType getFeeType();
+
+        PaymentMethod getPaymentMethod();
+
+        BigDecimal getAmount();
+
+        Long getPaymentCount();
+    }
+
+    interface MonthlyCollection {
+        Integer getYear();
+
+        Integer getMonth();
+
+        FeeType getFeeType();
+
+        PaymentMethod getPaymentMethod();
+
+        BigDecimal getAmount();
+
+        Long getPaymentCount();
+    }
+}
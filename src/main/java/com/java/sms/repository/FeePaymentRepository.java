@@ -2,12 +2,18 @@ package com.java.sms.repository;
 
 import com.java.sms.model.FeePayment;
 import com.java.sms.model.StudentFee;
+import com.java.sms.model.enums.PaymentMethod;
+import com.java.sms.model.enums.PaymentStatus;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -24,4 +30,68 @@ public interface FeePaymentRepository extends JpaRepository<FeePayment, Long> {
     @Query("select coalesce(sum(f.amount), 0) from FeePayment f where f.studentFee.id = :studentFeeId")
     BigDecimal sumAmountByStudentFeeId(@Param("studentFeeId") Long studentFeeId);
 
+
+    /**
+     * Sum of payments per StudentFee for many StudentFees in one grouped query.
+     */
+    @Query("select f.studentFee.id as studentFeeId, coalesce(sum(f.amount), 0) as amount " +
+            "from FeePayment f where f.studentFee.id in :studentFeeIds group by f.studentFee.id")
+    List<StudentFeePaid> sumAmountByStudentFeeIdIn(@Param("studentFeeIds") Collection<Long> studentFeeIds);
+
+    interface StudentFeePaid {
+        Long getStudentFeeId();
+
+        BigDecimal getAmount();
+    }
+
+    /**
+     * Payments of many StudentFees in one query (fee history), ordered by id.
+     */
+    @Query("select f.studentFee.id as studentFeeId, f.amount as amount, f.paymentMethod as paymentMethod, " +
+            "f.status as status, f.paymentDate as paymentDate " +
+            "from FeePayment f where f.studentFee.id in :studentFeeIds order by f.id")
+    List<PaymentLine> findPaymentLines(@Param("studentFeeIds") Collection<Long> studentFeeIds);
+
+    interface PaymentLine {
+        Long getStudentFeeId();
+
+        BigDecimal getAmount();
+
+        PaymentMethod getPaymentMethod();
+
+        PaymentStatus getStatus();
+
+        LocalDateTime getPaymentDate();
+    }
+
+    /**
+     * Payments already recorded for these Razorpay payment ids, with their StudentFee and FeeStructure.
+     */
+    @Query("select f from FeePayment f join fetch f.studentFee sf join fetch sf.feeStructure " +
+            "where f.razorpayPaymentId in :paymentIds")
+    List<FeePayment> findByRazorpayPaymentIdInWithStudentFee(@Param("paymentIds") Collection<String> paymentIds);
+
+    /**
+     * Payments of these Razorpay orders in one status (e.g. PENDING online payments waiting for capture),
+     * locked FOR UPDATE together with their StudentFees: the webhook inbox and the reconciliation job both
+     * settle these rows, and a locking read also sees the latest committed status, not the snapshot.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select f from FeePayment f join fetch f.studentFee sf join fetch sf.feeStructure " +
+            "where f.razorpayOrderId in :orderIds and f.status = :status order by f.id")
+    List<FeePayment> findByRazorpayOrderIdInAndStatusWithStudentFee(@Param("orderIds") Collection<String> orderIds,
+                                                                     @Param("status") PaymentStatus status);
+
+    boolean existsByRazorpayOrderIdAndStatus(String razorpayOrderId, PaymentStatus status);
+
+    /**
+     * Payments queued on one Razorpay order outbox row in one status, locked FOR UPDATE with their StudentFees
+     * (the outbox expires them when it gives up on creating the order).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select f from FeePayment f join fetch f.studentFee sf join fetch sf.feeStructure " +
+            "where f.razorpayOrderRequestId = :requestId and f.status = :status order by f.id")
+    List<FeePayment> findByRazorpayOrderRequestIdAndStatusWithStudentFee(@Param("requestId") Long requestId,
+                                                                        @Param("status") PaymentStatus status);
+
 }
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -16,6 +17,20 @@ public interface FeeStructureRepository extends JpaRepository<FeeStructure, Long
     @Query("select f from FeeStructure f join f.yearLevelIds y where y = :yearLevelId")
     List<FeeStructure> findByYearLevelId(@Param("yearLevelId") Long yearLevelId);
 
+    // Same as findByYearLevelId but loads the EAGER yearLevelIds collection in the same query
+    // (no extra select per fee structure), ordered by id for a stable preview
+    @Query("""
+        select f from FeeStructure f
+        left join fetch f.yearLevelIds
+        where f.id in (select f2.id from FeeStructure f2 join f2.yearLevelIds y where y = :yearLevelId)
+        order by f.id
+        """)
+    List<FeeStructure> findByYearLevelIdWithYearLevels(@Param("yearLevelId") Long yearLevelId);
+
+    // Fee structures by id with yearLevelIds in the same query (one IN-query for a whole submit)
+    @Query("select f from FeeStructure f left join fetch f.yearLevelIds where f.id in :ids")
+    List<FeeStructure> findAllByIdInWithYearLevels(@Param("ids") Collection<Long> ids);
+
     List<FeeStructure> findByMasterFeeId(Long masterFeeId);
 }
 
@@ -0,0 +1,33 @@
+package com.java.sms.repository;
+
+import com.java.sms.model.PaymentDiscrepancy;
+import com.java.sms.model.enums.DiscrepancyType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PaymentDiscrepancyRepository extends JpaRepository<PaymentDiscrepancy, Long> {
+
+    /**
+     * Keyset page of one run's report, optionally of a single type.
+     */
+    @Query("""
+        select d from PaymentDiscrepancy d
+        where d.runId = :runId
+          and (:cursor is null or d.id > :cursor)
+          and (:type is null or d.type = :type)
+        order by d.id
+        """)
+    List<PaymentDiscrepancy> findPage(@Param("runId") Long runId,
+                                      @Param("cursor") Long cursor,
+                                      @Param("type") DiscrepancyType type,
+                                      Pageable pageable);
+
+    @Query("select d.type, count(d) from PaymentDiscrepancy d where d.runId = :runId group by d.type")
+    List<Object[]> countByType(@Param("runId") Long runId);
+}
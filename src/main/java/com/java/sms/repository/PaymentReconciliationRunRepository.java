@@ -0,0 +1,13 @@
+package com.java.sms.repository;
+
+import com.java.sms.model.PaymentReconciliationRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PaymentReconciliationRunRepository extends JpaRepository<PaymentReconciliationRun, Long> {
+
+    List<PaymentReconciliationRun> findTop20ByOrderByIdDesc();
+}
@@ -0,0 +1,15 @@
+package com.java.sms.repository;
+
+import com.java.sms.model.RazorpayOrderRequest;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface RazorpayOrderRequestRepository extends JpaRepository<RazorpayOrderRequest, Long> {
+
+    Optional<RazorpayOrderRequest> findByReceipt(String receipt);
+
+    Optional<RazorpayOrderRequest> findByToken(String token);
+}
@@ -0,0 +1,14 @@
+package com.java.sms.repository;
+
+
+import com.java.sms.model.StudentFeeLedger;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface StudentFeeLedgerRepository extends JpaRepository<StudentFeeLedger, StudentFeeLedger.Key> {
+
+    List<StudentFeeLedger> findByIdStudentYearId(Long studentYearId);
+}
@@ -4,20 +4,41 @@ package com.java.sms.repository;
 import com.java.sms.model.FeeStructure;
 import com.java.sms.model.StudentFee;
 import com.java.sms.model.enums.FeeStatus;
+import com.java.sms.model.enums.FeeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 
 
-public interface StudentFeeRepository extends JpaRepository<StudentFee, Long> {
+public interface StudentFeeRepository extends JpaRepository<StudentFee, Long>, JpaSpecificationExecutor<StudentFee> {
     List<StudentFee> findByStudentYearId(Long studentYearId);
 
+    /**
+     * Paid amount per (fee structure, month) for one student-year, in a single grouped query.
+     */
+    @Query("select sf.feeStructure.id as feeStructureId, sf.month as month, coalesce(sum(sf.paidAmount), 0) as paidAmount " +
+            "from StudentFee sf where sf.studentYearId = :studentYearId group by sf.feeStructure.id, sf.month")
+    List<FeeMonthPaid> sumPaidAmountByStudentYearIdGroupByFeeAndMonth(@Param("studentYearId") Long studentYearId);
+
+    interface FeeMonthPaid {
+        Long getFeeStructureId();
+
+        Integer getMonth();
+
+        BigDecimal getPaidAmount();
+    }
+
     Optional<StudentFee> findByStudentYearIdAndFeeStructureIdAndMonthAndSchoolYearId(
             Long studentYearId, Long feeStructureId, Integer month, Long schoolYearId);
 
@@ -31,14 +52,91 @@ public interface StudentFeeRepository extends JpaRepository<StudentFee, Long> {
 
     boolean existsByReceiptNumber(String receiptNumber);
 
-    List<StudentFee> findByStatusIn(List<FeeStatus> statuses);
+    // every StudentFee of a student-year for the given fee structures (one IN-query for a whole submit)
+    List<StudentFee> findByStudentYearIdAndFeeStructureIdIn(Long studentYearId, Collection<Long> feeStructureIds);
+
+    /**
+     * Unpaid totals per student-year, keyset paged by student-year id (one row per student-year).
+     */
+    @Query("select sf.studentYearId as studentYearId, coalesce(sum(sf.originalAmount), 0) as totalAmount, " +
+            "coalesce(sum(sf.paidAmount), 0) as paidAmount, coalesce(sum(sf.dueAmount), 0) as dueAmount " +
+            "from StudentFee sf where sf.status in :statuses " +
+            "and (:cursor is null or sf.studentYearId > :cursor) " +
+            "group by sf.studentYearId order by sf.studentYearId")
+    List<StudentYearTotals> sumByStatusInGroupByStudentYear(@Param("statuses") Collection<FeeStatus> statuses,
+                                                           @Param("cursor") Long cursor,
+                                                           Pageable pageable);
+
+    interface StudentYearTotals {
+        Long getStudentYearId();
+
+        BigDecimal getTotalAmount();
+
+        BigDecimal getPaidAmount();
+
+        BigDecimal getDueAmount();
+    }
+
+    /**
+     * Fee lines (with the fee type joined in) for a page of student-years; no entities are loaded.
+     */
+    @Query("select sf.id as id, sf.studentYearId as studentYearId, sf.month as month, sf.schoolYearId as schoolYearId, " +
+            "fs.feeType as feeType, sf.originalAmount as originalAmount " +
+            "from StudentFee sf left join sf.feeStructure fs " +
+            "where sf.studentYearId in :studentYearIds and sf.status in :statuses order by sf.id")
+    List<FeeLine> findFeeLines(@Param("studentYearIds") Collection<Long> studentYearIds,
+                               @Param("statuses") Collection<FeeStatus> statuses);
+
+    interface FeeLine {
+        Long getId();
+
+        Long getStudentYearId();
+
+        Integer getMonth();
+
+        Long getSchoolYearId();
+
+        FeeType getFeeType();
+
+        BigDecimal getOriginalAmount();
+    }
 
-    List<StudentFee> findByDueAmountGreaterThanAndDueDateBefore(BigDecimal amount, LocalDate date);
 
     List<StudentFee> findByStudentYearIdAndSchoolYearId(Long studentYearId, Long schoolYearId);
 
+    /**
+     * Fee history rows of one student-year with the fee type joined in (single query, ordered by id).
+     */
+    @Query("select sf.id as id, fs.feeType as feeType, sf.originalAmount as originalAmount, sf.paidAmount as paidAmount, " +
+            "sf.dueAmount as dueAmount, sf.status as status, sf.month as month " +
+            "from StudentFee sf left join sf.feeStructure fs " +
+            "where sf.studentYearId = :studentYearId and sf.schoolYearId = :schoolYearId order by sf.id")
+    List<HistoryLine> findHistoryLines(@Param("studentYearId") Long studentYearId,
+                                       @Param("schoolYearId") Long schoolYearId);
+
+    interface HistoryLine {
+        Long getId();
+
+        FeeType getFeeType();
+
+        BigDecimal getOriginalAmount();
+
+        BigDecimal getPaidAmount();
+
+        BigDecimal getDueAmount();
+
+        FeeStatus getStatus();
+
+        Integer getMonth();
+    }
+
     List<StudentFee> findBySchoolYearIdAndStatusNot(Long schoolYearId, FeeStatus status);
 
+    @Query("select sf from StudentFee sf left join fetch sf.feeStructure " +
+            "where sf.schoolYearId = :schoolYearId and sf.status <> :status")
+    List<StudentFee> findBySchoolYearIdAndStatusNotWithFeeStructure(@Param("schoolYearId") Long schoolYearId,
+                                                                   @Param("status") FeeStatus status);
+
 
 
 
@@ -0,0 +1,58 @@
+package com.java.sms.repository;
+
+
+import com.java.sms.model.StudentFee;
+import jakarta.persistence.criteria.JoinType;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Criteria building blocks for StudentFee list endpoints. Every filter is optional (null = not applied),
+ * so callers can just {@code and} them together and the database does all the filtering.
+ */
+public final class StudentFeeSpecifications {
+
+    private StudentFeeSpecifications() {
+    }
+
+    // due_amount > 0 and due_date < today
+    public static Specification<StudentFee> overdueOn(LocalDate today) {
+        return (root, query, cb) -> cb.and(
+                cb.greaterThan(root.get("dueAmount"), BigDecimal.ZERO),
+                cb.lessThan(root.get("dueDate"), today));
+    }
+
+    public static Specification<StudentFee> studentYearId(Long studentYearId) {
+        return (root, query, cb) -> studentYearId == null ? null
+                : cb.equal(root.get("studentYearId"), studentYearId);
+    }
+
+    public static Specification<StudentFee> schoolYearId(Long schoolYearId) {
+        return (root, query, cb) -> schoolYearId == null ? null
+                : cb.equal(root.get("schoolYearId"), schoolYearId);
+    }
+
+    // calendar month of the due date (1..12), any year
+    public static Specification<StudentFee> dueMonth(Integer month) {
+        return (root, query, cb) -> month == null ? null
+                : cb.equal(cb.function("month", Integer.class, root.get("dueDate")), month);
+    }
+
+    // keyset: rows after the last id of the previous page
+    public static Specification<StudentFee> idAfter(Long cursor) {
+        return (root, query, cb) -> cursor == null ? null
+                : cb.greaterThan(root.get("id"), cursor);
+    }
+
+    // load the fee structure in the same select (no lazy load per row)
+    public static Specification<StudentFee> fetchFeeStructure() {
+        return (root, query, cb) -> {
+            if (query != null && StudentFee.class.equals(query.getResultType())) {
+                root.fetch("feeStructure", JoinType.LEFT);
+            }
+            return null;
+        };
+    }
+}
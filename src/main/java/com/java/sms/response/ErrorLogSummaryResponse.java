@@ -0,0 +1,39 @@
+package com.java.sms.response;
+
+
+import lombok.*;
+
+import java.time.OffsetDateTime;
+
+/**
+ * ErrorLog row for list views, without traceback_info (only GET /error-logs/{id} returns that).
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ErrorLogSummaryResponse {
+
+    private Long id;
+
+    private Long userId;
+
+    private String endpoint;
+
+    private String method;
+
+    private Integer statusCode;
+
+    private String errorType;
+
+    private String errorMessage;
+
+    private OffsetDateTime timestamp;
+
+    private Integer occurrenceCount;
+
+    private OffsetDateTime firstSeen;
+
+    private OffsetDateTime lastSeen;
+}
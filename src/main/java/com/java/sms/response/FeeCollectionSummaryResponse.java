@@ -0,0 +1,68 @@
+package com.java.sms.response;
+
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Collected vs. due for one school year (GET /fee-collections).
+ * {@code collected} comes from the collection rollup, {@code due} from the student fees grouped by month and fee type.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FeeCollectionSummaryResponse {
+
+    private Long schoolYearId;
+
+    /**
+     * "day" or "month"; the format of {@link CollectedRow#getPeriod()} (yyyy-MM-dd / yyyy-MM).
+     */
+    private String granularity;
+
+    private BigDecimal totalCollected;
+
+    private Long totalPayments;
+
+    private List<CollectedRow> collected;
+
+    private List<DueRow> due;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class CollectedRow {
+        private String period;
+
+        private String feeType;
+
+        private String paymentMethod;
+
+        private BigDecimal amount;
+
+        private Long paymentCount;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class DueRow {
+        private Integer month;
+
+        private String feeType;
+
+        private BigDecimal originalAmount;
+
+        private BigDecimal paidAmount;
+
+        private BigDecimal dueAmount;
+    }
+}
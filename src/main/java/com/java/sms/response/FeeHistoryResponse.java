@@ -0,0 +1,49 @@
+package com.java.sms.response;
+
+
+import com.java.sms.model.enums.PaymentMethod;
+import com.java.sms.model.enums.PaymentStatus;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * One StudentFee on GET /fee_history with its payments. Amounts are plain strings ("1200.00").
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FeeHistoryResponse {
+
+    private String feeType;
+
+    private String originalAmount;
+
+    private String paidAmount;
+
+    private String dueAmount;
+
+    private String status;
+
+    private String month;
+
+    private List<Payment> payments;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Payment {
+        private String amount;
+
+        private PaymentMethod method;
+
+        private PaymentStatus status;
+
+        private LocalDateTime date;
+    }
+}
@@ -13,6 +13,9 @@ import java.util.Map;
 public class InitiatePaymentResponse {
     private String message;
     private String razorpayOrderId;
+    // PENDING until the Razorpay order exists, then CREATED (poll /student-fees/payment_orders/{orderToken})
+    private String orderStatus;
+    private String orderToken;
     private String receiptNumber;
     private List<Map<String, Object>> fees;
 }
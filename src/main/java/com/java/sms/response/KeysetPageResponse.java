@@ -0,0 +1,26 @@
+package com.java.sms.response;
+
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * One page of a cursor (keyset) paginated list.
+ * Pass {@code nextCursor} back as {@code cursor} to get the next page; it is null on the last page.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class KeysetPageResponse<T> {
+
+    private List<T> items;
+
+    private Long nextCursor;
+
+    private boolean hasMore;
+
+    private int size;
+}
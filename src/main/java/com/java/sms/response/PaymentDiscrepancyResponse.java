@@ -0,0 +1,27 @@
+package com.java.sms.response;
+
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentDiscrepancyResponse {
+    private Long id;
+    private Long feePaymentId;
+    private String type;
+    private String razorpayOrderId;
+    private String razorpayPaymentId;
+    private String localStatus;
+    private String remoteStatus;
+    private BigDecimal localAmount;
+    private Long remoteAmountPaise;
+    private String resolution;
+    private String detail;
+    private LocalDateTime createdAt;
+}
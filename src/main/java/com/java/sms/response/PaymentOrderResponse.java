@@ -0,0 +1,19 @@
+package com.java.sms.response;
+
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentOrderResponse {
+    private String receiptNumber;
+    private String orderStatus;
+    private String razorpayOrderId;
+    private Long amountPaise;
+    private String currency;
+    private Integer attempts;
+    private String lastError;
+}
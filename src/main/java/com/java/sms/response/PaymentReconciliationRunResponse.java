@@ -0,0 +1,31 @@
+package com.java.sms.response;
+
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentReconciliationRunResponse {
+    private Long id;
+    private String status;
+    private LocalDateTime windowFrom;
+    private Long checkpointPaymentId;
+    private Long upperPaymentId;
+    private Long scanned;
+    private Long ordersChecked;
+    private Long credited;
+    private Long expired;
+    private Long discrepancies;
+    // discrepancy type -> count; only filled in for a single run
+    private Map<String, Long> discrepanciesByType;
+    private LocalDateTime startedAt;
+    private LocalDateTime heartbeatAt;
+    private LocalDateTime finishedAt;
+    private String lastError;
+}
@@ -0,0 +1,44 @@
+package com.java.sms.response;
+
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Balance summary of one student-year in one school year (GET /student-fees/ledger).
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StudentFeeLedgerResponse {
+
+    private Long studentYearId;
+
+    private Long schoolYearId;
+
+    private BigDecimal totalOriginal;
+
+    private BigDecimal totalPaid;
+
+    private BigDecimal totalDue;
+
+    private BigDecimal totalPenalty;
+
+    private BigDecimal totalDiscount;
+
+    private BigDecimal paymentsReceived;
+
+    private Integer feeCount;
+
+    private Integer pendingCount;
+
+    private Integer partialCount;
+
+    private Integer paidCount;
+
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,30 @@
+package com.java.sms.response;
+
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * One page of GET /student_unpaid_fees, paged by student-year id.
+ * Pass {@code next_cursor} back as {@code cursor} to get the next page; it is null on the last page.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StudentUnpaidFeesPageResponse {
+
+    @JsonProperty("unpaid_fees")
+    private List<StudentUnpaidFeesResponse> unpaidFees;
+
+    @JsonProperty("next_cursor")
+    private Long nextCursor;
+
+    @JsonProperty("has_more")
+    private boolean hasMore;
+
+    private int size;
+}
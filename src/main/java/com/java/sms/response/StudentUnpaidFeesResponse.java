@@ -0,0 +1,79 @@
+package com.java.sms.response;
+
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * One student on the unpaid-fees report (GET /student_unpaid_fees).
+ * Totals are summed in the database; amounts are plain strings ("1200.00") like the old map response.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StudentUnpaidFeesResponse {
+
+    private Student student;
+
+    private String month;
+
+    @JsonProperty("school_year")
+    private String schoolYear;
+
+    @JsonProperty("year_level_fees_grouped")
+    private List<YearLevelFees> yearLevelFeesGrouped;
+
+    @JsonProperty("total_amount")
+    private String totalAmount;
+
+    @JsonProperty("paid_amount")
+    private String paidAmount;
+
+    @JsonProperty("due_amount")
+    private String dueAmount;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Student {
+        private Long id;
+
+        private String name;
+
+        @JsonProperty("scholar_number")
+        private String scholarNumber;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class YearLevelFees {
+        @JsonProperty("year_level")
+        private String yearLevel;
+
+        private List<Fee> fees;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Fee {
+        private Long id;
+
+        @JsonProperty("fee_type")
+        private String feeType;
+
+        @JsonProperty("original_amount")
+        private String originalAmount;
+    }
+}
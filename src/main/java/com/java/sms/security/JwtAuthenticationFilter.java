@@ -1,8 +1,6 @@
 package com.java.sms.security;
 
 import com.java.sms.exception.InvalidTokenException;
-import com.java.sms.model.User;
-import com.java.sms.repository.UserRepository;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -15,7 +13,6 @@ import org.springframework.security.web.authentication.WebAuthenticationDetailsS
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import java.io.IOException;
-import java.util.List;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 
 
@@ -24,12 +21,12 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
-    private final UserRepository userRepository;
+    private final PrincipalCache principalCache;
     private final JwtBlacklistService jwtBlacklistService;
 
-    public JwtAuthenticationFilter(JwtUtil jwtUtil, UserRepository userRepository, JwtBlacklistService jwtBlacklistService) {
+    public JwtAuthenticationFilter(JwtUtil jwtUtil, PrincipalCache principalCache, JwtBlacklistService jwtBlacklistService) {
         this.jwtUtil = jwtUtil;
-        this.userRepository = userRepository;
+        this.principalCache = principalCache;
 
         this.jwtBlacklistService = jwtBlacklistService;
     }
@@ -51,8 +48,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         jwt = authHeader.substring(7);
 
-        String tokenType = jwtUtil.extractTokenType(jwt);
-        if (!"accessToken".equalsIgnoreCase(tokenType)) {
+        // Verify signature + expiry exactly once (or reuse a cached verification); everything below reads from this object
+        VerifiedToken verified = jwtUtil.verifyCachedOrNull(jwt);
+        if (verified == null || !verified.isAccessToken()) {
             throw new InvalidTokenException("Only access tokens are allowed for this request.", HttpStatus.FORBIDDEN);
         }
 
@@ -65,16 +63,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
+        // expose to downstream code (Feign forwarding, error logging) for the rest of this request
+        request.setAttribute(VerifiedToken.REQUEST_ATTRIBUTE, verified);
 
-        userEmail = jwtUtil.extractEmail(jwt);
+        userEmail = verified.getSubject();
 
         if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
             String finalUserEmail = userEmail;
-            User user = userRepository.findByEmail(userEmail).orElseThrow(() -> new UsernameNotFoundException("User not found: " + finalUserEmail));
+            // cached snapshot (id, email, active, roles) - no DB round-trip in the steady state
+            PrincipalSnapshot user = principalCache.get(userEmail).orElseThrow(() -> new UsernameNotFoundException("User not found: " + finalUserEmail));
 
 
             // Block inactive users
-            if (!Boolean.TRUE.equals(user.getActive())) {
+            if (!user.isActive()) {
                 response.setContentType("application/json");
                 response.setStatus(HttpServletResponse.SC_FORBIDDEN);
                 response.getWriter().write("{\"error\": \"User account is inactive. Please contact admin.\"}");
@@ -82,11 +83,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             }
 
 
-            if (jwtUtil.isTokenValid(jwt, userEmail)) {
+            if (jwtUtil.isTokenValid(verified, userEmail)) {
 
-                List<String> roles = jwtUtil.extractRoles(jwt);
-
-                var authorities = roles.stream()
+                var authorities = verified.getRoles().stream()
                         .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
                         .toList();
 
@@ -1,32 +1,281 @@
 package com.java.sms.security;
 
+import com.java.sms.model.RevokedToken;
+import com.java.sms.repository.RevokedTokenRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Token revocation (logout) store.
+ *
+ * <p>Revoked tokens are kept by a compact id (base64url SHA-256 of the token) instead of the
+ * full token string, persisted in the {@code revoked_token} table so a restart or another
+ * replica still rejects them, and warm-loaded into memory on startup.
+ *
+ * <p>Request-time check is memory only: a Bloom filter over {@code token.hashCode()} answers
+ * "definitely not revoked" for almost every request without hashing or allocating, and only a
+ * possible hit pays for the SHA-256 + map lookup.
+ *
+ * <p>Entries are placed in per-minute expiry buckets; a background sweep drops whole buckets once
+ * their tokens would have expired anyway, purges the table and rebuilds the Bloom filter.
+ * Revocations written by other replicas are pulled in by a periodic sync.
+ */
 @Service
+@Slf4j
 public class JwtBlacklistService {
 
-    // token -> expiry mapping
-    private final ConcurrentHashMap<String, Long> blacklist = new ConcurrentHashMap<>();
+    private static final long BUCKET_MILLIS = 60_000L;
+    private static final int BLOOM_HASHES = 3;
+    // overlap for the replica sync window, covers small clock differences between nodes
+    private static final long SYNC_OVERLAP_MILLIS = 5_000L;
+
+    private record Entry(long expiresAtMillis, int bloomHint) {
+    }
+
+    // token hash -> expiry + bloom hint
+    private final ConcurrentHashMap<String, Entry> revoked = new ConcurrentHashMap<>();
+    // expiry bucket (expiry / BUCKET_MILLIS) -> token hashes expiring in that minute
+    private final ConcurrentSkipListMap<Long, Set<String>> expiryBuckets = new ConcurrentSkipListMap<>();
+
+    private final Object bloomLock = new Object();
+    private final int bloomBits;
+    private volatile AtomicLongArray bloom;
+
+    private final VerifiedTokenCache tokenCache;
+    private final RevokedTokenRepository revokedTokenRepository;
+
+    private volatile long lastSyncMillis;
+
+    private final LongAdder bloomNegatives = new LongAdder();
+    private final LongAdder bloomFalsePositives = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder persistFailures = new LongAdder();
+
+    public JwtBlacklistService(VerifiedTokenCache tokenCache,
+                               RevokedTokenRepository revokedTokenRepository,
+                               @Value("${jwt.revocation.bloom-bits:1048576}") int bloomBits) {
+        this.tokenCache = tokenCache;
+        this.revokedTokenRepository = revokedTokenRepository;
+        // round up to a whole number of longs
+        this.bloomBits = Math.max(64, (bloomBits + 63) & ~63);
+        this.bloom = new AtomicLongArray(this.bloomBits / 64);
+    }
+
+    /**
+     * Load every still-live revocation from the database before the app starts serving requests.
+     */
+    @PostConstruct
+    void warmLoad() {
+        long now = System.currentTimeMillis();
+        lastSyncMillis = now;
+        try {
+            List<RevokedToken> rows = revokedTokenRepository.findByExpiresAtAfter(Instant.ofEpochMilli(now));
+            rows.forEach(this::remember);
+            log.info("Loaded {} revoked tokens", rows.size());
+        } catch (Exception ex) {
+            // do not block startup; the periodic sync will retry
+            lastSyncMillis = 0L;
+            log.error("Could not warm-load revoked tokens: {}", ex.getMessage());
+        }
+    }
 
     public void blacklistToken(String token, long expiryTime) {
-        blacklist.put(token, expiryTime);
+        // a revoked token must not be served from the verification cache any more
+        tokenCache.invalidate(token);
+
+        long now = System.currentTimeMillis();
+        if (token == null || expiryTime <= now) {
+            return; // already expired, nothing to revoke
+        }
+
+        RevokedToken row = RevokedToken.builder()
+                .tokenHash(hash(token))
+                .bloomHint(token.hashCode())
+                .expiresAt(Instant.ofEpochMilli(expiryTime))
+                .revokedAt(Instant.ofEpochMilli(now))
+                .build();
+
+        remember(row);
+
+        try {
+            revokedTokenRepository.save(row);
+        } catch (Exception ex) {
+            // still revoked on this node; other replicas will not see it until it is saved again
+            persistFailures.increment();
+            log.error("Could not persist revoked token: {}", ex.getMessage());
+        }
     }
 
     public boolean isBlacklisted(String token) {
-        Long expiry = blacklist.get(token);
+        if (token == null) return false;
+
+        if (!bloomMightContain(token.hashCode())) {
+            bloomNegatives.increment();
+            return false;
+        }
 
-        if (expiry == null) {
+        Entry entry = revoked.get(hash(token));
+        if (entry == null) {
+            bloomFalsePositives.increment();
             return false;
         }
 
-        // agar token expire ho gaya hai toh blacklist se hata do
-        if (expiry < System.currentTimeMillis()) {
-            blacklist.remove(token);
+        // agar token expire ho gaya hai toh blacklist se hata do (the sweep clears the bucket)
+        if (entry.expiresAtMillis() < System.currentTimeMillis()) {
             return false;
         }
 
+        rejected.increment();
         return true;
     }
-}
 
+    /**
+     * Drop expired buckets from memory, purge expired rows and rebuild the Bloom filter.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.sweep-interval-ms:60000}",
+            initialDelayString = "${jwt.revocation.sweep-interval-ms:60000}")
+    public void sweepExpired() {
+        long now = System.currentTimeMillis();
+
+        // buckets strictly before the current minute only hold expired tokens
+        ConcurrentNavigableMap<Long, Set<String>> due = expiryBuckets.headMap(now / BUCKET_MILLIS);
+        int removed = 0;
+        for (Map.Entry<Long, Set<String>> bucket : due.entrySet()) {
+            for (String key : bucket.getValue()) {
+                if (revoked.remove(key) != null) removed++;
+            }
+            expiryBuckets.remove(bucket.getKey(), bucket.getValue());
+        }
+
+        if (removed > 0) {
+            rebuildBloom();
+            log.debug("Swept {} expired revoked tokens", removed);
+        }
+
+        try {
+            revokedTokenRepository.deleteExpired(Instant.ofEpochMilli(now));
+        } catch (Exception ex) {
+            log.error("Could not purge expired revoked tokens: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Pull in revocations written by other replicas since the last sync.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.sync-interval-ms:30000}",
+            initialDelayString = "${jwt.revocation.sync-interval-ms:30000}")
+    public void syncFromDatabase() {
+        long now = System.currentTimeMillis();
+        long since = Math.max(0L, lastSyncMillis - SYNC_OVERLAP_MILLIS);
+        try {
+            List<RevokedToken> rows = revokedTokenRepository.findByRevokedAtAfterAndExpiresAtAfter(
+                    Instant.ofEpochMilli(since), Instant.ofEpochMilli(now));
+            rows.forEach(this::remember);
+            lastSyncMillis = now;
+        } catch (Exception ex) {
+            log.error("Could not sync revoked tokens: {}", ex.getMessage());
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("size", revoked.size());
+        out.put("expiry_buckets", expiryBuckets.size());
+        out.put("bloom_bits", bloomBits);
+        out.put("bloom_negatives", bloomNegatives.sum());
+        out.put("bloom_false_positives", bloomFalsePositives.sum());
+        out.put("rejected", rejected.sum());
+        out.put("persist_failures", persistFailures.sum());
+        return out;
+    }
+
+    private void remember(RevokedToken row) {
+        long expiresAt = row.getExpiresAt().toEpochMilli();
+        int hint = row.getBloomHint();
+
+        // bloom bits are set under the lock so a concurrent rebuild cannot lose them
+        synchronized (bloomLock) {
+            Entry previous = revoked.put(row.getTokenHash(), new Entry(expiresAt, hint));
+            if (previous != null && previous.expiresAtMillis() == expiresAt) {
+                return; // already known (e.g. our own write coming back through the sync)
+            }
+            expiryBuckets.computeIfAbsent(expiresAt / BUCKET_MILLIS, b -> ConcurrentHashMap.newKeySet())
+                    .add(row.getTokenHash());
+            bloomAdd(bloom, hint);
+        }
+    }
+
+    private void rebuildBloom() {
+        synchronized (bloomLock) {
+            AtomicLongArray fresh = new AtomicLongArray(bloomBits / 64);
+            revoked.values().forEach(e -> bloomAdd(fresh, e.bloomHint()));
+            bloom = fresh;
+        }
+    }
+
+    private void bloomAdd(AtomicLongArray bits, int hint) {
+        long h = mix(hint);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bloomBits);
+            int word = bit >>> 6;
+            long mask = 1L << (bit & 63);
+            long current;
+            do {
+                current = bits.get(word);
+                if ((current & mask) != 0) break;
+            } while (!bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    private boolean bloomMightContain(int hint) {
+        AtomicLongArray bits = bloom;
+        long h = mix(hint);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bloomBits);
+            if ((bits.get(bit >>> 6) & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 64-bit finalizer (splitmix64) so the two derived hashes are well spread
+    private static long mix(int hint) {
+        long z = hint * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // compact, non-reversible id for a token (43 chars)
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -7,31 +7,68 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.List;
 
 @Component
 public class JwtUtil {
 
-    @Value("${jwt.secret}")
-    private String jwtSecret;
-
     private static final long ACCESS_TOKEN_EXPIRATION = 1000 * 60 * 60;          // 1 hour
     private static final long REFRESH_TOKEN_EXPIRATION = 1000 * 60 * 60 * 24 * 7; // 7 days
 
-    // Generate secure signing key
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
+    // Built once: HMAC key derivation and parser construction are not free, and both are thread-safe
+    private final SecretKey signingKey;
+    private final JwtParser parser;
+    private final VerifiedTokenCache tokenCache;
+
+    public JwtUtil(@Value("${jwt.secret}") String jwtSecret, VerifiedTokenCache tokenCache) {
+        this.tokenCache = tokenCache;
+        this.signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parser()
+                .verifyWith(signingKey) // verify signature
+                .build();
     }
 
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parser() //  NEW API (no parserBuilder)
-                .verifyWith(getSigningKey()) // verify signature
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return parser.parseSignedClaims(token).getPayload();
+    }
+
+    /**
+     * Verify signature + expiry once and return everything callers need from the token.
+     *
+     * @throws JwtException if the token is malformed, tampered with or expired
+     */
+    public VerifiedToken verify(String token) {
+        if (token == null || token.isBlank()) {
+            throw new MalformedJwtException("JWT is empty");
+        }
+        return new VerifiedToken(token, extractAllClaims(token));
+    }
+
+    /** Same as {@link #verify(String)} but returns null instead of throwing. */
+    public VerifiedToken verifyOrNull(String token) {
+        try {
+            return verify(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
     }
+
+    /**
+     * Like {@link #verifyOrNull(String)} but served from {@link VerifiedTokenCache} when the same
+     * token was verified before and has not expired or been revoked since.
+     */
+    public VerifiedToken verifyCachedOrNull(String token) {
+        VerifiedToken cached = tokenCache.get(token);
+        if (cached != null) return cached;
+
+        VerifiedToken verified = verifyOrNull(token);
+        if (verified != null) tokenCache.put(verified);
+        return verified;
+    }
+
     // Generate Access Token (with roles)
     public String generateAccessToken(String email, List<String> roleNames) {
         return Jwts.builder()
@@ -40,7 +77,7 @@ public class JwtUtil {
                 .claim("type", "accessToken")
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + ACCESS_TOKEN_EXPIRATION))
-                .signWith(getSigningKey(), Jwts.SIG.HS256)
+                .signWith(signingKey, Jwts.SIG.HS256)
                 .compact();
     }
 
@@ -52,80 +89,52 @@ public class JwtUtil {
                 .claim("type", "refreshToken")
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + REFRESH_TOKEN_EXPIRATION))
-                .signWith(getSigningKey(), Jwts.SIG.HS256)
+                .signWith(signingKey, Jwts.SIG.HS256)
                 .compact();
     }
 
     //  Extract email (subject)
     public String extractEmail(String token) {
-        try {
-            return extractAllClaims(token).getSubject();
-        } catch (JwtException e) {
-            return null;
-        }
+        VerifiedToken vt = verifyOrNull(token);
+        return vt != null ? vt.getSubject() : null;
     }
 
     // Extract roles list
     public List<String> extractRoles(String token) {
-        try {
-            Object roles = extractAllClaims(token).get("roles");
-            if (roles instanceof List<?> roleList) {
-                return roleList.stream()
-                        .map(Object::toString)
-                        .toList();
-            }
-        } catch (JwtException ignored) {}
-        return List.of();
+        VerifiedToken vt = verifyOrNull(token);
+        return vt != null ? vt.getRoles() : List.of();
     }
 
     //  Extract token type ("accessToken" / "refreshToken")
     public String extractTokenType(String token) {
-        try {
-            return extractAllClaims(token).get("type", String.class);
-        } catch (JwtException e) {
-            return null;
-        }
-    }
-
-    // Check token expiration
-    private boolean isTokenExpired(String token) {
-        try {
-            Date expiration = extractAllClaims(token).getExpiration();
-            return expiration.before(new Date());
-        } catch (JwtException e) {
-            return true; // consider invalid/expired if parse fails
-        }
+        VerifiedToken vt = verifyOrNull(token);
+        return vt != null ? vt.getType() : null;
     }
 
     // Validate token (email match + not expired)
     public boolean isTokenValid(String token, String email) {
-        try {
-            String tokenEmail = extractEmail(token);
-            return (tokenEmail != null && tokenEmail.equals(email) && !isTokenExpired(token));
-        } catch (JwtException e) {
-            return false;
-        }
+        VerifiedToken vt = verifyOrNull(token);
+        return isTokenValid(vt, email);
+    }
+
+    // Validate an already verified token (email match + not expired) without parsing again
+    public boolean isTokenValid(VerifiedToken vt, String email) {
+        return vt != null
+                && vt.getSubject() != null
+                && vt.getSubject().equals(email)
+                && !vt.isExpired(System.currentTimeMillis());
     }
 
     // Validate refresh token
     public boolean validateRefreshToken(String token) {
-        try {
-            Claims claims = extractAllClaims(token);
-            String type = claims.get("type", String.class);
-            Date expiration = claims.getExpiration();
-            return "refreshToken".equals(type) && expiration.after(new Date());
-        } catch (JwtException e) {
-            return false;
-        }
+        VerifiedToken vt = verifyOrNull(token);
+        return vt != null && vt.isRefreshToken() && !vt.isExpired(System.currentTimeMillis());
     }
 
     // Get token expiry timestamp (milliseconds)
     public long getExpiry(String token) {
-        try {
-            return extractAllClaims(token).getExpiration().getTime();
-        } catch (JwtException e) {
-            return 0L;
-        }
+        VerifiedToken vt = verifyOrNull(token);
+        return vt != null ? vt.getExpiresAtMillis() : 0L;
     }
 
     // (Optional) For debugging - print all claims
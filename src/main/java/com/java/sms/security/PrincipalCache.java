@@ -0,0 +1,84 @@
+package com.java.sms.security;
+
+import com.java.sms.config.BoundedTtlMap;
+import com.java.sms.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Email → {@link PrincipalSnapshot} cache so {@link JwtAuthenticationFilter} does not hit the
+ * {@code users} table (plus the EAGER {@code user_roles} join) on every request.
+ *
+ * <p>Services that change a user (update, role change, delete, status change, create) call
+ * {@link #evict(String)} / {@link #evictUser(Long)}. The TTL is only a safety net for changes
+ * made outside this instance (another replica, Django, manual SQL).
+ */
+@Component
+@Slf4j
+public class PrincipalCache {
+
+    private final UserRepository userRepository;
+    private final BoundedTtlMap<String, PrincipalSnapshot> byEmail;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public PrincipalCache(UserRepository userRepository,
+                          @Value("${security.principal-cache.max-size:5000}") int maxSize,
+                          @Value("${security.principal-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        long ttlMillis = ttlSeconds * 1000;
+        this.byEmail = new BoundedTtlMap<>(maxSize, (s, now) -> now - s.getLoadedAtMillis() >= ttlMillis);
+    }
+
+    /** Snapshot for this email, loading it from the DB only on a miss or after the TTL. */
+    public Optional<PrincipalSnapshot> get(String email) {
+        if (email == null) return Optional.empty();
+
+        PrincipalSnapshot cached = byEmail.getFresh(email);
+        if (cached != null) {
+            hits.increment();
+            return Optional.of(cached);
+        }
+
+        misses.increment();
+        Optional<PrincipalSnapshot> loaded = userRepository.findByEmail(email).map(PrincipalSnapshot::of);
+
+        if (loaded.isPresent()) {
+            byEmail.put(email, loaded.get());
+        } else {
+            byEmail.remove(email);
+        }
+        return loaded;
+    }
+
+    public void evict(String email) {
+        if (email != null) byEmail.remove(email);
+    }
+
+    /** Evict by user id (status-log changes only know the id). */
+    public void evictUser(Long userId) {
+        if (userId == null) return;
+        byEmail.removeIf(s -> userId.equals(s.getId()));
+    }
+
+    public void clear() {
+        byEmail.clear();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("size", byEmail.size());
+        out.put("max_size", byEmail.maxSize());
+        out.put("hits", hits.sum());
+        out.put("misses", misses.sum());
+        out.put("evictions", byEmail.evictions());
+        return out;
+    }
+}
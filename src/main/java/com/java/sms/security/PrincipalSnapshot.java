@@ -0,0 +1,52 @@
+package com.java.sms.security;
+
+import com.java.sms.model.Role;
+import com.java.sms.model.User;
+import lombok.Getter;
+
+import java.security.Principal;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Lightweight, immutable view of a {@link User} used as the authenticated principal.
+ *
+ * <p>Holds only what the request path needs (id, email, active flag, role names), so it can be
+ * cached across requests without dragging a managed entity and its EAGER roles around.
+ * {@link #getName()} returns the email, which is what controllers read from {@code Principal}.
+ */
+@Getter
+public final class PrincipalSnapshot implements Principal {
+
+    private final Long id;
+    private final String email;
+    private final boolean active;
+    private final Set<String> roleNames;
+    private final long loadedAtMillis;
+
+    public PrincipalSnapshot(Long id, String email, boolean active, Set<String> roleNames, long loadedAtMillis) {
+        this.id = id;
+        this.email = email;
+        this.active = active;
+        this.roleNames = Set.copyOf(roleNames);
+        this.loadedAtMillis = loadedAtMillis;
+    }
+
+    public static PrincipalSnapshot of(User user) {
+        Set<String> roles = user.getRoles() == null ? Set.of() : user.getRoles().stream()
+                .map(Role::getName)
+                .collect(Collectors.toSet());
+        return new PrincipalSnapshot(user.getId(), user.getEmail(),
+                Boolean.TRUE.equals(user.getActive()), roles, System.currentTimeMillis());
+    }
+
+    @Override
+    public String getName() {
+        return email;
+    }
+
+    @Override
+    public String toString() {
+        return email;
+    }
+}
@@ -3,6 +3,7 @@ package com.java.sms.security;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
@@ -46,6 +47,8 @@ public class SecurityConfig {
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/users/**","roles/**", "/classrooms/**","/classroom-types/**").permitAll()
+                        // Razorpay calls this without a JWT; the HMAC signature is checked in the service
+                        .requestMatchers(HttpMethod.POST, "/razorpay/webhook").permitAll()
                         .requestMatchers("/teachers/create").hasRole("director")
                         .requestMatchers("/roles/**").hasRole("director")
                         .requestMatchers("/office-staff/create").hasRole("director")
@@ -0,0 +1,72 @@
+package com.java.sms.security;
+
+import io.jsonwebtoken.Claims;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.Getter;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.List;
+
+/**
+ * Result of verifying a JWT exactly once.
+ *
+ * <p>{@link JwtAuthenticationFilter} builds one of these per request and stores it as a
+ * request attribute, so downstream code (Feign forwarding, error logging, principal helpers)
+ * reads subject / roles / type / expiry from here instead of parsing the token again.
+ */
+@Getter
+public final class VerifiedToken {
+
+    /** Request attribute under which the filter stores the verified token. */
+    public static final String REQUEST_ATTRIBUTE = VerifiedToken.class.getName();
+
+    private final String token;
+    private final Claims claims;
+    private final String subject;
+    private final List<String> roles;
+    private final String type;
+    private final long expiresAtMillis;
+
+    VerifiedToken(String token, Claims claims) {
+        this.token = token;
+        this.claims = claims;
+        this.subject = claims.getSubject();
+        this.type = claims.get("type", String.class);
+        this.expiresAtMillis = claims.getExpiration() != null ? claims.getExpiration().getTime() : 0L;
+
+        Object rawRoles = claims.get("roles");
+        if (rawRoles instanceof List<?> roleList) {
+            this.roles = roleList.stream().map(Object::toString).toList();
+        } else {
+            this.roles = List.of();
+        }
+    }
+
+    public boolean isAccessToken() {
+        return "accessToken".equalsIgnoreCase(type);
+    }
+
+    public boolean isRefreshToken() {
+        return "refreshToken".equals(type);
+    }
+
+    public boolean isExpired(long nowMillis) {
+        return expiresAtMillis <= nowMillis;
+    }
+
+    /** Verified token attached to the given request, or null if the request was not authenticated by JWT. */
+    public static VerifiedToken from(HttpServletRequest request) {
+        if (request == null) return null;
+        Object value = request.getAttribute(REQUEST_ATTRIBUTE);
+        return value instanceof VerifiedToken vt ? vt : null;
+    }
+
+    /** Verified token of the current HTTP request (via RequestContextHolder), or null outside a request. */
+    public static VerifiedToken current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) return null;
+        Object value = attributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        return value instanceof VerifiedToken vt ? vt : null;
+    }
+}
@@ -0,0 +1,99 @@
+package com.java.sms.security;
+
+import com.java.sms.config.BoundedTtlMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded cache of already verified JWTs, keyed by the token's signature segment.
+ *
+ * <p>Clients poll with the same access token for its whole lifetime, so re-checking the
+ * HS256 signature and re-decoding the JSON payload on every hit is wasted work.
+ * An entry is never served after the token's {@code exp}, and
+ * {@link JwtBlacklistService} drops entries as soon as a token is revoked.
+ *
+ * <p>On a hit the full token string is compared with the cached one, so a valid signature
+ * glued onto a different header/payload can never be served from here.
+ */
+@Component
+@Slf4j
+public class VerifiedTokenCache {
+
+    private final BoundedTtlMap<String, VerifiedToken> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public VerifiedTokenCache(@Value("${jwt.cache.max-size:10000}") int maxSize) {
+        this.entries = new BoundedTtlMap<>(maxSize, VerifiedToken::isExpired);
+    }
+
+    /** Cached verification result for this exact token, or null on miss / expiry. */
+    public VerifiedToken get(String token) {
+        String key = signatureOf(token);
+        if (key == null) {
+            misses.increment();
+            return null;
+        }
+
+        VerifiedToken cached = entries.get(key);
+        if (cached == null) {
+            misses.increment();
+            return null;
+        }
+
+        if (cached.isExpired(System.currentTimeMillis())) {
+            entries.remove(key, cached);
+            misses.increment();
+            return null;
+        }
+
+        if (!cached.getToken().equals(token)) {
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        return cached;
+    }
+
+    public void put(VerifiedToken verified) {
+        String key = signatureOf(verified.getToken());
+        if (key == null || verified.isExpired(System.currentTimeMillis())) return;
+
+        entries.put(key, verified);
+    }
+
+    /** Drop a token immediately (used on logout / revocation). */
+    public void invalidate(String token) {
+        String key = signatureOf(token);
+        if (key != null) entries.remove(key);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("size", entries.size());
+        out.put("max_size", entries.maxSize());
+        out.put("hits", hits.sum());
+        out.put("misses", misses.sum());
+        out.put("evictions", entries.evictions());
+        return out;
+    }
+
+    // JWS compact form is header.payload.signature
+    private static String signatureOf(String token) {
+        if (token == null) return null;
+        int dot = token.lastIndexOf('.');
+        if (dot < 0 || dot == token.length() - 1) return null;
+        return token.substring(dot + 1);
+    }
+}
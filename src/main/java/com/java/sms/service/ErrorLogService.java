@@ -1,6 +1,11 @@
 package com.java.sms.service;
 
+import com.java.sms.DataClass.ErrorLogDto;
 import com.java.sms.model.ErrorLog;
+import com.java.sms.response.ErrorLogSummaryResponse;
+import com.java.sms.response.KeysetPageResponse;
+
+import java.time.OffsetDateTime;
 
 public interface ErrorLogService {
 
@@ -14,5 +19,22 @@ public interface ErrorLogService {
 //
     public ErrorLog save(ErrorLog log);
 
+    /**
+     * Queue an error for the background writer; returns immediately.
+     */
+    public void record(ErrorLogDto dto);
+
+    /**
+     * Cursor paginated list (newest first) without traceback; all filters are optional.
+     */
+    public KeysetPageResponse<ErrorLogSummaryResponse> search(Long cursor, int size, Integer statusCode,
+                                                              String endpointPrefix, String errorType, Long userId,
+                                                              OffsetDateTime from, OffsetDateTime to);
+
+    /**
+     * Delete rows older than the retention period in small chunks; returns the number deleted.
+     */
+    public int purgeExpired();
+
 
 }
@@ -0,0 +1,15 @@
+package com.java.sms.service;
+
+
+import com.java.sms.response.FeeCollectionSummaryResponse;
+
+import java.time.LocalDate;
+
+public interface FeeCollectionService {
+
+    FeeCollectionSummaryResponse getSummary(Long schoolYearId, String granularity, LocalDate from, LocalDate to,
+                                            String feeType, String paymentMethod);
+
+    // recompute the rollup of one school year from fee_payment, returns rows written
+    int rebuild(Long schoolYearId);
+}
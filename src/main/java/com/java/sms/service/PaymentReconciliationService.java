@@ -0,0 +1,26 @@
+package com.java.sms.service;
+
+
+import com.java.sms.response.KeysetPageResponse;
+import com.java.sms.response.PaymentDiscrepancyResponse;
+import com.java.sms.response.PaymentReconciliationRunResponse;
+
+import java.util.List;
+
+public interface PaymentReconciliationService {
+
+    /**
+     * Start a reconciliation run in the background, or resume the unfinished one from its checkpoint.
+     * Returns false if a run is already going on this node.
+     */
+    boolean start();
+
+    List<PaymentReconciliationRunResponse> recentRuns();
+
+    PaymentReconciliationRunResponse getRun(Long runId);
+
+    /**
+     * Discrepancy report of one run, keyset paginated; {@code type} optional.
+     */
+    KeysetPageResponse<PaymentDiscrepancyResponse> getDiscrepancies(Long runId, String type, Long cursor, int size);
+}
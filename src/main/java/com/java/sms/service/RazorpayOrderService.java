@@ -0,0 +1,19 @@
+package com.java.sms.service;
+
+
+import com.java.sms.response.PaymentOrderResponse;
+
+public interface RazorpayOrderService {
+
+    /**
+     * Current state of the Razorpay order behind this order token (returned by initiate_payment /
+     * online submit_fee).
+     */
+    PaymentOrderResponse getByToken(String token);
+
+    /**
+     * Razorpay order id for this receipt, waiting a short while for the background worker;
+     * null if it is not created yet (the client then polls {@link #getByToken}).
+     */
+    String awaitOrderId(String receipt);
+}
@@ -5,6 +5,7 @@ package com.java.sms.service;
 import java.util.Map;
 
 
+import java.util.List;
 import java.util.Map;
 
 public interface RazorpayService {
@@ -14,6 +15,18 @@ public interface RazorpayService {
      */
     Map<String, Object> createOrder(long amountInPaise, String currency, String receipt) throws Exception;
 
+    /**
+     * Order created earlier with this receipt, or null. Used before retrying a createOrder whose outcome
+     * is unknown (timeout), so a retry does not open a second order.
+     */
+    Map<String, Object> findOrderByReceipt(String receipt) throws Exception;
+
+    /**
+     * Payment attempts made on an order (id, status, amount in paise, created_at as epoch seconds).
+     * Throws an ApiException with 404 when Razorpay does not know the order.
+     */
+    List<Map<String, Object>> fetchOrderPayments(String orderId) throws Exception;
+
     /**
      * Verify client signature after payment: HMAC_SHA256(orderId + '|' + paymentId, secret) hex.
      */
@@ -23,5 +36,10 @@ public interface RazorpayService {
      * Verify webhook signature: HMAC_SHA256(payload, webhookSecret) hex.
      */
     boolean verifyWebhookSignature(String payload, String headerSignature);
+
+    /**
+     * Same as above over the raw request body, without decoding it first.
+     */
+    boolean verifyWebhookSignature(byte[] payload, String headerSignature);
 }
 
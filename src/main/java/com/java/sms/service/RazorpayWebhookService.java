@@ -0,0 +1,11 @@
+package com.java.sms.service;
+
+
+public interface RazorpayWebhookService {
+
+    /**
+     * Verify the signature and append the raw event to the inbox.
+     * Returns false for a redelivery of an event that is already in the inbox.
+     */
+    boolean receive(byte[] body, String signature, String eventId);
+}
@@ -4,10 +4,16 @@ package com.java.sms.service;
 
 import com.java.sms.DataClass.*;
 import com.java.sms.response.ConfirmPaymentResponse;
+import com.java.sms.response.FeeHistoryResponse;
 import com.java.sms.response.InitiatePaymentResponse;
+import com.java.sms.response.StudentFeeLedgerResponse;
+import com.java.sms.response.KeysetPageResponse;
+import com.java.sms.response.StudentUnpaidFeesPageResponse;
 
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 public interface StudentFeeService {
     Object createOrUpdateStudentFee(StudentFeeRequest req);
@@ -22,14 +28,29 @@ public interface StudentFeeService {
 
 
     // in com.java.sms.service.StudentFeeService
-    Map<String, Object> getStudentUnpaidFees();
+    // paged by student-year id: pass next_cursor back as cursor
+    StudentUnpaidFeesPageResponse getStudentUnpaidFees(Long cursor, int size);
 
-    List<Map<String,Object>> getOverdueFees(Long studentYearId, Integer month, Long schoolYearId);
+    // keyset paged by StudentFee id: pass nextCursor back as cursor
+    KeysetPageResponse<Map<String,Object>> getOverdueFees(Long studentYearId, Integer month, Long schoolYearId,
+                                                          Long cursor, int size);
 
     Object submitFee(SubmitFeeRequest req) throws Exception;
 
-    List<Map<String,Object>> getFeeHistory(Long studentYearId, Long schoolYearId);
+    // rows are produced lazily so the controller can stream them
+    Stream<FeeHistoryResponse> getFeeHistory(Long studentYearId, Long schoolYearId);
 
     List<Map<String,Object>> getPendingFees(Long schoolYearId);
 
+    // balance summary: single primary-key read of the maintained ledger
+    StudentFeeLedgerResponse getLedger(Long studentYearId, Long schoolYearId);
+
+    // reconcile the ledger with the raw fee rows, returns the number of student-years repaired
+    int verifyLedger();
+
+    // CSV exports for a school year, written straight to the stream from a JDBC cursor
+    void exportFees(Long schoolYearId, OutputStream out);
+
+    void exportPayments(Long schoolYearId, OutputStream out);
+
 }
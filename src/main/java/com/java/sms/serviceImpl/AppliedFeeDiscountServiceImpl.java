@@ -6,14 +6,13 @@ import com.java.sms.exception.ApiException;
 import com.java.sms.model.AppliedFeeDiscount;
 import com.java.sms.model.FeeStructure;
 import com.java.sms.model.enums.FeeStatus;
-import com.java.sms.openFeignClient.StudentYearClient;
-import com.java.sms.openFeignClient.YearLevelClient;
+import com.java.sms.openFeignClient.StudentYearLevelCache;
+import com.java.sms.openFeignClient.YearLevelDirectory;
 import com.java.sms.repository.AppliedFeeDiscountRepository;
 import com.java.sms.repository.FeeStructureRepository;
 import com.java.sms.repository.StudentFeeRepository;
 import com.java.sms.response.AppliedFeeDiscountResponse;
 import com.java.sms.response.StudentYearLevelResponse;
-import com.java.sms.response.YearLevelResponse;
 import com.java.sms.service.AppliedFeeDiscountService;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
@@ -23,7 +22,6 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.OffsetDateTime;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * AppliedFeeDiscount service implementation that validates using Django YearLevel and StudentYearLevel endpoints.
@@ -31,39 +29,38 @@ import java.util.concurrent.ConcurrentHashMap;
  * Assumptions:
  * - FeeStructure stores Set<Long> yearLevelIds (Django PKs).
  * - StudentYearClient.getStudentYearLevel(id) returns StudentYearLevelResponse with safeLevelName().
- * - YearLevelClient.getYearLevelById(id) returns YearLevelResponse with getLevelName().
+ * - YearLevelDirectory.findNameById(id) gives the YearLevel name (cached copy of Django's list).
  */
 @Service
 @Slf4j
 public class AppliedFeeDiscountServiceImpl implements AppliedFeeDiscountService {
 
     private final AppliedFeeDiscountRepository discountRepo;
-    private final StudentYearClient studentYearClient;
+    private final StudentYearLevelCache studentYearLevelCache;
     private final FeeStructureRepository feeStructureRepo;
     private final StudentFeeRepository studentFeeRepo;
-    private final YearLevelClient yearLevelClient;
-
-    /**
-     * Simple in-memory cache to avoid repeated Feign calls for the same YearLevel id.
-     * Key: yearLevelId, Value: levelName
-     */
-    // Thread-safe map used as a tiny read cache for year-level names
-    private final ConcurrentHashMap<Long, String> yearLevelNameCache = new ConcurrentHashMap<>();
+    private final YearLevelDirectory yearLevelDirectory;
+    private final FeeDiscountResolver feeDiscountResolver;
+    private final FeeLedgerUpdater feeLedgerUpdater;
 
     // Constructor: dependency injection for repositories and feign clients
     public AppliedFeeDiscountServiceImpl(
             AppliedFeeDiscountRepository discountRepo,
-            StudentYearClient studentYearClient,
+            StudentYearLevelCache studentYearLevelCache,
             FeeStructureRepository feeStructureRepo,
             StudentFeeRepository studentFeeRepo,
-            YearLevelClient yearLevelClient
+            YearLevelDirectory yearLevelDirectory,
+            FeeDiscountResolver feeDiscountResolver,
+            FeeLedgerUpdater feeLedgerUpdater
     ) {
 
         this.discountRepo = discountRepo;
-        this.studentYearClient = studentYearClient;
+        this.studentYearLevelCache = studentYearLevelCache;
         this.feeStructureRepo = feeStructureRepo;
         this.studentFeeRepo = studentFeeRepo;
-        this.yearLevelClient = yearLevelClient;
+        this.yearLevelDirectory = yearLevelDirectory;
+        this.feeDiscountResolver = feeDiscountResolver;
+        this.feeLedgerUpdater = feeLedgerUpdater;
     }
 
 
@@ -120,6 +117,10 @@ public class AppliedFeeDiscountServiceImpl implements AppliedFeeDiscountService
         List<Map<String, Object>> result = new ArrayList<>();
 
 
+        // resolve all student-years in one bulk (cached) lookup instead of one Feign call per fee
+        Map<Long, StudentYearLevelResponse> studentYears = studentYearLevelCache.getAll(
+                fees.stream().map(f -> f.getStudentYearId()).toList());
+
         // iterate over each fee and build a map similar to Django serializer output
         for (var fee : fees) {
             // ordered map for each fee record
@@ -139,22 +140,15 @@ public class AppliedFeeDiscountServiceImpl implements AppliedFeeDiscountService
             // due amount as double
             m.put("due_amount", fee.getDueAmount() != null ? fee.getDueAmount().doubleValue() : 0.0);
 
-            try {
-                // call Django service to get student-year details
-                StudentYearLevelResponse sy = studentYearClient.getStudentYearLevel(fee.getStudentYearId());
-                // if response returned map the safe helpers to fields
-                if (sy != null) {
-                    m.put("student_name", sy.safeStudentName());
-                    m.put("student_class", sy.safeLevelName());
-                    m.put("school_year", sy.safeYearName());
-                } else {
-                    // fallback when feign returned null
-                    m.put("student_name", "N/A");
-                }
-            } catch (Exception ex) {
-                // log but do not fail the whole operation — best-effort approach
-                log.warn("Failed to fetch StudentYear (id={}): {}", fee.getStudentYearId(), ex.getMessage());
-                // graceful fallback value
+            // student-year details from the bulk lookup above
+            StudentYearLevelResponse sy = studentYears.get(fee.getStudentYearId());
+            // if response returned map the safe helpers to fields
+            if (sy != null) {
+                m.put("student_name", sy.safeStudentName());
+                m.put("student_class", sy.safeLevelName());
+                m.put("school_year", sy.safeYearName());
+            } else {
+                // fallback when Django had no answer
                 m.put("student_name", "N/A");
             }
 
@@ -184,7 +178,7 @@ public class AppliedFeeDiscountServiceImpl implements AppliedFeeDiscountService
 
         try {
             // fetch student-year from Django for validation
-            sy = studentYearClient.getStudentYearLevel(req.getStudentYearId());
+            sy = studentYearLevelCache.get(req.getStudentYearId());
 
         } catch (Exception e) {
 
@@ -275,6 +269,9 @@ public class AppliedFeeDiscountServiceImpl implements AppliedFeeDiscountService
 
         // Save entity
         var saved = discountRepo.save(d);
+        // fee endpoints must see the new discount
+        feeDiscountResolver.invalidate(saved.getStudentYearId());
+        feeLedgerUpdater.touch(saved.getStudentYearId());
         // convert to response DTO
         var resp = toResponse(saved);
         // enrich with student data from Django response
@@ -341,6 +338,9 @@ public class AppliedFeeDiscountServiceImpl implements AppliedFeeDiscountService
 
         // persist updated entity
         var saved = discountRepo.save(existing);
+        // fee endpoints must see the new amount
+        feeDiscountResolver.invalidate(saved.getStudentYearId());
+        feeLedgerUpdater.touch(saved.getStudentYearId());
         // convert to response DTO
         var resp = toResponse(saved);
 
@@ -406,7 +406,7 @@ public class AppliedFeeDiscountServiceImpl implements AppliedFeeDiscountService
 
     /**
      * Validate FeeStructure by checking its yearLevelIds against student's level name.
-     * Uses YearLevelClient to fetch name by id, cached locally in yearLevelNameCache.
+     * Uses the in-process YearLevelDirectory to get the name by id (no Feign call per id).
      */
     // Check whether the given FeeStructure applies to a student level (by comparing names)
     private boolean feeAppliesToLevelByIds(FeeStructure feeStruct, String studentLevelName) {
@@ -432,36 +432,13 @@ public class AppliedFeeDiscountServiceImpl implements AppliedFeeDiscountService
                     HttpStatus.INTERNAL_SERVER_ERROR);
         }
 
-        // ensure YearLevelClient present to validate remote names
-        if (yearLevelClient == null) {
-
-            throw new ApiException("YearLevelClient not configured." +
-                    " Required to validate FeeStructure yearLevelIds.",
-                    HttpStatus.INTERNAL_SERVER_ERROR);
-        }
-
-
         // iterate ids and try to find matching name
         for (Long ylId : ids) {
 
             try {
 
-                // use cache to reduce Feign calls; computeIfAbsent will call feign on cache miss
-                String levelName = yearLevelNameCache.computeIfAbsent(ylId, id -> {
-
-                    try {
-                        // fetch YearLevel from Django
-                        YearLevelResponse yl = yearLevelClient.getYearLevelById(id);
-                        // return name or null when missing
-                        return yl != null ? yl.getLevelName() : null;
-
-                    } catch (Exception ex) {
-                        // log at debug level and return null to continue other ids
-                        log.debug("Failed to fetch YearLevel id={} from Django: {}", id, ex.getMessage());
-                        return null;
-                    }
-
-                });
+                // id -> name from the directory; null when Django does not know the id
+                String levelName = yearLevelDirectory.findNameById(ylId).orElse(null);
 
 
                 // if fetched name equals student level name (case-insensitive) return true
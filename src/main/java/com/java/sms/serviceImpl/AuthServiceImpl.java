@@ -20,6 +20,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import com.java.sms.security.JwtUtil;
+import com.java.sms.security.VerifiedToken;
 import java.time.LocalDateTime;
 import java.util.*;
 
@@ -152,12 +153,13 @@ public class AuthServiceImpl implements AuthService {
             return ResponseEntity.badRequest().body("Refresh token is missing");
         }
 
-        //  Validate the refresh token
-        if (!jwtUtil.validateRefreshToken(refreshToken)) {
+        //  Validate the refresh token (parsed once, subject read from the same result)
+        VerifiedToken verified = jwtUtil.verifyOrNull(refreshToken);
+        if (verified == null || !verified.isRefreshToken() || verified.isExpired(System.currentTimeMillis())) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid or expired refresh token");
         }
 
-        String email = jwtUtil.extractEmail(refreshToken);
+        String email = verified.getSubject();
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new ApiException("User not found", HttpStatus.NOT_FOUND));
 
@@ -2,29 +2,49 @@ package com.java.sms.serviceImpl;
 
 
 
+import com.java.sms.DataClass.ErrorLogDto;
 import com.java.sms.exception.ApiException;
 import com.java.sms.model.ErrorLog;
-import com.java.sms.model.User;
 import com.java.sms.repository.ErrorLogRepository;
-import com.java.sms.repository.UserRepository;
 import com.java.sms.service.ErrorLogService;
+import com.java.sms.response.ErrorLogSummaryResponse;
+import com.java.sms.response.KeysetPageResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.OffsetDateTime;
+import java.util.List;
+
 /**
  * Service responsible for persisting ErrorLog entries.
  * Used by both GlobalErrorLoggingFilter and GlobalExceptionHandler.
  */
 @Service
+@Slf4j
 public class ErrorLogServiceImpl implements ErrorLogService {
 
+    private static final int MAX_PAGE_SIZE = 200;
+
     private final ErrorLogRepository errorLogRepository;
-    private final UserRepository userRepository;
+    private final ErrorLogWriter errorLogWriter;
+    private final int retentionDays;
+    private final int purgeChunkSize;
+    private final long purgePauseMillis;
 
 
-    public ErrorLogServiceImpl(ErrorLogRepository errorLogRepository, UserRepository userRepository) {
+    public ErrorLogServiceImpl(ErrorLogRepository errorLogRepository, ErrorLogWriter errorLogWriter,
+                               @Value("${error-log.retention-days:30}") int retentionDays,
+                               @Value("${error-log.purge-chunk-size:500}") int purgeChunkSize,
+                               @Value("${error-log.purge-pause-ms:200}") long purgePauseMillis) {
         this.errorLogRepository = errorLogRepository;
-        this.userRepository = userRepository;
+        this.errorLogWriter = errorLogWriter;
+        this.retentionDays = Math.max(1, retentionDays);
+        this.purgeChunkSize = Math.max(1, purgeChunkSize);
+        this.purgePauseMillis = Math.max(0L, purgePauseMillis);
     }
 
     /**
@@ -36,6 +56,75 @@ public class ErrorLogServiceImpl implements ErrorLogService {
         return errorLogRepository.save(log);
     }
 
+    /**
+     * Hand the entry to the batched writer, the request thread never touches the DB.
+     */
+    @Override
+    public void record(ErrorLogDto dto) {
+        errorLogWriter.enqueue(dto);
+    }
+
+    @Override
+    public KeysetPageResponse<ErrorLogSummaryResponse> search(Long cursor, int size, Integer statusCode,
+                                                              String endpointPrefix, String errorType, Long userId,
+                                                              OffsetDateTime from, OffsetDateTime to) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ApiException("size must be between 1 and " + MAX_PAGE_SIZE, HttpStatus.BAD_REQUEST);
+        }
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new ApiException("'from' must be before 'to'", HttpStatus.BAD_REQUEST);
+        }
+
+        String prefix = (endpointPrefix == null || endpointPrefix.isBlank()) ? null : escapeLike(endpointPrefix.trim()) + "%";
+        String type = (errorType == null || errorType.isBlank()) ? null : errorType.trim();
+
+        // fetch one extra row to know if there is a next page
+        List<ErrorLogSummaryResponse> rows = errorLogRepository.findPage(
+                cursor, statusCode, prefix, type, userId, from, to, PageRequest.of(0, size + 1));
+
+        boolean hasMore = rows.size() > size;
+        List<ErrorLogSummaryResponse> items = hasMore ? rows.subList(0, size) : rows;
+
+        return KeysetPageResponse.<ErrorLogSummaryResponse>builder()
+                .items(items)
+                .hasMore(hasMore)
+                .nextCursor(hasMore ? items.get(items.size() - 1).getId() : null)
+                .size(items.size())
+                .build();
+    }
+
+    /**
+     * Retention job: every chunk is its own short transaction, with a small pause in between,
+     * so the purge never holds long locks on ErrorLog while the writer is inserting.
+     */
+    @Override
+    @Scheduled(cron = "${error-log.purge-cron:0 30 3 * * *}")
+    public int purgeExpired() {
+        OffsetDateTime cutoff = OffsetDateTime.now().minusDays(retentionDays);
+        int total = 0;
+        try {
+            while (true) {
+                int deleted = errorLogRepository.deleteOlderThan(cutoff, purgeChunkSize);
+                total += deleted;
+                if (deleted < purgeChunkSize) break;
+                if (purgePauseMillis > 0) Thread.sleep(purgePauseMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("ErrorLog purge failed after {} rows: {}", total, e.getMessage());
+        }
+        if (total > 0) {
+            log.info("Purged {} ErrorLog rows older than {}", total, cutoff);
+        }
+        return total;
+    }
+
+    // treat % and _ in the user's prefix literally
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
 //    /**
 //     * Convenience method to build and save a new ErrorLog record in one step.
 //     */
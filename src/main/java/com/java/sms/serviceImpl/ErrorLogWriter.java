@@ -0,0 +1,333 @@
+package com.java.sms.serviceImpl;
+
+
+import com.java.sms.DataClass.ErrorLogDto;
+import com.java.sms.config.ErrorFingerprint;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Background writer for ErrorLog rows.
+ *
+ * <p>Request threads only put an entry on a bounded queue; a single writer thread drains it and
+ * inserts rows with a JDBC batch once {@code error-log.batch-size} entries are collected or
+ * {@code error-log.flush-interval-ms} has passed. The user is written by id only, no User lookup.
+ *
+ * <p>During an error storm the queue fills up instead of the connection pool: above the high-water
+ * mark 4xx entries are sampled (5xx are always kept), and when the queue is full entries are
+ * dropped. Both are counted so they show up in /cache-stats.
+ *
+ * <p>Errors are fingerprinted by endpoint, error_type and normalized message ({@link ErrorFingerprint}).
+ * Repeats within {@code error-log.dedup-window-seconds} of the first occurrence only bump
+ * occurrence_count / last_seen on the existing row instead of writing another stack trace.
+ */
+@Component
+@Slf4j
+public class ErrorLogWriter {
+
+    // physical name of the ErrorLog entity (Spring's naming strategy turns @Table "ErrorLog" into error_log)
+    private static final String INSERT_SQL =
+            "INSERT INTO error_log (user_id, endpoint, method, status_code, error_type, error_message, traceback_info, timestamp, " +
+                    "fingerprint, occurrence_count, first_seen, last_seen) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_SQL =
+            "UPDATE error_log SET occurrence_count = occurrence_count + ?, last_seen = ? WHERE id = ?";
+
+    // max fingerprints whose row is kept open for aggregation
+    private static final int MAX_OPEN_ROWS = 10_000;
+
+    private record Pending(ErrorLogDto dto, Instant at) {
+    }
+
+    private record OpenRow(long id, long firstSeenMillis) {
+    }
+
+    // occurrences of one fingerprint inside a batch; the first one is written as the sample
+    private static final class Group {
+        private final String fingerprint;
+        private final Pending sample;
+        private final Instant firstSeen;
+        private Instant lastSeen;
+        private int count;
+        private long rowId;
+
+        private Group(String fingerprint, Pending sample) {
+            this.fingerprint = fingerprint;
+            this.sample = sample;
+            this.firstSeen = sample.at();
+            this.lastSeen = sample.at();
+        }
+
+        private void add(Pending p) {
+            count++;
+            if (p.at().isAfter(lastSeen)) lastSeen = p.at();
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlockingQueue<Pending> queue;
+    private final int capacity;
+    private final int highWaterMark;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final int sampleRate;
+    private final long dedupWindowMillis;
+    private final Map<String, OpenRow> openRows = new ConcurrentHashMap<>();
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder aggregated = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public ErrorLogWriter(JdbcTemplate jdbcTemplate,
+                          @Value("${error-log.queue-capacity:10000}") int capacity,
+                          @Value("${error-log.batch-size:200}") int batchSize,
+                          @Value("${error-log.flush-interval-ms:1000}") long flushIntervalMillis,
+                          @Value("${error-log.sample-rate:10}") int sampleRate,
+                          @Value("${error-log.dedup-window-seconds:600}") long dedupWindowSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.capacity = Math.max(1, capacity);
+        this.queue = new ArrayBlockingQueue<>(this.capacity);
+        this.highWaterMark = Math.max(1, this.capacity * 3 / 4);
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMillis = Math.max(10L, flushIntervalMillis);
+        this.sampleRate = Math.max(1, sampleRate);
+        this.dedupWindowMillis = Math.max(0L, dedupWindowSeconds) * 1000L;
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        worker = new Thread(this::runLoop, "error-log-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        // the loop wakes up at least every flush interval and sees the flag
+        running = false;
+        try {
+            worker.join(flushIntervalMillis * 2 + 5_000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) return; // still busy, do not write from two threads
+
+        // write whatever is still queued before the datasource goes away
+        List<Pending> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        for (int i = 0; i < rest.size(); i += batchSize) {
+            writeBatch(rest.subList(i, Math.min(rest.size(), i + batchSize)));
+        }
+    }
+
+    /**
+     * Queue an entry for writing. Never blocks and never throws.
+     */
+    public void enqueue(ErrorLogDto dto) {
+        if (dto == null) return;
+
+        // under pressure keep every 5xx but only a sample of 4xx
+        if (queue.size() >= highWaterMark && !isServerError(dto)
+                && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            sampledOut.increment();
+            return;
+        }
+
+        if (queue.offer(new Pending(dto, Instant.now()))) {
+            enqueued.increment();
+        } else {
+            dropped.increment();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("queue_size", queue.size());
+        out.put("queue_capacity", capacity);
+        out.put("enqueued", enqueued.sum());
+        out.put("written", written.sum());
+        out.put("aggregated", aggregated.sum());
+        out.put("open_fingerprints", openRows.size());
+        out.put("batches", batches.sum());
+        out.put("sampled_out", sampledOut.sum());
+        out.put("dropped", dropped.sum());
+        out.put("failed", failed.sum());
+        return out;
+    }
+
+    private void runLoop() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Pending first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+
+                // collect until the batch is full or the flush interval is over
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    if (batch.size() >= batchSize) break;
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) break;
+                    Pending next = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                if (!batch.isEmpty()) writeBatch(batch);
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Error log writer loop failed: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<Pending> batch) {
+        if (batch.isEmpty()) return;
+
+        // fold repeats of the same error inside this batch first
+        Map<String, Group> groups = new LinkedHashMap<>();
+        for (Pending p : batch) {
+            String fingerprint = ErrorFingerprint.of(p.dto().getEndpoint(), p.dto().getErrorType(), p.dto().getErrorMessage());
+            groups.computeIfAbsent(fingerprint, f -> new Group(f, p)).add(p);
+        }
+
+        long now = System.currentTimeMillis();
+        List<Group> updates = new ArrayList<>();
+        List<Group> inserts = new ArrayList<>();
+        for (Group g : groups.values()) {
+            OpenRow open = openRows.get(g.fingerprint);
+            if (open != null && now - open.firstSeenMillis() < dedupWindowMillis) {
+                g.rowId = open.id();
+                updates.add(g);
+            } else {
+                inserts.add(g);
+            }
+        }
+
+        if (!updates.isEmpty()) {
+            try {
+                int[][] counts = jdbcTemplate.batchUpdate(UPDATE_SQL, updates, updates.size(), (ps, g) -> {
+                    ps.setInt(1, g.count);
+                    ps.setTimestamp(2, Timestamp.from(g.lastSeen));
+                    ps.setLong(3, g.rowId);
+                });
+                batches.increment();
+
+                int i = 0;
+                for (int[] chunk : counts) {
+                    for (int count : chunk) {
+                        Group g = updates.get(i++);
+                        if (count == 0) {
+                            // row was purged meanwhile, open a new one
+                            openRows.remove(g.fingerprint);
+                            inserts.add(g);
+                        } else {
+                            aggregated.add(g.count);
+                            written.add(g.count);
+                        }
+                    }
+                }
+            } catch (Exception ex) {
+                log.warn("ErrorLog aggregate update failed ({} rows): {}", updates.size(), ex.getMessage());
+                // start fresh rows for these fingerprints
+                updates.forEach(g -> openRows.remove(g.fingerprint));
+                inserts.addAll(updates);
+            }
+        }
+
+        // new fingerprints are rare even during a storm; inserted one by one to get the row id back
+        for (Group g : inserts) {
+            try {
+                KeyHolder keyHolder = new GeneratedKeyHolder();
+                jdbcTemplate.update(con -> {
+                    PreparedStatement ps = con.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS);
+                    bind(ps, g);
+                    return ps;
+                }, keyHolder);
+                Number id = keyHolder.getKey();
+                if (id != null) {
+                    rememberOpenRow(g.fingerprint, new OpenRow(id.longValue(), g.firstSeen.toEpochMilli()));
+                }
+                written.add(g.count);
+            } catch (Exception ex) {
+                failed.add(g.count);
+                log.warn("ErrorLog insert failed: {}", ex.getMessage());
+            }
+        }
+    }
+
+    private void rememberOpenRow(String fingerprint, OpenRow row) {
+        if (openRows.size() >= MAX_OPEN_ROWS) {
+            long now = System.currentTimeMillis();
+            openRows.values().removeIf(r -> now - r.firstSeenMillis() >= dedupWindowMillis);
+            if (openRows.size() >= MAX_OPEN_ROWS) openRows.clear();
+        }
+        openRows.put(fingerprint, row);
+    }
+
+    private void bind(PreparedStatement ps, Group g) throws SQLException {
+        ErrorLogDto dto = g.sample.dto();
+        if (dto.getUserId() != null) ps.setLong(1, dto.getUserId());
+        else ps.setNull(1, Types.BIGINT);
+        ps.setString(2, truncate(dto.getEndpoint(), 1024));
+        ps.setString(3, truncate(dto.getMethod(), 10));
+        if (dto.getStatusCode() != null) ps.setInt(4, dto.getStatusCode());
+        else ps.setNull(4, Types.INTEGER);
+        ps.setString(5, truncate(dto.getErrorType(), 255));
+        ps.setString(6, dto.getErrorMessage());
+        ps.setString(7, dto.getTracebackInfo());
+        ps.setTimestamp(8, Timestamp.from(g.firstSeen));
+        ps.setString(9, g.fingerprint);
+        ps.setInt(10, g.count);
+        ps.setTimestamp(11, Timestamp.from(g.firstSeen));
+        ps.setTimestamp(12, Timestamp.from(g.lastSeen));
+    }
+
+    private static boolean isServerError(ErrorLogDto dto) {
+        return dto.getStatusCode() == null || dto.getStatusCode() >= 500;
+    }
+
+    private static String truncate(String value, int max) {
+        if (value == null || value.length() <= max) return value;
+        return value.substring(0, max);
+    }
+}
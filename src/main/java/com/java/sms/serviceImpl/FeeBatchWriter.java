@@ -0,0 +1,123 @@
+package com.java.sms.serviceImpl;
+
+
+import com.java.sms.model.FeePayment;
+import com.java.sms.model.StudentFee;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Plain JDBC batch inserts for the fee submit pipeline.
+ *
+ * <p>StudentFee and FeePayment use IDENTITY ids, so Hibernate can never batch their inserts.
+ * These helpers write all rows of one submit in a single JDBC batch instead (multi-row INSERT with
+ * {@code rewriteBatchedStatements=true}). They run on the connection of the caller's transaction.
+ *
+ * <p>JPA entity listeners do not see these rows, so new fees are reported to the billing rollup here.
+ */
+@Component
+public class FeeBatchWriter {
+
+    private static final String INSERT_STUDENT_FEE =
+            "INSERT INTO student_fee (student_year_id, fee_structure_id, month, school_year_id, due_date, " +
+                    "original_amount, paid_amount, due_amount, penalty_amount, applied_discount, status, " +
+                    "created_at, updated_at, receipt_number) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_FEE_PAYMENT =
+            "INSERT INTO fee_payment (student_fee_id, amount, payment_method, status, payment_date, " +
+                    "received_by_id, notes, created_at, cheque_number, razorpay_payment_id, razorpay_order_id, razorpay_signature, " +
+                    "razorpay_order_request_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FeeCollectionRollupWriter rollupWriter;
+
+    public FeeBatchWriter(JdbcTemplate jdbcTemplate, FeeCollectionRollupWriter rollupWriter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.rollupWriter = rollupWriter;
+    }
+
+    /**
+     * Insert new StudentFee rows in one batch and set the generated ids (and timestamps) on the objects.
+     * The objects stay detached; they are only used to build the response.
+     */
+    public void insertStudentFees(List<StudentFee> fees) {
+        if (fees.isEmpty()) return;
+
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+            try (PreparedStatement ps = con.prepareStatement(INSERT_STUDENT_FEE, PreparedStatement.RETURN_GENERATED_KEYS)) {
+                for (StudentFee sf : fees) {
+                    sf.setCreatedAt(now);
+                    sf.setUpdatedAt(now);
+
+                    ps.setLong(1, sf.getStudentYearId());
+                    ps.setLong(2, sf.getFeeStructure().getId());
+                    if (sf.getMonth() != null) ps.setInt(3, sf.getMonth());
+                    else ps.setNull(3, Types.INTEGER);
+                    ps.setObject(4, sf.getSchoolYearId(), Types.BIGINT);
+                    ps.setDate(5, sf.getDueDate() != null ? Date.valueOf(sf.getDueDate()) : null);
+                    ps.setBigDecimal(6, sf.getOriginalAmount());
+                    ps.setBigDecimal(7, sf.getPaidAmount());
+                    ps.setBigDecimal(8, sf.getDueAmount());
+                    ps.setBigDecimal(9, sf.getPenaltyAmount());
+                    ps.setBoolean(10, Boolean.TRUE.equals(sf.getAppliedDiscount()));
+                    ps.setString(11, sf.getStatus().name());
+                    ps.setTimestamp(12, Timestamp.valueOf(now));
+                    ps.setTimestamp(13, Timestamp.valueOf(now));
+                    ps.setString(14, sf.getReceiptNumber());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                // keys come back in insert order
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    int i = 0;
+                    while (keys.next() && i < fees.size()) {
+                        fees.get(i++).setId(keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
+
+        for (StudentFee sf : fees) {
+            rollupWriter.feeBilled(null, StudentFee.Billed.of(sf));
+        }
+    }
+
+    /**
+     * Insert FeePayment rows in one batch (ids are not read back). Every payment's StudentFee must have an id.
+     */
+    public void insertFeePayments(List<FeePayment> payments) {
+        if (payments.isEmpty()) return;
+
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.batchUpdate(INSERT_FEE_PAYMENT, payments, payments.size(), (ps, p) -> {
+            p.setCreatedAt(now);
+
+            ps.setLong(1, p.getStudentFee().getId());
+            ps.setBigDecimal(2, p.getAmount());
+            ps.setString(3, p.getPaymentMethod().name());
+            ps.setString(4, p.getStatus().name());
+            ps.setTimestamp(5, p.getPaymentDate() != null ? Timestamp.valueOf(p.getPaymentDate()) : null);
+            ps.setObject(6, p.getReceivedById(), Types.BIGINT);
+            ps.setString(7, p.getNotes());
+            ps.setTimestamp(8, Timestamp.valueOf(now));
+            ps.setString(9, p.getChequeNumber());
+            ps.setString(10, p.getRazorpayPaymentId());
+            ps.setString(11, p.getRazorpayOrderId());
+            ps.setString(12, p.getRazorpaySignature());
+            ps.setObject(13, p.getRazorpayOrderRequestId(), Types.BIGINT);
+        });
+    }
+}
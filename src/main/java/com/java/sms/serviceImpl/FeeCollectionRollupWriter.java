@@ -0,0 +1,299 @@
+package com.java.sms.serviceImpl;
+
+
+import com.java.sms.model.FeeBillingRollup;
+import com.java.sms.model.FeeCollectionRollup;
+import com.java.sms.model.FeePayment;
+import com.java.sms.model.StudentFee;
+import com.java.sms.model.enums.PaymentStatus;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps {@code fee_collection_rollup} in step with SUCCESS FeePayments, and its sibling {@code fee_billing_rollup}
+ * in step with student_fee amounts.
+ *
+ * <p>Writers call {@link #paymentAdded(FeePayment)} / {@link #paymentRemoved(FeePayment)}; StudentFee changes
+ * arrive through {@link #feeBilled} (JPA writes via StudentFeeBillingListener, JDBC inserts via FeeBatchWriter).
+ * The deltas of one transaction are summed in memory and written right before commit as batched upserts on the
+ * same connection. The hot rows (today x fee type x method, this month x fee) are therefore only locked for the
+ * last moment of the transaction, and always in key order so two cashiers cannot deadlock on them.
+ *
+ * <p>{@link #rebuildSchoolYear(Long)} recomputes one school year of both rollups from the raw rows
+ * (backfill after deploy / repair).
+ */
+@Component
+@Slf4j
+public class FeeCollectionRollupWriter {
+
+    private static final String UPSERT =
+            "INSERT INTO fee_collection_rollup (school_year_id, collection_date, fee_type, payment_method, " +
+                    "amount_collected, payment_count) VALUES (?, ?, ?, ?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE amount_collected = amount_collected + VALUES(amount_collected), " +
+                    "payment_count = payment_count + VALUES(payment_count)";
+
+    private static final String DELETE_SCHOOL_YEAR =
+            "DELETE FROM fee_collection_rollup WHERE school_year_id = ?";
+
+    private static final String UPSERT_BILLING =
+            "INSERT INTO fee_billing_rollup (school_year_id, fee_month, fee_structure_id, original_amount, " +
+                    "paid_amount, due_amount, fee_count) VALUES (?, ?, ?, ?, ?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE original_amount = original_amount + VALUES(original_amount), " +
+                    "paid_amount = paid_amount + VALUES(paid_amount), due_amount = due_amount + VALUES(due_amount), " +
+                    "fee_count = fee_count + VALUES(fee_count)";
+
+    private static final String DELETE_BILLING_SCHOOL_YEAR =
+            "DELETE FROM fee_billing_rollup WHERE school_year_id = ?";
+
+    private static final String REBUILD_BILLING_SCHOOL_YEAR =
+            "INSERT INTO fee_billing_rollup (school_year_id, fee_month, fee_structure_id, original_amount, " +
+                    "paid_amount, due_amount, fee_count) " +
+                    "SELECT school_year_id, COALESCE(month, " + FeeBillingRollup.NO_MONTH + "), fee_structure_id, " +
+                    "SUM(original_amount), SUM(paid_amount), SUM(due_amount), COUNT(*) " +
+                    "FROM student_fee WHERE school_year_id = ? " +
+                    "GROUP BY school_year_id, COALESCE(month, " + FeeBillingRollup.NO_MONTH + "), fee_structure_id";
+
+    // payments without a payment_date are counted on the day they were recorded
+    private static final String REBUILD_SCHOOL_YEAR =
+            "INSERT INTO fee_collection_rollup (school_year_id, collection_date, fee_type, payment_method, " +
+                    "amount_collected, payment_count) " +
+                    "SELECT f.school_year_id, DATE(COALESCE(p.payment_date, p.created_at)), fs.fee_type, p.payment_method, " +
+                    "SUM(p.amount), COUNT(*) " +
+                    "FROM fee_payment p JOIN student_fee f ON f.id = p.student_fee_id " +
+                    "JOIN fee_structure fs ON fs.id = f.fee_structure_id " +
+                    "WHERE p.status = 'SUCCESS' AND p.payment_method IS NOT NULL AND f.school_year_id = ? " +
+                    "GROUP BY f.school_year_id, DATE(COALESCE(p.payment_date, p.created_at)), fs.fee_type, p.payment_method";
+
+    private static final Comparator<FeeCollectionRollup.Key> KEY_ORDER = Comparator
+            .comparing(FeeCollectionRollup.Key::getSchoolYearId)
+            .thenComparing(FeeCollectionRollup.Key::getCollectionDate)
+            .thenComparing(FeeCollectionRollup.Key::getFeeType)
+            .thenComparing(FeeCollectionRollup.Key::getPaymentMethod);
+
+    private static final Comparator<FeeBillingRollup.Key> BILLING_KEY_ORDER = Comparator
+            .comparing(FeeBillingRollup.Key::getSchoolYearId)
+            .thenComparing(FeeBillingRollup.Key::getFeeMonth)
+            .thenComparing(FeeBillingRollup.Key::getFeeStructureId);
+
+    private record Delta(BigDecimal amount, long count) {
+        Delta plus(Delta other) {
+            return new Delta(amount.add(other.amount()), count + other.count());
+        }
+    }
+
+    private record BillingDelta(BigDecimal original, BigDecimal paid, BigDecimal due, long count) {
+        BillingDelta plus(BillingDelta other) {
+            return new BillingDelta(original.add(other.original()), paid.add(other.paid()), due.add(other.due()),
+                    count + other.count());
+        }
+
+        boolean isZero() {
+            return count == 0 && original.signum() == 0 && paid.signum() == 0 && due.signum() == 0;
+        }
+    }
+
+    // the deltas of one transaction
+    private static final class Pending {
+        final Map<FeeCollectionRollup.Key, Delta> collected = new HashMap<>();
+        final Map<FeeBillingRollup.Key, BillingDelta> billed = new HashMap<>();
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+
+    private final LongAdder deltasRecorded = new LongAdder();
+    private final LongAdder rowsUpserted = new LongAdder();
+    private final LongAdder billingDeltasRecorded = new LongAdder();
+    private final LongAdder billingRowsUpserted = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+
+    public FeeCollectionRollupWriter(JdbcTemplate jdbcTemplate, EntityManager entityManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+    }
+
+    public void paymentAdded(FeePayment payment) {
+        record(payment, 1);
+    }
+
+    public void paymentRemoved(FeePayment payment) {
+        record(payment, -1);
+    }
+
+    /**
+     * A StudentFee went from {@code before} to {@code after}: null before for a new row, null after for a
+     * deleted one.
+     */
+    public void feeBilled(StudentFee.Billed before, StudentFee.Billed after) {
+        Map<FeeBillingRollup.Key, BillingDelta> deltas = new HashMap<>(2);
+        addBilling(deltas, before, -1);
+        addBilling(deltas, after, 1);
+        deltas.values().removeIf(BillingDelta::isZero);
+        if (deltas.isEmpty()) return;
+        billingDeltasRecorded.increment();
+
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            writeBilling(deltas);
+            return;
+        }
+        Map<FeeBillingRollup.Key, BillingDelta> pending = pending().billed;
+        deltas.forEach((key, delta) -> pending.merge(key, delta, BillingDelta::plus));
+    }
+
+    /**
+     * Make sure this transaction writes its deltas before commit. Called when a StudentFee is loaded: its
+     * update may only be flushed by the commit itself, too late to register anything then.
+     */
+    public void enlist() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            pending();
+        }
+    }
+
+    /**
+     * Recompute one school year of both rollups from fee_payment / student_fee; returns the number of
+     * rollup rows written.
+     */
+    public int rebuildSchoolYear(Long schoolYearId) {
+        jdbcTemplate.update(DELETE_SCHOOL_YEAR, schoolYearId);
+        int rows = jdbcTemplate.update(REBUILD_SCHOOL_YEAR, schoolYearId);
+        jdbcTemplate.update(DELETE_BILLING_SCHOOL_YEAR, schoolYearId);
+        int billingRows = jdbcTemplate.update(REBUILD_BILLING_SCHOOL_YEAR, schoolYearId);
+        rebuilds.increment();
+        log.info("Rebuilt fee collection / billing rollups for school year {} ({} / {} rows)",
+                schoolYearId, rows, billingRows);
+        return rows + billingRows;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("deltas_recorded", deltasRecorded.sum());
+        out.put("rows_upserted", rowsUpserted.sum());
+        out.put("billing_deltas_recorded", billingDeltasRecorded.sum());
+        out.put("billing_rows_upserted", billingRowsUpserted.sum());
+        out.put("rebuilds", rebuilds.sum());
+        return out;
+    }
+
+    // only SUCCESS payments count as collected
+    private void record(FeePayment payment, int sign) {
+        if (payment == null || payment.getStatus() != PaymentStatus.SUCCESS || payment.getAmount() == null
+                || payment.getPaymentMethod() == null) return;
+        StudentFee fee = payment.getStudentFee();
+        if (fee == null || fee.getSchoolYearId() == null || fee.getFeeStructure() == null) return;
+
+        FeeCollectionRollup.Key key = new FeeCollectionRollup.Key(
+                fee.getSchoolYearId(),
+                collectionDate(payment),
+                fee.getFeeStructure().getFeeType(),
+                payment.getPaymentMethod());
+        Delta delta = sign > 0
+                ? new Delta(payment.getAmount(), 1)
+                : new Delta(payment.getAmount().negate(), -1);
+        deltasRecorded.increment();
+
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            write(Map.of(key, delta));
+            return;
+        }
+        pending().collected.merge(key, delta, Delta::plus);
+    }
+
+    private Pending pending() {
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Pending fresh = new Pending();
+            TransactionSynchronizationManager.bindResource(this, fresh);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    // StudentFee updates still in the persistence context report their deltas while flushing
+                    entityManager.flush();
+                    write(fresh.collected);
+                    writeBilling(fresh.billed);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(FeeCollectionRollupWriter.this);
+                }
+            });
+            pending = fresh;
+        }
+        return pending;
+    }
+
+    private static void addBilling(Map<FeeBillingRollup.Key, BillingDelta> deltas, StudentFee.Billed fee, int sign) {
+        if (fee == null || fee.schoolYearId() == null || fee.feeStructureId() == null) return;
+        FeeBillingRollup.Key key = new FeeBillingRollup.Key(fee.schoolYearId(),
+                fee.month() != null ? fee.month() : FeeBillingRollup.NO_MONTH, fee.feeStructureId());
+        BillingDelta delta = new BillingDelta(signed(fee.originalAmount(), sign), signed(fee.paidAmount(), sign),
+                signed(fee.dueAmount(), sign), sign);
+        deltas.merge(key, delta, BillingDelta::plus);
+    }
+
+    private static BigDecimal signed(BigDecimal amount, int sign) {
+        if (amount == null) return BigDecimal.ZERO;
+        return sign < 0 ? amount.negate() : amount;
+    }
+
+    // same day the rebuild query picks: payment_date, else created_at (today for a row not yet flushed)
+    private static LocalDate collectionDate(FeePayment payment) {
+        if (payment.getPaymentDate() != null) return payment.getPaymentDate().toLocalDate();
+        if (payment.getCreatedAt() != null) return payment.getCreatedAt().toLocalDate();
+        return LocalDate.now();
+    }
+
+    private void write(Map<FeeCollectionRollup.Key, Delta> deltas) {
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        deltas.entrySet().stream()
+                .filter(e -> e.getValue().count() != 0 || e.getValue().amount().signum() != 0)
+                .sorted(Map.Entry.comparingByKey(KEY_ORDER))
+                .forEach(e -> args.add(new Object[]{
+                        e.getKey().getSchoolYearId(),
+                        Date.valueOf(e.getKey().getCollectionDate()),
+                        e.getKey().getFeeType().name(),
+                        e.getKey().getPaymentMethod().name(),
+                        e.getValue().amount(),
+                        e.getValue().count()}));
+        if (args.isEmpty()) return;
+
+        jdbcTemplate.batchUpdate(UPSERT, args);
+        rowsUpserted.add(args.size());
+    }
+
+    private void writeBilling(Map<FeeBillingRollup.Key, BillingDelta> deltas) {
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        deltas.entrySet().stream()
+                .filter(e -> !e.getValue().isZero())
+                .sorted(Map.Entry.comparingByKey(BILLING_KEY_ORDER))
+                .forEach(e -> args.add(new Object[]{
+                        e.getKey().getSchoolYearId(),
+                        e.getKey().getFeeMonth(),
+                        e.getKey().getFeeStructureId(),
+                        e.getValue().original(),
+                        e.getValue().paid(),
+                        e.getValue().due(),
+                        e.getValue().count()}));
+        if (args.isEmpty()) return;
+
+        jdbcTemplate.batchUpdate(UPSERT_BILLING, args);
+        billingRowsUpserted.add(args.size());
+    }
+}
@@ -0,0 +1,128 @@
+package com.java.sms.serviceImpl;
+
+
+import com.java.sms.exception.ApiException;
+import com.java.sms.model.enums.FeeType;
+import com.java.sms.model.enums.PaymentMethod;
+import com.java.sms.repository.FeeBillingRollupRepository;
+import com.java.sms.repository.FeeCollectionRollupRepository;
+import com.java.sms.response.FeeCollectionSummaryResponse;
+import com.java.sms.service.FeeCollectionService;
+import jakarta.transaction.Transactional;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Collection analytics ("collected vs. due by month, fee type and payment method") answered from the
+ * pre-aggregated fee_collection_rollup and fee_billing_rollup instead of joining fee_payment / student_fee /
+ * fee_structure.
+ */
+@Service
+@Transactional
+public class FeeCollectionServiceImpl implements FeeCollectionService {
+
+    private final FeeCollectionRollupRepository rollupRepo;
+    private final FeeBillingRollupRepository billingRollupRepo;
+    private final FeeCollectionRollupWriter rollupWriter;
+
+    public FeeCollectionServiceImpl(FeeCollectionRollupRepository rollupRepo,
+                                    FeeBillingRollupRepository billingRollupRepo,
+                                    FeeCollectionRollupWriter rollupWriter) {
+        this.rollupRepo = rollupRepo;
+        this.billingRollupRepo = billingRollupRepo;
+        this.rollupWriter = rollupWriter;
+    }
+
+    @Override
+    public FeeCollectionSummaryResponse getSummary(Long schoolYearId, String granularity, LocalDate from, LocalDate to,
+                                                   String feeType, String paymentMethod) {
+        if (schoolYearId == null) {
+            throw new ApiException("school_year_id is required", HttpStatus.BAD_REQUEST);
+        }
+        String grain = granularity == null || granularity.isBlank() ? "month" : granularity.trim().toLowerCase(Locale.ROOT);
+        if (!grain.equals("month") && !grain.equals("day")) {
+            throw new ApiException("granularity must be 'day' or 'month'", HttpStatus.BAD_REQUEST);
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new ApiException("from must not be after to", HttpStatus.BAD_REQUEST);
+        }
+        FeeType type = parseEnum(FeeType.class, feeType, "fee_type");
+        PaymentMethod method = parseEnum(PaymentMethod.class, paymentMethod, "payment_method");
+
+        List<FeeCollectionSummaryResponse.CollectedRow> collected = new ArrayList<>();
+        if (grain.equals("day")) {
+            for (var row : rollupRepo.sumByDay(schoolYearId, from, to, type, method)) {
+                collected.add(collectedRow(row.getCollectionDate().toString(), row.getFeeType(), row.getPaymentMethod(),
+                        row.getAmount(), row.getPaymentCount()));
+            }
+        } else {
+            for (var row : rollupRepo.sumByMonth(schoolYearId, from, to, type, method)) {
+                collected.add(collectedRow(String.format("%04d-%02d", row.getYear(), row.getMonth()),
+                        row.getFeeType(), row.getPaymentMethod(), row.getAmount(), row.getPaymentCount()));
+            }
+        }
+
+        BigDecimal totalCollected = BigDecimal.ZERO;
+        long totalPayments = 0;
+        for (var row : collected) {
+            totalCollected = totalCollected.add(row.getAmount());
+            totalPayments += row.getPaymentCount();
+        }
+
+        // billed side, from the per month x fee structure rollup (fee type filtered in the query)
+        List<FeeCollectionSummaryResponse.DueRow> due = new ArrayList<>();
+        for (var row : billingRollupRepo.sumByMonthAndFeeType(schoolYearId, type)) {
+            due.add(FeeCollectionSummaryResponse.DueRow.builder()
+                    .month(row.getMonth())
+                    .feeType(row.getFeeType() != null ? row.getFeeType().name() : "N/A")
+                    .originalAmount(row.getOriginalAmount())
+                    .paidAmount(row.getPaidAmount())
+                    .dueAmount(row.getDueAmount())
+                    .build());
+        }
+
+        return FeeCollectionSummaryResponse.builder()
+                .schoolYearId(schoolYearId)
+                .granularity(grain)
+                .totalCollected(totalCollected)
+                .totalPayments(totalPayments)
+                .collected(collected)
+                .due(due)
+                .build();
+    }
+
+    @Override
+    public int rebuild(Long schoolYearId) {
+        if (schoolYearId == null) {
+            throw new ApiException("school_year_id is required", HttpStatus.BAD_REQUEST);
+        }
+        return rollupWriter.rebuildSchoolYear(schoolYearId);
+    }
+
+    private static FeeCollectionSummaryResponse.CollectedRow collectedRow(String period, FeeType feeType,
+                                                                         PaymentMethod method, BigDecimal amount,
+                                                                         Long count) {
+        return FeeCollectionSummaryResponse.CollectedRow.builder()
+                .period(period)
+                .feeType(feeType.name())
+                .paymentMethod(method.name())
+                .amount(amount != null ? amount : BigDecimal.ZERO)
+                .paymentCount(count != null ? count : 0L)
+                .build();
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value, String param) {
+        if (value == null || value.isBlank()) return null;
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new ApiException("Invalid " + param + ": " + value, HttpStatus.BAD_REQUEST);
+        }
+    }
+}
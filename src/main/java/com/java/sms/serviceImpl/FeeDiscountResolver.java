@@ -0,0 +1,227 @@
+package com.java.sms.serviceImpl;
+
+
+import com.java.sms.config.BoundedTtlMap;
+import com.java.sms.repository.AppliedFeeDiscountRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resolves AppliedFeeDiscount amounts per (studentYearId, feeStructureId) for the fee endpoints.
+ *
+ * <p>All discounts of the requested student-years are loaded with one IN-query (id + amount only, no entities)
+ * and kept per student-year for {@code fee-discount.cache.ttl-seconds}. Lookups are plain id -> id map gets
+ * (student-year, then fee structure id) instead of a query or entity comparison per fee.
+ *
+ * <p>{@link #invalidate(Long)} is called by AppliedFeeDiscountServiceImpl on apply / update; it drops the entry
+ * and bumps the student-year's generation, now and again after the surrounding transaction commits. A load is
+ * only cached if the generation it saw before querying is still current afterwards, so a reader whose query
+ * raced the write (and may have read the old amounts) serves them once but does not cache them.
+ * A reader whose transaction snapshot predates the commit but which starts its load after it can still cache
+ * old amounts, until the ttl.
+ */
+@Component
+@Slf4j
+public class FeeDiscountResolver {
+
+    /**
+     * Discounts of one fee for one student-year: {@code first} is the oldest discount (what the Django
+     * {@code .filter(...).first()} returned), {@code total} the sum of all of them.
+     */
+    public record FeeDiscount(BigDecimal first, BigDecimal total) {
+    }
+
+    /**
+     * Resolved discounts for a set of student-years.
+     */
+    public static final class Lookup {
+        private final Map<Long, Map<Long, FeeDiscount>> byStudentYear;
+
+        private Lookup(Map<Long, Map<Long, FeeDiscount>> byStudentYear) {
+            this.byStudentYear = byStudentYear;
+        }
+
+        /** Null if the student-year has no discount on this fee. */
+        public FeeDiscount get(Long studentYearId, Long feeStructureId) {
+            if (studentYearId == null || feeStructureId == null) return null;
+            Map<Long, FeeDiscount> byFee = byStudentYear.get(studentYearId);
+            return byFee != null ? byFee.get(feeStructureId) : null;
+        }
+
+        /** Amount of the oldest discount, 0 if none. */
+        public BigDecimal firstAmount(Long studentYearId, Long feeStructureId) {
+            FeeDiscount d = get(studentYearId, feeStructureId);
+            return d != null ? d.first() : BigDecimal.ZERO;
+        }
+
+        /** Sum of all discounts, 0 if none. */
+        public BigDecimal totalAmount(Long studentYearId, Long feeStructureId) {
+            FeeDiscount d = get(studentYearId, feeStructureId);
+            return d != null ? d.total() : BigDecimal.ZERO;
+        }
+    }
+
+    private static final int LOAD_CHUNK_SIZE = 1000;
+    private static final int GENERATION_STRIPES = 1024;
+
+    private record Entry(Map<Long, FeeDiscount> byFee, long loadedAtMillis) {
+    }
+
+    private final AppliedFeeDiscountRepository discountRepo;
+    // studentYearId -> that student-year's discounts by fee structure id
+    private final BoundedTtlMap<Long, Entry> entries;
+    // generation per student-year, striped so it stays bounded: a collision only skips a cache fill
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private final AtomicLong allGeneration = new AtomicLong(); // invalidateAll
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder staleLoadsSkipped = new LongAdder();
+
+    public FeeDiscountResolver(AppliedFeeDiscountRepository discountRepo,
+                               @Value("${fee-discount.cache.max-size:5000}") int maxSize,
+                               @Value("${fee-discount.cache.ttl-seconds:600}") long ttlSeconds) {
+        this.discountRepo = discountRepo;
+        long ttlMillis = TimeUnit.SECONDS.toMillis(Math.max(1L, ttlSeconds));
+        this.entries = new BoundedTtlMap<>(maxSize, (e, now) -> now - e.loadedAtMillis() >= ttlMillis);
+    }
+
+    public Lookup forStudentYear(Long studentYearId) {
+        return forStudentYears(studentYearId == null ? List.of() : List.of(studentYearId));
+    }
+
+    /**
+     * Discounts of every given student-year; cached ones are reused, the rest come from one query.
+     */
+    public Lookup forStudentYears(Collection<Long> studentYearIds) {
+        Map<Long, Map<Long, FeeDiscount>> out = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        long now = System.currentTimeMillis();
+
+        for (Long id : new LinkedHashSet<>(studentYearIds)) {
+            if (id == null) continue;
+            Entry cached = entries.getFresh(id);
+            if (cached != null) {
+                hits.increment();
+                out.put(id, cached.byFee());
+            } else {
+                misses.increment();
+                missing.add(id);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            long[] seen = new long[missing.size()];
+            for (int i = 0; i < seen.length; i++) seen[i] = generation(missing.get(i));
+
+            Map<Long, Map<Long, FeeDiscount>> loaded = load(missing);
+            for (int i = 0; i < seen.length; i++) {
+                Long id = missing.get(i);
+                Map<Long, FeeDiscount> byFee = loaded.getOrDefault(id, Map.of());
+                out.put(id, byFee);
+                if (generation(id) != seen[i]) {
+                    // invalidated while we were reading: these may be the old amounts
+                    staleLoadsSkipped.increment();
+                    continue;
+                }
+                // student-years without discounts are cached too (empty map), that is the common case
+                Entry entry = new Entry(byFee, now);
+                entries.put(id, entry);
+                // an invalidate between the check and the put has removed before we put: take it back out
+                if (generation(id) != seen[i]) {
+                    entries.remove(id, entry);
+                    staleLoadsSkipped.increment();
+                }
+            }
+        }
+        return new Lookup(out);
+    }
+
+    /**
+     * Drop a student-year after its discounts changed (now, and once more after commit).
+     */
+    public void invalidate(Long studentYearId) {
+        if (studentYearId == null) return;
+        drop(studentYearId);
+        invalidations.increment();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    drop(studentYearId);
+                }
+            });
+        }
+    }
+
+    public void invalidateAll() {
+        allGeneration.incrementAndGet();
+        entries.clear();
+        invalidations.increment();
+    }
+
+    public Map<String, Object> stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("size", entries.size());
+        out.put("max_size", entries.maxSize());
+        out.put("hits", hitCount);
+        out.put("misses", missCount);
+        out.put("hit_ratio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        out.put("queries", queries.sum());
+        out.put("invalidations", invalidations.sum());
+        out.put("stale_loads_skipped", staleLoadsSkipped.sum());
+        return out;
+    }
+
+    // bump first: a load that already checked the generation re-checks it after its put
+    private void drop(Long studentYearId) {
+        generations.incrementAndGet(stripe(studentYearId));
+        entries.remove(studentYearId);
+    }
+
+    private long generation(Long studentYearId) {
+        return allGeneration.get() + generations.get(stripe(studentYearId));
+    }
+
+    private static int stripe(Long studentYearId) {
+        return Long.hashCode(studentYearId) & (GENERATION_STRIPES - 1);
+    }
+
+    private Map<Long, Map<Long, FeeDiscount>> load(List<Long> studentYearIds) {
+        Map<Long, Map<Long, FeeDiscount>> out = new HashMap<>();
+        // a whole school year can mean thousands of ids; keep each IN list bounded
+        for (int i = 0; i < studentYearIds.size(); i += LOAD_CHUNK_SIZE) {
+            List<Long> chunk = studentYearIds.subList(i, Math.min(studentYearIds.size(), i + LOAD_CHUNK_SIZE));
+            queries.increment();
+            // rows come oldest first, so the first row seen for a fee is the "first" discount
+            for (AppliedFeeDiscountRepository.DiscountLine row : discountRepo.findDiscountLines(chunk)) {
+                BigDecimal amount = row.getDiscountAmount() != null ? row.getDiscountAmount() : BigDecimal.ZERO;
+                out.computeIfAbsent(row.getStudentYearId(), k -> new HashMap<>())
+                        .merge(row.getFeeStructureId(), new FeeDiscount(amount, amount),
+                                (old, add) -> new FeeDiscount(old.first(), old.total().add(add.total())));
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,233 @@
+package com.java.sms.serviceImpl;
+
+
+import com.java.sms.exception.ApiException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CSV export of a school year's StudentFee / FeePayment rows, streamed straight from a MySQL
+ * forward-only result set into the HTTP response.
+ *
+ * <p>With {@code export.fetch-size} = {@link Integer#MIN_VALUE} (the default) Connector/J streams rows
+ * one at a time instead of buffering the whole result, so memory stays flat whatever the row count.
+ * Writes go to the blocking servlet stream: a slow client blocks the writer, which stops reading the
+ * result set, which in turn makes MySQL wait on its socket (TCP backpressure end to end).
+ * {@code export.net-write-timeout-seconds} is raised for the export connection so MySQL does not drop a
+ * slow reader, and is reset before the connection goes back to the pool.
+ *
+ * <p>A streaming result set pins its connection until the last row, so at most
+ * {@code export.max-concurrent} exports run at a time (the pool only has a handful of connections).
+ */
+@Component
+@Slf4j
+public class FeeLedgerExporter {
+
+    private static final String FEES_SQL =
+            "SELECT f.id, f.receipt_number, f.student_year_id, f.school_year_id, fs.fee_type, f.month, f.due_date, " +
+                    "f.original_amount, f.paid_amount, f.due_amount, f.penalty_amount, f.applied_discount, f.status, " +
+                    "f.created_at, f.updated_at " +
+                    "FROM student_fee f JOIN fee_structure fs ON fs.id = f.fee_structure_id " +
+                    "WHERE f.school_year_id = ? ORDER BY f.id";
+
+    private static final String PAYMENTS_SQL =
+            "SELECT p.id, f.receipt_number, f.student_year_id, f.school_year_id, fs.fee_type, f.month, p.amount, " +
+                    "p.payment_method, p.status, p.payment_date, p.cheque_number, p.razorpay_order_id, " +
+                    "p.razorpay_payment_id, p.received_by_id, p.notes, p.created_at " +
+                    "FROM fee_payment p JOIN student_fee f ON f.id = p.student_fee_id " +
+                    "JOIN fee_structure fs ON fs.id = f.fee_structure_id " +
+                    "WHERE f.school_year_id = ? ORDER BY p.id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int fetchSize;
+    private final int flushRows;
+    private final int netWriteTimeoutSeconds;
+    private final Semaphore permits;
+    private final int maxConcurrent;
+
+    private final LongAdder exports = new LongAdder();
+    private final LongAdder rowsWritten = new LongAdder();
+    private final LongAdder aborted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public FeeLedgerExporter(JdbcTemplate jdbcTemplate,
+                             @Value("${export.fetch-size:" + Integer.MIN_VALUE + "}") int fetchSize,
+                             @Value("${export.flush-rows:500}") int flushRows,
+                             @Value("${export.net-write-timeout-seconds:600}") int netWriteTimeoutSeconds,
+                             @Value("${export.max-concurrent:2}") int maxConcurrent) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.fetchSize = fetchSize;
+        this.flushRows = Math.max(1, flushRows);
+        this.netWriteTimeoutSeconds = Math.max(60, netWriteTimeoutSeconds);
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.permits = new Semaphore(this.maxConcurrent);
+    }
+
+    public void exportFees(Long schoolYearId, OutputStream out) {
+        export(FEES_SQL, schoolYearId, out);
+    }
+
+    public void exportPayments(Long schoolYearId, OutputStream out) {
+        export(PAYMENTS_SQL, schoolYearId, out);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("running", maxConcurrent - permits.availablePermits());
+        out.put("max_concurrent", maxConcurrent);
+        out.put("exports", exports.sum());
+        out.put("rows_written", rowsWritten.sum());
+        out.put("aborted", aborted.sum());
+        out.put("rejected", rejected.sum());
+        return out;
+    }
+
+    private void export(String sql, Long schoolYearId, OutputStream out) {
+        if (!tryAcquire()) {
+            rejected.increment();
+            throw new ApiException("Too many exports running, try again shortly", HttpStatus.TOO_MANY_REQUESTS);
+        }
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+                setNetWriteTimeout(con, String.valueOf(netWriteTimeoutSeconds));
+                try {
+                    stream(con, sql, schoolYearId, out);
+                } finally {
+                    resetNetWriteTimeout(con);
+                }
+                return null;
+            });
+            exports.increment();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void stream(Connection con, String sql, Long schoolYearId, OutputStream out) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(fetchSize);
+            ps.setLong(1, schoolYearId);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                try {
+                    writeCsv(rs, out);
+                } catch (IOException ex) {
+                    // client went away: cancel before the result set is closed, otherwise closing a
+                    // streaming result set reads (and throws away) every remaining row first
+                    aborted.increment();
+                    cancelQuietly(ps);
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        }
+    }
+
+    private void writeCsv(ResultSet rs, OutputStream out) throws SQLException, IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        int columns = rs.getMetaData().getColumnCount();
+
+        for (int i = 1; i <= columns; i++) {
+            if (i > 1) writer.write(',');
+            writer.write(rs.getMetaData().getColumnLabel(i));
+        }
+        writer.write("\r\n");
+
+        long rows = 0;
+        while (rs.next()) {
+            for (int i = 1; i <= columns; i++) {
+                if (i > 1) writer.write(',');
+                writeCell(writer, rs.getString(i));
+            }
+            writer.write("\r\n");
+            // push a chunk out regularly so the client sees progress on small rows too
+            if (++rows % flushRows == 0) {
+                writer.flush();
+                rowsWritten.add(flushRows);
+            }
+        }
+        writer.flush();
+        rowsWritten.add(rows % flushRows);
+    }
+
+    // RFC 4180 quoting; text starting like a formula is prefixed with ' so spreadsheets do not evaluate it
+    // (package-private for tests)
+    static void writeCell(Writer writer, String value) throws IOException {
+        if (value == null || value.isEmpty()) return;
+
+        char first = value.charAt(0);
+        boolean formula = first == '=' || first == '+' || first == '@' || first == '\t' || first == '\r'
+                || (first == '-' && (value.length() == 1 || !Character.isDigit(value.charAt(1))));
+        boolean quote = formula;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+
+        writer.write('"');
+        if (formula) writer.write('\'');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') writer.write('"');
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    private boolean tryAcquire() {
+        try {
+            return permits.tryAcquire(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void setNetWriteTimeout(Connection con, String value) throws SQLException {
+        try (Statement st = con.createStatement()) {
+            st.execute("SET SESSION net_write_timeout = " + value);
+        }
+    }
+
+    // back to the server default before the connection returns to the pool; never hides the real error
+    private static void resetNetWriteTimeout(Connection con) {
+        try {
+            setNetWriteTimeout(con, "DEFAULT");
+        } catch (SQLException ex) {
+            log.warn("Could not reset net_write_timeout after export: {}", ex.getMessage());
+        }
+    }
+
+    private static void cancelQuietly(Statement st) {
+        try {
+            st.cancel();
+        } catch (SQLException ex) {
+            log.warn("Could not cancel export query: {}", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.java.sms.serviceImpl;
+
+
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps {@code student_fee_ledger} (one row per studentYearId + schoolYearId) in step with the raw
+ * student_fee / fee_payment / applied_fee_discount rows.
+ *
+ * <p>Writers call {@link #touch(Long)} with the student-year they changed. The student-years touched in a
+ * transaction are re-aggregated right before it commits (after Hibernate has flushed), on the same connection,
+ * so the ledger commits or rolls back together with the fee rows. Each refresh is one indexed GROUP BY over
+ * that student-year's rows only (a few dozen), written with an upsert.
+ *
+ * <p>{@link #verifyAndRepair()} runs nightly (and on demand): one set-based query lists every student-year whose
+ * ledger rows differ from the raw rows (missing, stale or orphaned) and refreshes just those. On an empty table
+ * this is the full rebuild.
+ */
+@Component
+@Slf4j
+public class FeeLedgerUpdater {
+
+    // aggregate per (student_year_id, school_year_id); the three %s are row filters
+    // (student_fee, applied_fee_discount, student_fee aliased f)
+    private static final String AGGREGATE =
+            "SELECT a.student_year_id, a.school_year_id, a.total_original, a.total_paid, a.total_due, a.total_penalty, " +
+                    "COALESCE(d.total_discount, 0) AS total_discount, COALESCE(p.payments_received, 0) AS payments_received, " +
+                    "a.fee_count, a.pending_count, a.partial_count, a.paid_count " +
+                    "FROM (SELECT student_year_id, school_year_id, " +
+                    "COALESCE(SUM(original_amount), 0) AS total_original, COALESCE(SUM(paid_amount), 0) AS total_paid, " +
+                    "COALESCE(SUM(due_amount), 0) AS total_due, COALESCE(SUM(penalty_amount), 0) AS total_penalty, " +
+                    "COUNT(*) AS fee_count, SUM(status = 'PENDING') AS pending_count, " +
+                    "SUM(status = 'PARTIAL') AS partial_count, SUM(status = 'PAID') AS paid_count " +
+                    "FROM student_fee WHERE %s GROUP BY student_year_id, school_year_id) a " +
+                    "LEFT JOIN (SELECT student_year_id, SUM(discount_amount) AS total_discount " +
+                    "FROM applied_fee_discount WHERE %s GROUP BY student_year_id) d " +
+                    "ON d.student_year_id = a.student_year_id " +
+                    "LEFT JOIN (SELECT f.student_year_id, f.school_year_id, SUM(p.amount) AS payments_received " +
+                    "FROM fee_payment p JOIN student_fee f ON f.id = p.student_fee_id " +
+                    "WHERE p.status = 'SUCCESS' AND %s GROUP BY f.student_year_id, f.school_year_id) p " +
+                    "ON p.student_year_id = a.student_year_id AND p.school_year_id = a.school_year_id";
+
+    private static final String UPSERT_ONE =
+            "INSERT INTO student_fee_ledger (student_year_id, school_year_id, total_original, total_paid, total_due, " +
+                    "total_penalty, total_discount, payments_received, fee_count, pending_count, partial_count, paid_count, updated_at) " +
+                    "SELECT g.*, ? FROM (" +
+                    String.format(AGGREGATE, "student_year_id = ?", "student_year_id = ?", "f.student_year_id = ?") +
+                    ") g " +
+                    "ON DUPLICATE KEY UPDATE total_original = VALUES(total_original), total_paid = VALUES(total_paid), " +
+                    "total_due = VALUES(total_due), total_penalty = VALUES(total_penalty), " +
+                    "total_discount = VALUES(total_discount), payments_received = VALUES(payments_received), " +
+                    "fee_count = VALUES(fee_count), pending_count = VALUES(pending_count), " +
+                    "partial_count = VALUES(partial_count), paid_count = VALUES(paid_count), updated_at = VALUES(updated_at)";
+
+    // ledger rows of a student-year whose school year has no fee rows any more
+    private static final String DELETE_ORPHANS_ONE =
+            "DELETE FROM student_fee_ledger WHERE student_year_id = ? AND school_year_id NOT IN " +
+                    "(SELECT school_year_id FROM (SELECT DISTINCT school_year_id FROM student_fee WHERE student_year_id = ?) s)";
+
+    // every student-year whose ledger differs from the raw rows
+    private static final String FIND_DRIFT =
+            "SELECT g.student_year_id FROM (" + String.format(AGGREGATE, "TRUE", "TRUE", "TRUE") + ") g " +
+                    "LEFT JOIN student_fee_ledger l " +
+                    "ON l.student_year_id = g.student_year_id AND l.school_year_id = g.school_year_id " +
+                    "WHERE l.student_year_id IS NULL OR l.total_original <> g.total_original OR l.total_paid <> g.total_paid " +
+                    "OR l.total_due <> g.total_due OR l.total_penalty <> g.total_penalty " +
+                    "OR l.total_discount <> g.total_discount OR l.payments_received <> g.payments_received " +
+                    "OR l.fee_count <> g.fee_count OR l.pending_count <> g.pending_count " +
+                    "OR l.partial_count <> g.partial_count OR l.paid_count <> g.paid_count " +
+                    "UNION " +
+                    "SELECT l.student_year_id FROM student_fee_ledger l WHERE NOT EXISTS " +
+                    "(SELECT 1 FROM student_fee sf WHERE sf.student_year_id = l.student_year_id AND sf.school_year_id = l.school_year_id)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    private final TransactionTemplate txTemplate;
+
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder verifyRuns = new LongAdder();
+    private final LongAdder repaired = new LongAdder();
+    private volatile LocalDateTime lastVerifiedAt;
+
+    public FeeLedgerUpdater(JdbcTemplate jdbcTemplate, EntityManager entityManager,
+                            PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+        this.txTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Mark a student-year's ledger as changed; refreshed right before the current transaction commits
+     * (or immediately when there is no transaction).
+     */
+    public void touch(Long studentYearId) {
+        if (studentYearId == null) return;
+
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            txTemplate.executeWithoutResult(status -> refresh(studentYearId));
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        Set<Long> touched = (Set<Long>) TransactionSynchronizationManager.getResource(this);
+        if (touched == null) {
+            Set<Long> fresh = new LinkedHashSet<>();
+            TransactionSynchronizationManager.bindResource(this, fresh);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    // pending entity changes must hit the tables before we aggregate them
+                    entityManager.flush();
+                    fresh.forEach(FeeLedgerUpdater.this::refresh);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(FeeLedgerUpdater.this);
+                }
+            });
+            touched = fresh;
+        }
+        touched.add(studentYearId);
+    }
+
+    /**
+     * Compare the ledger with the raw rows and refresh every student-year that drifted.
+     * Returns the number of student-years repaired.
+     */
+    @Scheduled(cron = "${fee-ledger.verify-cron:0 0 4 * * *}")
+    public int verifyAndRepair() {
+        verifyRuns.increment();
+        List<Long> drifted = jdbcTemplate.queryForList(FIND_DRIFT, Long.class);
+
+        // one short transaction per student-year so the job never holds many row locks
+        for (Long studentYearId : drifted) {
+            txTemplate.executeWithoutResult(status -> refresh(studentYearId));
+        }
+        repaired.add(drifted.size());
+        lastVerifiedAt = LocalDateTime.now();
+
+        if (!drifted.isEmpty()) {
+            log.warn("Fee ledger repaired for {} student-years", drifted.size());
+        }
+        return drifted.size();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("refreshes", refreshes.sum());
+        out.put("verify_runs", verifyRuns.sum());
+        out.put("repaired", repaired.sum());
+        out.put("last_verified_at", lastVerifiedAt);
+        return out;
+    }
+
+    private void refresh(Long studentYearId) {
+        jdbcTemplate.update(UPSERT_ONE, LocalDateTime.now(), studentYearId, studentYearId, studentYearId);
+        jdbcTemplate.update(DELETE_ORPHANS_ONE, studentYearId, studentYearId);
+        refreshes.increment();
+    }
+}
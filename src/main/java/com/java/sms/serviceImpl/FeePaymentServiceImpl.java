@@ -25,11 +25,15 @@ public class FeePaymentServiceImpl implements FeePaymentService {
 
     private final FeePaymentRepository feePaymentRepo;
     private final StudentFeeRepository studentFeeRepo;
+    private final FeeLedgerUpdater feeLedgerUpdater;
+    private final FeeCollectionRollupWriter rollupWriter;
 
-    public FeePaymentServiceImpl(FeePaymentRepository feePaymentRepo,StudentFeeRepository studentFeeRepo
-                                 ) {
+    public FeePaymentServiceImpl(FeePaymentRepository feePaymentRepo,StudentFeeRepository studentFeeRepo,
+                                 FeeLedgerUpdater feeLedgerUpdater, FeeCollectionRollupWriter rollupWriter) {
         this.feePaymentRepo = feePaymentRepo;
         this.studentFeeRepo = studentFeeRepo;
+        this.feeLedgerUpdater = feeLedgerUpdater;
+        this.rollupWriter = rollupWriter;
     }
 
     @Override
@@ -51,7 +55,10 @@ public class FeePaymentServiceImpl implements FeePaymentService {
                 .razorpaySignature(req.getRazorpaySignature())
                 .build();
 
-        return FeePaymentMapper.toResponse(feePaymentRepo.save(payment));
+        FeePayment saved = feePaymentRepo.save(payment);
+        rollupWriter.paymentAdded(saved);
+        feeLedgerUpdater.touch(studentFee.getStudentYearId());
+        return FeePaymentMapper.toResponse(saved);
 
     }
 
@@ -61,6 +68,16 @@ public class FeePaymentServiceImpl implements FeePaymentService {
         FeePayment existing = feePaymentRepo.findById(id)
                 .orElseThrow(() -> new ApiException("FeePayment not found", HttpStatus.NOT_FOUND));
 
+        // take the old values out of the collection rollup, the new ones go back in after the save
+        rollupWriter.paymentRemoved(FeePayment.builder()
+                .studentFee(existing.getStudentFee())
+                .amount(existing.getAmount())
+                .paymentMethod(existing.getPaymentMethod())
+                .status(existing.getStatus())
+                .paymentDate(existing.getPaymentDate())
+                .createdAt(existing.getCreatedAt())
+                .build());
+
         existing.setAmount(req.getAmount());
         existing.setPaymentMethod(PaymentMethod.valueOf(req.getPaymentMethod().toUpperCase()));
         existing.setStatus(PaymentStatus.valueOf(req.getStatus().toUpperCase()));
@@ -71,7 +88,10 @@ public class FeePaymentServiceImpl implements FeePaymentService {
         existing.setRazorpayOrderId(req.getRazorpayOrderId());
         existing.setRazorpaySignature(req.getRazorpaySignature());
 
-        return FeePaymentMapper.toResponse(feePaymentRepo.save(existing));
+        FeePayment saved = feePaymentRepo.save(existing);
+        rollupWriter.paymentAdded(saved);
+        feeLedgerUpdater.touch(saved.getStudentFee().getStudentYearId());
+        return FeePaymentMapper.toResponse(saved);
     }
 
     @Override
@@ -91,9 +111,10 @@ public class FeePaymentServiceImpl implements FeePaymentService {
 
     @Override
     public void delete(Long id) {
-        if (!feePaymentRepo.existsById(id)) {
-            throw new ResourceNotFoundException("FeePayment not found");
-        }
-        feePaymentRepo.deleteById(id);
+        FeePayment existing = feePaymentRepo.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("FeePayment not found"));
+        feePaymentRepo.delete(existing);
+        rollupWriter.paymentRemoved(existing);
+        feeLedgerUpdater.touch(existing.getStudentFee().getStudentYearId());
     }
 }
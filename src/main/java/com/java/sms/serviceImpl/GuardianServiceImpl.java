@@ -9,6 +9,7 @@ import com.java.sms.openFeignClient.GuardianClient;
 import com.java.sms.openFeignClient.StudentClient;
 import com.java.sms.repository.RoleRepository;
 import com.java.sms.repository.UserRepository;
+import com.java.sms.security.PrincipalCache;
 import com.java.sms.service.GuardianService;
 import io.swagger.v3.oas.annotations.servers.Server;
 import lombok.RequiredArgsConstructor;
@@ -43,6 +44,7 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class GuardianServiceImpl implements GuardianService{
     private final UserRepository userRepository;
+    private final PrincipalCache principalCache;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
     private final GuardianClient guardianClient;
@@ -126,6 +128,7 @@ public class GuardianServiceImpl implements GuardianService{
 
 
             User savedUser = userRepository.save(user);
+            principalCache.evict(savedUser.getEmail());
 
             GuardianDTO userGuardian = new GuardianDTO();
             userGuardian.setUser(savedUser.getId());
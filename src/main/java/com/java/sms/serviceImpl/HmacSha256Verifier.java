@@ -0,0 +1,143 @@
+package com.java.sms.serviceImpl;
+
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Verifies hex HMAC-SHA256 signatures for one secret without per-call setup or garbage.
+ *
+ * <p>The key spec is built once; every thread keeps its own initialized {@link Mac} plus scratch buffers
+ * (a Mac is not thread-safe, and {@code doFinal} resets it for the next call). The expected signature is
+ * decoded from hex into bytes, the computed MAC is written into a reused buffer, and the two are compared
+ * with {@link MessageDigest#isEqual}, which takes the same time wherever the first difference is.
+ * ASCII input (Razorpay order / payment ids) is fed to the Mac through a reused byte buffer as well.
+ */
+final class HmacSha256Verifier {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MAC_BYTES = 32;
+    private static final int HEX_CHARS = MAC_BYTES * 2;
+    private static final int SCRATCH_BYTES = 256;
+
+    // '0'-'9', 'a'-'f', 'A'-'F' -> nibble value, everything else -1
+    private static final byte[] NIBBLE = new byte[128];
+
+    static {
+        Arrays.fill(NIBBLE, (byte) -1);
+        for (int c = '0'; c <= '9'; c++) NIBBLE[c] = (byte) (c - '0');
+        for (int c = 'a'; c <= 'f'; c++) NIBBLE[c] = (byte) (c - 'a' + 10);
+        for (int c = 'A'; c <= 'F'; c++) NIBBLE[c] = (byte) (c - 'A' + 10);
+    }
+
+    private static final class Scratch {
+        final Mac mac;
+        final byte[] computed = new byte[MAC_BYTES];
+        final byte[] expected = new byte[MAC_BYTES];
+        final byte[] input = new byte[SCRATCH_BYTES];
+
+        Scratch(SecretKeySpec key) {
+            try {
+                mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 not available", e);
+            }
+        }
+    }
+
+    private final ThreadLocal<Scratch> scratch;
+
+    /**
+     * A blank secret gives a verifier that rejects everything (e.g. Razorpay not configured).
+     */
+    HmacSha256Verifier(String secret) {
+        if (secret == null || secret.isBlank()) {
+            this.scratch = null;
+            return;
+        }
+        SecretKeySpec key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(key));
+    }
+
+    /**
+     * HMAC over {@code first + separator + second} (payment signature: order_id|payment_id).
+     */
+    boolean verify(String first, char separator, String second, String hexSignature) {
+        if (first == null || second == null) return false;
+        Scratch s = prepare(hexSignature);
+        if (s == null) return false;
+
+        update(s, first);
+        s.mac.update((byte) separator);
+        update(s, second);
+        return finish(s);
+    }
+
+    /**
+     * HMAC over raw bytes (webhook body exactly as received).
+     */
+    boolean verify(byte[] data, String hexSignature) {
+        if (data == null) return false;
+        Scratch s = prepare(hexSignature);
+        if (s == null) return false;
+
+        s.mac.update(data);
+        return finish(s);
+    }
+
+    // decodes the signature into s.expected; null if it cannot match
+    private Scratch prepare(String hexSignature) {
+        if (scratch == null || hexSignature == null || hexSignature.length() != HEX_CHARS) return null;
+        Scratch s = scratch.get();
+        return decodeHex(hexSignature, s.expected) ? s : null;
+    }
+
+    private static boolean finish(Scratch s) {
+        try {
+            s.mac.doFinal(s.computed, 0);
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException(e); // buffer is always MAC_BYTES long
+        }
+        return MessageDigest.isEqual(s.computed, s.expected);
+    }
+
+    // ASCII goes through the reused buffer; anything else falls back to a UTF-8 copy
+    private static void update(Scratch s, String value) {
+        int length = value.length();
+        if (length <= SCRATCH_BYTES) {
+            boolean ascii = true;
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    ascii = false;
+                    break;
+                }
+                s.input[i] = (byte) c;
+            }
+            if (ascii) {
+                s.mac.update(s.input, 0, length);
+                return;
+            }
+        }
+        s.mac.update(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static boolean decodeHex(String hex, byte[] out) {
+        int bad = 0;
+        for (int i = 0; i < out.length; i++) {
+            char hi = hex.charAt(2 * i);
+            char lo = hex.charAt(2 * i + 1);
+            int h = hi < 128 ? NIBBLE[hi] : -1;
+            int l = lo < 128 ? NIBBLE[lo] : -1;
+            bad |= h | l; // negative if any nibble was invalid
+            out[i] = (byte) ((h << 4) | (l & 0x0f));
+        }
+        return bad >= 0;
+    }
+}
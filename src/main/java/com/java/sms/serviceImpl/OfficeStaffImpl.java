@@ -8,6 +8,7 @@ import com.java.sms.model.User;
 import com.java.sms.openFeignClient.OfficeStaffClient;
 import com.java.sms.repository.RoleRepository;
 import com.java.sms.repository.UserRepository;
+import com.java.sms.security.PrincipalCache;
 import com.java.sms.service.OfficeStaffService;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
@@ -40,13 +41,16 @@ public class OfficeStaffImpl implements OfficeStaffService {
 
 
     private final UserRepository userRepository;
+    private final PrincipalCache principalCache;
     private final PasswordEncoder passwordEncoder;
     private final OfficeStaffClient officeStaffClient;
     private final RoleRepository roleRepository;
 
 
-    public OfficeStaffImpl(UserRepository userRepository, PasswordEncoder passwordEncoder, OfficeStaffClient officeStaffClient, RoleRepository roleRepository) {
+    public OfficeStaffImpl(UserRepository userRepository, PasswordEncoder passwordEncoder, OfficeStaffClient officeStaffClient, RoleRepository roleRepository,
+                           PrincipalCache principalCache) {
         this.userRepository = userRepository;
+        this.principalCache = principalCache;
         this.passwordEncoder = passwordEncoder;
         this.officeStaffClient = officeStaffClient;
         this.roleRepository = roleRepository;
@@ -103,6 +107,7 @@ public class OfficeStaffImpl implements OfficeStaffService {
 
             // 4. Save user
             User savedUser = userRepository.save(user);
+            principalCache.evict(savedUser.getEmail());
 
             // 5. Create OfficeStaff record (remote API call)
             OfficeStaffDTO officeStaffDTO = new OfficeStaffDTO();
@@ -0,0 +1,118 @@
+package com.java.sms.serviceImpl;
+
+
+import com.java.sms.model.FeePayment;
+import com.java.sms.model.StudentFee;
+import com.java.sms.model.enums.FeeStatus;
+import com.java.sms.model.enums.PaymentStatus;
+import com.java.sms.response.ConfirmPaymentResponse;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Settles the PENDING online FeePayments of one Razorpay order, whichever path learns about the payment first:
+ * confirm_payment from the client, the webhook inbox or reconciliation. Runs inside the caller's transaction;
+ * the payments must be managed entities with their StudentFee loaded.
+ */
+@Component
+public class OnlinePaymentCreditor {
+
+    private final FeeCollectionRollupWriter rollupWriter;
+    private final FeeLedgerUpdater feeLedgerUpdater;
+    private final PaymentIdempotencyGuard paymentIdempotencyGuard;
+
+    public OnlinePaymentCreditor(FeeCollectionRollupWriter rollupWriter, FeeLedgerUpdater feeLedgerUpdater,
+                                 PaymentIdempotencyGuard paymentIdempotencyGuard) {
+        this.rollupWriter = rollupWriter;
+        this.feeLedgerUpdater = feeLedgerUpdater;
+        this.paymentIdempotencyGuard = paymentIdempotencyGuard;
+    }
+
+    /**
+     * Total of the payments in paise, to compare with the amount Razorpay captured.
+     */
+    public static long totalPaise(List<FeePayment> payments) {
+        return payments.stream().map(FeePayment::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add)
+                .movePointRight(2).longValue();
+    }
+
+    /**
+     * Mark the payments SUCCESS for {@code paymentId} and record the payment as confirmed, so a late
+     * confirm_payment call replays instead of crediting twice. The payments must have been loaded with
+     * {@code findByRazorpayOrderIdInAndStatusWithStudentFee} (row locks) in the caller's transaction.
+     * Throws, leaving nothing changed, if another path already recorded the payment id.
+     *
+     * @return the confirm_payment response stored for the payment id
+     */
+    public ConfirmPaymentResponse credit(List<FeePayment> pending, String paymentId, String orderId, LocalDateTime paidAt) {
+        List<Map<String, Object>> confirmed = new ArrayList<>();
+        Set<Long> studentYearIds = new LinkedHashSet<>();
+        for (FeePayment payment : pending) {
+            StudentFee fee = payment.getStudentFee();
+            studentYearIds.add(fee.getStudentYearId());
+
+            Map<String, Object> pmap = new HashMap<>();
+            pmap.put("id", payment.getId());
+            pmap.put("fee_type", fee.getFeeStructure().getFeeType().name());
+            pmap.put("amount", payment.getAmount().toPlainString());
+            pmap.put("status", PaymentStatus.SUCCESS.name());
+            pmap.put("month", fee.getMonth());
+            pmap.put("receipt_number", fee.getReceiptNumber());
+            confirmed.add(pmap);
+        }
+
+        // claim the payment id first: if another path got there, nothing below runs
+        ConfirmPaymentResponse response = ConfirmPaymentResponse.builder()
+                .message("Payment confirmed successfully.")
+                .payments(confirmed)
+                .build();
+        paymentIdempotencyGuard.recordExternal(paymentId, orderId, studentYearIds.iterator().next(), response);
+
+        for (FeePayment payment : pending) {
+            payment.setStatus(PaymentStatus.SUCCESS);
+            payment.setRazorpayPaymentId(paymentId);
+            payment.setPaymentDate(paidAt);
+            rollupWriter.paymentAdded(payment);
+
+            // online submit already added the amount to paid/due; only the status was held back
+            StudentFee fee = payment.getStudentFee();
+            if (fee.getDueAmount().compareTo(BigDecimal.ZERO) <= 0)
+                fee.setStatus(FeeStatus.PAID);
+            else if (fee.getPaidAmount().compareTo(BigDecimal.ZERO) > 0)
+                fee.setStatus(FeeStatus.PARTIAL);
+        }
+        studentYearIds.forEach(feeLedgerUpdater::touch);
+        return response;
+    }
+
+    /**
+     * Give up on payments whose order was never paid: FAILED, and the amount optimistically added to the
+     * StudentFee at submit time is taken back.
+     */
+    public void expire(List<FeePayment> pending) {
+        Set<Long> studentYearIds = new LinkedHashSet<>();
+        for (FeePayment payment : pending) {
+            payment.setStatus(PaymentStatus.FAILED);
+
+            StudentFee fee = payment.getStudentFee();
+            fee.setPaidAmount(fee.getPaidAmount().subtract(payment.getAmount()).max(BigDecimal.ZERO));
+            fee.setDueAmount(fee.getDueAmount().add(payment.getAmount()));
+            if (fee.getDueAmount().compareTo(BigDecimal.ZERO) <= 0)
+                fee.setStatus(FeeStatus.PAID);
+            else if (fee.getPaidAmount().compareTo(BigDecimal.ZERO) > 0)
+                fee.setStatus(FeeStatus.PARTIAL);
+            else
+                fee.setStatus(FeeStatus.PENDING);
+            studentYearIds.add(fee.getStudentYearId());
+        }
+        studentYearIds.forEach(feeLedgerUpdater::touch);
+    }
+}
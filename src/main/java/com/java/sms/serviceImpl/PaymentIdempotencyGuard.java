@@ -0,0 +1,235 @@
+package com.java.sms.serviceImpl;
+
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.java.sms.DataClass.ConfirmPaymentRequest;
+import com.java.sms.config.BoundedTtlMap;
+import com.java.sms.exception.ApiException;
+import com.java.sms.response.ConfirmPaymentResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Exactly-once guard for confirm_payment, keyed on {@code razorpay_payment_id}.
+ *
+ * <p>Flow inside the confirm transaction:
+ * <ol>
+ *   <li>{@link #replay} - recent-keys cache, then one primary-key read of {@code payment_confirmation};
+ *       a payment confirmed before gets its original response back and nothing else runs.</li>
+ *   <li>signature check (no locks held).</li>
+ *   <li>{@link #claim} - {@code INSERT IGNORE} of the key. A concurrent duplicate on any replica blocks on the
+ *       primary key until the first transaction ends, then either sees its committed response or (after a
+ *       rollback) claims the key itself. Only the winner credits the fees.</li>
+ *   <li>{@link #complete} - stores the response in the same transaction; it reaches the cache after commit.</li>
+ * </ol>
+ */
+@Component
+@Slf4j
+public class PaymentIdempotencyGuard {
+
+    private static final String FIND =
+            "SELECT razorpay_order_id, student_year_id, response_json FROM payment_confirmation " +
+                    "WHERE razorpay_payment_id = ?";
+
+    // a locking read sees the latest committed row, not this transaction's snapshot
+    private static final String FIND_LOCKING = FIND + " LOCK IN SHARE MODE";
+
+    private static final String CLAIM =
+            "INSERT IGNORE INTO payment_confirmation (razorpay_payment_id, razorpay_order_id, student_year_id, created_at) " +
+                    "VALUES (?, ?, ?, NOW())";
+
+    private static final String RECORD_EXTERNAL =
+            "INSERT IGNORE INTO payment_confirmation (razorpay_payment_id, razorpay_order_id, student_year_id, " +
+                    "response_json, created_at) VALUES (?, ?, ?, ?, NOW())";
+
+    private static final String COMPLETE =
+            "UPDATE payment_confirmation SET response_json = ? WHERE razorpay_payment_id = ?";
+
+    // payments confirmed before payment_confirmation existed
+    private static final String LEGACY_PAYMENT_EXISTS =
+            "SELECT COUNT(*) FROM fee_payment WHERE razorpay_payment_id = ? AND status = 'SUCCESS'";
+
+    private record Stored(String orderId, Long studentYearId, String responseJson) {
+    }
+
+    private record Entry(String orderId, Long studentYearId, ConfirmPaymentResponse response, long loadedAtMillis) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final BoundedTtlMap<String, Entry> recent;
+
+    private final LongAdder cacheReplays = new LongAdder();
+    private final LongAdder dbReplays = new LongAdder();
+    private final LongAdder claims = new LongAdder();
+    private final LongAdder duplicatesBlocked = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+
+    public PaymentIdempotencyGuard(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                                   @Value("${payment.idempotency.cache-size:10000}") int maxSize,
+                                   @Value("${payment.idempotency.cache-ttl-seconds:86400}") long ttlSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        long ttlMillis = TimeUnit.SECONDS.toMillis(Math.max(1L, ttlSeconds));
+        this.recent = new BoundedTtlMap<>(maxSize, (e, now) -> now - e.loadedAtMillis() >= ttlMillis);
+    }
+
+    /**
+     * Original response if this payment was confirmed already, empty if it was not.
+     */
+    public Optional<ConfirmPaymentResponse> replay(ConfirmPaymentRequest req) {
+        String key = req.getRazorpayPaymentId();
+
+        Entry cached = recent.getFresh(key);
+        if (cached != null) {
+            checkSameRequest(req, cached.orderId(), cached.studentYearId());
+            cacheReplays.increment();
+            return Optional.of(cached.response());
+        }
+
+        Optional<Stored> stored = find(FIND, key);
+        if (stored.isEmpty() || stored.get().responseJson() == null) {
+            return Optional.empty();
+        }
+        checkSameRequest(req, stored.get().orderId(), stored.get().studentYearId());
+        dbReplays.increment();
+        return Optional.of(remember(key, stored.get()));
+    }
+
+    /**
+     * Claim the payment id for this transaction. Empty means "ours, go ahead and credit the fees";
+     * otherwise the response of the transaction that got there first.
+     */
+    public Optional<ConfirmPaymentResponse> claim(ConfirmPaymentRequest req) {
+        String key = req.getRazorpayPaymentId();
+
+        int inserted = jdbcTemplate.update(CLAIM, key, req.getRazorpayOrderId(), req.getStudentYearId());
+        if (inserted == 1) {
+            Long legacy = jdbcTemplate.queryForObject(LEGACY_PAYMENT_EXISTS, Long.class, key);
+            if (legacy != null && legacy > 0) {
+                // rolled back together with the claim
+                conflicts.increment();
+                throw new ApiException("Payment " + key + " was already confirmed", HttpStatus.CONFLICT);
+            }
+            claims.increment();
+            return Optional.empty();
+        }
+
+        // somebody else holds / held the key; INSERT IGNORE waited for their transaction to finish
+        duplicatesBlocked.increment();
+        Stored stored = find(FIND_LOCKING, key)
+                .orElseThrow(() -> new ApiException("Payment " + key + " is being confirmed, retry shortly",
+                        HttpStatus.CONFLICT));
+        if (stored.responseJson() == null) {
+            throw new ApiException("Payment " + key + " is being confirmed, retry shortly", HttpStatus.CONFLICT);
+        }
+        checkSameRequest(req, stored.orderId(), stored.studentYearId());
+        return Optional.of(remember(key, stored));
+    }
+
+    /**
+     * Store the response next to the claim; the cache only learns about it once the transaction commits.
+     */
+    public void complete(ConfirmPaymentRequest req, ConfirmPaymentResponse response) {
+        String key = req.getRazorpayPaymentId();
+        try {
+            jdbcTemplate.update(COMPLETE, objectMapper.writeValueAsString(response), key);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize confirm_payment response", e);
+        }
+
+        putAfterCommit(key, new Entry(req.getRazorpayOrderId(), req.getStudentYearId(), response,
+                System.currentTimeMillis()));
+    }
+
+    /**
+     * Mark a payment confirmed by another path (Razorpay webhook) so a later confirm_payment call for it
+     * is answered with {@code response} instead of crediting the fees again. Same transaction rules as
+     * {@link #complete}.
+     *
+     * <p>If the key is already taken (confirm_payment claimed it, committed or still running - the insert waits
+     * for it) this throws, so the caller's transaction rolls back instead of crediting a second time.
+     */
+    public void recordExternal(String paymentId, String orderId, Long studentYearId, ConfirmPaymentResponse response) {
+        int inserted;
+        try {
+            inserted = jdbcTemplate.update(RECORD_EXTERNAL, paymentId, orderId, studentYearId,
+                    objectMapper.writeValueAsString(response));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize confirm_payment response", e);
+        }
+        if (inserted == 0) {
+            duplicatesBlocked.increment();
+            throw new ApiException("Payment " + paymentId + " was already confirmed", HttpStatus.CONFLICT);
+        }
+
+        putAfterCommit(paymentId, new Entry(orderId, studentYearId, response, System.currentTimeMillis()));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("size", recent.size());
+        out.put("max_size", recent.maxSize());
+        out.put("cache_replays", cacheReplays.sum());
+        out.put("db_replays", dbReplays.sum());
+        out.put("claims", claims.sum());
+        out.put("duplicates_blocked", duplicatesBlocked.sum());
+        out.put("conflicts", conflicts.sum());
+        out.put("evictions", recent.evictions());
+        return out;
+    }
+
+    private Optional<Stored> find(String sql, String key) {
+        List<Stored> rows = jdbcTemplate.query(sql,
+                (rs, i) -> new Stored(rs.getString(1), rs.getLong(2), rs.getString(3)), key);
+        return rows.isEmpty() ? Optional.empty() : Optional.of(rows.get(0));
+    }
+
+    private ConfirmPaymentResponse remember(String key, Stored stored) {
+        ConfirmPaymentResponse response;
+        try {
+            response = objectMapper.readValue(stored.responseJson(), ConfirmPaymentResponse.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored confirm_payment response for " + key + " is unreadable", e);
+        }
+        recent.put(key, new Entry(stored.orderId(), stored.studentYearId(), response, System.currentTimeMillis()));
+        return response;
+    }
+
+    // a payment id replayed for another order / student is not a retry
+    private void checkSameRequest(ConfirmPaymentRequest req, String orderId, Long studentYearId) {
+        if (!Objects.equals(orderId, req.getRazorpayOrderId()) || !Objects.equals(studentYearId, req.getStudentYearId())) {
+            conflicts.increment();
+            throw new ApiException("razorpay_payment_id " + req.getRazorpayPaymentId()
+                    + " was already used for a different order", HttpStatus.CONFLICT);
+        }
+    }
+
+    // a rolled back confirmation must never be replayed from the cache
+    private void putAfterCommit(String key, Entry entry) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    recent.put(key, entry);
+                }
+            });
+        } else {
+            recent.put(key, entry);
+        }
+    }
+}
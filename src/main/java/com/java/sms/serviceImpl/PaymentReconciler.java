@@ -0,0 +1,580 @@
+package com.java.sms.serviceImpl;
+
+
+import com.java.sms.exception.ApiException;
+import com.java.sms.model.FeePayment;
+import com.java.sms.model.enums.DiscrepancyType;
+import com.java.sms.model.enums.PaymentStatus;
+import com.java.sms.repository.FeePaymentRepository;
+import com.java.sms.service.RazorpayService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Nightly reconciliation of online FeePayments against Razorpay.
+ *
+ * <p>A run walks {@code fee_payment} in id order, {@code payment.reconcile.page-size} rows at a time. It looks at
+ * every PENDING online payment and at SUCCESS payments created in the last {@code payment.reconcile.lookback-days}.
+ * For each page:
+ * <ol>
+ *   <li>the distinct Razorpay orders are fetched in parallel ({@code payment.reconcile.threads}), paced to
+ *       {@code payment.reconcile.requests-per-second}. No transaction or connection is held during the calls;</li>
+ *   <li>one transaction re-reads the pending rows FOR UPDATE, applies the transitions, writes the report lines
+ *       ({@code payment_discrepancy}) and moves the run's checkpoint past the page.</li>
+ * </ol>
+ * Transitions: PENDING with a matching capture is credited (same path as the webhook). PENDING whose order was
+ * never paid within {@code payment.reconcile.expire-pending-hours} becomes FAILED and its amount is taken back
+ * from the StudentFee. Everything else (amount mismatch, SUCCESS without capture, refunds, lookup errors) is
+ * only reported.
+ *
+ * <p>A crash or error leaves the run unfinished; the next trigger resumes it from the checkpoint. Only one
+ * unfinished run can exist (unique {@code active_key}), and a node whose run was taken over after
+ * {@code payment.reconcile.stale-minutes} without a heartbeat loses its next checkpoint update.
+ */
+@Component
+@Slf4j
+public class PaymentReconciler {
+
+    private static final String MAX_PAYMENT_ID = "SELECT COALESCE(MAX(id), 0) FROM fee_payment";
+
+    private static final String CREATE_RUN =
+            "INSERT IGNORE INTO payment_reconciliation_run (status, active_key, owner, window_from, upper_payment_id, " +
+                    "checkpoint_payment_id, scanned, orders_checked, credited, expired, discrepancies, started_at, heartbeat_at) " +
+                    "VALUES ('RUNNING', 'ACTIVE', ?, ?, ?, 0, 0, 0, 0, 0, 0, NOW(), NOW())";
+
+    // an unfinished run that failed, or whose node stopped sending heartbeats
+    private static final String RESUME_RUN =
+            "UPDATE payment_reconciliation_run SET status = 'RUNNING', owner = ?, heartbeat_at = NOW(), last_error = NULL " +
+                    "WHERE active_key = 'ACTIVE' AND (status = 'FAILED' OR heartbeat_at < ?)";
+
+    private static final String LOAD_RUN =
+            "SELECT id, window_from, upper_payment_id, checkpoint_payment_id FROM payment_reconciliation_run " +
+                    "WHERE active_key = 'ACTIVE' AND owner = ?";
+
+    private static final String PAGE =
+            "SELECT id, status, amount, razorpay_order_id, razorpay_payment_id, created_at FROM fee_payment " +
+                    "WHERE id > ? AND id <= ? AND payment_method = 'ONLINE' " +
+                    "AND (status = 'PENDING' OR (status = 'SUCCESS' AND created_at >= ?)) " +
+                    "ORDER BY id LIMIT ?";
+
+    private static final String INSERT_DISCREPANCY =
+            "INSERT IGNORE INTO payment_discrepancy (run_id, fee_payment_id, type, razorpay_order_id, razorpay_payment_id, " +
+                    "local_status, remote_status, local_amount, remote_amount_paise, resolution, detail, created_at) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, NOW())";
+
+    private static final String CHECKPOINT =
+            "UPDATE payment_reconciliation_run SET checkpoint_payment_id = ?, scanned = scanned + ?, " +
+                    "orders_checked = orders_checked + ?, credited = credited + ?, expired = expired + ?, " +
+                    "discrepancies = discrepancies + ?, heartbeat_at = NOW() " +
+                    "WHERE id = ? AND owner = ? AND status = 'RUNNING'";
+
+    private static final String COMPLETE =
+            "UPDATE payment_reconciliation_run SET status = 'COMPLETED', active_key = NULL, finished_at = NOW(), " +
+                    "heartbeat_at = NOW() WHERE id = ? AND owner = ?";
+
+    private static final String FAIL =
+            "UPDATE payment_reconciliation_run SET status = 'FAILED', last_error = ?, heartbeat_at = NOW() " +
+                    "WHERE id = ? AND owner = ?";
+
+    private static final int LOOKUP_ATTEMPTS = 3;
+
+    private record Run(long id, LocalDateTime windowFrom, long upperPaymentId, long checkpoint) {
+    }
+
+    private record Candidate(long id, PaymentStatus status, BigDecimal amount, String orderId, String paymentId,
+                             LocalDateTime createdAt) {
+    }
+
+    private record RemotePayment(String id, String status, Long amountPaise, LocalDateTime createdAt) {
+        boolean is(String s) {
+            return s.equals(status);
+        }
+    }
+
+    // payments of one order, or why they could not be read
+    private record Remote(List<RemotePayment> payments, boolean notFound, String error) {
+    }
+
+    private record Finding(long feePaymentId, DiscrepancyType type, String orderId, String paymentId,
+                           String localStatus, String remoteStatus, BigDecimal localAmount, Long remoteAmountPaise,
+                           String resolution, String detail) {
+    }
+
+    private record PageOutcome(int credited, int expired, int discrepancies) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate tx;
+    private final FeePaymentRepository feePaymentRepo;
+    private final OnlinePaymentCreditor creditor;
+    private final RazorpayService razorpayService;
+    private final int pageSize;
+    private final int lookbackDays;
+    private final long expirePendingHours;
+    private final long staleMinutes;
+    private final long callTimeoutMillis;
+    private final Pacer pacer;
+
+    // one run at a time on this node; runs off the (single) scheduler thread
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(named("payment-reconcile-"));
+    private final ExecutorService lookups;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final LongAdder runsCompleted = new LongAdder();
+    private final LongAdder runsFailed = new LongAdder();
+    private final LongAdder pages = new LongAdder();
+    private final LongAdder scanned = new LongAdder();
+    private final LongAdder lookupsDone = new LongAdder();
+    private final LongAdder lookupErrors = new LongAdder();
+    private final LongAdder credited = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder discrepancies = new LongAdder();
+
+    public PaymentReconciler(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                             FeePaymentRepository feePaymentRepo, OnlinePaymentCreditor creditor,
+                             RazorpayService razorpayService,
+                             @Value("${payment.reconcile.page-size:200}") int pageSize,
+                             @Value("${payment.reconcile.lookback-days:365}") int lookbackDays,
+                             @Value("${payment.reconcile.expire-pending-hours:48}") long expirePendingHours,
+                             @Value("${payment.reconcile.stale-minutes:10}") long staleMinutes,
+                             @Value("${payment.reconcile.threads:8}") int threads,
+                             @Value("${payment.reconcile.requests-per-second:20}") double requestsPerSecond,
+                             @Value("${payment.reconcile.call-timeout-ms:10000}") long callTimeoutMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.feePaymentRepo = feePaymentRepo;
+        this.creditor = creditor;
+        this.razorpayService = razorpayService;
+        this.pageSize = Math.max(1, Math.min(1000, pageSize));
+        this.lookbackDays = Math.max(1, lookbackDays);
+        this.expirePendingHours = Math.max(1L, expirePendingHours);
+        this.staleMinutes = Math.max(2L, staleMinutes);
+        this.callTimeoutMillis = Math.max(1000L, callTimeoutMillis);
+        this.pacer = new Pacer(Math.max(0.1, requestsPerSecond));
+        this.lookups = Executors.newFixedThreadPool(Math.max(1, threads), named("payment-reconcile-lookup-"));
+    }
+
+    /**
+     * Nightly trigger; also resumes a run that an earlier night or a crashed node left unfinished.
+     */
+    @Scheduled(cron = "${payment.reconcile.cron:0 30 2 * * *}")
+    public void nightly() {
+        trigger();
+    }
+
+    /**
+     * Start (or resume) a run in the background. False if one is already running on this node.
+     */
+    public boolean trigger() {
+        if (!running.compareAndSet(false, true)) return false;
+        try {
+            runner.execute(() -> {
+                try {
+                    runOnce();
+                } finally {
+                    running.set(false);
+                }
+            });
+            return true;
+        } catch (RuntimeException ex) {
+            running.set(false);
+            throw ex;
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("running", running.get());
+        out.put("runs_completed", runsCompleted.sum());
+        out.put("runs_failed", runsFailed.sum());
+        out.put("pages", pages.sum());
+        out.put("scanned", scanned.sum());
+        out.put("lookups", lookupsDone.sum());
+        out.put("lookup_errors", lookupErrors.sum());
+        out.put("credited", credited.sum());
+        out.put("expired", expired.sum());
+        out.put("discrepancies", discrepancies.sum());
+        return out;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        runner.shutdownNow();
+        lookups.shutdownNow();
+    }
+
+    // package-private for tests
+    void runOnce() {
+        String owner = UUID.randomUUID().toString();
+        Run run = claimRun(owner);
+        if (run == null) {
+            log.info("Payment reconciliation skipped: a run is in progress on another node");
+            return;
+        }
+        log.info("Payment reconciliation run {} started at payment id {} (upper bound {})",
+                run.id(), run.checkpoint(), run.upperPaymentId());
+
+        long checkpoint = run.checkpoint();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                List<Candidate> page = jdbcTemplate.query(PAGE, (rs, i) -> new Candidate(
+                                rs.getLong(1),
+                                PaymentStatus.valueOf(rs.getString(2)),
+                                rs.getBigDecimal(3),
+                                rs.getString(4),
+                                rs.getString(5),
+                                rs.getTimestamp(6) != null ? rs.getTimestamp(6).toLocalDateTime() : null),
+                        checkpoint, run.upperPaymentId(), Timestamp.valueOf(run.windowFrom()), pageSize);
+                if (page.isEmpty()) break;
+
+                // remote state first, with no transaction open
+                Map<String, Remote> remotes = fetchOrders(page);
+
+                long next = page.get(page.size() - 1).id();
+                PageOutcome outcome = tx.execute(status -> applyPage(run.id(), owner, page, remotes, next));
+                checkpoint = next;
+
+                pages.increment();
+                scanned.add(page.size());
+                if (outcome != null) {
+                    credited.add(outcome.credited());
+                    expired.add(outcome.expired());
+                    discrepancies.add(outcome.discrepancies());
+                }
+                if (page.size() < pageSize) break;
+            }
+
+            jdbcTemplate.update(COMPLETE, run.id(), owner);
+            runsCompleted.increment();
+            log.info("Payment reconciliation run {} completed", run.id());
+        } catch (Exception ex) {
+            runsFailed.increment();
+            log.error("Payment reconciliation run {} stopped after payment id {}: {}", run.id(), checkpoint,
+                    ex.getMessage(), ex);
+            try {
+                jdbcTemplate.update(FAIL, truncate(ex.getMessage()), run.id(), owner);
+            } catch (Exception updateError) {
+                // heartbeat goes stale and the next trigger takes the run over
+                log.error("Could not mark reconciliation run {} failed: {}", run.id(), updateError.getMessage());
+            }
+        }
+    }
+
+    private Run claimRun(String owner) {
+        LocalDateTime windowFrom = LocalDateTime.now().minusDays(lookbackDays);
+        Long upper = jdbcTemplate.queryForObject(MAX_PAYMENT_ID, Long.class);
+
+        if (jdbcTemplate.update(CREATE_RUN, owner, Timestamp.valueOf(windowFrom), upper) == 0) {
+            // an unfinished run exists: take it over if it failed or went quiet
+            Timestamp staleBefore = Timestamp.valueOf(LocalDateTime.now().minusMinutes(staleMinutes));
+            if (jdbcTemplate.update(RESUME_RUN, owner, staleBefore) == 0) return null;
+        }
+
+        List<Run> runs = jdbcTemplate.query(LOAD_RUN, (rs, i) -> new Run(rs.getLong(1),
+                rs.getTimestamp(2).toLocalDateTime(), rs.getLong(3), rs.getLong(4)), owner);
+        return runs.isEmpty() ? null : runs.get(0);
+    }
+
+    private Map<String, Remote> fetchOrders(List<Candidate> page) {
+        Set<String> orderIds = new LinkedHashSet<>();
+        for (Candidate c : page) {
+            if (c.orderId() != null) orderIds.add(c.orderId());
+        }
+
+        Map<String, Future<Remote>> futures = new LinkedHashMap<>();
+        for (String orderId : orderIds) {
+            futures.put(orderId, lookups.submit(() -> fetchOrder(orderId)));
+        }
+
+        // every lookup may retry, and waits for its turn at the pacer
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(callTimeoutMillis * LOOKUP_ATTEMPTS)
+                + TimeUnit.MILLISECONDS.toNanos(pacer.millisFor(orderIds.size() * LOOKUP_ATTEMPTS));
+        Map<String, Remote> out = new HashMap<>();
+        for (Map.Entry<String, Future<Remote>> e : futures.entrySet()) {
+            Remote remote;
+            try {
+                long left = Math.max(0L, deadline - System.nanoTime());
+                remote = e.getValue().get(left, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException ex) {
+                e.getValue().cancel(true);
+                remote = new Remote(List.of(), false, "Lookup timed out");
+            } catch (ExecutionException ex) {
+                remote = new Remote(List.of(), false, String.valueOf(ex.getCause().getMessage()));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Reconciliation interrupted", ex);
+            }
+            if (remote.error() != null) lookupErrors.increment();
+            out.put(e.getKey(), remote);
+        }
+        return out;
+    }
+
+    private Remote fetchOrder(String orderId) throws InterruptedException {
+        String lastError = null;
+        for (int attempt = 1; attempt <= LOOKUP_ATTEMPTS; attempt++) {
+            pacer.acquire();
+            try {
+                List<RemotePayment> payments = new ArrayList<>();
+                for (Map<String, Object> p : razorpayService.fetchOrderPayments(orderId)) {
+                    Object createdAt = p.get("created_at");
+                    payments.add(new RemotePayment(
+                            (String) p.get("id"),
+                            (String) p.get("status"),
+                            p.get("amount") != null ? ((Number) p.get("amount")).longValue() : null,
+                            createdAt != null
+                                    ? LocalDateTime.ofInstant(Instant.ofEpochSecond(((Number) createdAt).longValue()), ZoneId.systemDefault())
+                                    : null));
+                }
+                lookupsDone.increment();
+                return new Remote(payments, false, null);
+            } catch (ApiException ex) {
+                if (ex.getStatus() == HttpStatus.NOT_FOUND) return new Remote(List.of(), true, null);
+                lastError = ex.getMessage();
+            } catch (Exception ex) {
+                lastError = ex.getMessage() == null ? ex.getClass().getSimpleName() : ex.getMessage();
+            }
+            // back off a little; rate limit errors usually clear quickly
+            TimeUnit.MILLISECONDS.sleep(500L * attempt);
+        }
+        return new Remote(List.of(), false, lastError);
+    }
+
+    private PageOutcome applyPage(long runId, String owner, List<Candidate> page, Map<String, Remote> remotes, long next) {
+        List<Finding> findings = new ArrayList<>();
+        int creditedHere = 0;
+        int expiredHere = 0;
+        LocalDateTime expireBefore = LocalDateTime.now().minusHours(expirePendingHours);
+
+        // ---- PENDING: re-read every pending row of those orders, locked, before deciding anything ----
+        // The webhook inbox takes the same row locks, so whichever comes second sees the other's result
+        // (a row the webhook already credited is no longer PENDING here, and is neither credited nor expired).
+        Set<String> pendingOrders = new LinkedHashSet<>();
+        for (Candidate c : page) {
+            if (c.status() == PaymentStatus.PENDING && c.orderId() != null) pendingOrders.add(c.orderId());
+        }
+        Map<String, List<FeePayment>> pendingByOrder = new HashMap<>();
+        Set<String> capturedIds = new HashSet<>();
+        if (!pendingOrders.isEmpty()) {
+            for (FeePayment p : feePaymentRepo.findByRazorpayOrderIdInAndStatusWithStudentFee(pendingOrders, PaymentStatus.PENDING)) {
+                pendingByOrder.computeIfAbsent(p.getRazorpayOrderId(), k -> new ArrayList<>()).add(p);
+            }
+            for (String orderId : pendingOrders) {
+                for (RemotePayment rp : remotes.get(orderId).payments()) {
+                    if (rp.is("captured")) capturedIds.add(rp.id());
+                }
+            }
+        }
+        Set<String> recorded = new HashSet<>();
+        if (!capturedIds.isEmpty()) {
+            for (FeePayment p : feePaymentRepo.findByRazorpayPaymentIdInWithStudentFee(capturedIds)) {
+                if (p.getStatus() == PaymentStatus.SUCCESS) recorded.add(p.getRazorpayPaymentId());
+            }
+        }
+
+        for (String orderId : pendingOrders) {
+            List<FeePayment> pending = pendingByOrder.get(orderId);
+            if (pending == null || pending.isEmpty()) continue; // settled by the webhook in the meantime
+            Remote remote = remotes.get(orderId);
+
+            if (remote.error() != null) {
+                report(findings, pending, DiscrepancyType.LOOKUP_FAILED, null, null, null, remote.error());
+                continue;
+            }
+            if (remote.notFound()) {
+                report(findings, pending, DiscrepancyType.ORDER_NOT_FOUND, null, null, null, null);
+                continue;
+            }
+
+            RemotePayment captured = null;
+            boolean anyCaptured = false;
+            boolean anyAuthorized = false;
+            for (RemotePayment rp : remote.payments()) {
+                if (rp.is("captured") || rp.is("refunded")) {
+                    anyCaptured = true;
+                    if (captured == null && rp.is("captured") && !recorded.contains(rp.id())) captured = rp;
+                }
+                if (rp.is("authorized")) anyAuthorized = true;
+            }
+
+            if (captured != null) {
+                long expected = OnlinePaymentCreditor.totalPaise(pending);
+                if (captured.amountPaise() != null && captured.amountPaise() == expected) {
+                    try {
+                        creditor.credit(pending, captured.id(), orderId,
+                                captured.createdAt() != null ? captured.createdAt() : LocalDateTime.now());
+                    } catch (ApiException ex) {
+                        // confirm_payment owns this payment id; the credit claims it before changing anything
+                        if (ex.getStatus() != HttpStatus.CONFLICT) throw ex;
+                        report(findings, pending, DiscrepancyType.CAPTURE_ALREADY_RECORDED, captured, null, "PENDING",
+                                ex.getMessage());
+                        continue;
+                    }
+                    recorded.add(captured.id());
+                    creditedHere += pending.size();
+                    report(findings, pending, DiscrepancyType.CAPTURED_WHILE_PENDING, captured, "CREDITED", "PENDING", null);
+                } else {
+                    report(findings, pending, DiscrepancyType.AMOUNT_MISMATCH, captured, null, "PENDING",
+                            "Captured " + captured.amountPaise() + " paise, pending payments total " + expected + " paise");
+                }
+            } else if (anyCaptured) {
+                report(findings, pending, DiscrepancyType.CAPTURE_ALREADY_RECORDED, null, null, "PENDING", null);
+            } else if (anyAuthorized) {
+                report(findings, pending, DiscrepancyType.AUTHORIZED_NOT_CAPTURED, null, null, "PENDING", null);
+            } else if (pending.stream().allMatch(p -> p.getCreatedAt() != null && p.getCreatedAt().isBefore(expireBefore))) {
+                // never paid (no attempt, or only failed attempts) and past the expiry window
+                report(findings, pending, DiscrepancyType.EXPIRED_UNPAID, null, "EXPIRED", "PENDING",
+                        remote.payments().size() + " failed attempt(s)");
+                creditor.expire(pending);
+                expiredHere += pending.size();
+            }
+            // otherwise: still payable, look again next run
+        }
+
+        // ---- PENDING without an order, and SUCCESS rows ----
+        for (Candidate c : page) {
+            if (c.status() == PaymentStatus.PENDING && c.orderId() == null) {
+                if (c.createdAt() != null && c.createdAt().isBefore(expireBefore)) {
+                    findings.add(finding(c, DiscrepancyType.ORDER_NOT_CREATED, null, null, null));
+                }
+                continue;
+            }
+            if (c.status() != PaymentStatus.SUCCESS) continue;
+
+            Remote remote = c.orderId() != null ? remotes.get(c.orderId()) : null;
+            if (remote == null) {
+                findings.add(finding(c, DiscrepancyType.SUCCESS_WITHOUT_CAPTURE, null, null, "No Razorpay order id"));
+            } else if (remote.error() != null) {
+                findings.add(finding(c, DiscrepancyType.LOOKUP_FAILED, null, null, remote.error()));
+            } else if (remote.notFound()) {
+                findings.add(finding(c, DiscrepancyType.ORDER_NOT_FOUND, null, null, null));
+            } else {
+                RemotePayment rp = remote.payments().stream()
+                        .filter(p -> p.id() != null && p.id().equals(c.paymentId()))
+                        .findFirst().orElse(null);
+                if (rp != null && rp.is("refunded")) {
+                    findings.add(finding(c, DiscrepancyType.REFUNDED_REMOTELY, rp, null, null));
+                } else if (rp == null || !rp.is("captured")) {
+                    findings.add(finding(c, DiscrepancyType.SUCCESS_WITHOUT_CAPTURE, rp, null, null));
+                }
+            }
+        }
+
+        int inserted = 0;
+        if (!findings.isEmpty()) {
+            List<Object[]> rows = new ArrayList<>(findings.size());
+            for (Finding f : findings) {
+                rows.add(new Object[]{runId, f.feePaymentId(), f.type().name(), f.orderId(), f.paymentId(),
+                        f.localStatus(), f.remoteStatus(), f.localAmount(), f.remoteAmountPaise(), f.resolution(),
+                        truncate(f.detail())});
+            }
+            // INSERT IGNORE: a page repeated after a takeover does not report twice
+            for (int n : jdbcTemplate.batchUpdate(INSERT_DISCREPANCY, rows)) {
+                if (n > 0) inserted++;
+            }
+        }
+
+        // checkpoint in the same transaction as the transitions: a page is applied exactly once
+        int updated = jdbcTemplate.update(CHECKPOINT, next, page.size(), countOrders(page), creditedHere, expiredHere,
+                inserted, runId, owner);
+        if (updated != 1) {
+            throw new IllegalStateException("Reconciliation run " + runId + " was taken over by another node");
+        }
+        return new PageOutcome(creditedHere, expiredHere, inserted);
+    }
+
+    private static void report(List<Finding> out, List<FeePayment> payments, DiscrepancyType type, RemotePayment rp,
+                               String resolution, String localStatus, String detail) {
+        for (FeePayment p : payments) {
+            out.add(new Finding(p.getId(), type, p.getRazorpayOrderId(), rp != null ? rp.id() : p.getRazorpayPaymentId(),
+                    localStatus != null ? localStatus : p.getStatus().name(), rp != null ? rp.status() : null,
+                    p.getAmount(), rp != null ? rp.amountPaise() : null, resolution, detail));
+        }
+    }
+
+    private static Finding finding(Candidate c, DiscrepancyType type, RemotePayment rp, String resolution, String detail) {
+        return new Finding(c.id(), type, c.orderId(), c.paymentId(), c.status().name(),
+                rp != null ? rp.status() : null, c.amount(), rp != null ? rp.amountPaise() : null, resolution, detail);
+    }
+
+    private static int countOrders(List<Candidate> page) {
+        Set<String> ids = new HashSet<>();
+        for (Candidate c : page) {
+            if (c.orderId() != null) ids.add(c.orderId());
+        }
+        return ids.size();
+    }
+
+    private static String truncate(String message) {
+        if (message == null) return null;
+        return message.length() <= 500 ? message : message.substring(0, 500);
+    }
+
+    private static ThreadFactory named(String prefix) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Spaces Razorpay calls evenly across all lookup threads (requests-per-second, no bursts).
+     */
+    private static final class Pacer {
+        private final long intervalNanos;
+        private long next = System.nanoTime();
+
+        Pacer(double perSecond) {
+            this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / perSecond);
+        }
+
+        void acquire() throws InterruptedException {
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                if (next < now) next = now;
+                wait = next - now;
+                next += intervalNanos;
+            }
+            if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+        }
+
+        long millisFor(int calls) {
+            return TimeUnit.NANOSECONDS.toMillis(intervalNanos * (long) calls);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.java.sms.serviceImpl;
+
+
+import com.java.sms.exception.ApiException;
+import com.java.sms.model.PaymentDiscrepancy;
+import com.java.sms.model.PaymentReconciliationRun;
+import com.java.sms.model.enums.DiscrepancyType;
+import com.java.sms.repository.PaymentDiscrepancyRepository;
+import com.java.sms.repository.PaymentReconciliationRunRepository;
+import com.java.sms.response.KeysetPageResponse;
+import com.java.sms.response.PaymentDiscrepancyResponse;
+import com.java.sms.response.PaymentReconciliationRunResponse;
+import com.java.sms.service.PaymentReconciliationService;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trigger and report side of {@link PaymentReconciler}.
+ */
+@Service
+public class PaymentReconciliationServiceImpl implements PaymentReconciliationService {
+
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private final PaymentReconciler reconciler;
+    private final PaymentReconciliationRunRepository runRepo;
+    private final PaymentDiscrepancyRepository discrepancyRepo;
+
+    public PaymentReconciliationServiceImpl(PaymentReconciler reconciler, PaymentReconciliationRunRepository runRepo,
+                                            PaymentDiscrepancyRepository discrepancyRepo) {
+        this.reconciler = reconciler;
+        this.runRepo = runRepo;
+        this.discrepancyRepo = discrepancyRepo;
+    }
+
+    @Override
+    public boolean start() {
+        return reconciler.trigger();
+    }
+
+    @Override
+    public List<PaymentReconciliationRunResponse> recentRuns() {
+        return runRepo.findTop20ByOrderByIdDesc().stream().map(r -> toResponse(r, null)).toList();
+    }
+
+    @Override
+    public PaymentReconciliationRunResponse getRun(Long runId) {
+        PaymentReconciliationRun run = runRepo.findById(runId)
+                .orElseThrow(() -> new ApiException("Reconciliation run not found", HttpStatus.NOT_FOUND));
+
+        Map<String, Long> byType = new LinkedHashMap<>();
+        for (Object[] row : discrepancyRepo.countByType(runId)) {
+            byType.put(((DiscrepancyType) row[0]).name(), ((Number) row[1]).longValue());
+        }
+        return toResponse(run, byType);
+    }
+
+    @Override
+    public KeysetPageResponse<PaymentDiscrepancyResponse> getDiscrepancies(Long runId, String type, Long cursor, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ApiException("size must be between 1 and " + MAX_PAGE_SIZE, HttpStatus.BAD_REQUEST);
+        }
+        DiscrepancyType typeFilter = null;
+        if (type != null && !type.isBlank()) {
+            try {
+                typeFilter = DiscrepancyType.valueOf(type.trim().toUpperCase());
+            } catch (IllegalArgumentException ex) {
+                throw new ApiException("Invalid discrepancy type: " + type, HttpStatus.BAD_REQUEST);
+            }
+        }
+
+        // fetch one extra row to know if there is a next page
+        List<PaymentDiscrepancy> rows = discrepancyRepo.findPage(runId, cursor, typeFilter, PageRequest.of(0, size + 1));
+        boolean hasMore = rows.size() > size;
+        List<PaymentDiscrepancy> page = hasMore ? rows.subList(0, size) : rows;
+
+        return KeysetPageResponse.<PaymentDiscrepancyResponse>builder()
+                .items(page.stream().map(PaymentReconciliationServiceImpl::toResponse).toList())
+                .hasMore(hasMore)
+                .nextCursor(hasMore ? page.get(page.size() - 1).getId() : null)
+                .size(page.size())
+                .build();
+    }
+
+    private static PaymentReconciliationRunResponse toResponse(PaymentReconciliationRun r, Map<String, Long> byType) {
+        return PaymentReconciliationRunResponse.builder()
+                .id(r.getId())
+                .status(r.getStatus().name())
+                .windowFrom(r.getWindowFrom())
+                .checkpointPaymentId(r.getCheckpointPaymentId())
+                .upperPaymentId(r.getUpperPaymentId())
+                .scanned(r.getScanned())
+                .ordersChecked(r.getOrdersChecked())
+                .credited(r.getCredited())
+                .expired(r.getExpired())
+                .discrepancies(r.getDiscrepancies())
+                .discrepanciesByType(byType)
+                .startedAt(r.getStartedAt())
+                .heartbeatAt(r.getHeartbeatAt())
+                .finishedAt(r.getFinishedAt())
+                .lastError(r.getLastError())
+                .build();
+    }
+
+    private static PaymentDiscrepancyResponse toResponse(PaymentDiscrepancy d) {
+        return PaymentDiscrepancyResponse.builder()
+                .id(d.getId())
+                .feePaymentId(d.getFeePaymentId())
+                .type(d.getType().name())
+                .razorpayOrderId(d.getRazorpayOrderId())
+                .razorpayPaymentId(d.getRazorpayPaymentId())
+                .localStatus(d.getLocalStatus())
+                .remoteStatus(d.getRemoteStatus())
+                .localAmount(d.getLocalAmount())
+                .remoteAmountPaise(d.getRemoteAmountPaise())
+                .resolution(d.getResolution())
+                .detail(d.getDetail())
+                .createdAt(d.getCreatedAt())
+                .build();
+    }
+}
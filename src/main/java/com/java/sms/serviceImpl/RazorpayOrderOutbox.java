@@ -0,0 +1,372 @@
+package com.java.sms.serviceImpl;
+
+
+import com.java.sms.model.FeePayment;
+import com.java.sms.model.RazorpayOrderRequest;
+import com.java.sms.model.enums.OrderOutboxStatus;
+import com.java.sms.model.enums.PaymentStatus;
+import com.java.sms.repository.FeePaymentRepository;
+import com.java.sms.repository.RazorpayOrderRequestRepository;
+import com.java.sms.service.RazorpayService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transactional outbox for Razorpay order creation.
+ *
+ * <p>{@link #enqueue} only writes a {@code razorpay_order_request} row inside the caller's transaction, next to
+ * the fee rows. After commit the row is handed to a small worker pool, which:
+ * <ol>
+ *   <li>claims it with a conditional {@code UPDATE ... WHERE status = 'PENDING'} (autocommit, so two replicas
+ *       or the sweep can never run the same row twice);</li>
+ *   <li>calls Razorpay with no connection held, bounded by {@code razorpay.orders.call-timeout-ms};</li>
+ *   <li>stores the order id on the row and on its pending FeePayments in one short transaction.</li>
+ * </ol>
+ * A failed call goes back to PENDING with exponential backoff and ends as FAILED after
+ * {@code razorpay.orders.max-attempts}; the FeePayments still waiting on a FAILED row are expired in the same
+ * transaction, which takes back the amount online submit_fee added to their StudentFees. Because a timed out call may still have created the order, every retry
+ * first looks the order up by receipt. The {@link #sweep} picks up rows whose dispatch was lost (full queue,
+ * restart) and releases rows a crashed worker left in PROCESSING.
+ */
+@Component
+@Slf4j
+public class RazorpayOrderOutbox {
+
+    private static final String CLAIM =
+            "UPDATE razorpay_order_request SET status = 'PROCESSING', claimed_at = NOW() " +
+                    "WHERE id = ? AND status = 'PENDING'";
+
+    private static final String LOAD =
+            "SELECT receipt, amount_paise, currency, attempts FROM razorpay_order_request WHERE id = ?";
+
+    private static final String MARK_CREATED =
+            "UPDATE razorpay_order_request SET status = 'CREATED', razorpay_order_id = ?, claimed_at = NULL, " +
+                    "last_error = NULL, updated_at = NOW() WHERE id = ?";
+
+    private static final String LINK_PAYMENTS =
+            "UPDATE fee_payment SET razorpay_order_id = ? WHERE razorpay_order_request_id = ? AND razorpay_order_id IS NULL";
+
+    private static final String RETRY =
+            "UPDATE razorpay_order_request SET status = ?, attempts = attempts + 1, next_attempt_at = ?, " +
+                    "claimed_at = NULL, last_error = ?, updated_at = NOW() WHERE id = ?";
+
+    private static final String RELEASE_STALE =
+            "UPDATE razorpay_order_request SET status = 'PENDING', claimed_at = NULL " +
+                    "WHERE status = 'PROCESSING' AND claimed_at < ?";
+
+    private static final String DUE =
+            "SELECT id FROM razorpay_order_request WHERE status = 'PENDING' AND next_attempt_at <= NOW() " +
+                    "ORDER BY id LIMIT ?";
+
+    private static final long MAX_BACKOFF_SECONDS = 600;
+
+    private record Pending(String receipt, long amountPaise, String currency, int attempts) {
+    }
+
+    private final RazorpayOrderRequestRepository requestRepo;
+    private final RazorpayService razorpayService;
+    private final FeePaymentRepository feePaymentRepo;
+    private final OnlinePaymentCreditor creditor;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate tx;
+    private final ThreadPoolExecutor workers;
+    private final ThreadPoolExecutor calls;
+    private final long callTimeoutMillis;
+    private final int maxAttempts;
+    private final long staleSeconds;
+    private final int sweepBatch;
+
+    // rows queued or running on this node, so the sweep does not queue them twice
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    // receipt -> order id, completed by the worker; lets the request thread wait briefly for a fresh order.
+    // An entry lives until the worker completes it, the waiter gives up, or the dispatch is rejected
+    private final ConcurrentHashMap<String, CompletableFuture<String>> waiters = new ConcurrentHashMap<>();
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder recovered = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder paymentsExpired = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder queueFull = new LongAdder();
+    private final LongAdder swept = new LongAdder();
+
+    public RazorpayOrderOutbox(RazorpayOrderRequestRepository requestRepo, RazorpayService razorpayService,
+                               FeePaymentRepository feePaymentRepo, OnlinePaymentCreditor creditor,
+                               JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                               @Value("${razorpay.orders.threads:4}") int threads,
+                               @Value("${razorpay.orders.queue-capacity:1000}") int queueCapacity,
+                               @Value("${razorpay.orders.call-timeout-ms:10000}") long callTimeoutMillis,
+                               @Value("${razorpay.orders.max-attempts:8}") int maxAttempts,
+                               @Value("${razorpay.orders.stale-seconds:120}") long staleSeconds,
+                               @Value("${razorpay.orders.sweep-batch:100}") int sweepBatch) {
+        this.requestRepo = requestRepo;
+        this.razorpayService = razorpayService;
+        this.feePaymentRepo = feePaymentRepo;
+        this.creditor = creditor;
+        this.jdbcTemplate = jdbcTemplate;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.callTimeoutMillis = Math.max(1000L, callTimeoutMillis);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.staleSeconds = Math.max(this.callTimeoutMillis / 1000 * 2, staleSeconds);
+        this.sweepBatch = Math.max(1, sweepBatch);
+
+        int size = Math.max(1, threads);
+        this.workers = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), named("razorpay-order-"));
+        this.workers.allowCoreThreadTimeOut(true);
+        // separate pool for the HTTP call itself, so a hung call can be abandoned after the timeout. Same size as
+        // the workers plus a queue of the same size: calls stuck past their timeout keep their thread, so during
+        // a Razorpay slowdown new calls wait (and time out) in the queue instead of piling up more threads
+        this.calls = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(size), named("razorpay-call-"));
+        this.calls.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Record an order to create for {@code receipt}. Must run inside the transaction that writes the fee rows;
+     * the Razorpay call happens after that transaction commits.
+     */
+    public RazorpayOrderRequest enqueue(long amountPaise, String currency, String receipt, Long studentYearId) {
+        RazorpayOrderRequest request = requestRepo.save(RazorpayOrderRequest.builder()
+                .receipt(receipt)
+                .token(UUID.randomUUID().toString())
+                .studentYearId(studentYearId)
+                .amountPaise(amountPaise)
+                .currency(currency)
+                .status(OrderOutboxStatus.PENDING)
+                .attempts(0)
+                // a little later than "now" so the sweep on another node leaves it to the after-commit dispatch
+                .nextAttemptAt(LocalDateTime.now().plusSeconds(5))
+                .build());
+        enqueued.increment();
+
+        Long id = request.getId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            waiters.put(receipt, new CompletableFuture<>());
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) dispatch(id, receipt);
+                    else waiters.remove(receipt);
+                }
+            });
+        } else {
+            dispatch(id, null);
+        }
+        return request;
+    }
+
+    /**
+     * Order id for {@code receipt} if this node creates it within {@code waitMillis}, otherwise null
+     * (the caller falls back to reading the row).
+     */
+    public String await(String receipt, long waitMillis) {
+        CompletableFuture<String> waiter = waiters.get(receipt);
+        if (waiter == null) return null;
+        try {
+            return waiter.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            // only this waiter's entry: a later enqueue for the same receipt keeps its own
+            waiters.remove(receipt, waiter);
+        }
+    }
+
+    /**
+     * Re-dispatch due rows (lost after-commit dispatch, retries after backoff) and release rows stuck in
+     * PROCESSING on a node that died mid-call.
+     */
+    @Scheduled(fixedDelayString = "${razorpay.orders.sweep-ms:5000}",
+            initialDelayString = "${razorpay.orders.sweep-ms:5000}")
+    public void sweep() {
+        try {
+            jdbcTemplate.update(RELEASE_STALE, Timestamp.valueOf(LocalDateTime.now().minusSeconds(staleSeconds)));
+            List<Long> due = jdbcTemplate.queryForList(DUE, Long.class, sweepBatch);
+            for (Long id : due) {
+                if (!inFlight.contains(id)) {
+                    swept.increment();
+                    dispatch(id, null);
+                }
+            }
+        } catch (Exception ex) {
+            log.error("Razorpay order outbox sweep failed: {}", ex.getMessage(), ex);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("in_flight", inFlight.size());
+        out.put("queued", workers.getQueue().size());
+        out.put("waiters", waiters.size());
+        out.put("enqueued", enqueued.sum());
+        out.put("created", created.sum());
+        out.put("recovered_by_receipt", recovered.sum());
+        out.put("retried", retried.sum());
+        out.put("failed", failed.sum());
+        out.put("payments_expired", paymentsExpired.sum());
+        out.put("timeouts", timeouts.sum());
+        out.put("queue_full", queueFull.sum());
+        out.put("swept", swept.sum());
+        return out;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdown();
+        calls.shutdownNow();
+    }
+
+    // receipt: the waiter registered by enqueue, null for sweeps
+    private void dispatch(Long id, String receipt) {
+        if (!inFlight.add(id)) return;
+        try {
+            workers.execute(() -> {
+                try {
+                    process(id);
+                } finally {
+                    inFlight.remove(id);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            // the row stays PENDING; the sweep picks it up once the queue drains, too late for anyone waiting
+            inFlight.remove(id);
+            if (receipt != null) complete(receipt, null);
+            queueFull.increment();
+        }
+    }
+
+    private void process(Long id) {
+        if (jdbcTemplate.update(CLAIM, id) != 1) return; // done already, or another node has it
+
+        List<Pending> rows = jdbcTemplate.query(LOAD,
+                (rs, i) -> new Pending(rs.getString(1), rs.getLong(2), rs.getString(3), rs.getInt(4)), id);
+        if (rows.isEmpty()) return;
+        Pending row = rows.get(0);
+
+        try {
+            String orderId = createOrFind(row);
+            tx.executeWithoutResult(status -> {
+                jdbcTemplate.update(MARK_CREATED, orderId, id);
+                jdbcTemplate.update(LINK_PAYMENTS, orderId, id);
+            });
+            created.increment();
+            complete(row.receipt(), orderId);
+        } catch (Exception ex) {
+            retryLater(id, row, ex);
+        }
+    }
+
+    // a previous attempt may have created the order and timed out before we saw the answer
+    private String createOrFind(Pending row) throws Exception {
+        if (row.attempts() > 0) {
+            Map<String, Object> existing = call(() -> razorpayService.findOrderByReceipt(row.receipt()));
+            if (existing != null && existing.get("id") != null) {
+                recovered.increment();
+                return String.valueOf(existing.get("id"));
+            }
+        }
+        Map<String, Object> order = call(() -> razorpayService.createOrder(row.amountPaise(), row.currency(), row.receipt()));
+        Object orderId = order == null ? null : order.get("id");
+        if (orderId == null) throw new IllegalStateException("Razorpay returned no order id");
+        return String.valueOf(orderId);
+    }
+
+    private <T> T call(Callable<T> request) throws Exception {
+        Future<T> future = calls.submit(request);
+        try {
+            return future.get(callTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            future.cancel(true);
+            throw new TimeoutException("Razorpay call timed out after " + callTimeoutMillis + " ms");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    private void retryLater(Long id, Pending row, Exception ex) {
+        int attempts = row.attempts() + 1;
+        boolean giveUp = attempts >= maxAttempts;
+        long backoff = Math.min(MAX_BACKOFF_SECONDS, 1L << Math.min(attempts, 20));
+        String error = ex.getMessage() == null ? ex.getClass().getSimpleName() : ex.getMessage();
+        if (error.length() > 500) error = error.substring(0, 500);
+
+        String lastError = error;
+        try {
+            tx.executeWithoutResult(status -> {
+                jdbcTemplate.update(RETRY, giveUp ? OrderOutboxStatus.FAILED.name() : OrderOutboxStatus.PENDING.name(),
+                        Timestamp.valueOf(LocalDateTime.now().plusSeconds(backoff)), lastError, id);
+                if (giveUp) {
+                    // no order will ever exist for these, so nobody can pay them: undo the optimistic paid/due
+                    List<FeePayment> pending =
+                            feePaymentRepo.findByRazorpayOrderRequestIdAndStatusWithStudentFee(id, PaymentStatus.PENDING);
+                    creditor.expire(pending);
+                    paymentsExpired.add(pending.size());
+                }
+            });
+        } catch (Exception updateError) {
+            // the row stays PROCESSING and is released by the sweep after stale-seconds, then retried
+            log.error("Could not record Razorpay order failure for request {}: {}", id, updateError.getMessage());
+            return;
+        }
+
+        if (giveUp) {
+            failed.increment();
+            complete(row.receipt(), null);
+            log.error("Razorpay order for receipt {} failed after {} attempts: {}", row.receipt(), attempts, error);
+        } else {
+            retried.increment();
+            log.warn("Razorpay order for receipt {} failed (attempt {}), retrying in {}s: {}",
+                    row.receipt(), attempts, backoff, error);
+        }
+    }
+
+    private void complete(String receipt, String orderId) {
+        CompletableFuture<String> waiter = waiters.remove(receipt);
+        if (waiter != null) waiter.complete(orderId);
+    }
+
+    private static ThreadFactory named(String prefix) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,60 @@
+package com.java.sms.serviceImpl;
+
+
+import com.java.sms.exception.ApiException;
+import com.java.sms.model.RazorpayOrderRequest;
+import com.java.sms.model.enums.OrderOutboxStatus;
+import com.java.sms.repository.RazorpayOrderRequestRepository;
+import com.java.sms.response.PaymentOrderResponse;
+import com.java.sms.service.RazorpayOrderService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+/**
+ * Read side of {@link RazorpayOrderOutbox}. Not transactional on purpose: the wait for the worker must not
+ * hold a pooled connection.
+ */
+@Service
+public class RazorpayOrderServiceImpl implements RazorpayOrderService {
+
+    private final RazorpayOrderRequestRepository requestRepo;
+    private final RazorpayOrderOutbox orderOutbox;
+    private final long responseWaitMillis;
+
+    public RazorpayOrderServiceImpl(RazorpayOrderRequestRepository requestRepo, RazorpayOrderOutbox orderOutbox,
+                                    @Value("${razorpay.orders.response-wait-ms:3000}") long responseWaitMillis) {
+        this.requestRepo = requestRepo;
+        this.orderOutbox = orderOutbox;
+        this.responseWaitMillis = Math.max(0L, responseWaitMillis);
+    }
+
+    @Override
+    public PaymentOrderResponse getByToken(String token) {
+        RazorpayOrderRequest request = requestRepo.findByToken(token)
+                .orElseThrow(() -> new ApiException("No payment order for this token", HttpStatus.NOT_FOUND));
+
+        return PaymentOrderResponse.builder()
+                .receiptNumber(request.getReceipt())
+                .orderStatus(request.getStatus().name())
+                .razorpayOrderId(request.getRazorpayOrderId())
+                .amountPaise(request.getAmountPaise())
+                .currency(request.getCurrency())
+                .attempts(request.getAttempts())
+                .lastError(request.getLastError())
+                .build();
+    }
+
+    @Override
+    public String awaitOrderId(String receipt) {
+        // usually created by this node within a few hundred ms of the commit
+        String orderId = responseWaitMillis > 0 ? orderOutbox.await(receipt, responseWaitMillis) : null;
+        if (orderId != null) return orderId;
+
+        // created on another replica, or finished before we started waiting
+        return requestRepo.findByReceipt(receipt)
+                .filter(r -> r.getStatus() == OrderOutboxStatus.CREATED)
+                .map(RazorpayOrderRequest::getRazorpayOrderId)
+                .orElse(null);
+    }
+}
@@ -4,6 +4,7 @@ package com.java.sms.serviceImpl;
 
 import com.java.sms.exception.ApiException;
 import com.razorpay.Order;
+import com.razorpay.Payment;
 import com.razorpay.RazorpayClient;
 import com.razorpay.RazorpayException;
 import com.java.sms.service.RazorpayService;
@@ -13,10 +14,10 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import java.util.Base64;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -27,15 +28,16 @@ import java.util.Map;
 public class RazorpayServiceImpl implements RazorpayService {
 
     private final RazorpayClient client;
-    private final String keySecret;
-    private final String webhookSecret; // optional (if using webhook secret different from key secret)
+    private final HmacSha256Verifier paymentVerifier;
+    private final HmacSha256Verifier webhookVerifier; // webhook secret if configured, else the key secret
 
     public RazorpayServiceImpl(@Value("${razorpay.key-id}") String keyId,
                                @Value("${razorpay.key-secret}") String keySecret,
                                @Value("${razorpay.webhook-secret:}") String webhookSecret) throws RazorpayException {
         this.client = new RazorpayClient(keyId, keySecret);
-        this.keySecret = keySecret;
-        this.webhookSecret = webhookSecret;
+        this.paymentVerifier = new HmacSha256Verifier(keySecret);
+        this.webhookVerifier = new HmacSha256Verifier(
+                (webhookSecret != null && !webhookSecret.isBlank()) ? webhookSecret : keySecret);
     }
 
     @Override
@@ -48,26 +50,65 @@ public class RazorpayServiceImpl implements RazorpayService {
             orderRequest.put("payment_capture", 1);
 
             Order order = client.orders.create(orderRequest);
-
-            Map<String, Object> out = new HashMap<>();
-            out.put("id", order.get("id"));
-            out.put("amount", order.get("amount"));
-            out.put("currency", order.get("currency"));
-            out.put("receipt", order.get("receipt"));
-            out.put("status", order.get("status"));
-            return out;
+            return toMap(order);
         } catch (RazorpayException e) {
             log.error("Razorpay createOrder failed: msg={}",  e.getMessage(), e);
             throw new ApiException("Razorpay order creation failed: " + e.getMessage(), HttpStatus.BAD_REQUEST);
         }
     }
 
+    @Override
+    public Map<String, Object> findOrderByReceipt(String receipt) throws Exception {
+        try {
+            JSONObject query = new JSONObject();
+            query.put("receipt", receipt);
+            List<Order> orders = client.orders.fetchAll(query);
+            return orders == null || orders.isEmpty() ? null : toMap(orders.get(0));
+        } catch (RazorpayException e) {
+            log.error("Razorpay order lookup failed: receipt={}, msg={}", receipt, e.getMessage(), e);
+            throw new ApiException("Razorpay order lookup failed: " + e.getMessage(), HttpStatus.BAD_GATEWAY);
+        }
+    }
+
+    @Override
+    public List<Map<String, Object>> fetchOrderPayments(String orderId) throws Exception {
+        try {
+            List<Map<String, Object>> out = new ArrayList<>();
+            for (Payment payment : client.orders.fetchPayments(orderId)) {
+                // raw JSON: the SDK turns created_at into a Date in get()
+                JSONObject json = payment.toJson();
+                Map<String, Object> map = new HashMap<>();
+                map.put("id", json.optString("id", null));
+                map.put("status", json.optString("status", null));
+                map.put("amount", json.has("amount") ? json.getLong("amount") : null);
+                map.put("order_id", json.optString("order_id", null));
+                map.put("created_at", json.has("created_at") ? json.getLong("created_at") : null);
+                out.add(map);
+            }
+            return out;
+        } catch (RazorpayException e) {
+            String msg = e.getMessage() == null ? "" : e.getMessage();
+            if (msg.contains("does not exist")) {
+                throw new ApiException("Razorpay order " + orderId + " not found", HttpStatus.NOT_FOUND);
+            }
+            throw new ApiException("Razorpay payment lookup failed: " + msg, HttpStatus.BAD_GATEWAY);
+        }
+    }
+
+    private static Map<String, Object> toMap(Order order) {
+        Map<String, Object> out = new HashMap<>();
+        out.put("id", order.get("id"));
+        out.put("amount", order.get("amount"));
+        out.put("currency", order.get("currency"));
+        out.put("receipt", order.get("receipt"));
+        out.put("status", order.get("status"));
+        return out;
+    }
+
     @Override
     public boolean verifyPaymentSignature(String orderId, String paymentId, String signature) {
         try {
-            String payload = orderId + "|" + paymentId;
-            String computed = hmacSha256Hex(payload, keySecret);
-            return computed.equals(signature);
+            return paymentVerifier.verify(orderId, '|', paymentId, signature);
         } catch (Exception e) {
             log.error("Error verifying payment signature: {}", e.getMessage(), e);
             return false;
@@ -76,22 +117,16 @@ public class RazorpayServiceImpl implements RazorpayService {
 
     @Override
     public boolean verifyWebhookSignature(String payload, String headerSignature) {
+        return payload != null && verifyWebhookSignature(payload.getBytes(StandardCharsets.UTF_8), headerSignature);
+    }
+
+    @Override
+    public boolean verifyWebhookSignature(byte[] payload, String headerSignature) {
         try {
-            String secret = (webhookSecret != null && !webhookSecret.isBlank()) ? webhookSecret : keySecret;
-            String computed = hmacSha256Hex(payload, secret);
-            return computed.equals(headerSignature);
+            return webhookVerifier.verify(payload, headerSignature);
         } catch (Exception e) {
             log.error("Error verifying webhook signature: {}", e.getMessage(), e);
             return false;
         }
     }
-
-    private static String hmacSha256Hex(String data, String key) throws Exception {
-        Mac mac = Mac.getInstance("HmacSHA256");
-        mac.init(new SecretKeySpec(key.getBytes(), "HmacSHA256"));
-        byte[] raw = mac.doFinal(data.getBytes());
-        StringBuilder sb = new StringBuilder(2 * raw.length);
-        for (byte b : raw) sb.append(String.format("%02x", b & 0xff));
-        return sb.toString();
-    }
 }
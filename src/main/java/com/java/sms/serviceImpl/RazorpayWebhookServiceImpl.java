@@ -0,0 +1,69 @@
+package com.java.sms.serviceImpl;
+
+
+import com.java.sms.exception.ApiException;
+import com.java.sms.service.RazorpayService;
+import com.java.sms.service.RazorpayWebhookService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Web side of the webhook pipeline: signature check plus one INSERT IGNORE into the inbox, nothing else,
+ * so a burst of payment events costs the web tier a single short statement each.
+ * The events are applied later by {@link WebhookInboxProcessor}.
+ */
+@Service
+@Slf4j
+public class RazorpayWebhookServiceImpl implements RazorpayWebhookService {
+
+    private static final String APPEND =
+            "INSERT IGNORE INTO razorpay_webhook_event (event_id, payload, status, attempts, next_attempt_at, received_at) " +
+                    "VALUES (?, ?, 'PENDING', 0, NOW(), NOW())";
+
+    private final RazorpayService razorpayService;
+    private final JdbcTemplate jdbcTemplate;
+    private final WebhookInboxProcessor inboxProcessor;
+
+    public RazorpayWebhookServiceImpl(RazorpayService razorpayService, JdbcTemplate jdbcTemplate,
+                                      WebhookInboxProcessor inboxProcessor) {
+        this.razorpayService = razorpayService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.inboxProcessor = inboxProcessor;
+    }
+
+    @Override
+    public boolean receive(byte[] body, String signature, String eventId) {
+        if (body == null || body.length == 0) {
+            throw new ApiException("Empty webhook body", HttpStatus.BAD_REQUEST);
+        }
+        if (signature == null || !razorpayService.verifyWebhookSignature(body, signature)) {
+            inboxProcessor.recordRejected();
+            throw new ApiException("Invalid webhook signature", HttpStatus.BAD_REQUEST);
+        }
+        String payload = new String(body, StandardCharsets.UTF_8);
+
+        String key = eventId != null && !eventId.isBlank() ? eventId.trim() : sha256Hex(body);
+        // autocommit insert, no surrounding transaction: the row is durable once we answer 200
+        boolean appended = jdbcTemplate.update(APPEND, key, payload) == 1;
+        inboxProcessor.recordReceived(appended);
+        if (!appended) {
+            log.debug("Duplicate Razorpay webhook {} ignored", key);
+        }
+        return appended;
+    }
+
+    private static String sha256Hex(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
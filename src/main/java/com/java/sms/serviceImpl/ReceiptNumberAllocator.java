@@ -0,0 +1,203 @@
+package com.java.sms.serviceImpl;
+
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out receipt numbers {@code REC-yyyyMMdd-NNNNN} from memory, with one query per block of numbers.
+ *
+ * <p>Numbers come from a per-day counter row in {@code receipt_sequence}. A node reserves a block of
+ * {@code receipts.block-size} numbers by moving the counter forward in a short transaction of its own, then
+ * hands them out with a CAS on an in-memory range, so almost every receipt costs no query and no lock. The
+ * reservation runs on a dedicated one-connection pool, never on the caller's connection: it commits at once
+ * (the day's counter row is locked only for the UPDATE, not for the whole fee submit) and it cannot wait on
+ * the main Hikari pool while holding a connection from it. Only one thread per node refills at a time.
+ *
+ * <p>Numbers are unique across nodes and restarts, but not gap-free: a payment that rolls back, the unused
+ * rest of a block at shutdown, and a block left over at midnight are simply skipped.
+ *
+ * <p>The first reservation of a day seeds the counter from the highest receipt already stored for that day,
+ * so numbers written by the old scan-and-parse scheme are never reused.
+ */
+@Component
+@Slf4j
+public class ReceiptNumberAllocator {
+
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private static final String ADVANCE =
+            "UPDATE receipt_sequence SET next_value = next_value + ? WHERE seq_day = ?";
+
+    private static final String READ =
+            "SELECT next_value FROM receipt_sequence WHERE seq_day = ?";
+
+    private static final String SEED =
+            "INSERT IGNORE INTO receipt_sequence (seq_day, next_value) VALUES (?, ?)";
+
+    // highest NNNNN already used that day, compared as a number (a string sort puts 100000 before 99999);
+    // old receipts carried an extra -XXXX suffix, e.g. REC-20251201-00012-ABCD
+    private static final String HIGHEST_STORED = """
+            SELECT COALESCE(MAX(CAST(SUBSTRING_INDEX(SUBSTRING(receipt_number, LENGTH(?) + 1), '-', 1) AS UNSIGNED)), 0)
+            FROM student_fee
+            WHERE receipt_number LIKE CONCAT(?, '%')
+            """;
+
+    // numbers [next, end) of one day, handed out by CAS on next
+    private record Block(String day, AtomicLong next, long end) {
+    }
+
+    private final DataSource sequenceDataSource;
+    private final JdbcTemplate sequenceJdbc;
+    private final TransactionTemplate sequenceTx;
+    private final int blockSize;
+
+    private final ReentrantLock refillLock = new ReentrantLock();
+    private volatile Block block;
+
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder reservations = new LongAdder();
+    private final LongAdder seeds = new LongAdder();
+
+    @Autowired
+    public ReceiptNumberAllocator(DataSourceProperties dataSourceProperties,
+                                  @Value("${receipts.block-size:50}") int blockSize) {
+        this(sequencePool(dataSourceProperties), blockSize);
+    }
+
+    // the allocator owns this data source and closes it on shutdown
+    ReceiptNumberAllocator(DataSource sequenceDataSource, int blockSize) {
+        this.sequenceDataSource = sequenceDataSource;
+        this.sequenceJdbc = new JdbcTemplate(sequenceDataSource);
+        this.sequenceTx = new TransactionTemplate(new DataSourceTransactionManager(sequenceDataSource));
+        this.blockSize = Math.max(1, blockSize);
+    }
+
+    public String next() {
+        return next(1).get(0);
+    }
+
+    /**
+     * {@code count} unique receipt numbers for today, in increasing order.
+     */
+    public List<String> next(int count) {
+        if (count < 1) return List.of();
+        String today = LocalDate.now().format(DAY);
+
+        long first = take(today, count);
+
+        List<String> out = new ArrayList<>(count);
+        for (long n = first; n < first + count; n++) {
+            out.add(format(today, n));
+        }
+        issued.add(count);
+        return out;
+    }
+
+    public Map<String, Object> stats() {
+        Block current = block;
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("issued", issued.sum());
+        out.put("reservations", reservations.sum());
+        out.put("day_seeds", seeds.sum());
+        out.put("block_size", blockSize);
+        out.put("left_in_block", current == null ? 0 : Math.max(0, current.end() - current.next().get()));
+        return out;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (sequenceDataSource instanceof HikariDataSource pool) pool.close();
+    }
+
+    // first of count consecutive numbers of the given day
+    private long take(String day, int count) {
+        while (true) {
+            Block current = block;
+            if (current != null && current.day().equals(day)) {
+                long first = current.next().get();
+                if (first + count <= current.end()) {
+                    if (current.next().compareAndSet(first, first + count)) return first;
+                    continue; // another thread took numbers meanwhile, try the same block again
+                }
+            }
+            refill(day, current, count);
+        }
+    }
+
+    // replaces the exhausted (or yesterday's) block; threads that queued behind the refill just retry
+    private void refill(String day, Block exhausted, int count) {
+        refillLock.lock();
+        try {
+            if (block != exhausted) return;
+            long size = Math.max(blockSize, count);
+            long end = reserve(day, size);
+            block = new Block(day, new AtomicLong(end - size), end);
+            reservations.increment();
+        } finally {
+            refillLock.unlock();
+        }
+    }
+
+    /**
+     * Moves the day's counter forward by {@code size} in its own committed transaction and returns the new
+     * {@code next_value} (exclusive end of the reserved numbers).
+     */
+    long reserve(String day, long size) {
+        Long end = sequenceTx.execute(status -> {
+            if (sequenceJdbc.update(ADVANCE, size, day) == 0) {
+                // first block of the day: create the counter row above anything already stored;
+                // IGNORE because another node may have created it meanwhile
+                String prefix = "REC-" + day + "-";
+                Long highest = sequenceJdbc.queryForObject(HIGHEST_STORED, Long.class, prefix, prefix);
+                sequenceJdbc.update(SEED, day, (highest == null ? 0L : highest) + 1);
+                seeds.increment();
+                if (sequenceJdbc.update(ADVANCE, size, day) == 0) {
+                    throw new IllegalStateException("Could not reserve receipt numbers for " + day);
+                }
+            }
+            return sequenceJdbc.queryForObject(READ, Long.class, day);
+        });
+        if (end == null) {
+            throw new IllegalStateException("Could not reserve receipt numbers for " + day);
+        }
+        return end;
+    }
+
+    // same database as the application, but its own single connection: a refill never competes with
+    // (or waits on) the request threads' pool
+    private static HikariDataSource sequencePool(DataSourceProperties properties) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        pool.setPoolName("receipt-sequence");
+        pool.setMaximumPoolSize(1);
+        pool.setMinimumIdle(0);
+        return pool;
+    }
+
+    static String format(String day, long number) {
+        String digits = Long.toString(number);
+        StringBuilder sb = new StringBuilder(18 + Math.max(0, digits.length() - 5));
+        sb.append("REC-").append(day).append('-');
+        for (int i = digits.length(); i < 5; i++) sb.append('0');
+        return sb.append(digits).toString();
+    }
+}
@@ -6,6 +6,7 @@ import com.java.sms.exception.ApiException;
 import com.java.sms.model.Role;
 import com.java.sms.repository.RoleRepository;
 import com.java.sms.response.RoleResponse;
+import com.java.sms.security.PrincipalCache;
 import com.java.sms.service.RoleService;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
@@ -33,9 +34,11 @@ import java.util.List;
 public class RoleServiceImpl implements RoleService {
 
     private final RoleRepository roleRepository;
+    private final PrincipalCache principalCache;
 
-    public RoleServiceImpl(RoleRepository roleRepository) {
+    public RoleServiceImpl(RoleRepository roleRepository, PrincipalCache principalCache) {
         this.roleRepository = roleRepository;
+        this.principalCache = principalCache;
     }
 
 
@@ -117,6 +120,8 @@ public class RoleServiceImpl implements RoleService {
 
         role.setName(updatedRole.getName().toLowerCase());
         Role save = roleRepository.save(role);
+        // cached principals carry role names; a rename affects every holder of the role
+        principalCache.clear();
         return new RoleResponse(save);
 
     }
@@ -135,6 +140,7 @@ public class RoleServiceImpl implements RoleService {
         Role role = roleRepository.findById(id).orElseThrow(
                 () -> new ApiException("Role id : " + id  + " not found", HttpStatus.NOT_FOUND));
         roleRepository.delete(role);
+        principalCache.clear();
     }
 
 }
@@ -0,0 +1,55 @@
+package com.java.sms.serviceImpl;
+
+
+import com.java.sms.model.StudentFee;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Feeds every JPA write of a StudentFee into fee_billing_rollup (via {@link FeeCollectionRollupWriter}).
+ * Rows inserted with plain JDBC ({@link FeeBatchWriter}) are reported by that writer itself.
+ *
+ * <p>A loaded fee remembers its amounts; on update only the difference is recorded. Loading a fee inside a
+ * transaction also enlists the rollup writer, because the update itself may only be flushed at commit.
+ */
+@Component
+public class StudentFeeBillingListener {
+
+    // looked up lazily: Hibernate creates its listeners while the EntityManagerFactory is still being built
+    private final ObjectProvider<FeeCollectionRollupWriter> rollupWriter;
+
+    public StudentFeeBillingListener(ObjectProvider<FeeCollectionRollupWriter> rollupWriter) {
+        this.rollupWriter = rollupWriter;
+    }
+
+    @PostLoad
+    void loaded(StudentFee fee) {
+        fee.setBilled(StudentFee.Billed.of(fee));
+        rollupWriter.getObject().enlist();
+    }
+
+    @PostPersist
+    void persisted(StudentFee fee) {
+        StudentFee.Billed now = StudentFee.Billed.of(fee);
+        rollupWriter.getObject().feeBilled(null, now);
+        fee.setBilled(now);
+    }
+
+    @PostUpdate
+    void updated(StudentFee fee) {
+        StudentFee.Billed now = StudentFee.Billed.of(fee);
+        // every managed fee was loaded or persisted first; without a snapshot there is no difference to record
+        if (fee.getBilled() != null) rollupWriter.getObject().feeBilled(fee.getBilled(), now);
+        fee.setBilled(now);
+    }
+
+    @PostRemove
+    void removed(StudentFee fee) {
+        rollupWriter.getObject().feeBilled(fee.getBilled() != null ? fee.getBilled() : StudentFee.Billed.of(fee), null);
+        fee.setBilled(null);
+    }
+}
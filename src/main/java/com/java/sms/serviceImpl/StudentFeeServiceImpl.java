@@ -6,23 +6,35 @@ import com.java.sms.exception.ApiException;
 import com.java.sms.model.AppliedFeeDiscount;
 import com.java.sms.model.FeePayment;
 import com.java.sms.model.FeeStructure;
+import com.java.sms.model.RazorpayOrderRequest;
+import com.java.sms.model.StudentFeeLedger;
+import com.java.sms.mapper.StudentFeeLedgerMapper;
 import com.java.sms.model.enums.FeeStatus;
+import com.java.sms.model.enums.OrderOutboxStatus;
 import com.java.sms.model.enums.PaymentMethod;
 import com.java.sms.model.enums.PaymentStatus;
 import com.java.sms.openFeignClient.SchoolYearClient;
-import com.java.sms.openFeignClient.StudentYearClient;
-import com.java.sms.openFeignClient.YearLevelClient;
+import com.java.sms.openFeignClient.StudentYearLevelCache;
+import com.java.sms.openFeignClient.YearLevelDirectory;
 import com.java.sms.repository.*;
 import com.java.sms.response.ConfirmPaymentResponse;
+import com.java.sms.response.KeysetPageResponse;
+import com.java.sms.response.StudentUnpaidFeesPageResponse;
+import com.java.sms.response.StudentUnpaidFeesResponse;
 import com.java.sms.response.StudentYearLevelResponse;
-import com.java.sms.response.YearLevelResponse;
 import com.java.sms.service.RazorpayService;
 import com.java.sms.service.StudentFeeService;
 import jakarta.transaction.Transactional;
 import com.java.sms.model.StudentFee;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import com.java.sms.response.FeeHistoryResponse;
 import com.java.sms.response.InitiatePaymentResponse;
+import com.java.sms.response.StudentFeeLedgerResponse;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -30,6 +42,7 @@ import java.time.Month;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Service implementation that mirrors your Django logic.
@@ -37,7 +50,7 @@ import java.util.stream.Collectors;
  * - Ensures FeeStructure belongs to student's level
  * - Applies discounts (AppliedFeeDiscount repository)
  * - Creates/updates StudentFee records
- * - Initiates Razorpay orders (createOrder)
+ * - Queues Razorpay orders (RazorpayOrderOutbox creates them after commit)
  * - Confirms payments (verify signature + create FeePayment entries)
  *
  * Marked @Transactional to ensure atomic updates for payment confirm flow.
@@ -46,32 +59,58 @@ import java.util.stream.Collectors;
 @Transactional
 public class StudentFeeServiceImpl implements StudentFeeService {
 
-
+    private static final int MAX_UNPAID_PAGE_SIZE = 200;
+    private static final int MAX_OVERDUE_PAGE_SIZE = 500;
 
     private final StudentFeeRepository studentFeeRepo;
     private final FeeStructureRepository feeStructureRepo;
     private final AppliedFeeDiscountRepository discountRepo;
     private final FeePaymentRepository feePaymentRepo;
-    private final StudentYearClient studentYearClient;
+    private final StudentYearLevelCache studentYearLevelCache;
     private final SchoolYearClient schoolYearClient;
     private final RazorpayService razorpayService;
-    private final YearLevelClient yearLevelClient;
+    private final YearLevelDirectory yearLevelDirectory;
+    private final FeeBatchWriter feeBatchWriter;
+    private final ReceiptNumberAllocator receiptNumberAllocator;
+    private final FeeDiscountResolver feeDiscountResolver;
+    private final FeeLedgerUpdater feeLedgerUpdater;
+    private final StudentFeeLedgerRepository ledgerRepo;
+    private final FeeCollectionRollupWriter rollupWriter;
+    private final FeeLedgerExporter feeLedgerExporter;
+    private final PaymentIdempotencyGuard paymentIdempotencyGuard;
+    private final RazorpayOrderOutbox orderOutbox;
+    private final OnlinePaymentCreditor onlinePaymentCreditor;
 
     public StudentFeeServiceImpl(StudentFeeRepository studentFeeRepo,
                                  FeeStructureRepository feeStructureRepo,
                                  AppliedFeeDiscountRepository discountRepo,
                                  FeePaymentRepository feePaymentRepo,
-                                 StudentYearClient studentYearClient,
+                                 StudentYearLevelCache studentYearLevelCache,
                                  SchoolYearClient schoolYearClient,
-                                 RazorpayService razorpayService, YearLevelClient yearLevelClient) {
+                                 RazorpayService razorpayService, YearLevelDirectory yearLevelDirectory,
+                                 FeeBatchWriter feeBatchWriter, ReceiptNumberAllocator receiptNumberAllocator,
+                                 FeeDiscountResolver feeDiscountResolver, FeeLedgerUpdater feeLedgerUpdater,
+                                 StudentFeeLedgerRepository ledgerRepo, FeeCollectionRollupWriter rollupWriter,
+                                 FeeLedgerExporter feeLedgerExporter, PaymentIdempotencyGuard paymentIdempotencyGuard,
+                                 RazorpayOrderOutbox orderOutbox, OnlinePaymentCreditor onlinePaymentCreditor) {
         this.studentFeeRepo = studentFeeRepo;
         this.feeStructureRepo = feeStructureRepo;
         this.discountRepo = discountRepo;
         this.feePaymentRepo = feePaymentRepo;
-        this.studentYearClient = studentYearClient;
+        this.studentYearLevelCache = studentYearLevelCache;
         this.schoolYearClient = schoolYearClient;
         this.razorpayService = razorpayService;
-        this.yearLevelClient = yearLevelClient;
+        this.yearLevelDirectory = yearLevelDirectory;
+        this.feeBatchWriter = feeBatchWriter;
+        this.receiptNumberAllocator = receiptNumberAllocator;
+        this.feeDiscountResolver = feeDiscountResolver;
+        this.feeLedgerUpdater = feeLedgerUpdater;
+        this.ledgerRepo = ledgerRepo;
+        this.rollupWriter = rollupWriter;
+        this.feeLedgerExporter = feeLedgerExporter;
+        this.paymentIdempotencyGuard = paymentIdempotencyGuard;
+        this.orderOutbox = orderOutbox;
+        this.onlinePaymentCreditor = onlinePaymentCreditor;
     }
 
 
@@ -86,7 +125,7 @@ public class StudentFeeServiceImpl implements StudentFeeService {
     public Object createOrUpdateStudentFee(StudentFeeRequest req) {
 
         // 1) Fetch StudentYearLevel from Django
-        var studentYear = studentYearClient.getStudentYearLevel(req.getStudentYearId());
+        var studentYear = studentYearLevelCache.get(req.getStudentYearId());
 
         if (studentYear == null) {
             throw new ApiException("StudentYearLevel not found: " + req.getStudentYearId(),
@@ -114,12 +153,11 @@ public class StudentFeeServiceImpl implements StudentFeeService {
         }
 
         // 6) Check for discount (optional)
-        Optional<AppliedFeeDiscount> appliedDiscountOpt =
-                discountRepo.findFirstByStudentYearIdAndFeeStructure(req.getStudentYearId(), feeStructure);
+        // (first discount, same as Django .first(); served from the discount resolver cache)
+        FeeDiscountResolver.FeeDiscount appliedDiscount = feeDiscountResolver.forStudentYear(req.getStudentYearId())
+                .get(req.getStudentYearId(), feeStructure.getId());
 
-        BigDecimal discountAmount = appliedDiscountOpt
-                .map(AppliedFeeDiscount::getDiscountAmount)
-                .orElse(BigDecimal.ZERO);
+        BigDecimal discountAmount = appliedDiscount != null ? appliedDiscount.first() : BigDecimal.ZERO;
 
         BigDecimal discountedAmount = feeStructure.getFeeAmount()
                 .subtract(discountAmount)
@@ -138,7 +176,7 @@ public class StudentFeeServiceImpl implements StudentFeeService {
             studentFee = existingOpt.get();
 
             // apply discount if not applied earlier
-            if (appliedDiscountOpt.isPresent() && !studentFee.getAppliedDiscount()) {
+            if (appliedDiscount != null && !studentFee.getAppliedDiscount()) {
 
                 studentFee.setOriginalAmount(discountedAmount);
 
@@ -162,7 +200,7 @@ public class StudentFeeServiceImpl implements StudentFeeService {
                     .paidAmount(BigDecimal.ZERO)
                     .dueAmount(discountedAmount)
                     .penaltyAmount(BigDecimal.ZERO)
-                    .appliedDiscount(appliedDiscountOpt.isPresent())
+                    .appliedDiscount(appliedDiscount != null)
                     .status(FeeStatus.PENDING)
                     .receiptNumber(generateReceipt())
                     .dueDate(req.getDueDate())
@@ -218,7 +256,9 @@ public class StudentFeeServiceImpl implements StudentFeeService {
             }
         }
 
-        return studentFeeRepo.save(studentFee);
+        StudentFee saved = studentFeeRepo.save(studentFee);
+        feeLedgerUpdater.touch(saved.getStudentYearId());
+        return saved;
     }
 
 
@@ -234,7 +274,7 @@ public class StudentFeeServiceImpl implements StudentFeeService {
         }
 
         // verify student-year exists (Feign) — equivalent to StudentYearLevel.objects.get(...) in Django
-        var studentYear = studentYearClient.getStudentYearLevel(req.getStudentYearId());
+        var studentYear = studentYearLevelCache.get(req.getStudentYearId());
         if (studentYear == null)
             throw new ApiException("StudentYearLevel not found", HttpStatus.BAD_REQUEST);
 
@@ -252,7 +292,8 @@ public class StudentFeeServiceImpl implements StudentFeeService {
         BigDecimal totalAmount = BigDecimal.ZERO;
         List<StudentFee> created = new ArrayList<>();
 
-        // iterate over each fee item from request (maps to `for fee_data in fees_data:`)
+        // ---- 1. parse every fee line first (maps to `for fee_data in fees_data:`) ----
+        List<SubmitLine> lines = new ArrayList<>();
         for (Map<String,Object> feeData : req.getFees()) {
 
             // normalize/accept both "fee_id" and "fee_type_id" keys (Django used fee_type_id but frontends vary)
@@ -276,31 +317,67 @@ public class StudentFeeServiceImpl implements StudentFeeService {
                     ? new BigDecimal(String.valueOf(feeData.get("amount"))).setScale(2, BigDecimal.ROUND_HALF_UP)
                     : BigDecimal.ZERO;
 
-            // load FeeStructure (equivalent to Django fee_structure lookup/serializer relationship)
-            FeeStructure feeStruct = feeStructureRepo.findById(feeTypeId).orElse(null);
-            if (feeStruct == null)
-                continue; // skip if structure not found (Django's serializer would validate)
+            lines.add(new SubmitLine(feeTypeId, month, dueDateStr, amountPaid));
+        }
 
-            // choose school year id to use for StudentFee; could be null — same concept as Django using school_year_id
-            Long schoolYearToUse = schoolYearIdFromReq;
+        Set<Long> feeIds = lines.stream().map(SubmitLine::feeId).collect(Collectors.toSet());
+        Long studentYearId = req.getStudentYearId();
 
-            // Try find an existing StudentFee by studentYear, feeStructure, month, schoolYear.
-            // This is a difference vs Django if its serializer always creates new.
-            Optional<StudentFee> sfOpt = studentFeeRepo
-                    .findByStudentYearIdAndFeeStructureIdAndMonthAndSchoolYearId(
-                            req.getStudentYearId(), feeTypeId, month, schoolYearToUse
-                    );
+        // choose school year id to use for StudentFee; could be null — same concept as Django using school_year_id
+        Long schoolYearToUse = schoolYearIdFromReq;
 
-            StudentFee studentFee;
+        // ---- 2. prefetch everything the lines need with IN-queries (fixed number of queries) ----
 
-            if (sfOpt.isPresent()) {
-                // reuse existing studentFee — update its fields later (avoids duplicates).
-                studentFee = sfOpt.get();
+        // FeeStructures (equivalent to Django fee_structure lookup/serializer relationship)
+        Map<Long, FeeStructure> structures = new HashMap<>();
+        if (!feeIds.isEmpty()) {
+            feeStructureRepo.findAllByIdInWithYearLevels(feeIds).forEach(f -> structures.put(f.getId(), f));
+        }
+
+        // existing StudentFees by (feeStructure, month, schoolYear) for this student-year
+        Map<String, StudentFee> feeByKey = new HashMap<>();
+        if (!structures.isEmpty()) {
+            for (StudentFee sf : studentFeeRepo.findByStudentYearIdAndFeeStructureIdIn(studentYearId, structures.keySet())) {
+                if (Objects.equals(sf.getSchoolYearId(), schoolYearToUse)) {
+                    feeByKey.put(studentFeeKey(sf.getFeeStructure().getId(), sf.getMonth()), sf);
+                }
             }
-            else {
-                // create a new StudentFee record (fill initial amounts and defaults)
+        }
+
+        // applied discounts of this student-year (first one per fee = Django AppliedFeeDiscount.objects.filter(...).first())
+        FeeDiscountResolver.Lookup discounts = feeDiscountResolver.forStudentYear(studentYearId);
+
+        // sum of already recorded FeePayments per existing StudentFee
+        Map<StudentFee, BigDecimal> paidSoFar = new IdentityHashMap<>();
+        if (!feeByKey.isEmpty()) {
+            Map<Long, StudentFee> byId = new HashMap<>();
+            feeByKey.values().forEach(sf -> byId.put(sf.getId(), sf));
+            for (var row : feePaymentRepo.sumAmountByStudentFeeIdIn(byId.keySet())) {
+                paidSoFar.put(byId.get(row.getStudentFeeId()), row.getAmount());
+            }
+        }
+
+        // ---- 3. compute everything in memory ----
+        List<StudentFee> newFees = new ArrayList<>();
+        List<FeePayment> payments = new ArrayList<>();
+
+        for (SubmitLine line : lines) {
+
+            FeeStructure feeStruct = structures.get(line.feeId());
+            if (feeStruct == null)
+                continue; // skip if structure not found (Django's serializer would validate)
+
+            Integer month = line.month();
+
+            // Try find an existing StudentFee by studentYear, feeStructure, month, schoolYear
+            // (also one created earlier in this same request). This is a difference vs Django if its serializer always creates new.
+            String key = studentFeeKey(feeStruct.getId(), month);
+            StudentFee studentFee = feeByKey.get(key);
+
+            if (studentFee == null) {
+                // create a new StudentFee record (fill initial amounts and defaults); inserted in one batch below
                 studentFee = StudentFee.builder()
-                        .studentYearId(req.getStudentYearId())
+                        .studentYearId(studentYearId)
                         .feeStructure(feeStruct)
                         .schoolYearId(schoolYearToUse)
                         .month(month)
@@ -310,30 +387,26 @@ public class StudentFeeServiceImpl implements StudentFeeService {
                         .penaltyAmount(BigDecimal.ZERO)
                         .appliedDiscount(false)
                         .status(FeeStatus.PENDING) // initial status pending
-                        .receiptNumber(generateReceipt()) // generate a receipt (Django had serializer or later)
                         .build();
-
-                // persist newly created StudentFee
-                studentFee = studentFeeRepo.save(studentFee);
+                feeByKey.put(key, studentFee);
+                newFees.add(studentFee);
             }
 
             // set due date from request string if provided, else set default (15th of month current year)
-            if (dueDateStr != null && !dueDateStr.isBlank()) {
-                studentFee.setDueDate(LocalDate.parse(dueDateStr));
+            if (line.dueDateStr() != null && !line.dueDateStr().isBlank()) {
+                studentFee.setDueDate(LocalDate.parse(line.dueDateStr()));
             }
             else if (month != null) {
                 int year = LocalDate.now().getYear();
                 studentFee.setDueDate(LocalDate.of(year, month, 15));
             }
 
-            // applied discount lookup (equivalent to Django AppliedFeeDiscount.objects.filter(...).first())
-            AppliedFeeDiscount discountObj = discountRepo
-                    .findFirstByStudentYearIdAndFeeStructure(req.getStudentYearId(), feeStruct)
-                    .orElse(null);
+            // applied discount (prefetched above)
+            FeeDiscountResolver.FeeDiscount discountObj = discounts.get(studentYearId, feeStruct.getId());
 
             // discount amount numeric (0 if none) and mark appliedDiscount boolean
             BigDecimal discountAmount = discountObj != null
-                    ? discountObj.getDiscountAmount() : BigDecimal.ZERO;
+                    ? discountObj.first() : BigDecimal.ZERO;
             studentFee.setAppliedDiscount(discountObj != null);
 
             // compute maximum payable after discount minus already paid amount
@@ -343,7 +416,9 @@ public class StudentFeeServiceImpl implements StudentFeeService {
                             ? studentFee.getPaidAmount() : BigDecimal.ZERO)
                     .max(BigDecimal.ZERO);
 
-            // validate amountPaid does not exceed max payable (mirrors Django check)
+            BigDecimal amountPaid = line.amountPaid();
+
+            // validate amountPaid does not exceed max payable (mirrors Django check); nothing is written yet
             if (amountPaid.compareTo(maxPayable) > 0) {
                 throw new ApiException("Amount cannot exceed due amount after discount: " + maxPayable,
                         HttpStatus.BAD_REQUEST);
@@ -361,13 +436,11 @@ public class StudentFeeServiceImpl implements StudentFeeService {
             // set payment date only for non-online payments (Django uses timezone.now() if not online)
             payment.setPaymentDate(paymentMode == PaymentMethod.ONLINE
                     ? null : LocalDateTime.now());
-            feePaymentRepo.save(payment);
+            payments.add(payment);
 
-            // recompute aggregated paid amount by summing FeePayment.amount for this studentFee
-            BigDecimal aggregatedPaid = feePaymentRepo
-                    .findByStudentFee(studentFee.getId()).stream()
-                    .map(FeePayment::getAmount)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            // aggregated paid amount = sum of FeePayment.amount for this studentFee (existing sum + this request)
+            BigDecimal aggregatedPaid = paidSoFar.getOrDefault(studentFee, BigDecimal.ZERO).add(amountPaid);
+            paidSoFar.put(studentFee, aggregatedPaid);
             studentFee.setPaidAmount(aggregatedPaid);
 
             // penalty logic: if fee type is "tuition fee" and due_date passed, apply fixed 25.00 penalty
@@ -408,16 +481,16 @@ public class StudentFeeServiceImpl implements StudentFeeService {
                     studentFee.setStatus(FeeStatus.PENDING);
             }
 
-            // persist updates to StudentFee
-            studentFeeRepo.save(studentFee);
-
             // aggregate totals and collect created/updated records for final response
             totalAmount = totalAmount.add(amountPaid);
             created.add(studentFee);
 
         } // end for
 
-        // If payment mode is ONLINE, create Razorpay order / return initiation response
+        // online: queue the Razorpay order; it is created after commit and its id is written onto
+        // these pending payments (the webhook processor finds them by order id once the payment is captured)
+        String onlineReceipt = null;
+        String onlineOrderToken = null;
         if (paymentMode == PaymentMethod.ONLINE) {
 
             // minimum amount guard (Java requires >= 1 INR)
@@ -426,15 +499,35 @@ public class StudentFeeServiceImpl implements StudentFeeService {
                         HttpStatus.BAD_REQUEST);
             }
 
-            String receipt = generateReceipt();
-            Map<String,Object> order = razorpayService
-                    .createOrder(totalAmount.multiply(new BigDecimal(100)).longValue(),
-                            "INR", receipt);
+            onlineReceipt = generateReceipt();
+            RazorpayOrderRequest orderRequest = orderOutbox
+                    .enqueue(totalAmount.multiply(new BigDecimal(100)).longValue(),
+                            "INR", onlineReceipt, studentYearId);
+            onlineOrderToken = orderRequest.getToken();
+            payments.forEach(p -> p.setRazorpayOrderRequestId(orderRequest.getId()));
+        }
+
+        // ---- 4. flush: new StudentFees and all FeePayments as JDBC batches ----
+        // existing StudentFees are managed entities; their UPDATEs are batched by Hibernate at commit
+        // (hibernate.jdbc.batch_size)
+        List<String> receipts = generateReceipts(newFees.size());
+        for (int i = 0; i < newFees.size(); i++) {
+            newFees.get(i).setReceiptNumber(receipts.get(i));
+        }
+        feeBatchWriter.insertStudentFees(newFees);
+        feeBatchWriter.insertFeePayments(payments);
+        payments.forEach(rollupWriter::paymentAdded);
+        feeLedgerUpdater.touch(studentYearId);
+
+        // If payment mode is ONLINE, return initiation response; the order id follows once created
+        if (paymentMode == PaymentMethod.ONLINE) {
 
             Map<String,Object> resp = new HashMap<>();
             resp.put("message", "Payment initiated successfully - status pending.");
-            resp.put("razorpay_order_id", order.get("id"));
-            resp.put("receipt_number", receipt);
+            resp.put("razorpay_order_id", null);
+            resp.put("order_status", OrderOutboxStatus.PENDING.name());
+            resp.put("order_token", onlineOrderToken);
+            resp.put("receipt_number", onlineReceipt);
 
             // include fees summary in response (id, fee_type, status, due_amount, month)
             resp.put("fees", created.stream().map(sf -> {
@@ -475,7 +568,7 @@ public class StudentFeeServiceImpl implements StudentFeeService {
 
         // Fetch student-year info from Django microservice via Feign client.
         // (Django method uses StudentYearLevel.objects.get(id=student_year_id))
-        var studentYear = studentYearClient.getStudentYearLevel(studentYearId);
+        var studentYear = studentYearLevelCache.get(studentYearId);
 
         // If remote service returned nothing, we raise an error (Django returns 404 earlier).
         if (studentYear == null) {
@@ -502,30 +595,9 @@ public class StudentFeeServiceImpl implements StudentFeeService {
                 );
             }
 
-            // Fetch all YearLevels from Django (via another Feign client)
-            List<YearLevelResponse> allLevels;
-            try {
-                allLevels = yearLevelClient.getAllYearLevels();
-            } catch (Exception ex) {
-                // If the YearLevel service call fails, return service-unavailable style error.
-                throw new com.java.sms.exception.ApiException(
-                        "Failed to fetch YearLevel list from Django: " + ex.getMessage(),
-                        org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE
-                );
-            }
-
-            if (allLevels == null || allLevels.isEmpty()) {
-                throw new com.java.sms.exception.ApiException(
-                        "YearLevel service returned empty list while resolving level '" + levelName + "'",
-                        org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE
-                );
-            }
-
-            // Case-insensitive match by level name to find the YearLevel id (maps to Django relationship).
-            final String wanted = levelName.trim().toLowerCase();
-            var matched = allLevels.stream()
-                    .filter(y -> y.getLevelName() != null && y.getLevelName().trim().toLowerCase().equals(wanted))
-                    .findFirst();
+            // Case-insensitive match by level name against the cached YearLevel directory
+            // (refreshed in the background, so no Django call per preview).
+            var matched = yearLevelDirectory.findIdByName(levelName);
 
             if (matched.isEmpty()) {
                 // If can't resolve, return a clear error explaining the mismatch.
@@ -536,7 +608,7 @@ public class StudentFeeServiceImpl implements StudentFeeService {
                 );
             }
             // Set resolved ID for later use
-            yearLevelId = matched.get().getId();
+            yearLevelId = matched.get();
         }
 
         // final guard: if still null, throw error (should not happen after above logic)
@@ -551,67 +623,109 @@ public class StudentFeeServiceImpl implements StudentFeeService {
         // Load fee structures for that YearLevel.
         // Note: Django used FeeStructure.objects.filter(year_level=year_level)
         // Java uses an approach where FeeStructure contains a list of year-level IDs.
-        List<FeeStructure> yearLevelFees = feeStructureRepo.findAll().stream()
-                .filter(f -> f.getYearLevelIds() != null && f.getYearLevelIds().contains(levelIdFinal))
-                .collect(Collectors.toList());
-
-        // Load all StudentFee records for this student-year (equivalent to Django `paid_fees = StudentFee.objects.filter(student_year=...)`)
-        List<StudentFee> paidFees = studentFeeRepo.findByStudentYearId(studentYearId);
+        // One query, filtered in the DB (yearLevelIds fetched in the same query).
+        List<FeeStructure> yearLevelFees = feeStructureRepo.findByYearLevelIdWithYearLevels(levelIdFinal);
+
+        // All discounts of this student-year, summed per fee structure
+        // (Django did aggregate Sum per fee; same numbers, from the discount resolver).
+        FeeDiscountResolver.Lookup discounts = feeDiscountResolver.forStudentYear(studentYearId);
+        Map<Long, BigDecimal> discountByFee = new HashMap<>();
+        for (FeeStructure fee : yearLevelFees) {
+            discountByFee.put(fee.getId(), discounts.totalAmount(studentYearId, fee.getId()));
+        }
 
-        // Output list we will return (month-wise)
-        List<FeePreviewItem> result = new ArrayList<>();
+        // Paid amounts of this student-year indexed by fee -> month,
+        // equivalent to Django `paid_fees = StudentFee.objects.filter(student_year=...)` but pre-summed.
+        Map<Long, BigDecimal[]> paidByFeeMonth =
+                indexPaidByFeeMonth(studentFeeRepo.sumPaidAmountByStudentYearIdGroupByFeeAndMonth(studentYearId));
 
-        // Iterate months 1..12 (Django enumerated calendar.month_name; same concept)
-        for (int m = 1; m <= 12; m++) {
+        return buildPreviewGrid(yearLevelFees, discountByFee, paidByFeeMonth);
+    }
 
-            final int monthFinal = m;  // required because we use lambdas/inner classes below
 
-            // feesForMonth will hold brief objects for every fee type in this month
-            List<FeePreviewItem.FeeBrief> feesForMonth = new ArrayList<>();
-
-            // Iterate all fee types applicable to this year-level
-            for (FeeStructure fee : yearLevelFees) {
+    /**
+     * fee structure id -> paid amount per month (index 1..12, 0 = no month).
+     */
+    static Map<Long, BigDecimal[]> indexPaidByFeeMonth(List<StudentFeeRepository.FeeMonthPaid> rows) {
+        Map<Long, BigDecimal[]> paidByFeeMonth = new HashMap<>();
+        for (var row : rows) {
+            BigDecimal[] months = paidByFeeMonth.computeIfAbsent(row.getFeeStructureId(), k -> new BigDecimal[13]);
+            Integer month = row.getMonth();
+            int idx = (month != null && month >= 1 && month <= 12) ? month : 0;
+            months[idx] = months[idx] == null ? row.getPaidAmount() : months[idx].add(row.getPaidAmount());
+        }
+        return paidByFeeMonth;
+    }
 
-                final FeeStructure feeFinal = fee;  // again final for lambdas
 
-                // Discount lookup:
-                // sum all discounts for this student-year + fee structure (matches Django aggregate Sum)
-                BigDecimal discountTotal = discountRepo
-                        .sumDiscountAmountByStudentYearIdAndFeeStructure(studentYearId, feeFinal);
+    /**
+     * Builds the 12-month preview in one pass over (month x fee) using the pre-aggregated maps,
+     * no queries inside the loop. Per-fee values (discount, base amount) are computed once.
+     */
+    static List<FeePreviewItem> buildPreviewGrid(List<FeeStructure> yearLevelFees,
+                                                 Map<Long, BigDecimal> discountByFee,
+                                                 Map<Long, BigDecimal[]> paidByFeeMonth) {
+
+        int feeCount = yearLevelFees.size();
+        String[] feeTypes = new String[feeCount];
+        boolean[] admission = new boolean[feeCount];
+        BigDecimal[] baseAmounts = new BigDecimal[feeCount];
+        String[] baseAmountText = new String[feeCount];
+        String[] discountText = new String[feeCount];
+        BigDecimal[][] paidMonths = new BigDecimal[feeCount][];
+        BigDecimal[] paidAllMonths = new BigDecimal[feeCount];
+
+        for (int i = 0; i < feeCount; i++) {
+            FeeStructure fee = yearLevelFees.get(i);
+
+            // Discount lookup: sum of all discounts for this student-year + fee structure
+            BigDecimal discountTotal = discountByFee.getOrDefault(fee.getId(), BigDecimal.ZERO);
+            if (discountTotal == null) discountTotal = BigDecimal.ZERO; // defensive
+
+            // Compute base amount = fee amount - discount, but not negative.
+            baseAmounts[i] = fee.getFeeAmount().subtract(discountTotal).max(BigDecimal.ZERO);
+            baseAmountText[i] = baseAmounts[i].toPlainString();
+            discountText[i] = discountTotal.toPlainString();
+            feeTypes[i] = fee.getFeeType().name();
+            admission[i] = "ADMISSION_FEE".equalsIgnoreCase(feeTypes[i]);
+
+            paidMonths[i] = paidByFeeMonth.get(fee.getId());
+            BigDecimal all = BigDecimal.ZERO;
+            if (paidMonths[i] != null) {
+                for (BigDecimal v : paidMonths[i]) {
+                    if (v != null) all = all.add(v);
+                }
+            }
+            paidAllMonths[i] = all;
+        }
 
-                if (discountTotal == null)
-                    discountTotal = BigDecimal.ZERO; // defensive
+        // Output list we will return (month-wise)
+        List<FeePreviewItem> result = new ArrayList<>(12);
 
+        // Iterate months 1..12 (Django enumerated calendar.month_name; same concept)
+        for (int m = 1; m <= 12; m++) {
 
+            // feesForMonth will hold brief objects for every fee type in this month
+            List<FeePreviewItem.FeeBrief> feesForMonth = new ArrayList<>(feeCount);
 
-                // Compute base amount = fee amount - discount, but not negative.
-                BigDecimal baseAmount = feeFinal.getFeeAmount().subtract(discountTotal).max(BigDecimal.ZERO);
+            // Iterate all fee types applicable to this year-level
+            for (int i = 0; i < feeCount; i++) {
 
                 BigDecimal totalPaid;
 
-                // Special-case: Admission fee should be shown only in January:
-                // Django checks `fee.fee_type.lower() == "admission fee"` and `month_name != "January"`
-                // Java checks enum name `ADMISSION_FEE` and uses month==1.
-                if ("ADMISSION_FEE".equalsIgnoreCase(feeFinal.getFeeType().name())) {
-
-                    // If current month isn't January (1) skip this fee type for months other than Jan
-                    if (monthFinal != 1) continue;
-
-                    // Sum payments for this fee across all months (admission fee is not month-specific).
-                    totalPaid = paidFees.stream()
-                            .filter(pf -> pf.getFeeStructure().getId().equals(feeFinal.getId()))
-                            .map(StudentFee::getPaidAmount)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
-
+                // Special-case: Admission fee should be shown only in January,
+                // and its payments are summed across all months (admission fee is not month-specific).
+                if (admission[i]) {
+                    if (m != 1) continue;
+                    totalPaid = paidAllMonths[i];
                 } else {
-                    // Non-admission fee: sum paid amounts for this fee structure and this month only.
-                    totalPaid = paidFees.stream()
-                            .filter(pf -> pf.getFeeStructure().getId().equals(feeFinal.getId())
-                                    && Objects.equals(pf.getMonth(), monthFinal))
-                            .map(StudentFee::getPaidAmount)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
+                    // Non-admission fee: paid amount for this fee structure and this month only.
+                    BigDecimal paid = paidMonths[i] != null ? paidMonths[i][m] : null;
+                    totalPaid = paid != null ? paid : BigDecimal.ZERO;
                 }
 
+                BigDecimal baseAmount = baseAmounts[i];
+
                 // Determine status string:
                 // - Paid if totalPaid >= baseAmount and baseAmount > 0
                 // - Partially Paid if totalPaid > 0
@@ -626,19 +740,19 @@ public class StudentFeeServiceImpl implements StudentFeeService {
 
                 // Add a FeeBrief entry for this fee in the current month.
                 feesForMonth.add(FeePreviewItem.FeeBrief.builder()
-                        .feeId(feeFinal.getId())
-                        .feeType(feeFinal.getFeeType().name())      // string name of fee type
-                        .originalAmount(baseAmount.toPlainString()) // base amount after discount
-                        .paidAmount(totalPaid.toPlainString())      // aggregated paid amount
+                        .feeId(yearLevelFees.get(i).getId())
+                        .feeType(feeTypes[i])                 // string name of fee type
+                        .originalAmount(baseAmountText[i])    // base amount after discount
+                        .paidAmount(totalPaid.toPlainString()) // aggregated paid amount
                         .status(statusStr)
-                        .appliedDiscount(discountTotal.toPlainString())
+                        .appliedDiscount(discountText[i])
                         .build());
             }
 
             // If any fees exist for the month, add the month entry (Django only appended months with fees too)
             if (!feesForMonth.isEmpty()) {
                 // Month.of(m).name() -> returns "JANUARY", "FEBRUARY", ... (Django uses "January")
-                result.add(new FeePreviewItem(Month.of(monthFinal).name(), feesForMonth));
+                result.add(new FeePreviewItem(Month.of(m).name(), feesForMonth));
             }
         }
 
@@ -662,7 +776,7 @@ public class StudentFeeServiceImpl implements StudentFeeService {
             throw new ApiException("No fees selected", HttpStatus.BAD_REQUEST);
 
 
-        var studentYear = studentYearClient.getStudentYearLevel(req.getStudentYearId());
+        var studentYear = studentYearLevelCache.get(req.getStudentYearId());
 
         if (studentYear == null)
             throw new ApiException("Invalid student_year_id", HttpStatus.BAD_REQUEST);
@@ -716,6 +830,7 @@ public class StudentFeeServiceImpl implements StudentFeeService {
                         .build();
 
                 studentFeeRepo.save(studentFee);
+                feeLedgerUpdater.touch(studentFee.getStudentYearId());
 
             }
 
@@ -753,17 +868,15 @@ public class StudentFeeServiceImpl implements StudentFeeService {
         }
 
 
-        Map<String, Object> order = razorpayService
-                .createOrder(totalAmount.multiply(new BigDecimal("100"))
-                        .longValue(), "INR", receipt);
-
-
-        String orderId = String.valueOf(order.get("id"));
+        // no HTTP call while this transaction holds its connection: the order is created after commit
+        RazorpayOrderRequest orderRequest = orderOutbox.enqueue(totalAmount.multiply(new BigDecimal("100"))
+                .longValue(), "INR", receipt, req.getStudentYearId());
 
 
         return InitiatePaymentResponse.builder()
                 .message("Payment initiated successfully - status pending.")
-                .razorpayOrderId(orderId)
+                .orderStatus(OrderOutboxStatus.PENDING.name())
+                .orderToken(orderRequest.getToken())
                 .receiptNumber(receipt)
                 .fees(created)
                 .build();
@@ -806,6 +919,12 @@ public class StudentFeeServiceImpl implements StudentFeeService {
             throw new ApiException("Razorpay fields required", HttpStatus.BAD_REQUEST);
 
 
+        // retry / double click: answer with the original response, nothing is credited twice
+        Optional<ConfirmPaymentResponse> replayed = paymentIdempotencyGuard.replay(req);
+        if (replayed.isPresent())
+            return replayed.get();
+
+
         // verify Razorpay signature BEFORE making DB changes
         boolean ok = razorpayService
                 .verifyPaymentSignature(req.getRazorpayOrderId(),
@@ -818,12 +937,36 @@ public class StudentFeeServiceImpl implements StudentFeeService {
 
 
 
-        var studentYear = studentYearClient.getStudentYearLevel(req.getStudentYearId());
+        var studentYear = studentYearLevelCache.get(req.getStudentYearId());
 
         if (studentYear == null)
             throw new ApiException("Invalid student_year_id", HttpStatus.BAD_REQUEST);
 
 
+        // an order from initiate_payment: its PENDING payments already carry the amounts, only settle them.
+        // The rows are locked, so a concurrent confirm / webhook for the same order waits here and then finds
+        // nothing pending; the payment id it claims below is already recorded with this response.
+        List<FeePayment> pending = feePaymentRepo.findByRazorpayOrderIdInAndStatusWithStudentFee(
+                List.of(req.getRazorpayOrderId()), PaymentStatus.PENDING);
+        if (!pending.isEmpty()) {
+            boolean otherStudent = pending.stream()
+                    .anyMatch(p -> !Objects.equals(p.getStudentFee().getStudentYearId(), req.getStudentYearId()));
+            if (otherStudent)
+                throw new ApiException("Razorpay order " + req.getRazorpayOrderId()
+                        + " belongs to a different student_year_id", HttpStatus.CONFLICT);
+
+            return onlinePaymentCreditor.credit(pending, req.getRazorpayPaymentId(), req.getRazorpayOrderId(),
+                    LocalDateTime.now());
+        }
+
+
+        // no pending payments (order made outside initiate_payment): record the selected fees as paid now.
+        // Claim the payment id (unique key); a concurrent duplicate waits here and gets the winner's response
+        Optional<ConfirmPaymentResponse> confirmedMeanwhile = paymentIdempotencyGuard.claim(req);
+        if (confirmedMeanwhile.isPresent())
+            return confirmedMeanwhile.get();
+
+
         List<Map<String,Object>> createdPayments = new ArrayList<>();
 
         for (Map<String,Object> feeItem : req.getSelectedFees()) {
@@ -912,6 +1055,7 @@ public class StudentFeeServiceImpl implements StudentFeeService {
 
 
             feePaymentRepo.save(payment);
+            rollupWriter.paymentAdded(payment);
 
 
 
@@ -926,104 +1070,127 @@ public class StudentFeeServiceImpl implements StudentFeeService {
         }
 
 
-        return ConfirmPaymentResponse.builder()
+        feeLedgerUpdater.touch(req.getStudentYearId());
+
+        ConfirmPaymentResponse response = ConfirmPaymentResponse.builder()
                 .message("Payment confirmed successfully.")
                 .payments(createdPayments)
                 .build();
+        paymentIdempotencyGuard.complete(req, response);
+        return response;
 
     }
 
 
     @Override
-    public Map<String, Object> getStudentUnpaidFees() {
-        List<StudentFee> unpaid = studentFeeRepo.findByStatusIn(
-                Arrays.asList(FeeStatus.PENDING, FeeStatus.PARTIAL)
-        );
-
-        Map<Long, Map<String, Object>> grouped = new LinkedHashMap<>();
-
-        for (StudentFee fee : unpaid) {
-            Long studentYearId = fee.getStudentYearId();
-            if (studentYearId == null) continue;
-
-            // fetch student info from Django via Feign
-            StudentYearLevelResponse studentYear = null;
-            try {
-                studentYear = studentYearClient.getStudentYearLevel(studentYearId);
-            } catch (Exception e) {
-                // swallow — we'll still surface record but with limited student info
-            }
+    public StudentUnpaidFeesPageResponse getStudentUnpaidFees(Long cursor, int size) {
+        if (size < 1 || size > MAX_UNPAID_PAGE_SIZE) {
+            throw new ApiException("size must be between 1 and " + MAX_UNPAID_PAGE_SIZE, HttpStatus.BAD_REQUEST);
+        }
+        List<FeeStatus> unpaidStatuses = Arrays.asList(FeeStatus.PENDING, FeeStatus.PARTIAL);
+
+        // totals per student-year are summed by the database; one extra row tells us if there is a next page
+        List<StudentFeeRepository.StudentYearTotals> totals = studentFeeRepo.sumByStatusInGroupByStudentYear(
+                unpaidStatuses, cursor, PageRequest.of(0, size + 1));
+        boolean hasMore = totals.size() > size;
+        if (hasMore) totals = totals.subList(0, size);
+
+        if (totals.isEmpty()) {
+            return StudentUnpaidFeesPageResponse.builder()
+                    .unpaidFees(List.of()).hasMore(false).size(0).build();
+        }
+
+        List<Long> studentYearIds = totals.stream().map(StudentFeeRepository.StudentYearTotals::getStudentYearId).toList();
+
+        // fee lines of this page only, fee type joined in the same query (no lazy feeStructure per row)
+        Map<Long, List<StudentFeeRepository.FeeLine>> linesByStudentYear = new HashMap<>();
+        for (StudentFeeRepository.FeeLine line : studentFeeRepo.findFeeLines(studentYearIds, unpaidStatuses)) {
+            linesByStudentYear.computeIfAbsent(line.getStudentYearId(), k -> new ArrayList<>()).add(line);
+        }
+
+        // fetch student info from Django for the page at once (bulk, cached); missing ids just get limited info
+        Map<Long, StudentYearLevelResponse> studentYears = studentYearLevelCache.getAll(studentYearIds);
+
+        // group by studentId (fallback to studentYearId if studentId null); a student with several
+        // student-years on this page gets one entry with one year-level group per level
+        Map<Long, UnpaidStudentGroup> grouped = new LinkedHashMap<>();
+
+        for (StudentFeeRepository.StudentYearTotals row : totals) {
+            Long studentYearId = row.getStudentYearId();
+            List<StudentFeeRepository.FeeLine> lines = linesByStudentYear.getOrDefault(studentYearId, List.of());
+            if (studentYearId == null || lines.isEmpty()) continue;
+
+            StudentYearLevelResponse studentYear = studentYears.get(studentYearId);
 
             Long studentId = studentYear != null ? studentYear.getStudentId() : null;
-            String studentName = studentYear != null ? studentYear.getStudentName() : "N/A";
-            String scholarNumber = studentYear != null ? studentYear.getScholarNumber() : "N/A";
             String yearLevelName = studentYear != null ? studentYear.getLevelName() : "N/A";
-
-            // group by studentId (fallback to studentYearId if studentId null)
             Long groupKey = studentId != null ? studentId : studentYearId;
 
-            grouped.computeIfAbsent(groupKey, k -> {
-                Map<String, Object> m = new LinkedHashMap<>();
-                Map<String,Object> stu = new LinkedHashMap<>();
-                stu.put("id", studentId != null ? studentId : studentYearId);
-                stu.put("name", studentName);
-                stu.put("scholar_number", scholarNumber);
-                m.put("student", stu);
-                m.put("month", fee.getMonth() == null ? "Unknown" : java.time.Month.of(fee.getMonth()).name());
-                m.put("school_year", fee.getSchoolYearId() != null ? fee.getSchoolYearId().toString() : "N/A");
-                m.put("year_level_fees_grouped", new ArrayList<Map<String,Object>>());
-                m.put("total_amount", BigDecimal.ZERO);
-                m.put("paid_amount", BigDecimal.ZERO);
-                m.put("due_amount", BigDecimal.ZERO);
-                return m;
+            UnpaidStudentGroup group = grouped.computeIfAbsent(groupKey, k -> {
+                StudentFeeRepository.FeeLine first = lines.get(0);
+                UnpaidStudentGroup g = new UnpaidStudentGroup();
+                g.response = StudentUnpaidFeesResponse.builder()
+                        .student(StudentUnpaidFeesResponse.Student.builder()
+                                .id(studentId != null ? studentId : studentYearId)
+                                .name(studentYear != null ? studentYear.getStudentName() : "N/A")
+                                .scholarNumber(studentYear != null ? studentYear.getScholarNumber() : "N/A")
+                                .build())
+                        .month(first.getMonth() == null ? "Unknown" : java.time.Month.of(first.getMonth()).name())
+                        .schoolYear(first.getSchoolYearId() != null ? first.getSchoolYearId().toString() : "N/A")
+                        .yearLevelFeesGrouped(new ArrayList<>())
+                        .build();
+                return g;
             });
 
-            Map<String, Object> studentData = grouped.get(groupKey);
-            List<Map<String,Object>> ylGroups = (List<Map<String,Object>>) studentData.get("year_level_fees_grouped");
-
-            Map<String,Object> ylGroup = ylGroups.stream()
-                    .filter(g -> yearLevelName.equals(g.get("year_level")))
-                    .findFirst()
-                    .orElseGet(() -> {
-                        Map<String,Object> newg = new LinkedHashMap<>();
-                        newg.put("year_level", yearLevelName);
-                        newg.put("fees", new ArrayList<Map<String,Object>>());
-                        ylGroups.add(newg);
-                        return newg;
-                    });
-
-            List<Map<String,Object>> feesList = (List<Map<String,Object>>) ylGroup.get("fees");
-            Map<String,Object> feeMap = new LinkedHashMap<>();
-            feeMap.put("id", fee.getId());
-            feeMap.put("fee_type", fee.getFeeStructure() != null ? fee.getFeeStructure().getFeeType().name() : "N/A");
-            feeMap.put("original_amount", fee.getOriginalAmount() != null ? fee.getOriginalAmount().toPlainString() : "0.00");
-            feesList.add(feeMap);
+            // year-level group looked up by name instead of scanning the list
+            StudentUnpaidFeesResponse.YearLevelFees ylGroup = group.byYearLevel.computeIfAbsent(yearLevelName, name -> {
+                StudentUnpaidFeesResponse.YearLevelFees g = StudentUnpaidFeesResponse.YearLevelFees.builder()
+                        .yearLevel(name)
+                        .fees(new ArrayList<>())
+                        .build();
+                group.response.getYearLevelFeesGrouped().add(g);
+                return g;
+            });
+
+            for (StudentFeeRepository.FeeLine line : lines) {
+                ylGroup.getFees().add(StudentUnpaidFeesResponse.Fee.builder()
+                        .id(line.getId())
+                        .feeType(line.getFeeType() != null ? line.getFeeType().name() : "N/A")
+                        .originalAmount(line.getOriginalAmount() != null ? line.getOriginalAmount().toPlainString() : "0.00")
+                        .build());
+            }
 
             // totals
-            BigDecimal total = (BigDecimal) studentData.get("total_amount");
-            BigDecimal paid = (BigDecimal) studentData.get("paid_amount");
-            BigDecimal due = (BigDecimal) studentData.get("due_amount");
-            total = total.add(fee.getOriginalAmount() != null ? fee.getOriginalAmount() : BigDecimal.ZERO);
-            paid = paid.add(fee.getPaidAmount() != null ? fee.getPaidAmount() : BigDecimal.ZERO);
-            due = due.add(fee.getDueAmount() != null ? fee.getDueAmount() : BigDecimal.ZERO);
-
-            studentData.put("total_amount", total);
-            studentData.put("paid_amount", paid);
-            studentData.put("due_amount", due);
+            group.total = group.total.add(row.getTotalAmount());
+            group.paid = group.paid.add(row.getPaidAmount());
+            group.due = group.due.add(row.getDueAmount());
         }
 
         // convert BigDecimal totals to String
-        for (Map<String,Object> s : grouped.values()) {
-            s.put("total_amount", ((BigDecimal) s.get("total_amount")).toPlainString());
-            s.put("paid_amount", ((BigDecimal) s.get("paid_amount")).toPlainString());
-            s.put("due_amount", ((BigDecimal) s.get("due_amount")).toPlainString());
+        List<StudentUnpaidFeesResponse> out = new ArrayList<>(grouped.size());
+        for (UnpaidStudentGroup g : grouped.values()) {
+            g.response.setTotalAmount(g.total.toPlainString());
+            g.response.setPaidAmount(g.paid.toPlainString());
+            g.response.setDueAmount(g.due.toPlainString());
+            out.add(g.response);
         }
 
-        Map<String, Object> result = new HashMap<>();
-        result.put("unpaid_fees", new ArrayList<>(grouped.values()));
-        return result;
+        return StudentUnpaidFeesPageResponse.builder()
+                .unpaidFees(out)
+                .nextCursor(hasMore ? studentYearIds.get(studentYearIds.size() - 1) : null)
+                .hasMore(hasMore)
+                .size(out.size())
+                .build();
     }
 
+    // running state for one student while building the unpaid report
+    private static final class UnpaidStudentGroup {
+        private StudentUnpaidFeesResponse response;
+        private final Map<String, StudentUnpaidFeesResponse.YearLevelFees> byYearLevel = new HashMap<>();
+        private BigDecimal total = BigDecimal.ZERO;
+        private BigDecimal paid = BigDecimal.ZERO;
+        private BigDecimal due = BigDecimal.ZERO;
+    }
 
 
 
@@ -1036,38 +1203,36 @@ public class StudentFeeServiceImpl implements StudentFeeService {
 
 
 
-    @Override
-    public List<Map<String,Object>> getOverdueFees(Long studentYearId, Integer month, Long schoolYearId) {
-
-        LocalDate today = LocalDate.now();
-        List<StudentFee> qry = studentFeeRepo
-                .findByDueAmountGreaterThanAndDueDateBefore(BigDecimal.ZERO, today);
-
-        // apply simple filters in-memory (ok if dataset small; for large dataset convert to repo queries)
-
-        if (studentYearId != null) {
-            qry = qry.stream()
-                    .filter(f -> Objects.equals(f.getStudentYearId(), studentYearId))
-                    .collect(Collectors.toList());
-        }
-
 
-        if (schoolYearId != null) {
-            qry = qry.stream()
-                    .filter(f -> Objects.equals(f.getSchoolYearId(), schoolYearId))
-                    .collect(Collectors.toList());
+    @Override
+    public KeysetPageResponse<Map<String,Object>> getOverdueFees(Long studentYearId, Integer month, Long schoolYearId,
+                                                                 Long cursor, int size) {
+        if (size < 1 || size > MAX_OVERDUE_PAGE_SIZE) {
+            throw new ApiException("size must be between 1 and " + MAX_OVERDUE_PAGE_SIZE, HttpStatus.BAD_REQUEST);
         }
 
+        LocalDate today = LocalDate.now();
 
+        // every filter runs in SQL; one extra row tells us if there is a next page
+        Specification<StudentFee> spec = Specification.allOf(
+                StudentFeeSpecifications.overdueOn(today),
+                StudentFeeSpecifications.studentYearId(studentYearId),
+                StudentFeeSpecifications.schoolYearId(schoolYearId),
+                StudentFeeSpecifications.dueMonth(month),
+                StudentFeeSpecifications.idAfter(cursor),
+                StudentFeeSpecifications.fetchFeeStructure());
 
-        if (month != null) {
-            qry = qry.stream()
-                    .filter(f -> f.getDueDate() != null && f.getDueDate().getMonthValue() == month)
-                    .collect(Collectors.toList());
-        }
-
+        List<StudentFee> qry = studentFeeRepo.findBy(spec, q -> q
+                .sortBy(Sort.by(Sort.Direction.ASC, "id"))
+                .limit(size + 1)
+                .all());
 
+        boolean hasMore = qry.size() > size;
+        if (hasMore) qry = qry.subList(0, size);
 
+        // one bulk (cached) lookup for every student on the report instead of one Feign call per row
+        Map<Long, StudentYearLevelResponse> studentYears = studentYearLevelCache.getAll(
+                qry.stream().map(StudentFee::getStudentYearId).toList());
 
         List<Map<String,Object>> response = new ArrayList<>();
 
@@ -1095,15 +1260,8 @@ public class StudentFeeServiceImpl implements StudentFeeService {
                     ? fee.getDueDate().toString() : null);
 
 
-            // resolve student info via Feign (we only have studentYearId)
-            StudentYearLevelResponse studentYear = null;
-
-            try {
-                studentYear = studentYearClient.getStudentYearLevel(fee.getStudentYearId());
-
-            } catch (Exception e) {
-                // ignore; still return record with limited info
-            }
+            // student info was resolved in bulk above (we only have studentYearId)
+            StudentYearLevelResponse studentYear = studentYears.get(fee.getStudentYearId());
 
 
             String studentName = studentYear != null ? studentYear.getStudentName() : "N/A";
@@ -1121,7 +1279,12 @@ public class StudentFeeServiceImpl implements StudentFeeService {
 
         }
 
-        return response;
+        return KeysetPageResponse.<Map<String,Object>>builder()
+                .items(response)
+                .nextCursor(hasMore ? qry.get(qry.size() - 1).getId() : null)
+                .hasMore(hasMore)
+                .size(response.size())
+                .build();
     }
 
 
@@ -1133,61 +1296,75 @@ public class StudentFeeServiceImpl implements StudentFeeService {
 
 
     @Override
-    public List<Map<String,Object>> getFeeHistory(Long studentYearId, Long schoolYearId) {
-
-        List<StudentFee> studentFees = studentFeeRepo
-                .findByStudentYearIdAndSchoolYearId(studentYearId, schoolYearId);
-
-        List<Map<String,Object>> out = new ArrayList<>();
-
-        for (StudentFee sf : studentFees) {
-
-            Map<String,Object> m = new LinkedHashMap<>();
-
-            m.put("fee_type", sf.getFeeStructure() != null
-                    ? sf.getFeeStructure().getFeeType().name() : "N/A");
-
-            m.put("original_amount", sf.getOriginalAmount() != null
-                    ? sf.getOriginalAmount().toPlainString() : "0.00");
-
-            m.put("paid_amount", sf.getPaidAmount() != null
-                    ? sf.getPaidAmount().toPlainString() : "0.00");
-
-
-            m.put("due_amount", sf.getDueAmount() != null
-                    ? sf.getDueAmount().toPlainString() : "0.00");
-
-            m.put("status", sf.getStatus() != null
-                    ? sf.getStatus().name() : "N/A");
-
-
-            m.put("month", sf.getMonth() != null
-                    ? java.time.Month.of(sf.getMonth()).name() : null);
-
-
-            // payments via repo
-            List<FeePayment> payments = feePaymentRepo.findByStudentFee(sf.getId());
+    public Stream<FeeHistoryResponse> getFeeHistory(Long studentYearId, Long schoolYearId) {
+
+        // fees with their fee type in one query (no lazy feeStructure per row)
+        List<StudentFeeRepository.HistoryLine> fees = studentFeeRepo
+                .findHistoryLines(studentYearId, schoolYearId);
+
+        if (fees.isEmpty()) return Stream.empty();
+
+        // payments for every fee in one IN-query, grouped by fee id in memory
+        Map<Long, List<FeeHistoryResponse.Payment>> paymentsByFee = new HashMap<>();
+        for (FeePaymentRepository.PaymentLine p : feePaymentRepo.findPaymentLines(
+                fees.stream().map(StudentFeeRepository.HistoryLine::getId).toList())) {
+            paymentsByFee.computeIfAbsent(p.getStudentFeeId(), k -> new ArrayList<>())
+                    .add(FeeHistoryResponse.Payment.builder()
+                            .amount(p.getAmount().toPlainString())
+                            .method(p.getPaymentMethod())
+                            .status(p.getStatus())
+                            .date(p.getPaymentDate())
+                            .build());
+        }
 
-            List<Map<String,Object>> paymentsOut = payments.stream().map(p -> {
+        // both queries are done here; the controller serializes one fee at a time from this stream
+        return fees.stream().map(sf -> FeeHistoryResponse.builder()
+                .feeType(sf.getFeeType() != null ? sf.getFeeType().name() : "N/A")
+                .originalAmount(sf.getOriginalAmount() != null ? sf.getOriginalAmount().toPlainString() : "0.00")
+                .paidAmount(sf.getPaidAmount() != null ? sf.getPaidAmount().toPlainString() : "0.00")
+                .dueAmount(sf.getDueAmount() != null ? sf.getDueAmount().toPlainString() : "0.00")
+                .status(sf.getStatus() != null ? sf.getStatus().name() : "N/A")
+                .month(sf.getMonth() != null ? java.time.Month.of(sf.getMonth()).name() : null)
+                .payments(paymentsByFee.getOrDefault(sf.getId(), List.of()))
+                .build());
+    }
 
-                Map<String,Object> pm = new HashMap<>();
-                pm.put("amount", p.getAmount().toPlainString());
-                pm.put("method", p.getPaymentMethod());
-                pm.put("status", p.getStatus());
-                pm.put("date", p.getPaymentDate());
-                return pm;
-            }).collect(Collectors.toList());
 
-            m.put("payments", paymentsOut);
 
 
+    @Override
+    public StudentFeeLedgerResponse getLedger(Long studentYearId, Long schoolYearId) {
+        if (studentYearId == null || schoolYearId == null) {
+            throw new ApiException("student_year_id and school_year_id are required", HttpStatus.BAD_REQUEST);
+        }
+        return ledgerRepo.findById(new StudentFeeLedger.Key(studentYearId, schoolYearId))
+                .map(StudentFeeLedgerMapper::toResponse)
+                .orElseThrow(() -> new ApiException("No fees found for this student-year and school year",
+                        HttpStatus.NOT_FOUND));
+    }
 
-            out.add(m);
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED) // the job runs one short transaction per student-year
+    public int verifyLedger() {
+        return feeLedgerUpdater.verifyAndRepair();
+    }
 
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED) // the export holds its own streaming connection
+    public void exportFees(Long schoolYearId, OutputStream out) {
+        if (schoolYearId == null) {
+            throw new ApiException("school_year_id is required", HttpStatus.BAD_REQUEST);
         }
+        feeLedgerExporter.exportFees(schoolYearId, out);
+    }
 
-        return out;
-
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public void exportPayments(Long schoolYearId, OutputStream out) {
+        if (schoolYearId == null) {
+            throw new ApiException("school_year_id is required", HttpStatus.BAD_REQUEST);
+        }
+        feeLedgerExporter.exportPayments(schoolYearId, out);
     }
 
 
@@ -1202,22 +1379,24 @@ public class StudentFeeServiceImpl implements StudentFeeService {
         }
 
 
+        // fee structures fetched in the same query (no lazy load per row)
         List<StudentFee> pending = studentFeeRepo.
-                findBySchoolYearIdAndStatusNot(schoolYearId, FeeStatus.PAID);
+                findBySchoolYearIdAndStatusNotWithFeeStructure(schoolYearId, FeeStatus.PAID);
 
 
         if (pending == null || pending.isEmpty())
             return Collections.emptyList();
 
 
+        // discounts for every student-year on the list in one query instead of one per fee
+        FeeDiscountResolver.Lookup discounts = feeDiscountResolver.forStudentYears(
+                pending.stream().map(StudentFee::getStudentYearId).toList());
+
         List<Map<String,Object>> out = new ArrayList<>();
 
         for (StudentFee fee : pending) {
-            AppliedFeeDiscount d = discountRepo
-                    .findFirstByStudentYearIdAndFeeStructure(fee.getStudentYearId(), fee.getFeeStructure())
-                    .orElse(null);
-
-            BigDecimal discountAmount = d != null ? d.getDiscountAmount() : BigDecimal.ZERO;
+            BigDecimal discountAmount = fee.getFeeStructure() != null
+                    ? discounts.firstAmount(fee.getStudentYearId(), fee.getFeeStructure().getId()) : BigDecimal.ZERO;
 
             BigDecimal adjustedOriginal = fee.getOriginalAmount() != null
                     ? fee.getOriginalAmount().subtract(discountAmount).max(BigDecimal.ZERO) : BigDecimal.ZERO;
@@ -1281,21 +1460,8 @@ public class StudentFeeServiceImpl implements StudentFeeService {
                     HttpStatus.BAD_GATEWAY);
         }
 
-        List<YearLevelResponse> levels;
-        try {
-            levels = yearLevelClient.getAllYearLevels();
-        } catch (Exception ex) {
-            throw new ApiException("Failed to fetch YearLevels from Django: "
-                    + ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
-        }
-
-        final String target = levelName.trim().toLowerCase();
-
-        return levels.stream()
-                .filter(l -> l.getLevelName() != null &&
-                        l.getLevelName().trim().toLowerCase().equals(target))
-                .findFirst()
-                .map(YearLevelResponse::getId)
+        // name -> id from the in-process directory (case-insensitive, precomputed)
+        return yearLevelDirectory.findIdByName(levelName)
                 .orElseThrow(() ->
                         new ApiException("YearLevel '" + levelName + "' not found in Django.",
                                 HttpStatus.NOT_FOUND)
@@ -1306,31 +1472,23 @@ public class StudentFeeServiceImpl implements StudentFeeService {
 
 
     private String generateReceipt() {
-        String today = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyyMMdd"));
-        String prefix = "REC-" + today + "-";
-        // find highest existing that starts with prefix
-        Optional<StudentFee> top = studentFeeRepo.findTopByReceiptNumberStartingWithOrderByReceiptNumberDesc(prefix);
-        int nextNo = 1;
-        if (top.isPresent()) {
-            String last = top.get().getReceiptNumber(); // e.g. REC-20251201-00012-ABCD
-            // parse middle numeric part
-            String[] parts = last.split("-");
-            if (parts.length >= 3) {
-                try {
-                    nextNo = Integer.parseInt(parts[2]) + 1;
-                } catch (NumberFormatException ignored) {
-                }
-            }
-        }
-        String uniqueSuffix = UUID.randomUUID().toString().replace("-", "").substring(0, 4).toUpperCase();
-        String receipt = String.format("REC-%s-%05d-%s", today, nextNo, uniqueSuffix);
-        // ensure unique (small loop just in case)
-        while (studentFeeRepo.existsByReceiptNumber(receipt)) {
-            nextNo++;
-            uniqueSuffix = UUID.randomUUID().toString().replace("-", "").substring(0, 4).toUpperCase();
-            receipt = String.format("REC-%s-%05d-%s", today, nextNo, uniqueSuffix);
-        }
-        return receipt;
+        return generateReceipts(1).get(0);
+    }
+
+    /**
+     * Generate {@code count} receipt numbers from the allocator's in-memory block (no query per receipt).
+     */
+    private List<String> generateReceipts(int count) {
+        if (count <= 0) return List.of();
+        return receiptNumberAllocator.next(count);
+    }
+
+    // one submitted fee line, parsed before anything is loaded
+    private record SubmitLine(Long feeId, Integer month, String dueDateStr, BigDecimal amountPaid) {
+    }
+
+    private static String studentFeeKey(Long feeStructureId, Integer month) {
+        return feeStructureId + ":" + month;
     }
 
 
@@ -7,6 +7,7 @@ import com.java.sms.model.User;
 import com.java.sms.openFeignClient.StudentClient;
 import com.java.sms.repository.RoleRepository;
 import com.java.sms.repository.UserRepository;
+import com.java.sms.security.PrincipalCache;
 import com.java.sms.response.TeacherResponseDTO;
 import com.java.sms.service.StudentService;
 import io.swagger.v3.oas.annotations.servers.Server;
@@ -40,6 +41,7 @@ import java.util.stream.Collectors;
 public class StudentServiceImpl implements StudentService {
 
     private final UserRepository userRepository;
+    private final PrincipalCache principalCache;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
     private final StudentClient studentClient;
@@ -117,6 +119,7 @@ public class StudentServiceImpl implements StudentService {
 
 
             User savedUser = userRepository.save(user);
+            principalCache.evict(savedUser.getEmail());
 
             StudentDTO userStudent = new StudentDTO();
             userStudent.setUser(savedUser.getId());
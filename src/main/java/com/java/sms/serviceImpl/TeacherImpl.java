@@ -7,6 +7,7 @@ import com.java.sms.model.User;
 import com.java.sms.openFeignClient.TeacherClient;
 import com.java.sms.repository.RoleRepository;
 import com.java.sms.repository.UserRepository;
+import com.java.sms.security.PrincipalCache;
 import com.java.sms.response.TeacherResponseDTO;
 import com.java.sms.service.TeacherService;
 import org.springframework.beans.factory.annotation.Value;
@@ -48,15 +49,18 @@ public class TeacherImpl implements TeacherService {
 
     private final PasswordEncoder passwordEncoder;
     private final UserRepository userRepository;
+    private final PrincipalCache principalCache;
     private final TeacherClient teacherClient;
     private final RoleRepository roleRepository;
 
 
-    public TeacherImpl(PasswordEncoder passwordEncoder, UserRepository userRepository, TeacherClient teacherClient, RoleRepository roleRepository) {
+    public TeacherImpl(PasswordEncoder passwordEncoder, UserRepository userRepository, TeacherClient teacherClient, RoleRepository roleRepository,
+                       PrincipalCache principalCache) {
         this.passwordEncoder = passwordEncoder;
         this.userRepository = userRepository;
         this.teacherClient = teacherClient;
         this.roleRepository = roleRepository;
+        this.principalCache = principalCache;
     }
 
 
@@ -134,6 +138,7 @@ public class TeacherImpl implements TeacherService {
 
 
             User savedUser = userRepository.save(user);
+            principalCache.evict(savedUser.getEmail());
 
 
             // Create teacher record in Django
@@ -9,6 +9,7 @@ import com.java.sms.repository.RoleRepository;
 import com.java.sms.repository.UserRepository;
 import com.java.sms.response.UserResponse;
 import com.java.sms.security.JwtUtil;
+import com.java.sms.security.PrincipalCache;
 import com.java.sms.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -43,6 +44,7 @@ public class UserServiceImpl implements UserService {
     private  final PasswordEncoder passwordEncoder;
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
+    private final PrincipalCache principalCache;
 
 
 
@@ -57,12 +59,14 @@ public class UserServiceImpl implements UserService {
      */
     @Autowired
     public UserServiceImpl(JwtUtil jwtUtil, UserRepository userRepository,
-                           PasswordEncoder passwordEncoder, RoleRepository roleRepository) {
+                           PasswordEncoder passwordEncoder, RoleRepository roleRepository,
+                           PrincipalCache principalCache) {
 
         this.jwtUtil = jwtUtil;
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.roleRepository = roleRepository;
+        this.principalCache = principalCache;
     }
 
 
@@ -275,6 +279,9 @@ public class UserServiceImpl implements UserService {
             User user = userRepository.findById(id)
                     .orElseThrow(() -> new ApiException("User not found", HttpStatus.NOT_FOUND));
 
+            // remember the current email: the cached principal is keyed by it and it may change below
+            String previousEmail = user.getEmail();
+
             //  Get role from Django service
 //            RoleDTO role = roleClient.getRoleByName(request); // Feign client call
 
@@ -318,6 +325,8 @@ public class UserServiceImpl implements UserService {
 
             //  Save updated user
             userRepository.save(user);
+            principalCache.evict(previousEmail);
+            principalCache.evict(user.getEmail());
 
             return ResponseEntity.ok("User updated successfully!");
 
@@ -336,6 +345,7 @@ public class UserServiceImpl implements UserService {
                 () -> new ApiException("User Id not found",HttpStatus.NOT_FOUND));
 
         userRepository.delete(user);
+        principalCache.evict(user.getEmail());
         return ResponseEntity.ok("Deleted successfully");
     }
 
@@ -404,6 +414,7 @@ public class UserServiceImpl implements UserService {
 
             //  5. Save user to DB
             User savedUser = userRepository.save(user);
+            principalCache.evict(savedUser.getEmail());
 
             //  6. Prepare clean response (no password)
             Map<String, Object> response = new LinkedHashMap<>();
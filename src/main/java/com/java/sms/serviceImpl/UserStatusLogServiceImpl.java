@@ -2,6 +2,7 @@ package com.java.sms.serviceImpl;
 
 import com.java.sms.model.UserStatusLog;
 import com.java.sms.repository.UserStatusLogRepository;
+import com.java.sms.security.PrincipalCache;
 import com.java.sms.service.UserStatusLogService;
 import org.springframework.stereotype.Service;
 
@@ -13,11 +14,13 @@ public class UserStatusLogServiceImpl implements UserStatusLogService {
 
 
     private final UserStatusLogRepository repository;
+    private final PrincipalCache principalCache;
 
 
 
-    public UserStatusLogServiceImpl(UserStatusLogRepository repository) {
+    public UserStatusLogServiceImpl(UserStatusLogRepository repository, PrincipalCache principalCache) {
         this.repository = repository;
+        this.principalCache = principalCache;
     }
 
     @Override
@@ -30,10 +33,20 @@ public class UserStatusLogServiceImpl implements UserStatusLogService {
 
 
     @Override
-    public UserStatusLog save(UserStatusLog u) { return repository.save(u); }
+    public UserStatusLog save(UserStatusLog u) {
+        UserStatusLog saved = repository.save(u);
+        // status changes (terminate / reactivate) must be visible to the auth filter right away
+        if (saved.getUser() != null) principalCache.evictUser(saved.getUser().getId());
+        return saved;
+    }
 
 
 
     @Override
-    public void deleteById(Long id) { repository.deleteById(id); }
+    public void deleteById(Long id) {
+        repository.findById(id).ifPresent(log -> {
+            if (log.getUser() != null) principalCache.evictUser(log.getUser().getId());
+        });
+        repository.deleteById(id);
+    }
 }
@@ -0,0 +1,347 @@
+package com.java.sms.serviceImpl;
+
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.java.sms.exception.ApiException;
+import com.java.sms.model.FeePayment;
+import com.java.sms.model.enums.PaymentStatus;
+import com.java.sms.model.enums.WebhookEventStatus;
+import com.java.sms.repository.FeePaymentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Background side of the Razorpay webhook pipeline: drains {@code razorpay_webhook_event} in batches.
+ *
+ * <p>Each poll claims up to {@code razorpay.webhook.batch-size} due events with
+ * {@code FOR UPDATE SKIP LOCKED} (replicas never pick the same rows) and marks them PROCESSING in one short
+ * transaction. The batch is then applied in a single transaction with one query per lookup kind for the
+ * whole batch. If that fails, every event is retried on its own so one bad event cannot block the rest.
+ * A failed event goes back to PENDING with exponential backoff and ends as FAILED after
+ * {@code razorpay.webhook.max-attempts}. Rows left in PROCESSING by a crashed node are released after
+ * {@code razorpay.webhook.stale-seconds}.
+ *
+ * <p>{@code payment.captured} / {@code order.paid}: a payment already recorded by confirm_payment is left
+ * alone. Otherwise the PENDING online FeePayments of the order are marked SUCCESS and their StudentFees get
+ * their final status. The payment is also recorded as confirmed, so a late confirm_payment call replays
+ * instead of crediting twice. Failed payments are only recorded, because Razorpay lets the payer retry
+ * the same order.
+ */
+@Component
+@Slf4j
+public class WebhookInboxProcessor {
+
+    private static final String RELEASE_STALE =
+            "UPDATE razorpay_webhook_event SET status = 'PENDING', claimed_at = NULL " +
+                    "WHERE status = 'PROCESSING' AND claimed_at < ?";
+
+    private static final String CLAIM =
+            "SELECT id FROM razorpay_webhook_event WHERE status = 'PENDING' AND next_attempt_at <= NOW() " +
+                    "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    private static final String FINISH =
+            "UPDATE razorpay_webhook_event SET status = ?, event_type = ?, outcome = ?, processed_at = NOW(), " +
+                    "claimed_at = NULL WHERE id = ?";
+
+    private static final String RETRY =
+            "UPDATE razorpay_webhook_event SET attempts = attempts + 1, status = ?, event_type = ?, outcome = ?, " +
+                    "next_attempt_at = ?, claimed_at = NULL WHERE id = ?";
+
+    private static final long MAX_BACKOFF_SECONDS = 3600;
+
+    private record Claimed(long id, String eventId, String payload, int attempts) {
+    }
+
+    // the fields of the Razorpay payment entity the processor needs
+    private record Event(Claimed row, String type, String paymentId, String orderId, Long amountPaise,
+                         LocalDateTime capturedAt) {
+    }
+
+    private record Result(WebhookEventStatus status, String outcome) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate tx;
+    private final ObjectMapper objectMapper;
+    private final FeePaymentRepository feePaymentRepo;
+    private final OnlinePaymentCreditor creditor;
+    private final int batchSize;
+    private final int maxBatchesPerPoll;
+    private final int maxAttempts;
+    private final long staleSeconds;
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchFallbacks = new LongAdder();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder ignored = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder paymentsCredited = new LongAdder();
+
+    public WebhookInboxProcessor(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                 ObjectMapper objectMapper, FeePaymentRepository feePaymentRepo,
+                                 OnlinePaymentCreditor creditor,
+                                 @Value("${razorpay.webhook.batch-size:100}") int batchSize,
+                                 @Value("${razorpay.webhook.max-batches-per-poll:20}") int maxBatchesPerPoll,
+                                 @Value("${razorpay.webhook.max-attempts:10}") int maxAttempts,
+                                 @Value("${razorpay.webhook.stale-seconds:300}") long staleSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.feePaymentRepo = feePaymentRepo;
+        this.creditor = creditor;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxBatchesPerPoll = Math.max(1, maxBatchesPerPoll);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.staleSeconds = Math.max(30L, staleSeconds);
+    }
+
+    /**
+     * Drain due events; stops after a short batch or {@code razorpay.webhook.max-batches-per-poll} batches.
+     */
+    @Scheduled(fixedDelayString = "${razorpay.webhook.poll-ms:2000}",
+            initialDelayString = "${razorpay.webhook.poll-ms:2000}")
+    public void poll() {
+        try {
+            for (int i = 0; i < maxBatchesPerPoll; i++) {
+                if (processBatch() < batchSize) break;
+            }
+        } catch (Exception ex) {
+            log.error("Webhook inbox poll failed: {}", ex.getMessage(), ex);
+        }
+    }
+
+    void recordReceived(boolean appended) {
+        if (appended) received.increment();
+        else duplicates.increment();
+    }
+
+    void recordRejected() {
+        rejected.increment();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("received", received.sum());
+        out.put("duplicates", duplicates.sum());
+        out.put("rejected_signatures", rejected.sum());
+        out.put("batches", batches.sum());
+        out.put("batch_fallbacks", batchFallbacks.sum());
+        out.put("processed", processed.sum());
+        out.put("ignored", ignored.sum());
+        out.put("retried", retried.sum());
+        out.put("failed", failed.sum());
+        out.put("payments_credited", paymentsCredited.sum());
+        return out;
+    }
+
+    // returns the number of events claimed
+    private int processBatch() {
+        List<Claimed> claimed = tx.execute(status -> claim());
+        if (claimed == null || claimed.isEmpty()) return 0;
+        batches.increment();
+
+        List<Event> events = new ArrayList<>(claimed.size());
+        for (Claimed row : claimed) {
+            Event event = parse(row);
+            if (event != null) events.add(event);
+        }
+
+        try {
+            tx.executeWithoutResult(status -> apply(events));
+        } catch (Exception batchError) {
+            // isolate the bad event(s): every event in its own transaction
+            batchFallbacks.increment();
+            log.warn("Webhook batch of {} failed ({}), retrying events one by one", events.size(), batchError.getMessage());
+            for (Event event : events) {
+                try {
+                    tx.executeWithoutResult(status -> apply(List.of(event)));
+                } catch (Exception ex) {
+                    retryLater(event, ex);
+                }
+            }
+        }
+        return claimed.size();
+    }
+
+    private List<Claimed> claim() {
+        jdbcTemplate.update(RELEASE_STALE, Timestamp.valueOf(LocalDateTime.now().minusSeconds(staleSeconds)));
+
+        List<Long> ids = jdbcTemplate.queryForList(CLAIM, Long.class, batchSize);
+        if (ids.isEmpty()) return List.of();
+
+        String in = String.join(",", Collections.nCopies(ids.size(), "?"));
+        Object[] args = ids.toArray();
+        jdbcTemplate.update("UPDATE razorpay_webhook_event SET status = 'PROCESSING', claimed_at = NOW() " +
+                "WHERE id IN (" + in + ")", args);
+        return jdbcTemplate.query("SELECT id, event_id, payload, attempts FROM razorpay_webhook_event " +
+                        "WHERE id IN (" + in + ") ORDER BY id",
+                (rs, i) -> new Claimed(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getInt(4)), args);
+    }
+
+    // unreadable bodies can never succeed: FAILED right away
+    private Event parse(Claimed row) {
+        try {
+            JsonNode root = objectMapper.readTree(row.payload());
+            String type = root.path("event").asText(null);
+            JsonNode payment = root.path("payload").path("payment").path("entity");
+            Long amount = payment.hasNonNull("amount") ? payment.get("amount").asLong() : null;
+            LocalDateTime capturedAt = payment.hasNonNull("created_at")
+                    ? LocalDateTime.ofInstant(Instant.ofEpochSecond(payment.get("created_at").asLong()), ZoneId.systemDefault())
+                    : null;
+            return new Event(row, type, payment.path("id").asText(null), payment.path("order_id").asText(null),
+                    amount, capturedAt);
+        } catch (Exception ex) {
+            finish(row.id(), null, new Result(WebhookEventStatus.FAILED, truncate("Unreadable payload: " + ex.getMessage())));
+            failed.increment();
+            return null;
+        }
+    }
+
+    private void apply(List<Event> events) {
+        Set<String> paymentIds = new LinkedHashSet<>();
+        Set<String> orderIds = new LinkedHashSet<>();
+        for (Event e : events) {
+            if (isCapture(e) && e.paymentId() != null) {
+                paymentIds.add(e.paymentId());
+                if (e.orderId() != null) orderIds.add(e.orderId());
+            }
+        }
+
+        // two queries for the whole batch
+        Set<String> recorded = new HashSet<>();
+        if (!paymentIds.isEmpty()) {
+            feePaymentRepo.findByRazorpayPaymentIdInWithStudentFee(paymentIds)
+                    .forEach(p -> recorded.add(p.getRazorpayPaymentId()));
+        }
+        Map<String, List<FeePayment>> pendingByOrder = new HashMap<>();
+        if (!orderIds.isEmpty()) {
+            for (FeePayment p : feePaymentRepo.findByRazorpayOrderIdInAndStatusWithStudentFee(orderIds, PaymentStatus.PENDING)) {
+                pendingByOrder.computeIfAbsent(p.getRazorpayOrderId(), k -> new ArrayList<>()).add(p);
+            }
+        }
+
+        List<Object[]> finished = new ArrayList<>(events.size());
+        for (Event e : events) {
+            Result result;
+            if (isCapture(e)) {
+                result = applyCapture(e, recorded, pendingByOrder);
+            } else if ("payment.failed".equals(e.type())) {
+                // the payer may retry on the same order; stale PENDING rows are left to reconciliation
+                result = new Result(WebhookEventStatus.PROCESSED, "Payment failed, fee payments left pending");
+            } else {
+                result = new Result(WebhookEventStatus.IGNORED, "Event type not handled");
+            }
+            finished.add(new Object[]{result.status().name(), e.type(), result.outcome(), e.row().id()});
+        }
+        jdbcTemplate.batchUpdate(FINISH, finished);
+
+        for (Object[] row : finished) {
+            if (WebhookEventStatus.IGNORED.name().equals(row[0])) ignored.increment();
+            else if (WebhookEventStatus.FAILED.name().equals(row[0])) failed.increment();
+            else processed.increment();
+        }
+    }
+
+    private Result applyCapture(Event e, Set<String> recorded, Map<String, List<FeePayment>> pendingByOrder) {
+        if (e.paymentId() == null || e.orderId() == null) {
+            return new Result(WebhookEventStatus.IGNORED, "No payment / order id in payload");
+        }
+        // payment.captured and order.paid arrive for the same payment; only the first one credits
+        if (recorded.contains(e.paymentId())) {
+            return new Result(WebhookEventStatus.PROCESSED, "Already confirmed");
+        }
+
+        List<FeePayment> pending = pendingByOrder.remove(e.orderId());
+        if (pending == null || pending.isEmpty()) {
+            // reconciliation (or the order outbox) expired them before the capture arrived: money taken, fee
+            // not credited; needs a human to refund or credit by hand
+            if (feePaymentRepo.existsByRazorpayOrderIdAndStatus(e.orderId(), PaymentStatus.FAILED)) {
+                return new Result(WebhookEventStatus.FAILED, "Captured after the fee payments of order "
+                        + e.orderId() + " were expired");
+            }
+            return new Result(WebhookEventStatus.PROCESSED, "No pending fee payment for order " + e.orderId());
+        }
+
+        long expected = OnlinePaymentCreditor.totalPaise(pending);
+        if (e.amountPaise() != null && expected != e.amountPaise()) {
+            // never credit a different amount than what was captured; needs a human
+            pendingByOrder.put(e.orderId(), pending);
+            return new Result(WebhookEventStatus.FAILED, "Amount mismatch: captured " + e.amountPaise()
+                    + " paise, pending payments total " + expected + " paise");
+        }
+
+        try {
+            creditor.credit(pending, e.paymentId(), e.orderId(), e.capturedAt() != null ? e.capturedAt() : LocalDateTime.now());
+        } catch (ApiException ex) {
+            // confirm_payment claimed the payment id first and is crediting it; nothing was changed here
+            if (ex.getStatus() != HttpStatus.CONFLICT) throw ex;
+            recorded.add(e.paymentId());
+            return new Result(WebhookEventStatus.PROCESSED, "Already confirmed");
+        }
+        recorded.add(e.paymentId());
+        paymentsCredited.add(pending.size());
+        return new Result(WebhookEventStatus.PROCESSED, "Credited " + pending.size() + " fee payment(s)");
+    }
+
+    private void retryLater(Event e, Exception ex) {
+        int attempt = e.row().attempts() + 1;
+        boolean giveUp = attempt >= maxAttempts;
+        long backoff = Math.min(MAX_BACKOFF_SECONDS, 1L << Math.min(attempt, 12));
+        try {
+            jdbcTemplate.update(RETRY,
+                    giveUp ? WebhookEventStatus.FAILED.name() : WebhookEventStatus.PENDING.name(),
+                    e.type(),
+                    truncate(ex.getMessage()),
+                    Timestamp.valueOf(LocalDateTime.now().plusSeconds(backoff)),
+                    e.row().id());
+        } catch (Exception updateError) {
+            // the row stays PROCESSING and is released by the stale sweep
+            log.error("Could not reschedule webhook event {}: {}", e.row().eventId(), updateError.getMessage());
+        }
+        if (giveUp) {
+            failed.increment();
+            log.error("Webhook event {} failed after {} attempts: {}", e.row().eventId(), attempt, ex.getMessage());
+        } else {
+            retried.increment();
+        }
+    }
+
+    private void finish(long id, String type, Result result) {
+        jdbcTemplate.update(FINISH, result.status().name(), type, result.outcome(), id);
+    }
+
+    private static boolean isCapture(Event e) {
+        return "payment.captured".equals(e.type()) || "order.paid".equals(e.type());
+    }
+
+    private static String truncate(String message) {
+        if (message == null) return null;
+        return message.length() <= 500 ? message : message.substring(0, 500);
+    }
+}
@@ -0,0 +1,65 @@
+package com.java.sms.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BoundedTtlMapTest {
+
+    // values are their own expiry time
+    private final BoundedTtlMap<Integer, Long> map = new BoundedTtlMap<>(100, (expiresAt, now) -> now >= expiresAt);
+
+    @Test
+    void fullMapDropsExpiredEntriesBeforeLiveOnes() {
+        long live = System.currentTimeMillis() + 60_000;
+        for (int i = 0; i < 100; i++) {
+            map.put(i, i < 30 ? 0L : live);
+        }
+
+        map.put(100, live);
+
+        assertEquals(71, map.size());
+        assertEquals(30L, map.evictions());
+        assertNotNull(map.getFresh(99));
+    }
+
+    @Test
+    void fullMapOfLiveEntriesDropsATenthNotEverything() {
+        long live = System.currentTimeMillis() + 60_000;
+        for (int i = 0; i < 100; i++) {
+            map.put(i, live);
+        }
+
+        map.put(100, live);
+
+        assertEquals(91, map.size());
+        assertEquals(10L, map.evictions());
+    }
+
+    @Test
+    void expiredValueIsNotFreshButStillThere() {
+        map.put(1, 0L);
+
+        assertNull(map.getFresh(1));
+        assertEquals(0L, map.get(1));
+    }
+
+    @Test
+    void everyRemovalCountsAsAnEviction() {
+        long live = System.currentTimeMillis() + 60_000;
+        for (int i = 0; i < 10; i++) {
+            map.put(i, live);
+        }
+
+        map.remove(0);
+        map.remove(1, 42L); // no longer that value: kept
+        map.removeIf(v -> false);
+        map.remove(2, live);
+        map.clear();
+
+        assertEquals(0, map.size());
+        assertEquals(10L, map.evictions());
+    }
+}
@@ -0,0 +1,47 @@
+package com.java.sms.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ErrorFingerprintTest {
+
+    @Test
+    void idsInTheEndpointAndMessageDoNotChangeTheFingerprint() {
+        assertEquals(
+                ErrorFingerprint.of("/student-fees/42/history", "ApiException", "Student 17 not found"),
+                ErrorFingerprint.of("/student-fees/9001/history", "ApiException", "Student 3 not found"));
+    }
+
+    @Test
+    void uuidsHashesCaseAndSpacingAreNormalized() {
+        assertEquals("token ? revoked", ErrorFingerprint.normalizeMessage("Token 3f2b8c1e-1a2b-4c3d-8e9f-0a1b2c3d4e5f revoked"));
+        assertEquals("signature ? rejected", ErrorFingerprint.normalizeMessage("Signature deadbeefcafebabe0123 rejected"));
+        assertEquals("order # failed", ErrorFingerprint.normalizeMessage("  ORDER   12\tfailed "));
+    }
+
+    @Test
+    void differentTypeEndpointOrMessageIsADifferentError() {
+        String base = ErrorFingerprint.of("/users", "ApiException", "Not found");
+        assertNotEquals(base, ErrorFingerprint.of("/users", "NullPointerException", "Not found"));
+        assertNotEquals(base, ErrorFingerprint.of("/students", "ApiException", "Not found"));
+        assertNotEquals(base, ErrorFingerprint.of("/users", "ApiException", "Forbidden"));
+    }
+
+    @Test
+    void nullPartsAreAllowed() {
+        String fingerprint = ErrorFingerprint.of(null, null, null);
+        assertEquals(64, fingerprint.length());
+        assertEquals(fingerprint, ErrorFingerprint.of("", "", ""));
+        assertEquals("", ErrorFingerprint.normalizeMessage(null));
+    }
+
+    @Test
+    void hugeMessagesAreCappedAt500Chars() {
+        String message = "x".repeat(10_000);
+        assertEquals(500, ErrorFingerprint.normalizeMessage(message).length());
+        assertTrue(ErrorFingerprint.of("/a", "E", message).matches("[0-9a-f]{64}"));
+    }
+}
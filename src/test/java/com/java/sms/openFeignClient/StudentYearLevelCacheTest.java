@@ -0,0 +1,115 @@
+package com.java.sms.openFeignClient;
+
+import com.java.sms.response.StudentYearLevelResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The Django {@code ?ids=} endpoint is a mocked {@link StudentYearClient}: it answers every id it is asked for
+ * except those listed in {@link #unknown}.
+ */
+class StudentYearLevelCacheTest {
+
+    private final StudentYearClient client = mock(StudentYearClient.class);
+    private final List<Long> unknown = List.of(404L);
+
+    StudentYearLevelCacheTest() {
+        when(client.getStudentYearLevels(anyString())).thenAnswer(inv -> Arrays.stream(((String) inv.getArgument(0)).split(","))
+                .map(Long::valueOf)
+                .filter(id -> !unknown.contains(id))
+                .map(StudentYearLevelCacheTest::studentYear)
+                .toList());
+    }
+
+    @Test
+    void missesAreFetchedInChunksThroughTheBulkEndpoint() {
+        StudentYearLevelCache cache = new StudentYearLevelCache(client, 100, 300, 2, 4);
+
+        Map<Long, StudentYearLevelResponse> out = cache.getAll(List.of(1L, 2L, 3L, 4L, 5L));
+
+        assertEquals(5, out.size());
+        verify(client).getStudentYearLevels("1,2");
+        verify(client).getStudentYearLevels("3,4");
+        verify(client).getStudentYearLevels("5");
+        verify(client, never()).getStudentYearLevel(anyLong());
+    }
+
+    @Test
+    void freshEntriesAreNotFetchedAgain() {
+        StudentYearLevelCache cache = new StudentYearLevelCache(client, 100, 300, 100, 4);
+        cache.getAll(List.of(1L, 2L));
+
+        Map<Long, StudentYearLevelResponse> out = cache.getAll(List.of(1L, 2L, 3L));
+
+        assertEquals(3, out.size());
+        verify(client).getStudentYearLevels("1,2");
+        verify(client).getStudentYearLevels("3");
+    }
+
+    @Test
+    void idsDjangoDoesNotKnowAreAbsentWithoutPerIdCalls() {
+        StudentYearLevelCache cache = new StudentYearLevelCache(client, 100, 300, 100, 4);
+
+        Map<Long, StudentYearLevelResponse> out = cache.getAll(List.of(1L, 404L));
+
+        assertEquals(1, out.size());
+        assertFalse(out.containsKey(404L));
+        verify(client, never()).getStudentYearLevel(anyLong());
+    }
+
+    @Test
+    void rowsThatWereNotAskedForAreIgnored() {
+        doReturn(List.of(studentYear(1L), studentYear(99L))).when(client).getStudentYearLevels("1");
+        StudentYearLevelCache cache = new StudentYearLevelCache(client, 100, 300, 100, 4);
+
+        assertEquals(List.of(1L), List.copyOf(cache.getAll(List.of(1L)).keySet()));
+        assertEquals(1, cache.stats().get("size"));
+    }
+
+    @Test
+    void failedBulkCallServesStaleEntriesAndNeverFansOut() throws InterruptedException {
+        StudentYearLevelCache cache = new StudentYearLevelCache(client, 100, 1, 100, 4);
+        cache.getAll(List.of(1L, 2L));
+        Thread.sleep(1100); // past the 1s TTL
+
+        // Django down: the fallback factory answers null
+        doReturn(null).when(client).getStudentYearLevels(anyString());
+        Map<Long, StudentYearLevelResponse> out = cache.getAll(List.of(1L, 2L, 3L));
+
+        assertEquals(2, out.size());
+        assertFalse(out.containsKey(3L));
+        verify(client, never()).getStudentYearLevel(anyLong());
+        assertEquals(2L, cache.stats().get("stale_served"));
+    }
+
+    @Test
+    void bulkExceptionIsTreatedLikeTheFallback() {
+        doThrow(new IllegalStateException("connection refused")).when(client).getStudentYearLevels(anyString());
+        StudentYearLevelCache cache = new StudentYearLevelCache(client, 100, 300, 1, 4);
+
+        Map<Long, StudentYearLevelResponse> out = cache.getAll(List.of(1L, 2L, 3L));
+
+        assertEquals(0, out.size());
+        verify(client, times(3)).getStudentYearLevels(anyString());
+        verify(client, never()).getStudentYearLevel(anyLong());
+    }
+
+    private static StudentYearLevelResponse studentYear(Long id) {
+        return StudentYearLevelResponse.builder().id(id).studentName("Student " + id).build();
+    }
+}
@@ -0,0 +1,127 @@
+package com.java.sms.openFeignClient;
+
+import com.java.sms.exception.ApiException;
+import com.java.sms.response.YearLevelResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class YearLevelDirectoryTest {
+
+    private final YearLevelClient client = mock(YearLevelClient.class);
+    private YearLevelDirectory directory;
+
+    @AfterEach
+    void tearDown() {
+        if (directory != null) directory.shutdown();
+    }
+
+    @Test
+    void coldStartLoadsOnceAndLooksUpCaseInsensitively() {
+        doReturn(List.of(level(1L, "Class 1"), level(2L, "Class 2"))).when(client).getAllYearLevels();
+        directory = new YearLevelDirectory(client, 900, 60, 30, 5000);
+
+        assertEquals(Optional.of(1L), directory.findIdByName(" class 1 "));
+        assertEquals(Optional.of("Class 2"), directory.findNameById(2L));
+        verify(client, times(1)).getAllYearLevels();
+    }
+
+    @Test
+    void coldStartFailureIs503AndBacksOff() {
+        doThrow(new IllegalStateException("connection refused")).when(client).getAllYearLevels();
+        directory = new YearLevelDirectory(client, 900, 60, 30, 5000);
+
+        ApiException first = assertThrows(ApiException.class, () -> directory.findIdByName("Class 1"));
+        assertTrue(first.getMessage().contains("connection refused"));
+        // inside retry-seconds: fails fast, Django is not called again
+        assertThrows(ApiException.class, () -> directory.findIdByName("Class 1"));
+        verify(client, times(1)).getAllYearLevels();
+    }
+
+    @Test
+    void staleCopyIsServedWhileTheRefreshRunsInTheBackground() throws Exception {
+        doReturn(List.of(level(1L, "Class 1"))).when(client).getAllYearLevels();
+        directory = new YearLevelDirectory(client, 1, 60, 30, 5000);
+        directory.all();
+        Thread.sleep(1100); // past the 1s TTL
+
+        CountDownLatch refreshStarted = new CountDownLatch(1);
+        CountDownLatch releaseRefresh = new CountDownLatch(1);
+        doAnswer(inv -> {
+            refreshStarted.countDown();
+            releaseRefresh.await(5, TimeUnit.SECONDS);
+            return List.of(level(1L, "Class One"));
+        }).when(client).getAllYearLevels();
+
+        // answered from the stale copy even though Django is hanging
+        assertEquals(Optional.of("Class 1"), directory.findNameById(1L));
+        assertTrue(refreshStarted.await(5, TimeUnit.SECONDS));
+        assertEquals(Optional.of("Class 1"), directory.findNameById(1L));
+
+        releaseRefresh.countDown();
+        waitFor(() -> directory.findNameById(1L).equals(Optional.of("Class One")));
+        verify(client, times(2)).getAllYearLevels();
+    }
+
+    @Test
+    void failedRevalidationKeepsTheCopyAndIsNotRetriedPerRequest() throws Exception {
+        doReturn(List.of(level(1L, "Class 1"))).when(client).getAllYearLevels();
+        directory = new YearLevelDirectory(client, 1, 60, 30, 5000);
+        directory.all();
+        Thread.sleep(1100);
+
+        doThrow(new IllegalStateException("502")).when(client).getAllYearLevels();
+        directory.all();
+        waitFor(() -> ((long) directory.stats().get("refresh_failures")) == 1L);
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(Optional.of(1L), directory.findIdByName("Class 1"));
+        }
+        verify(client, times(2)).getAllYearLevels();
+    }
+
+    @Test
+    void missRefreshPicksUpANewLevelOncePerWindow() throws Exception {
+        doReturn(List.of(level(1L, "Class 1"))).when(client).getAllYearLevels();
+        directory = new YearLevelDirectory(client, 900, 1, 30, 5000);
+        directory.all();
+        Thread.sleep(1100); // past miss-refresh-seconds
+
+        doReturn(List.of(level(1L, "Class 1"), level(3L, "Class 3"))).when(client).getAllYearLevels();
+        assertEquals(Optional.of(3L), directory.findIdByName("Class 3"));
+
+        // a name Django really does not have: no refresh until the window passes again
+        assertEquals(Optional.empty(), directory.findIdByName("Class 9"));
+        assertEquals(Optional.empty(), directory.findIdByName("Class 9"));
+        verify(client, times(2)).getAllYearLevels();
+    }
+
+    private static YearLevelResponse level(Long id, String name) {
+        YearLevelResponse level = new YearLevelResponse();
+        level.setId(id);
+        level.setLevelName(name);
+        return level;
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) throw new AssertionError("condition not met in 5s");
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.java.sms.repository;
+
+import com.java.sms.response.ErrorLogSummaryResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The ErrorLog keyset list query against H2 in MySQL mode. The chunked purge is MySQL-only SQL
+ * (DELETE ... ORDER BY ... LIMIT), its loop is covered in ErrorLogServiceImplTest.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ContextConfiguration(classes = JpaSliceConfiguration.class)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:jpaslice;MODE=MySQL;DB_CLOSE_DELAY=-1;NON_KEYWORDS=TIMESTAMP,MONTH,YEAR,VALUE",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class ErrorLogRepositoryTest {
+
+    private static final OffsetDateTime NOW = OffsetDateTime.now().withNano(0);
+
+    @Autowired
+    private ErrorLogRepository repository;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void seed() {
+        jdbc.update("DELETE FROM error_log");
+        // ids 1..10, oldest first; even ids are 404s on /student-fees, odd ones 500s on /fee_structures
+        for (int i = 1; i <= 10; i++) {
+            OffsetDateTime at = NOW.minusDays(20 - i);
+            insert(i, i % 2 == 0 ? 404 : 500, i % 2 == 0 ? "/student-fees/" + i : "/fee_structures/" + i,
+                    i % 2 == 0 ? "ApiException" : "NullPointerException", at, at);
+        }
+    }
+
+    @Test
+    void pagesWalkTheIdsNewestFirstWithoutGapsOrRepeats() {
+        List<ErrorLogSummaryResponse> first = page(null, null, null, null, null, null, 4);
+        assertEquals(List.of(10L, 9L, 8L, 7L), ids(first));
+
+        List<ErrorLogSummaryResponse> second = page(7L, null, null, null, null, null, 4);
+        assertEquals(List.of(6L, 5L, 4L, 3L), ids(second));
+
+        assertEquals(List.of(2L, 1L), ids(page(3L, null, null, null, null, null, 4)));
+    }
+
+    @Test
+    void everyFilterNarrowsThePage() {
+        assertEquals(List.of(10L, 8L, 6L, 4L, 2L), ids(page(null, 404, null, null, null, null, 20)));
+        assertEquals(List.of(9L, 7L, 5L, 3L, 1L), ids(page(null, null, "/fee%", null, null, null, 20)));
+        assertEquals(List.of(10L, 8L), ids(page(null, null, null, "ApiException", NOW.minusDays(13), null, 20)));
+        // from inclusive, to exclusive
+        assertEquals(List.of(7L, 6L), ids(page(null, null, null, null, NOW.minusDays(14), NOW.minusDays(12), 20)));
+        // filters and cursor combine
+        assertEquals(List.of(6L, 4L), ids(page(8L, 404, "/student-fees/%", "ApiException", NOW.minusDays(17), null, 20)));
+    }
+
+    @Test
+    void escapedUnderscoreInThePrefixIsLiteral() {
+        // "/fee\_" matches /fee_structures only, not a path with any character after "/fee"
+        insert(11, 500, "/feeXstructures/11", "NullPointerException", NOW, NOW);
+
+        assertEquals(List.of(9L, 7L, 5L, 3L, 1L), ids(page(null, 500, "/fee\\_%", null, null, null, 20)));
+    }
+
+    private List<ErrorLogSummaryResponse> page(Long cursor, Integer statusCode, String endpointPrefix, String errorType,
+                                               OffsetDateTime from, OffsetDateTime to, int limit) {
+        return repository.findPage(cursor, statusCode, endpointPrefix, errorType, null, from, to,
+                PageRequest.of(0, limit));
+    }
+
+    private void insert(long id, int status, String endpoint, String errorType, OffsetDateTime at,
+                        OffsetDateTime lastSeen) {
+        jdbc.update("INSERT INTO error_log (id, endpoint, method, status_code, error_type, error_message, timestamp, " +
+                        "fingerprint, occurrence_count, first_seen, last_seen) VALUES (?, ?, 'GET', ?, ?, 'boom', ?, ?, 1, ?, ?)",
+                id, endpoint, status, errorType, Timestamp.from(at.toInstant()), "fp" + id,
+                Timestamp.from(at.toInstant()), Timestamp.from(lastSeen.toInstant()));
+    }
+
+    private static List<Long> ids(List<ErrorLogSummaryResponse> rows) {
+        return rows.stream().map(ErrorLogSummaryResponse::getId).toList();
+    }
+}
@@ -0,0 +1,27 @@
+package com.java.sms.repository;
+
+import com.java.sms.serviceImpl.FeeCollectionRollupWriter;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Entities and repositories on H2 for the query tests, without the Feign clients and schedulers the
+ * application class pulls in. StudentFee's entity listener looks the rollup writer up on every load, so a mock
+ * stands in for it.
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration
+@EntityScan("com.java.sms.model")
+@EnableJpaRepositories(basePackageClasses = ErrorLogRepository.class)
+public class JpaSliceConfiguration {
+
+    @Bean
+    FeeCollectionRollupWriter feeCollectionRollupWriter() {
+        return mock(FeeCollectionRollupWriter.class);
+    }
+}
@@ -0,0 +1,159 @@
+package com.java.sms.security;
+
+import com.java.sms.model.RevokedToken;
+import com.java.sms.repository.RevokedTokenRepository;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class JwtBlacklistServiceTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    private final VerifiedTokenCache tokenCache = mock(VerifiedTokenCache.class);
+    private final RevokedTokenRepository repository = mock(RevokedTokenRepository.class);
+
+    @Test
+    void revokedTokenIsRejectedOthersPassThroughTheBloomFilter() {
+        JwtBlacklistService service = new JwtBlacklistService(tokenCache, repository, 1 << 20);
+
+        service.blacklistToken("h.p.revoked", System.currentTimeMillis() + HOUR);
+
+        assertTrue(service.isBlacklisted("h.p.revoked"));
+        assertFalse(service.isBlacklisted("h.p.other"));
+        assertFalse(service.isBlacklisted(null));
+        assertEquals(1L, service.stats().get("rejected"));
+        assertEquals(1L, service.stats().get("bloom_negatives"));
+        verify(tokenCache).invalidate("h.p.revoked");
+        verify(repository).save(any(RevokedToken.class));
+    }
+
+    @Test
+    void alreadyExpiredTokenIsOnlyDroppedFromTheCache() {
+        JwtBlacklistService service = new JwtBlacklistService(tokenCache, repository, 1 << 20);
+
+        service.blacklistToken("h.p.old", System.currentTimeMillis() - 1_000);
+
+        assertFalse(service.isBlacklisted("h.p.old"));
+        assertEquals(0, service.stats().get("size"));
+        verify(tokenCache).invalidate("h.p.old");
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void failedSaveStillRevokesOnThisNode() {
+        doThrow(new IllegalStateException("db down")).when(repository).save(any());
+        JwtBlacklistService service = new JwtBlacklistService(tokenCache, repository, 1 << 20);
+
+        service.blacklistToken("h.p.revoked", System.currentTimeMillis() + HOUR);
+
+        assertTrue(service.isBlacklisted("h.p.revoked"));
+        assertEquals(1L, service.stats().get("persist_failures"));
+    }
+
+    @Test
+    void bloomFilterKeepsFalsePositivesRareAndNeverRejectsThem() {
+        JwtBlacklistService service = new JwtBlacklistService(tokenCache, repository, 1 << 20);
+        long expiry = System.currentTimeMillis() + HOUR;
+        for (int i = 0; i < 1_000; i++) service.blacklistToken("h.p.revoked" + i, expiry);
+
+        for (int i = 0; i < 100_000; i++) {
+            assertFalse(service.isBlacklisted("h.p.live" + i));
+        }
+        // 3 hashes over 1M bits with 1000 entries: expected rate is about 1e-8
+        assertTrue((long) service.stats().get("bloom_false_positives") < 10);
+    }
+
+    @Test
+    void tinyBloomFilterStillAnswersCorrectly() {
+        // 64 bits saturate quickly: almost every lookup is a possible hit and falls through to the map
+        JwtBlacklistService service = new JwtBlacklistService(tokenCache, repository, 1);
+        long expiry = System.currentTimeMillis() + HOUR;
+        for (int i = 0; i < 200; i++) service.blacklistToken("h.p.revoked" + i, expiry);
+
+        assertEquals(64, service.stats().get("bloom_bits"));
+        for (int i = 0; i < 200; i++) {
+            assertTrue(service.isBlacklisted("h.p.revoked" + i));
+            assertFalse(service.isBlacklisted("h.p.live" + i));
+        }
+    }
+
+    @Test
+    void warmLoadRejectsTokensRevokedBeforeTheRestart() {
+        doReturn(List.of(row("h.p.revoked", System.currentTimeMillis() + HOUR)))
+                .when(repository).findByExpiresAtAfter(any());
+        JwtBlacklistService service = new JwtBlacklistService(tokenCache, repository, 1 << 20);
+
+        service.warmLoad();
+
+        assertTrue(service.isBlacklisted("h.p.revoked"));
+    }
+
+    @Test
+    void sweepDropsWholeExpiredBucketsAndRebuildsTheBloomFilter() {
+        long now = System.currentTimeMillis();
+        // expired rows only come back this way if they were loaded just before their expiry
+        doReturn(List.of(row("h.p.gone1", now - 2 * 60_000), row("h.p.gone2", now - 3 * 60_000)))
+                .when(repository).findByExpiresAtAfter(any());
+        JwtBlacklistService service = new JwtBlacklistService(tokenCache, repository, 1 << 20);
+        service.warmLoad();
+        service.blacklistToken("h.p.live", now + HOUR);
+        assertEquals(3, service.stats().get("expiry_buckets"));
+
+        service.sweepExpired();
+
+        assertEquals(1, service.stats().get("size"));
+        assertEquals(1, service.stats().get("expiry_buckets"));
+        // the rebuilt filter still has the live token's bits
+        assertTrue(service.isBlacklisted("h.p.live"));
+        assertFalse(service.isBlacklisted("h.p.gone1"));
+        verify(repository).deleteExpired(any(Instant.class));
+    }
+
+    @Test
+    void syncPullsInOtherReplicasAndIgnoresOurOwnWrites() {
+        long expiry = System.currentTimeMillis() + HOUR;
+        JwtBlacklistService service = new JwtBlacklistService(tokenCache, repository, 1 << 20);
+        service.blacklistToken("h.p.ours", expiry);
+        doReturn(List.of(row("h.p.ours", expiry), row("h.p.theirs", expiry)))
+                .when(repository).findByRevokedAtAfterAndExpiresAtAfter(any(), any());
+
+        service.syncFromDatabase();
+
+        assertTrue(service.isBlacklisted("h.p.theirs"));
+        assertEquals(2, service.stats().get("size"));
+        assertEquals(1, service.stats().get("expiry_buckets"));
+    }
+
+    private static RevokedToken row(String token, long expiresAtMillis) {
+        return RevokedToken.builder()
+                .tokenHash(sha256(token))
+                .bloomHint(token.hashCode())
+                .expiresAt(Instant.ofEpochMilli(expiresAtMillis))
+                .revokedAt(Instant.now())
+                .build();
+    }
+
+    private static String sha256(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
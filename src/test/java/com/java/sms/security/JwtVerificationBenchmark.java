@@ -0,0 +1,79 @@
+package com.java.sms.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT work per authenticated request: the old filter path against the prebuilt parser and the verified-token cache.
+ *
+ * <p>{@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=JwtVerificationBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtVerificationBenchmark {
+
+    private static final String SECRET = "benchmark-secret-benchmark-secret-0123456789";
+
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil(SECRET, new VerifiedTokenCache(10_000));
+        token = jwtUtil.generateAccessToken("director@school.in", List.of("ROLE_DIRECTOR", "ROLE_TEACHER"));
+    }
+
+    /**
+     * What JwtAuthenticationFilter used to do: extractTokenType, extractEmail, isTokenValid (extractEmail +
+     * isTokenExpired) and extractRoles, each deriving the key and building a parser before parsing again.
+     */
+    @Benchmark
+    public void perCallParsers(Blackhole bh) {
+        bh.consume(legacyClaims(token).get("type", String.class));
+        String email = legacyClaims(token).getSubject();
+        bh.consume(email.equals(legacyClaims(token).getSubject())
+                && !legacyClaims(token).getExpiration().before(new Date()));
+        bh.consume(legacyClaims(token).get("roles"));
+    }
+
+    /** One parse with the parser and key built at startup. */
+    @Benchmark
+    public VerifiedToken prebuiltParser() {
+        return jwtUtil.verify(token);
+    }
+
+    /** The filter's path today: a token seen before is served from VerifiedTokenCache. */
+    @Benchmark
+    public VerifiedToken verifiedTokenCache() {
+        return jwtUtil.verifyCachedOrNull(token);
+    }
+
+    private static Claims legacyClaims(String token) {
+        return Jwts.parser()
+                .verifyWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+    }
+}
@@ -0,0 +1,74 @@
+package com.java.sms.security;
+
+import com.java.sms.model.User;
+import com.java.sms.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PrincipalCacheTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+
+    PrincipalCacheTest() {
+        when(userRepository.findByEmail(anyString())).thenAnswer(inv -> {
+            String email = inv.getArgument(0);
+            User user = new User();
+            user.setId((long) email.hashCode());
+            user.setEmail(email);
+            return Optional.of(user);
+        });
+    }
+
+    @Test
+    void secondLookupIsServedFromTheCache() {
+        PrincipalCache cache = new PrincipalCache(userRepository, 100, 300);
+
+        cache.get("a@school.in");
+        cache.get("a@school.in");
+
+        verify(userRepository, times(1)).findByEmail("a@school.in");
+        assertEquals(1L, cache.stats().get("hits"));
+    }
+
+    @Test
+    void fullCacheDropsAFractionNotEverything() {
+        PrincipalCache cache = new PrincipalCache(userRepository, 100, 300);
+        for (int i = 0; i < 100; i++) cache.get("user" + i + "@school.in");
+
+        cache.get("new@school.in");
+
+        int size = (int) cache.stats().get("size");
+        assertEquals(91, size); // 10% dropped, then the new entry
+    }
+
+    @Test
+    void expiredEntriesGoFirst() {
+        // ttl 0: everything already loaded is expired, so making room drops only those
+        PrincipalCache cache = new PrincipalCache(userRepository, 10, 0);
+        for (int i = 0; i < 10; i++) cache.get("user" + i + "@school.in");
+
+        cache.get("new@school.in");
+
+        assertEquals(1, cache.stats().get("size"));
+    }
+
+    @Test
+    void evictUserRemovesByIdOnly() {
+        PrincipalCache cache = new PrincipalCache(userRepository, 100, 300);
+        cache.get("a@school.in");
+        cache.get("b@school.in");
+
+        cache.evictUser((long) "a@school.in".hashCode());
+
+        assertEquals(1, cache.stats().get("size"));
+        assertEquals(1L, cache.stats().get("evictions"));
+    }
+}
@@ -0,0 +1,84 @@
+package com.java.sms.security;
+
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class VerifiedTokenCacheTest {
+
+    @Test
+    void sameTokenIsAHit() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100);
+        VerifiedToken verified = verified("h.p.sig1", 60_000);
+        cache.put(verified);
+
+        assertSame(verified, cache.get("h.p.sig1"));
+        assertEquals(1L, cache.stats().get("hits"));
+    }
+
+    @Test
+    void sameSignatureOnADifferentPayloadIsAMiss() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100);
+        cache.put(verified("h.p.sig1", 60_000));
+
+        assertNull(cache.get("h.forged.sig1"));
+        assertEquals(0L, cache.stats().get("hits"));
+    }
+
+    @Test
+    void malformedTokensAreMisses() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100);
+
+        assertNull(cache.get(null));
+        assertNull(cache.get("no-dots"));
+        assertNull(cache.get("h.p."));
+        assertEquals(3L, cache.stats().get("misses"));
+    }
+
+    @Test
+    void expiredTokensAreNeitherStoredNorServed() throws InterruptedException {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100);
+        cache.put(verified("h.p.old", -1_000));
+        assertEquals(0, cache.stats().get("size"));
+
+        cache.put(verified("h.p.short", 1_000));
+        Thread.sleep(1100); // jwt expiry has second precision
+        assertNull(cache.get("h.p.short"));
+        assertEquals(0, cache.stats().get("size"));
+    }
+
+    @Test
+    void invalidateDropsTheToken() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100);
+        cache.put(verified("h.p.sig1", 60_000));
+
+        cache.invalidate("h.p.sig1");
+
+        assertNull(cache.get("h.p.sig1"));
+        assertEquals(1L, cache.stats().get("evictions"));
+    }
+
+    @Test
+    void fullCacheDropsAFractionNotEverything() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100);
+        for (int i = 0; i < 100; i++) cache.put(verified("h.p.sig" + i, 60_000));
+
+        cache.put(verified("h.p.new", 60_000));
+
+        assertEquals(91, cache.stats().get("size")); // 10% dropped, then the new entry
+        assertEquals(10L, cache.stats().get("evictions"));
+    }
+
+    private static VerifiedToken verified(String token, long expiresInMillis) {
+        return new VerifiedToken(token, Jwts.claims()
+                .subject("a@school.in")
+                .expiration(new Date(System.currentTimeMillis() + expiresInMillis))
+                .add("type", "accessToken")
+                .build());
+    }
+}
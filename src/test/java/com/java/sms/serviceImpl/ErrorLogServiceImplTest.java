@@ -0,0 +1,105 @@
+package com.java.sms.serviceImpl;
+
+import com.java.sms.exception.ApiException;
+import com.java.sms.repository.ErrorLogRepository;
+import com.java.sms.response.ErrorLogSummaryResponse;
+import com.java.sms.response.KeysetPageResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ErrorLogServiceImplTest {
+
+    private final ErrorLogRepository repository = mock(ErrorLogRepository.class);
+    // 30 days retention, chunks of 3, no pause between chunks
+    private final ErrorLogServiceImpl service =
+            new ErrorLogServiceImpl(repository, mock(ErrorLogWriter.class), 30, 3, 0);
+
+    @Test
+    void purgeRepeatsChunksUntilOneComesBackShort() {
+        when(repository.deleteOlderThan(any(), eq(3))).thenReturn(3, 3, 1);
+
+        assertEquals(7, service.purgeExpired());
+        verify(repository, times(3)).deleteOlderThan(any(), eq(3));
+    }
+
+    @Test
+    void purgeStopsAtTheFirstFailureAndReportsWhatWasDeleted() {
+        when(repository.deleteOlderThan(any(), anyInt()))
+                .thenReturn(3)
+                .thenThrow(new QueryTimeoutException("lock wait timeout"));
+
+        assertEquals(3, service.purgeExpired());
+        verify(repository, times(2)).deleteOlderThan(any(), anyInt());
+    }
+
+    @Test
+    void fullPageFetchesOneExtraRowToKnowThereIsMore() {
+        when(repository.findPage(any(), any(), any(), any(), any(), any(), any(), eq(PageRequest.of(0, 4))))
+                .thenReturn(rows(10, 7));
+
+        KeysetPageResponse<ErrorLogSummaryResponse> page =
+                service.search(null, 3, null, null, null, null, null, null);
+
+        assertEquals(List.of(10L, 9L, 8L), page.getItems().stream().map(ErrorLogSummaryResponse::getId).toList());
+        assertTrue(page.isHasMore());
+        assertEquals(8L, page.getNextCursor());
+        assertEquals(3, page.getSize());
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        when(repository.findPage(eq(8L), any(), any(), any(), any(), any(), any(), any())).thenReturn(rows(7, 5));
+
+        KeysetPageResponse<ErrorLogSummaryResponse> page = service.search(8L, 3, null, null, null, null, null, null);
+
+        assertEquals(3, page.getSize());
+        assertFalse(page.isHasMore());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void endpointPrefixIsTrimmedAndItsWildcardsEscaped() {
+        service.search(null, 20, null, "  /fee_structures/100%  ", " ", null, null, null);
+
+        verify(repository).findPage(null, null, "/fee\\_structures/100\\%%", null, null, null, null,
+                PageRequest.of(0, 21));
+    }
+
+    @Test
+    void outOfRangeSizeAndEmptyWindowAreRejectedBeforeQuerying() {
+        OffsetDateTime now = OffsetDateTime.now();
+
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ApiException.class,
+                () -> service.search(null, 0, null, null, null, null, null, null)).getStatus());
+        assertThrows(ApiException.class, () -> service.search(null, 201, null, null, null, null, null, null));
+        assertThrows(ApiException.class, () -> service.search(null, 20, null, null, null, null, now, now));
+        verifyNoInteractions(repository);
+    }
+
+    // ids from newest down to oldest, both inclusive
+    private static List<ErrorLogSummaryResponse> rows(long newest, long oldest) {
+        return LongStream.iterate(newest, id -> id >= oldest, id -> id - 1)
+                .mapToObj(id -> ErrorLogSummaryResponse.builder().id(id).build())
+                .toList();
+    }
+}
@@ -0,0 +1,141 @@
+package com.java.sms.serviceImpl;
+
+import com.java.sms.DataClass.ErrorLogDto;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Fingerprint aggregation against H2 in MySQL mode, with the error_log columns the writer touches.
+ */
+class ErrorLogWriterTest {
+
+    private static int databases;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private ErrorLogWriter writer;
+
+    @BeforeEach
+    void createSchema() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:errors" + (++databases) + ";MODE=MySQL;DB_CLOSE_DELAY=-1;NON_KEYWORDS=TIMESTAMP");
+        dataSource.setMaximumPoolSize(2);
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE error_log (id BIGINT AUTO_INCREMENT PRIMARY KEY, user_id BIGINT, endpoint VARCHAR(1024), " +
+                "method VARCHAR(10), status_code INT, error_type VARCHAR(255), error_message TEXT, traceback_info TEXT, " +
+                "timestamp TIMESTAMP, fingerprint VARCHAR(64), occurrence_count INT, first_seen TIMESTAMP, " +
+                "last_seen TIMESTAMP)");
+    }
+
+    @AfterEach
+    void close() {
+        if (writer != null) writer.stop();
+        dataSource.close();
+    }
+
+    @Test
+    void repeatsOfOneErrorShareARowAcrossBatches() {
+        // one entry per batch: the first inserts, every later one is an aggregate update
+        writer = start(1, 600);
+        for (int id = 1; id <= 5; id++) {
+            writer.enqueue(error("/student-fees/" + id + "/history", "Student " + id + " not found"));
+        }
+        writer.enqueue(error("/fee-structures", "Fee structure missing"));
+        awaitWritten(6);
+
+        List<Map<String, Object>> rows = jdbc.queryForList(
+                "SELECT endpoint, occurrence_count FROM error_log ORDER BY id");
+        assertEquals(2, rows.size());
+        // the first occurrence is kept as the sample
+        assertEquals("/student-fees/1/history", rows.get(0).get("endpoint"));
+        assertEquals(5, rows.get(0).get("occurrence_count"));
+        assertEquals(1, rows.get(1).get("occurrence_count"));
+        assertEquals(4L, writer.stats().get("aggregated"));
+        assertEquals(2, writer.stats().get("open_fingerprints"));
+    }
+
+    @Test
+    void repeatsInsideOneBatchAreFoldedBeforeWriting() {
+        writer = new ErrorLogWriter(jdbc, 100, 20, 1_000, 10, 600);
+        for (int i = 0; i < 20; i++) {
+            writer.enqueue(error("/student-fees/" + i, "Student " + i + " not found"));
+        }
+        // all 20 are queued before the worker starts, so they fill exactly one batch
+        writer.start();
+        awaitWritten(20);
+
+        assertEquals(1, jdbc.queryForObject("SELECT COUNT(*) FROM error_log", Integer.class));
+        assertEquals(20, jdbc.queryForObject("SELECT occurrence_count FROM error_log", Integer.class));
+    }
+
+    @Test
+    void purgedRowIsReopenedInsteadOfLosingTheCount() {
+        writer = start(1, 600);
+        writer.enqueue(error("/student-fees/1", "Student 1 not found"));
+        awaitWritten(1);
+
+        jdbc.update("DELETE FROM error_log");
+        writer.enqueue(error("/student-fees/2", "Student 2 not found"));
+        awaitWritten(2);
+
+        assertEquals(1, jdbc.queryForObject("SELECT COUNT(*) FROM error_log", Integer.class));
+        assertEquals("/student-fees/2", jdbc.queryForObject("SELECT endpoint FROM error_log", String.class));
+        assertEquals(0L, writer.stats().get("aggregated"));
+    }
+
+    @Test
+    void outsideTheDedupWindowEveryBatchOpensANewRow() {
+        writer = start(1, 0);
+        writer.enqueue(error("/student-fees/1", "Student 1 not found"));
+        awaitWritten(1);
+        writer.enqueue(error("/student-fees/2", "Student 2 not found"));
+        awaitWritten(2);
+
+        assertEquals(2, jdbc.queryForObject("SELECT COUNT(*) FROM error_log", Integer.class));
+        assertEquals(1, jdbc.queryForObject(
+                "SELECT COUNT(DISTINCT fingerprint) FROM error_log", Integer.class));
+    }
+
+    private ErrorLogWriter start(int batchSize, long dedupWindowSeconds) {
+        ErrorLogWriter started = new ErrorLogWriter(jdbc, 100, batchSize, 10, 10, dedupWindowSeconds);
+        started.start();
+        return started;
+    }
+
+    private void awaitWritten(long count) {
+        await(() -> (long) writer.stats().get("written") >= count);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static ErrorLogDto error(String endpoint, String message) {
+        ErrorLogDto dto = new ErrorLogDto();
+        dto.setEndpoint(endpoint);
+        dto.setMethod("GET");
+        dto.setStatusCode(404);
+        dto.setErrorType("ApiException");
+        dto.setErrorMessage(message);
+        return dto;
+    }
+}
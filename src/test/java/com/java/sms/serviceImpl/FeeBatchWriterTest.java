@@ -0,0 +1,145 @@
+package com.java.sms.serviceImpl;
+
+import com.java.sms.model.FeePayment;
+import com.java.sms.model.FeeStructure;
+import com.java.sms.model.StudentFee;
+import com.java.sms.model.enums.FeeStatus;
+import com.java.sms.model.enums.PaymentMethod;
+import com.java.sms.model.enums.PaymentStatus;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * The JDBC batch inserts against H2 in MySQL mode, with the student_fee / fee_payment columns they write.
+ */
+class FeeBatchWriterTest {
+
+    private static int databases;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private final FeeCollectionRollupWriter rollupWriter = mock(FeeCollectionRollupWriter.class);
+    private FeeBatchWriter writer;
+
+    @BeforeEach
+    void createSchema() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:batches" + (++databases) + ";MODE=MySQL;DB_CLOSE_DELAY=-1;NON_KEYWORDS=MONTH");
+        dataSource.setMaximumPoolSize(1);
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE student_fee (id BIGINT AUTO_INCREMENT PRIMARY KEY, student_year_id BIGINT NOT NULL, " +
+                "fee_structure_id BIGINT NOT NULL, month INT, school_year_id BIGINT, due_date DATE, " +
+                "original_amount DECIMAL(12,2), paid_amount DECIMAL(12,2), due_amount DECIMAL(12,2), " +
+                "penalty_amount DECIMAL(12,2), applied_discount BOOLEAN, status VARCHAR(20), created_at TIMESTAMP, " +
+                "updated_at TIMESTAMP, receipt_number VARCHAR(50) NOT NULL UNIQUE)");
+        jdbc.execute("CREATE TABLE fee_payment (id BIGINT AUTO_INCREMENT PRIMARY KEY, student_fee_id BIGINT NOT NULL, " +
+                "amount DECIMAL(12,2), payment_method VARCHAR(20), status VARCHAR(20), payment_date TIMESTAMP, " +
+                "received_by_id BIGINT, notes VARCHAR(255), created_at TIMESTAMP, cheque_number VARCHAR(50), " +
+                "razorpay_payment_id VARCHAR(64), razorpay_order_id VARCHAR(64), razorpay_signature VARCHAR(255), " +
+                "razorpay_order_request_id BIGINT)");
+        // ids already taken, so generated keys do not simply start at 1
+        jdbc.execute("ALTER TABLE student_fee ALTER COLUMN id RESTART WITH 500");
+        writer = new FeeBatchWriter(jdbc, rollupWriter);
+    }
+
+    @AfterEach
+    void close() {
+        dataSource.close();
+    }
+
+    @Test
+    void generatedIdsAreSetInInsertOrder() {
+        List<StudentFee> fees = new ArrayList<>();
+        for (int month = 1; month <= 12; month++) {
+            fees.add(fee(month, "REC-" + month));
+        }
+        fees.add(fee(null, "REC-ANNUAL"));
+
+        writer.insertStudentFees(fees);
+
+        for (StudentFee fee : fees) {
+            assertNotNull(fee.getId());
+            assertNotNull(fee.getCreatedAt());
+            Map<String, Object> row = jdbc.queryForMap("SELECT receipt_number, month FROM student_fee WHERE id = ?",
+                    fee.getId());
+            assertEquals(fee.getReceiptNumber(), row.get("receipt_number"));
+            assertEquals(fee.getMonth(), row.get("month"));
+        }
+        assertEquals(500L, fees.get(0).getId());
+        // every new fee reaches the billing rollup; JPA listeners never see these rows
+        verify(rollupWriter, times(13)).feeBilled(any(), any());
+    }
+
+    @Test
+    void paymentsReferenceTheFeesInsertedBeforeThem() {
+        StudentFee april = fee(4, "REC-1");
+        StudentFee may = fee(5, "REC-2");
+        writer.insertStudentFees(List.of(april, may));
+
+        writer.insertFeePayments(List.of(payment(april, "300.00"), payment(may, "150.00"), payment(may, "50.00")));
+
+        List<Map<String, Object>> rows = jdbc.queryForList(
+                "SELECT student_fee_id, SUM(amount) AS paid FROM fee_payment GROUP BY student_fee_id ORDER BY student_fee_id");
+        assertEquals(2, rows.size());
+        assertEquals(april.getId(), ((Number) rows.get(0).get("student_fee_id")).longValue());
+        assertEquals(0, new BigDecimal("300.00").compareTo((BigDecimal) rows.get(0).get("paid")));
+        assertEquals(may.getId(), ((Number) rows.get(1).get("student_fee_id")).longValue());
+        assertEquals(0, new BigDecimal("200.00").compareTo((BigDecimal) rows.get(1).get("paid")));
+        assertNull(jdbc.queryForObject("SELECT razorpay_order_request_id FROM fee_payment WHERE amount = 50", Long.class));
+    }
+
+    @Test
+    void emptyListsTouchNothing() {
+        writer.insertStudentFees(List.of());
+        writer.insertFeePayments(List.of());
+
+        assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM student_fee", Integer.class));
+        verify(rollupWriter, never()).feeBilled(any(), any());
+    }
+
+    private static StudentFee fee(Integer month, String receipt) {
+        return StudentFee.builder()
+                .studentYearId(42L)
+                .feeStructure(FeeStructure.builder().id(5L).build())
+                .schoolYearId(7L)
+                .month(month)
+                .dueDate(month != null ? LocalDate.of(2026, month, 15) : null)
+                .originalAmount(new BigDecimal("1000.00"))
+                .paidAmount(BigDecimal.ZERO)
+                .dueAmount(new BigDecimal("1000.00"))
+                .penaltyAmount(BigDecimal.ZERO)
+                .appliedDiscount(false)
+                .status(FeeStatus.PENDING)
+                .receiptNumber(receipt)
+                .build();
+    }
+
+    private static FeePayment payment(StudentFee fee, String amount) {
+        FeePayment payment = new FeePayment();
+        payment.setStudentFee(fee);
+        payment.setAmount(new BigDecimal(amount));
+        payment.setPaymentMethod(PaymentMethod.CASH);
+        payment.setStatus(PaymentStatus.SUCCESS);
+        payment.setPaymentDate(LocalDateTime.now());
+        return payment;
+    }
+}
@@ -0,0 +1,150 @@
+package com.java.sms.serviceImpl;
+
+import com.java.sms.model.FeeStructure;
+import com.java.sms.model.StudentFee;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FeeCollectionRollupWriterTest {
+
+    private static final String UPSERT_BILLING = "INSERT INTO fee_billing_rollup";
+
+    private final ScriptedJdbcTemplate jdbc = new ScriptedJdbcTemplate();
+    private final EntityManager entityManager = mock(EntityManager.class);
+    private final FeeCollectionRollupWriter writer = new FeeCollectionRollupWriter(jdbc, entityManager);
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        TransactionSynchronizationManager.unbindResourceIfPossible(writer);
+    }
+
+    @Test
+    void newFeeWithoutTransactionIsWrittenRightAway() {
+        writer.feeBilled(null, new StudentFee.Billed(7L, null, 3L, amount("1000"), amount("0"), amount("1000")));
+
+        List<ScriptedJdbcTemplate.Call> upserts = jdbc.calls(UPSERT_BILLING);
+        assertEquals(1, upserts.size());
+        // no month is stored as 0
+        assertRow(upserts.get(0), 7L, 0, 3L, "1000", "0", "1000", 1L);
+    }
+
+    @Test
+    void updateRecordsOnlyTheDifferenceAtCommit() {
+        List<TransactionSynchronization> tx = inTransaction(() -> {
+            writer.feeBilled(billed(4, "1000", "0", "1000"), billed(4, "1000", "400", "600"));
+            writer.feeBilled(billed(4, "1000", "400", "600"), billed(4, "1000", "1000", "0"));
+        });
+        assertTrue(jdbc.calls(UPSERT_BILLING).isEmpty());
+
+        tx.forEach(s -> s.beforeCommit(false));
+
+        List<ScriptedJdbcTemplate.Call> upserts = jdbc.calls(UPSERT_BILLING);
+        assertEquals(1, upserts.size());
+        assertRow(upserts.get(0), 7L, 4, 3L, "0", "1000", "-1000", 0L);
+    }
+
+    @Test
+    void feeMovedToAnotherMonthMovesItsCountInKeyOrder() {
+        List<TransactionSynchronization> tx = inTransaction(() ->
+                writer.feeBilled(billed(9, "500", "0", "500"), billed(2, "500", "0", "500")));
+        tx.forEach(s -> s.beforeCommit(false));
+
+        List<ScriptedJdbcTemplate.Call> upserts = jdbc.calls(UPSERT_BILLING);
+        assertEquals(2, upserts.size());
+        assertRow(upserts.get(0), 7L, 2, 3L, "500", "0", "500", 1L);
+        assertRow(upserts.get(1), 7L, 9, 3L, "-500", "0", "-500", -1L);
+    }
+
+    @Test
+    void unchangedFeeWritesNothing() {
+        writer.feeBilled(billed(4, "1000", "0", "1000"), billed(4, "1000", "0", "1000"));
+
+        assertTrue(jdbc.calls(UPSERT_BILLING).isEmpty());
+        assertEquals(0L, writer.stats().get("billing_deltas_recorded"));
+    }
+
+    @Test
+    void updateFlushedByTheCommitStillReachesTheRollup() {
+        FeeStructure structure = FeeStructure.builder().id(3L).build();
+        StudentFee fee = StudentFee.builder().schoolYearId(7L).month(4).feeStructure(structure)
+                .originalAmount(amount("1000")).paidAmount(amount("0")).dueAmount(amount("1000")).build();
+
+        @SuppressWarnings("unchecked")
+        ObjectProvider<FeeCollectionRollupWriter> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(writer);
+        StudentFeeBillingListener listener = new StudentFeeBillingListener(provider);
+
+        // the dirty fee is only flushed (and @PostUpdate fired) by the flush right before commit
+        doAnswer(inv -> {
+            listener.updated(fee);
+            return null;
+        }).when(entityManager).flush();
+
+        List<TransactionSynchronization> tx = inTransaction(() -> {
+            listener.loaded(fee);
+            fee.setPaidAmount(amount("250"));
+            fee.setDueAmount(amount("750"));
+        });
+        tx.forEach(s -> s.beforeCommit(false));
+
+        List<ScriptedJdbcTemplate.Call> upserts = jdbc.calls(UPSERT_BILLING);
+        assertEquals(1, upserts.size());
+        assertRow(upserts.get(0), 7L, 4, 3L, "0", "250", "-250", 0L);
+    }
+
+    @Test
+    void rebuildAlsoRecomputesTheBillingRollup() {
+        writer.rebuildSchoolYear(7L);
+
+        assertEquals(1, jdbc.calls("DELETE FROM fee_billing_rollup").size());
+        ScriptedJdbcTemplate.Call rebuild = jdbc.calls(UPSERT_BILLING).get(0);
+        assertTrue(rebuild.sql().contains("FROM student_fee WHERE school_year_id = ?"));
+        assertArrayEquals(new Object[]{7L}, rebuild.args());
+    }
+
+    private List<TransactionSynchronization> inTransaction(Runnable work) {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        work.run();
+        return TransactionSynchronizationManager.getSynchronizations();
+    }
+
+    private static StudentFee.Billed billed(int month, String original, String paid, String due) {
+        return new StudentFee.Billed(7L, month, 3L, amount(original), amount(paid), amount(due));
+    }
+
+    private static BigDecimal amount(String value) {
+        return new BigDecimal(value);
+    }
+
+    private static void assertRow(ScriptedJdbcTemplate.Call call, Long schoolYearId, int month, Long feeStructureId,
+                                  String original, String paid, String due, long count) {
+        Object[] args = call.args();
+        assertEquals(schoolYearId, args[0]);
+        assertEquals(month, args[1]);
+        assertEquals(feeStructureId, args[2]);
+        assertEquals(0, amount(original).compareTo((BigDecimal) args[3]), Arrays.toString(args));
+        assertEquals(0, amount(paid).compareTo((BigDecimal) args[4]), Arrays.toString(args));
+        assertEquals(0, amount(due).compareTo((BigDecimal) args[5]), Arrays.toString(args));
+        assertEquals(count, args[6]);
+    }
+}
@@ -0,0 +1,133 @@
+package com.java.sms.serviceImpl;
+
+import com.java.sms.repository.AppliedFeeDiscountRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FeeDiscountResolverTest {
+
+    private static final long STUDENT_YEAR = 42L;
+    private static final long FEE = 5L;
+
+    private final AppliedFeeDiscountRepository discountRepo = mock(AppliedFeeDiscountRepository.class);
+    // what the discount table holds right now
+    private final AtomicReference<String> stored = new AtomicReference<>("100");
+    private FeeDiscountResolver resolver;
+
+    private record Line(Long studentYearId, Long feeStructureId, BigDecimal discountAmount)
+            implements AppliedFeeDiscountRepository.DiscountLine {
+        public Long getStudentYearId() {
+            return studentYearId;
+        }
+
+        public Long getFeeStructureId() {
+            return feeStructureId;
+        }
+
+        public BigDecimal getDiscountAmount() {
+            return discountAmount;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        resolver = new FeeDiscountResolver(discountRepo, 100, 600);
+        when(discountRepo.findDiscountLines(anyList()))
+                .thenAnswer(inv -> List.of(new Line(STUDENT_YEAR, FEE, new BigDecimal(stored.get()))));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void loadIsCachedUntilInvalidated() {
+        assertEquals(new BigDecimal("100"), total());
+        assertEquals(new BigDecimal("100"), total());
+        verify(discountRepo, times(1)).findDiscountLines(anyList());
+
+        stored.set("250");
+        resolver.invalidate(STUDENT_YEAR);
+
+        assertEquals(new BigDecimal("250"), total());
+        verify(discountRepo, times(2)).findDiscountLines(anyList());
+    }
+
+    @Test
+    void loadThatRacedAnInvalidateIsServedButNotCached() {
+        // the writer commits while our query is running; what we read is the old amount
+        when(discountRepo.findDiscountLines(anyList())).thenAnswer(inv -> {
+            List<Line> old = List.of(new Line(STUDENT_YEAR, FEE, new BigDecimal(stored.get())));
+            stored.set("250");
+            resolver.invalidate(STUDENT_YEAR);
+            return old;
+        });
+        assertEquals(new BigDecimal("100"), total());
+
+        when(discountRepo.findDiscountLines(anyList()))
+                .thenAnswer(inv -> List.of(new Line(STUDENT_YEAR, FEE, new BigDecimal(stored.get()))));
+        assertEquals(new BigDecimal("250"), total());
+        assertEquals(1L, resolver.stats().get("stale_loads_skipped"));
+    }
+
+    @Test
+    void loadBetweenTheWriteAndItsCommitIsDroppedAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        stored.set("250"); // written, not committed yet
+        resolver.invalidate(STUDENT_YEAR);
+        List<TransactionSynchronization> writerTx = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+
+        stored.set("100"); // another reader still sees the committed row
+        assertEquals(new BigDecimal("100"), total());
+
+        stored.set("250");
+        writerTx.forEach(TransactionSynchronization::afterCommit);
+
+        assertEquals(new BigDecimal("250"), total());
+    }
+
+    @Test
+    void invalidateAllDuringALoadKeepsItOutOfTheCache() {
+        when(discountRepo.findDiscountLines(anyList())).thenAnswer(inv -> {
+            List<Line> old = List.of(new Line(STUDENT_YEAR, FEE, new BigDecimal(stored.get())));
+            stored.set("250");
+            resolver.invalidateAll();
+            return old;
+        });
+        total();
+
+        assertEquals(0, resolver.stats().get("size"));
+    }
+
+    @Test
+    void otherStudentYearsStayCachedAcrossAnInvalidate() {
+        resolver.forStudentYears(List.of(STUDENT_YEAR, 43L));
+
+        resolver.invalidate(43L);
+        total();
+
+        verify(discountRepo, times(1)).findDiscountLines(anyList());
+    }
+
+    private BigDecimal total() {
+        return resolver.forStudentYear(STUDENT_YEAR).totalAmount(STUDENT_YEAR, FEE);
+    }
+}
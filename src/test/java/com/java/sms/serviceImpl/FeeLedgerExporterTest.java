@@ -0,0 +1,49 @@
+package com.java.sms.serviceImpl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FeeLedgerExporterTest {
+
+    @Test
+    void plainValuesAreWrittenAsIs() throws IOException {
+        assertEquals("REC-20251201-00012", cell("REC-20251201-00012"));
+        assertEquals("1250.00", cell("1250.00"));
+        assertEquals("-250.00", cell("-250.00"));
+    }
+
+    @Test
+    void nullAndEmptyAreEmptyCells() throws IOException {
+        assertEquals("", cell(null));
+        assertEquals("", cell(""));
+    }
+
+    @Test
+    void separatorsQuotesAndNewlinesAreQuoted() throws IOException {
+        assertEquals("\"Tuition, Term 1\"", cell("Tuition, Term 1"));
+        assertEquals("\"say \"\"hi\"\"\"", cell("say \"hi\""));
+        assertEquals("\"line1\nline2\"", cell("line1\nline2"));
+        assertEquals("\"a\r\nb\"", cell("a\r\nb"));
+    }
+
+    @Test
+    void formulaLikeTextIsDefused() throws IOException {
+        assertEquals("\"'=SUM(A1:A9)\"", cell("=SUM(A1:A9)"));
+        assertEquals("\"'+1\"", cell("+1"));
+        assertEquals("\"'@cmd\"", cell("@cmd"));
+        assertEquals("\"'-\"", cell("-"));
+        assertEquals("\"'-x\"", cell("-x"));
+        assertEquals("\"'\tx\"", cell("\tx"));
+        assertEquals("\"'=HYPERLINK(\"\"http://x\"\")\"", cell("=HYPERLINK(\"http://x\")"));
+    }
+
+    private static String cell(String value) throws IOException {
+        StringWriter out = new StringWriter();
+        FeeLedgerExporter.writeCell(out, value);
+        return out.toString();
+    }
+}
@@ -0,0 +1,200 @@
+package com.java.sms.serviceImpl;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * Ledger refresh and drift repair against H2 in MySQL mode, with the student_fee / fee_payment /
+ * applied_fee_discount columns the aggregate reads.
+ */
+class FeeLedgerUpdaterTest {
+
+    private static int databases;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private TransactionTemplate tx;
+    private final EntityManager entityManager = mock(EntityManager.class);
+    private FeeLedgerUpdater updater;
+
+    @BeforeEach
+    void createSchema() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:ledger" + (++databases) + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        dataSource.setMaximumPoolSize(2);
+        jdbc = spy(new JdbcTemplate(dataSource));
+        jdbc.execute("CREATE TABLE student_fee (id BIGINT AUTO_INCREMENT PRIMARY KEY, student_year_id BIGINT NOT NULL, " +
+                "school_year_id BIGINT, original_amount DECIMAL(12,2), paid_amount DECIMAL(12,2), " +
+                "due_amount DECIMAL(12,2), penalty_amount DECIMAL(12,2), status VARCHAR(20))");
+        jdbc.execute("CREATE TABLE fee_payment (id BIGINT AUTO_INCREMENT PRIMARY KEY, student_fee_id BIGINT NOT NULL, " +
+                "amount DECIMAL(12,2), status VARCHAR(20))");
+        jdbc.execute("CREATE TABLE applied_fee_discount (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "student_year_id BIGINT NOT NULL, discount_amount DECIMAL(12,2))");
+        jdbc.execute("CREATE TABLE student_fee_ledger (student_year_id BIGINT NOT NULL, school_year_id BIGINT NOT NULL, " +
+                "total_original DECIMAL(14,2) NOT NULL, total_paid DECIMAL(14,2) NOT NULL, total_due DECIMAL(14,2) NOT NULL, " +
+                "total_penalty DECIMAL(14,2) NOT NULL, total_discount DECIMAL(14,2) NOT NULL, " +
+                "payments_received DECIMAL(14,2) NOT NULL, fee_count INT NOT NULL, pending_count INT NOT NULL, " +
+                "partial_count INT NOT NULL, paid_count INT NOT NULL, updated_at TIMESTAMP NOT NULL, " +
+                "PRIMARY KEY (student_year_id, school_year_id))");
+
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        tx = new TransactionTemplate(transactionManager);
+        updater = new FeeLedgerUpdater(jdbc, entityManager, transactionManager);
+    }
+
+    @AfterEach
+    void close() {
+        dataSource.close();
+    }
+
+    @Test
+    void ledgerRowAddsUpTheFeesPaymentsAndDiscounts() {
+        long april = fee(42, 7, "1000.00", "1000.00", "PAID");
+        long may = fee(42, 7, "1000.00", "400.00", "PARTIAL");
+        fee(42, 7, "500.00", "0.00", "PENDING");
+        payment(april, "1000.00", "SUCCESS");
+        payment(may, "400.00", "SUCCESS");
+        payment(may, "250.00", "FAILED");
+        jdbc.update("INSERT INTO applied_fee_discount (student_year_id, discount_amount) VALUES (42, 150.00)");
+
+        updater.touch(42L);
+
+        Map<String, Object> row = ledger(42, 7);
+        assertAmount("2500.00", row.get("total_original"));
+        assertAmount("1400.00", row.get("total_paid"));
+        assertAmount("1100.00", row.get("total_due"));
+        assertAmount("150.00", row.get("total_discount"));
+        assertAmount("1400.00", row.get("payments_received"));
+        assertEquals(3, row.get("fee_count"));
+        assertEquals(1, row.get("pending_count"));
+        assertEquals(1, row.get("partial_count"));
+        assertEquals(1, row.get("paid_count"));
+    }
+
+    @Test
+    void touchesInsideATransactionRefreshOnceAfterTheFlushBeforeCommit() {
+        tx.executeWithoutResult(status -> {
+            fee(42, 7, "1000.00", "0.00", "PENDING");
+            updater.touch(42L);
+            updater.touch(42L);
+            fee(42, 7, "500.00", "0.00", "PENDING");
+            updater.touch(null);
+
+            // nothing is aggregated until the transaction commits
+            assertEquals(0, ledgerCount());
+            verifyNoInteractions(entityManager);
+        });
+
+        assertAmount("1500.00", ledger(42, 7).get("total_original"));
+        assertEquals(1L, updater.stats().get("refreshes"));
+        InOrder order = inOrder(entityManager, jdbc);
+        order.verify(entityManager).flush();
+        order.verify(jdbc).update(startsWith("INSERT INTO student_fee_ledger"), any(Object[].class));
+    }
+
+    @Test
+    void rolledBackTransactionLeavesTheLedgerAlone() {
+        tx.executeWithoutResult(status -> {
+            fee(42, 7, "1000.00", "0.00", "PENDING");
+            updater.touch(42L);
+            status.setRollbackOnly();
+        });
+
+        assertEquals(0, ledgerCount());
+        assertEquals(0L, updater.stats().get("refreshes"));
+
+        // the next transaction starts with an empty touched set
+        tx.executeWithoutResult(status -> {
+            fee(43, 7, "800.00", "0.00", "PENDING");
+            updater.touch(43L);
+        });
+        assertEquals(List.of(43L), jdbc.queryForList("SELECT student_year_id FROM student_fee_ledger", Long.class));
+    }
+
+    @Test
+    void verifyRepairsMissingStaleAndOrphanedRowsOnly() {
+        fee(41, 7, "1000.00", "0.00", "PENDING");
+        fee(42, 7, "1000.00", "0.00", "PENDING");
+        fee(43, 7, "700.00", "0.00", "PENDING");
+        fee(44, 8, "300.00", "0.00", "PENDING");
+        updater.touch(41L);
+        updater.touch(42L);
+        updater.touch(44L);
+
+        // 42 goes stale (a fee written without a touch), 43 was never touched, 44 moved to another school year
+        fee(42, 7, "250.00", "0.00", "PENDING");
+        jdbc.update("UPDATE student_fee SET school_year_id = 9 WHERE student_year_id = 44");
+        String untouched = ledger(41, 7).get("updated_at").toString();
+
+        assertEquals(3, updater.verifyAndRepair());
+
+        assertAmount("1250.00", ledger(42, 7).get("total_original"));
+        assertAmount("700.00", ledger(43, 7).get("total_original"));
+        assertEquals(List.of(9L),
+                jdbc.queryForList("SELECT school_year_id FROM student_fee_ledger WHERE student_year_id = 44", Long.class));
+        assertEquals(untouched, ledger(41, 7).get("updated_at").toString());
+
+        // nothing left to repair
+        assertEquals(0, updater.verifyAndRepair());
+        assertEquals(3L, updater.stats().get("repaired"));
+        assertEquals(2L, updater.stats().get("verify_runs"));
+    }
+
+    @Test
+    void verifyOnAnEmptyLedgerIsTheFullRebuild() {
+        fee(41, 7, "1000.00", "0.00", "PENDING");
+        fee(42, 7, "1000.00", "0.00", "PENDING");
+        fee(42, 8, "1000.00", "0.00", "PENDING");
+
+        assertEquals(2, updater.verifyAndRepair());
+        assertEquals(3, ledgerCount());
+        verify(entityManager, never()).flush();
+    }
+
+    private long fee(long studentYearId, long schoolYearId, String original, String paid, String status) {
+        BigDecimal due = new BigDecimal(original).subtract(new BigDecimal(paid));
+        jdbc.update("INSERT INTO student_fee (student_year_id, school_year_id, original_amount, paid_amount, due_amount, " +
+                        "penalty_amount, status) VALUES (?, ?, ?, ?, ?, 0, ?)",
+                studentYearId, schoolYearId, new BigDecimal(original), new BigDecimal(paid), due, status);
+        return jdbc.queryForObject("SELECT MAX(id) FROM student_fee", Long.class);
+    }
+
+    private void payment(long studentFeeId, String amount, String status) {
+        jdbc.update("INSERT INTO fee_payment (student_fee_id, amount, status) VALUES (?, ?, ?)",
+                studentFeeId, new BigDecimal(amount), status);
+    }
+
+    private Map<String, Object> ledger(long studentYearId, long schoolYearId) {
+        return jdbc.queryForMap("SELECT * FROM student_fee_ledger WHERE student_year_id = ? AND school_year_id = ?",
+                studentYearId, schoolYearId);
+    }
+
+    private int ledgerCount() {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM student_fee_ledger", Integer.class);
+    }
+
+    private static void assertAmount(String expected, Object actual) {
+        assertEquals(0, new BigDecimal(expected).compareTo((BigDecimal) actual), expected + " <> " + actual);
+    }
+}
@@ -0,0 +1,96 @@
+package com.java.sms.serviceImpl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Razorpay signature checks during a webhook burst: 8 request threads verifying at once, old per-call
+ * {@code hmacSha256Hex} against {@link HmacSha256Verifier}. Webhook bodies of a payment.captured event are
+ * about 1-2 KB; the payment signature covers {@code order_id|payment_id}.
+ *
+ * <p>{@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=HmacSha256VerifierBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class HmacSha256VerifierBenchmark {
+
+    private static final String SECRET = "whsec_benchmark_secret";
+    private static final String ORDER_ID = "order_NJ3k1Ydx8fXq2B";
+    private static final String PAYMENT_ID = "pay_NJ3kA8bQz5tFhR";
+
+    @Param({"1536"})
+    public int bodyBytes;
+
+    private byte[] body;
+    private String bodySignature;
+    private String paymentSignature;
+    private HmacSha256Verifier verifier;
+
+    @Setup
+    public void setUp() throws Exception {
+        StringBuilder json = new StringBuilder("{\"entity\":\"event\",\"event\":\"payment.captured\",\"payload\":{");
+        while (json.length() < bodyBytes - 2) json.append("\"notes\":\"x\",");
+        json.setLength(bodyBytes - 2);
+        body = json.append("}}").toString().getBytes(StandardCharsets.UTF_8);
+
+        bodySignature = legacyHmacSha256Hex(new String(body, StandardCharsets.UTF_8), SECRET);
+        paymentSignature = legacyHmacSha256Hex(ORDER_ID + "|" + PAYMENT_ID, SECRET);
+        verifier = new HmacSha256Verifier(SECRET);
+
+        if (!legacyWebhook() || !verifierWebhook() || !legacyPayment() || !verifierPayment()) {
+            throw new IllegalStateException("signatures do not verify");
+        }
+    }
+
+    /** Before: body decoded to a String, new Mac per call, String.format per byte, String.equals. */
+    @Benchmark
+    public boolean legacyWebhook() throws Exception {
+        String payload = new String(body, StandardCharsets.UTF_8);
+        return legacyHmacSha256Hex(payload, SECRET).equals(bodySignature);
+    }
+
+    @Benchmark
+    public boolean verifierWebhook() {
+        return verifier.verify(body, bodySignature);
+    }
+
+    @Benchmark
+    public boolean legacyPayment() throws Exception {
+        return legacyHmacSha256Hex(ORDER_ID + "|" + PAYMENT_ID, SECRET).equals(paymentSignature);
+    }
+
+    @Benchmark
+    public boolean verifierPayment() {
+        return verifier.verify(ORDER_ID, '|', PAYMENT_ID, paymentSignature);
+    }
+
+    // RazorpayServiceImpl.hmacSha256Hex as it was
+    private static String legacyHmacSha256Hex(String data, String key) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(key.getBytes(), "HmacSHA256"));
+        byte[] raw = mac.doFinal(data.getBytes());
+        StringBuilder sb = new StringBuilder(2 * raw.length);
+        for (byte b : raw) sb.append(String.format("%02x", b & 0xff));
+        return sb.toString();
+    }
+}
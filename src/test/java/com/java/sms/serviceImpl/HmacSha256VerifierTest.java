@@ -0,0 +1,118 @@
+package com.java.sms.serviceImpl;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Every expected signature is computed with a fresh {@link Mac}, the way the old per-call code did.
+ */
+class HmacSha256VerifierTest {
+
+    private static final String SECRET = "test_secret";
+
+    private final HmacSha256Verifier verifier = new HmacSha256Verifier(SECRET);
+
+    @Test
+    void paymentSignatureOverOrderAndPaymentId() {
+        String signature = hmac("order_ABC|pay_XYZ");
+
+        assertTrue(verifier.verify("order_ABC", '|', "pay_XYZ", signature));
+        assertTrue(verifier.verify("order_ABC", '|', "pay_XYZ", signature.toUpperCase()));
+        assertFalse(verifier.verify("order_ABC", '|', "pay_XYZ2", signature));
+        assertFalse(verifier.verify("order_AB", '|', "Cpay_XYZ", signature));
+    }
+
+    @Test
+    void webhookSignatureOverRawBody() {
+        byte[] body = "{\"event\":\"payment.captured\"}".getBytes(StandardCharsets.UTF_8);
+        String signature = hmac(new String(body, StandardCharsets.UTF_8));
+
+        assertTrue(verifier.verify(body, signature));
+        body[3] ^= 1;
+        assertFalse(verifier.verify(body, signature));
+    }
+
+    @Test
+    void nonAsciiAndLongInputFallBackToUtf8() {
+        String unicode = "ordér_₹";
+        String longId = "o".repeat(1_000);
+
+        assertTrue(verifier.verify(unicode, '|', "pay_1", hmac(unicode + "|pay_1")));
+        assertTrue(verifier.verify(longId, '|', "pay_1", hmac(longId + "|pay_1")));
+    }
+
+    @Test
+    void malformedSignaturesAreRejected() {
+        String signature = hmac("order_ABC|pay_XYZ");
+
+        assertFalse(verifier.verify("order_ABC", '|', "pay_XYZ", null));
+        assertFalse(verifier.verify("order_ABC", '|', "pay_XYZ", ""));
+        assertFalse(verifier.verify("order_ABC", '|', "pay_XYZ", signature.substring(2)));
+        assertFalse(verifier.verify("order_ABC", '|', "pay_XYZ", signature + "00"));
+        assertFalse(verifier.verify("order_ABC", '|', "pay_XYZ", "zz" + signature.substring(2)));
+        assertFalse(verifier.verify("order_ABC", '|', "pay_XYZ", "é" + signature.substring(1)));
+        assertFalse(verifier.verify(null, '|', "pay_XYZ", signature));
+        assertFalse(verifier.verify((byte[]) null, signature));
+    }
+
+    @Test
+    void aRejectedCallDoesNotLeaveStateBehind() {
+        String signature = hmac("order_ABC|pay_XYZ");
+
+        assertFalse(verifier.verify("order_ABC", '|', "pay_XYZ", "zz" + signature.substring(2)));
+        assertFalse(verifier.verify("order_ABC", '|', "wrong", signature));
+        assertTrue(verifier.verify("order_ABC", '|', "pay_XYZ", signature));
+    }
+
+    @Test
+    void blankSecretRejectsEverything() {
+        HmacSha256Verifier unconfigured = new HmacSha256Verifier(" ");
+
+        assertFalse(unconfigured.verify("order_ABC", '|', "pay_XYZ", hmac("order_ABC|pay_XYZ")));
+        assertFalse(new HmacSha256Verifier(null).verify(new byte[0], hmac("")));
+    }
+
+    @Test
+    void concurrentCallersDoNotShareAMac() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                results.add(pool.submit(() -> {
+                    for (int i = 0; i < 2_000; i++) {
+                        String order = "order_" + thread + "_" + i;
+                        if (!verifier.verify(order, '|', "pay_" + i, hmac(order + "|pay_" + i))) return false;
+                        if (verifier.verify(order, '|', "pay_" + i, hmac(order + "|pay_x"))) return false;
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) assertTrue(result.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static String hmac(String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.java.sms.serviceImpl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.java.sms.DataClass.ConfirmPaymentRequest;
+import com.java.sms.exception.ApiException;
+import com.java.sms.response.ConfirmPaymentResponse;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The claim protocol against a real database: H2 in MySQL mode, where a duplicate INSERT IGNORE waits for the
+ * transaction holding the key just like InnoDB does. Every test gets a fresh database.
+ */
+class PaymentIdempotencyGuardTest {
+
+    // H2 has no LOCK IN SHARE MODE; FOR UPDATE is the nearest locking read it knows
+    private static final class H2JdbcTemplate extends JdbcTemplate {
+        H2JdbcTemplate(HikariDataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) throws DataAccessException {
+            return super.query(sql.replace("LOCK IN SHARE MODE", "FOR UPDATE"), rowMapper, args);
+        }
+    }
+
+    private static final String PAYMENT = "pay_123";
+    private static final String ORDER = "order_abc";
+    private static final long STUDENT_YEAR = 42L;
+    private static int databases;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private TransactionTemplate tx;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ExecutorService pool;
+
+    @BeforeEach
+    void createSchema() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:confirmations" + (++databases) + ";MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+        dataSource.setMaximumPoolSize(4);
+        dataSource.setConnectionTimeout(5_000);
+        jdbc = new H2JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE payment_confirmation (razorpay_payment_id VARCHAR(64) PRIMARY KEY, " +
+                "razorpay_order_id VARCHAR(64), student_year_id BIGINT, response_json TEXT, created_at TIMESTAMP)");
+        jdbc.execute("CREATE TABLE fee_payment (id BIGINT AUTO_INCREMENT PRIMARY KEY, razorpay_payment_id VARCHAR(64), " +
+                "status VARCHAR(20))");
+        tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        pool = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void close() {
+        pool.shutdownNow();
+        dataSource.close();
+    }
+
+    @Test
+    void replayReturnsTheOriginalResponse() {
+        PaymentIdempotencyGuard first = guard();
+        confirm(first, response("Payment confirmed", 7L));
+
+        // another node: nothing cached, answered from payment_confirmation
+        PaymentIdempotencyGuard other = guard();
+        ConfirmPaymentResponse replayed = other.replay(request()).orElseThrow();
+        assertEquals("Payment confirmed", replayed.getMessage());
+        assertEquals(List.of(Map.of("id", 7)), replayed.getPayments());
+        assertEquals(1L, other.stats().get("db_replays"));
+
+        // the same node answers from its cache
+        assertEquals("Payment confirmed", first.replay(request()).orElseThrow().getMessage());
+        assertEquals(1L, first.stats().get("cache_replays"));
+    }
+
+    @Test
+    void replayForAnotherOrderIsAConflict() {
+        PaymentIdempotencyGuard guard = guard();
+        confirm(guard, response("Payment confirmed", 7L));
+
+        ConfirmPaymentRequest other = request();
+        other.setRazorpayOrderId("order_other");
+        ApiException ex = assertThrows(ApiException.class, () -> guard.replay(other));
+        assertTrue(ex.getMessage().contains("different order"));
+    }
+
+    @Test
+    void concurrentDuplicateWaitsForTheClaimAndGetsTheWinnersResponse() throws Exception {
+        PaymentIdempotencyGuard nodeA = guard();
+        PaymentIdempotencyGuard nodeB = guard();
+        CountDownLatch claimed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<?> winner = pool.submit(() -> tx.executeWithoutResult(status -> {
+            assertTrue(nodeA.claim(request()).isEmpty());
+            claimed.countDown();
+            await(release);
+            nodeA.complete(request(), response("Payment confirmed", 7L));
+        }));
+        await(claimed);
+        Future<Optional<ConfirmPaymentResponse>> duplicate = pool.submit(() -> tx.execute(status -> nodeB.claim(request())));
+
+        // the duplicate INSERT IGNORE blocks on the winner's uncommitted key
+        Thread.sleep(300);
+        assertFalse(duplicate.isDone());
+
+        release.countDown();
+        winner.get(10, TimeUnit.SECONDS);
+        Optional<ConfirmPaymentResponse> answer = duplicate.get(10, TimeUnit.SECONDS);
+
+        assertEquals("Payment confirmed", answer.orElseThrow().getMessage());
+        assertEquals(1L, nodeA.stats().get("claims"));
+        assertEquals(0L, nodeB.stats().get("claims"));
+        assertEquals(1L, nodeB.stats().get("duplicates_blocked"));
+    }
+
+    @Test
+    void rollbackReleasesTheClaimToTheWaitingDuplicate() throws Exception {
+        PaymentIdempotencyGuard nodeA = guard();
+        PaymentIdempotencyGuard nodeB = guard();
+        CountDownLatch claimed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<?> loser = pool.submit(() -> tx.executeWithoutResult(status -> {
+            assertTrue(nodeA.claim(request()).isEmpty());
+            claimed.countDown();
+            await(release);
+            status.setRollbackOnly(); // e.g. the fee update failed
+        }));
+        await(claimed);
+        Future<Optional<ConfirmPaymentResponse>> retry = pool.submit(() -> tx.execute(status -> {
+            Optional<ConfirmPaymentResponse> out = nodeB.claim(request());
+            nodeB.complete(request(), response("Payment confirmed", 8L));
+            return out;
+        }));
+
+        Thread.sleep(300);
+        release.countDown();
+        loser.get(10, TimeUnit.SECONDS);
+
+        // the key is free again: the waiting request claims it and credits the fees itself
+        assertTrue(retry.get(10, TimeUnit.SECONDS).isEmpty());
+        assertEquals(1L, nodeB.stats().get("claims"));
+        assertEquals(1, jdbc.queryForObject("SELECT COUNT(*) FROM payment_confirmation", Integer.class));
+    }
+
+    @Test
+    void cacheIsFilledOnlyAfterCommit() {
+        PaymentIdempotencyGuard guard = guard();
+
+        tx.executeWithoutResult(status -> {
+            assertTrue(guard.claim(request()).isEmpty());
+            guard.complete(request(), response("Payment confirmed", 7L));
+            assertEquals(0, guard.stats().get("size"));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(0, guard.stats().get("size"));
+        assertTrue(guard.replay(request()).isEmpty());
+
+        confirm(guard, response("Payment confirmed", 7L));
+        assertEquals(1, guard.stats().get("size"));
+    }
+
+    @Test
+    void paymentConfirmedBeforeTheGuardExistedIsAConflict() {
+        jdbc.update("INSERT INTO fee_payment (razorpay_payment_id, status) VALUES (?, 'SUCCESS')", PAYMENT);
+        PaymentIdempotencyGuard guard = guard();
+
+        assertThrows(ApiException.class, () -> tx.executeWithoutResult(status -> guard.claim(request())));
+        // the claim went with the rollback
+        assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM payment_confirmation", Integer.class));
+    }
+
+    private void confirm(PaymentIdempotencyGuard guard, ConfirmPaymentResponse response) {
+        tx.executeWithoutResult(status -> {
+            assertTrue(guard.replay(request()).isEmpty());
+            assertTrue(guard.claim(request()).isEmpty());
+            guard.complete(request(), response);
+        });
+    }
+
+    private PaymentIdempotencyGuard guard() {
+        return new PaymentIdempotencyGuard(jdbc, objectMapper, 100, 600);
+    }
+
+    private static ConfirmPaymentRequest request() {
+        return ConfirmPaymentRequest.builder()
+                .studentYearId(STUDENT_YEAR)
+                .razorpayOrderId(ORDER)
+                .razorpayPaymentId(PAYMENT)
+                .build();
+    }
+
+    private static ConfirmPaymentResponse response(String message, long paymentId) {
+        return ConfirmPaymentResponse.builder()
+                .message(message)
+                .payments(List.of(Map.of("id", paymentId)))
+                .build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.java.sms.serviceImpl;
+
+import com.java.sms.exception.ApiException;
+import com.java.sms.model.FeePayment;
+import com.java.sms.model.enums.PaymentStatus;
+import com.java.sms.repository.FeePaymentRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.java.sms.serviceImpl.RazorpayStub.payment;
+import static com.java.sms.serviceImpl.ScriptedJdbcTemplate.row;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the reconciler through the real RazorpayServiceImpl against a local Razorpay HTTP stub, and a scripted
+ * JdbcTemplate.
+ */
+class PaymentReconcilerTest {
+
+    private static final long CREATED_AT = 1_700_000_000L;
+
+    private final FeePaymentRepository feePaymentRepo = mock(FeePaymentRepository.class);
+    private final OnlinePaymentCreditor creditor = mock(OnlinePaymentCreditor.class);
+    private RazorpayStub razorpay;
+    private final List<Object[]> page = new ArrayList<>();
+    private long checkpoint;
+    private ScriptedJdbcTemplate jdbc;
+    private PaymentReconciler reconciler;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        razorpay = new RazorpayStub();
+        jdbc = new ScriptedJdbcTemplate()
+                .on("SELECT COALESCE(MAX(id), 0)", args -> 1000L)
+                .on("SELECT id, window_from", args -> List.<Object[]>of(
+                        row(7L, Timestamp.valueOf(LocalDateTime.now().minusDays(365)), 1000L, checkpoint)))
+                .on("SELECT id, status, amount", args -> page);
+        reconciler = new PaymentReconciler(jdbc, mock(PlatformTransactionManager.class), feePaymentRepo, creditor,
+                razorpay.service(), 200, 365, 48, 10, 4, 1000, 5000);
+        when(feePaymentRepo.findByRazorpayPaymentIdInWithStudentFee(anyCollection())).thenReturn(List.of());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        reconciler.shutdown();
+        razorpay.close();
+    }
+
+    @Test
+    void captureMissedByTheWebhookIsCredited() throws Exception {
+        List<FeePayment> pending = pendingUnderLock("order_1", "250.00", 1);
+        remote("order_1", payment("pay_1", "order_1", "captured", 25000, CREATED_AT));
+
+        reconciler.runOnce();
+
+        // paid at the capture time Razorpay reported, not at the time of the run
+        verify(creditor).credit(eq(pending), eq("pay_1"), eq("order_1"),
+                eq(LocalDateTime.ofInstant(Instant.ofEpochSecond(CREATED_AT), ZoneId.systemDefault())));
+        assertEquals(List.of("/v1/orders/order_1/payments"), razorpay.paths());
+        assertDiscrepancy("CAPTURED_WHILE_PENDING", "CREDITED");
+        assertEquals(1, jdbc.calls("status = 'COMPLETED'").size());
+    }
+
+    @Test
+    void rowSettledByTheWebhookAfterTheLookupIsLeftAlone() throws Exception {
+        page.add(candidate(1L, "order_1", "250.00", 72));
+        remote("order_1", payment("pay_1", "order_1", "captured", 25000, CREATED_AT));
+        // the locked re-read no longer sees the row as PENDING
+        when(feePaymentRepo.findByRazorpayOrderIdInAndStatusWithStudentFee(anyCollection(), eq(PaymentStatus.PENDING)))
+                .thenReturn(List.of());
+
+        reconciler.runOnce();
+
+        verify(creditor, never()).credit(any(), any(), any(), any());
+        verify(creditor, never()).expire(any());
+        assertTrue(jdbc.calls("INSERT IGNORE INTO payment_discrepancy").isEmpty());
+    }
+
+    @Test
+    void paymentOwnedByConfirmPaymentIsReportedNotFailed() throws Exception {
+        pendingUnderLock("order_1", "250.00", 1);
+        remote("order_1", payment("pay_1", "order_1", "captured", 25000, CREATED_AT));
+        doThrow(new ApiException("Payment pay_1 was already confirmed", HttpStatus.CONFLICT))
+                .when(creditor).credit(any(), eq("pay_1"), eq("order_1"), any());
+
+        reconciler.runOnce();
+
+        assertDiscrepancy("CAPTURE_ALREADY_RECORDED", null);
+        assertEquals(1, jdbc.calls("status = 'COMPLETED'").size());
+    }
+
+    @Test
+    void amountMismatchIsOnlyReported() throws Exception {
+        pendingUnderLock("order_1", "250.00", 1);
+        remote("order_1", payment("pay_1", "order_1", "captured", 20000, CREATED_AT));
+
+        reconciler.runOnce();
+
+        verify(creditor, never()).credit(any(), any(), any(), any());
+        assertDiscrepancy("AMOUNT_MISMATCH", null);
+    }
+
+    @Test
+    void unpaidOrderPastTheWindowIsExpired() throws Exception {
+        List<FeePayment> pending = pendingUnderLock("order_1", "250.00", 72);
+        remote("order_1", payment("pay_1", "order_1", "failed", 25000, CREATED_AT));
+
+        reconciler.runOnce();
+
+        verify(creditor).expire(pending);
+        assertDiscrepancy("EXPIRED_UNPAID", "EXPIRED");
+    }
+
+    @Test
+    void recentUnpaidOrderIsLeftPayable() throws Exception {
+        pendingUnderLock("order_1", "250.00", 1);
+        remote("order_1");
+
+        reconciler.runOnce();
+
+        verify(creditor, never()).expire(any());
+        assertTrue(jdbc.calls("INSERT IGNORE INTO payment_discrepancy").isEmpty());
+    }
+
+    @Test
+    void unknownOrderIsReported() throws Exception {
+        // no payments registered: the stub answers 400 "The id provided does not exist", like Razorpay
+        pendingUnderLock("order_1", "250.00", 72);
+
+        reconciler.runOnce();
+
+        verify(creditor, never()).expire(any());
+        assertDiscrepancy("ORDER_NOT_FOUND", null);
+    }
+
+    @Test
+    void razorpayServerErrorIsReportedAsLookupFailure() throws Exception {
+        pendingUnderLock("order_1", "250.00", 72);
+        razorpay.failWith("/v1/orders/order_1/payments", 502);
+
+        reconciler.runOnce();
+
+        verify(creditor, never()).expire(any());
+        assertDiscrepancy("LOOKUP_FAILED", null);
+        assertEquals(3, razorpay.paths().size());
+    }
+
+    @Test
+    void resumesFromTheCheckpoint() throws Exception {
+        checkpoint = 500L;
+        remote("order_1");
+        pendingUnderLock("order_1", "250.00", 1);
+
+        reconciler.runOnce();
+
+        assertEquals(500L, jdbc.calls("SELECT id, status, amount").get(0).args()[0]);
+    }
+
+    @Test
+    void runTakenOverByAnotherNodeStops() throws Exception {
+        pendingUnderLock("order_1", "250.00", 1);
+        remote("order_1", payment("pay_1", "order_1", "captured", 25000, CREATED_AT));
+        jdbc.on("SET checkpoint_payment_id", args -> 0);
+
+        reconciler.runOnce();
+
+        assertEquals(1, jdbc.calls("SET status = 'FAILED'").size());
+        assertTrue(jdbc.calls("status = 'COMPLETED'").isEmpty());
+    }
+
+    private List<FeePayment> pendingUnderLock(String orderId, String amount, int hoursOld) {
+        page.add(candidate(1L, orderId, amount, hoursOld));
+        List<FeePayment> pending = List.of(FeePayment.builder()
+                .id(1L)
+                .amount(new BigDecimal(amount))
+                .razorpayOrderId(orderId)
+                .status(PaymentStatus.PENDING)
+                .createdAt(LocalDateTime.now().minusHours(hoursOld))
+                .build());
+        when(feePaymentRepo.findByRazorpayOrderIdInAndStatusWithStudentFee(anyCollection(), eq(PaymentStatus.PENDING)))
+                .thenReturn(pending);
+        return pending;
+    }
+
+    private static Object[] candidate(long id, String orderId, String amount, int hoursOld) {
+        return row(id, "PENDING", new BigDecimal(amount), orderId, null,
+                Timestamp.valueOf(LocalDateTime.now().minusHours(hoursOld)));
+    }
+
+    @SafeVarargs
+    private void remote(String orderId, Map<String, Object>... payments) {
+        razorpay.orderPayments(orderId, payments);
+    }
+
+    private void assertDiscrepancy(String type, String resolution) {
+        List<ScriptedJdbcTemplate.Call> rows = jdbc.calls("INSERT IGNORE INTO payment_discrepancy");
+        assertEquals(1, rows.size(), jdbc::toString);
+        assertEquals(type, rows.get(0).args()[2]);
+        assertEquals(resolution, rows.get(0).args()[9]);
+    }
+}
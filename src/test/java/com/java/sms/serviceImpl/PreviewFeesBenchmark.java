@@ -0,0 +1,219 @@
+package com.java.sms.serviceImpl;
+
+import com.java.sms.DataClass.FeePreviewItem;
+import com.java.sms.model.FeeStructure;
+import com.java.sms.model.StudentFee;
+import com.java.sms.model.enums.FeeType;
+import com.java.sms.repository.StudentFeeRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+/**
+ * previewFees for one student at 50 fee types: the old findAll + 12·N discount queries + per-cell streams against
+ * the three set-based queries and the one-pass grid.
+ *
+ * <p>Every repository call is replaced by a fixed round trip ({@code roundTripMicros}, 0 = CPU only), so the
+ * numbers show both the Java work and what the query count costs against a real database.
+ *
+ * <p>{@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=PreviewFeesBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PreviewFeesBenchmark {
+
+    private static final long YEAR_LEVEL_ID = 1L;
+
+    @Param({"50"})
+    public int feeTypes;
+
+    @Param({"0", "250"})
+    public long roundTripMicros;
+
+    // what each query would return
+    private List<FeeStructure> allFees;
+    private List<FeeStructure> yearLevelFees;
+    private List<StudentFee> paidFees;
+    private Map<Long, BigDecimal> discountByFee;
+    private List<StudentFeeRepository.FeeMonthPaid> paidRows;
+
+    private record PaidRow(Long feeStructureId, Integer month, BigDecimal paidAmount)
+            implements StudentFeeRepository.FeeMonthPaid {
+        public Long getFeeStructureId() {
+            return feeStructureId;
+        }
+
+        public Integer getMonth() {
+            return month;
+        }
+
+        public BigDecimal getPaidAmount() {
+            return paidAmount;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        FeeType[] types = FeeType.values();
+        allFees = new ArrayList<>();
+        yearLevelFees = new ArrayList<>();
+        // as many fee structures again for other year levels: findAll() loaded those too
+        for (long id = 1; id <= 2L * feeTypes; id++) {
+            FeeStructure fee = FeeStructure.builder()
+                    .id(id)
+                    .feeType(types[(int) (id % types.length)])
+                    .feeAmount(new BigDecimal(1000 + id * 10))
+                    .yearLevelIds(Set.of(id <= feeTypes ? YEAR_LEVEL_ID : 2L))
+                    .build();
+            allFees.add(fee);
+            if (id <= feeTypes) yearLevelFees.add(fee);
+        }
+
+        // every fee paid for the first eight months, some of them twice (partial + rest)
+        paidFees = new ArrayList<>();
+        for (FeeStructure fee : yearLevelFees) {
+            for (int month = 1; month <= 8; month++) {
+                int parts = month % 3 == 0 ? 2 : 1;
+                for (int p = 0; p < parts; p++) {
+                    paidFees.add(StudentFee.builder()
+                            .feeStructure(fee)
+                            .month(month)
+                            .paidAmount(fee.getFeeAmount().divide(BigDecimal.valueOf(parts)))
+                            .build());
+                }
+            }
+        }
+        Map<String, BigDecimal> grouped = new HashMap<>();
+        for (StudentFee sf : paidFees) {
+            grouped.merge(sf.getFeeStructure().getId() + ":" + sf.getMonth(), sf.getPaidAmount(), BigDecimal::add);
+        }
+        paidRows = new ArrayList<>();
+        grouped.forEach((key, amount) -> {
+            String[] parts = key.split(":");
+            paidRows.add(new PaidRow(Long.valueOf(parts[0]), Integer.valueOf(parts[1]), amount));
+        });
+
+        // a discount on every fifth fee
+        discountByFee = new HashMap<>();
+        for (FeeStructure fee : yearLevelFees) {
+            if (fee.getId() % 5 == 0) discountByFee.put(fee.getId(), new BigDecimal("150.00"));
+        }
+
+        if (!render(setBasedPreview()).equals(render(legacyPreview()))) {
+            throw new IllegalStateException("set-based preview differs from the old one");
+        }
+    }
+
+    /** Before: findAll filtered in Java, every StudentFee row, one discount query per (month, fee). */
+    @Benchmark
+    public List<FeePreviewItem> legacyPreview() {
+        List<FeeStructure> fees = query(allFees).stream()
+                .filter(f -> f.getYearLevelIds() != null && f.getYearLevelIds().contains(YEAR_LEVEL_ID))
+                .collect(Collectors.toList());
+        List<StudentFee> paid = query(paidFees);
+
+        List<FeePreviewItem> result = new ArrayList<>();
+        for (int m = 1; m <= 12; m++) {
+            final int monthFinal = m;
+            List<FeePreviewItem.FeeBrief> feesForMonth = new ArrayList<>();
+            for (FeeStructure fee : fees) {
+                BigDecimal discountTotal = query(discountByFee.get(fee.getId()));
+                if (discountTotal == null) discountTotal = BigDecimal.ZERO;
+                BigDecimal baseAmount = fee.getFeeAmount().subtract(discountTotal).max(BigDecimal.ZERO);
+
+                BigDecimal totalPaid;
+                if ("ADMISSION_FEE".equalsIgnoreCase(fee.getFeeType().name())) {
+                    if (monthFinal != 1) continue;
+                    totalPaid = paid.stream()
+                            .filter(pf -> pf.getFeeStructure().getId().equals(fee.getId()))
+                            .map(StudentFee::getPaidAmount)
+                            .reduce(BigDecimal.ZERO, BigDecimal::add);
+                } else {
+                    totalPaid = paid.stream()
+                            .filter(pf -> pf.getFeeStructure().getId().equals(fee.getId())
+                                    && Objects.equals(pf.getMonth(), monthFinal))
+                            .map(StudentFee::getPaidAmount)
+                            .reduce(BigDecimal.ZERO, BigDecimal::add);
+                }
+
+                String statusStr;
+                if (totalPaid.compareTo(baseAmount) >= 0 && baseAmount.compareTo(BigDecimal.ZERO) > 0)
+                    statusStr = "Paid";
+                else if (totalPaid.compareTo(BigDecimal.ZERO) > 0)
+                    statusStr = "Partially Paid";
+                else
+                    statusStr = "Pending";
+
+                feesForMonth.add(FeePreviewItem.FeeBrief.builder()
+                        .feeId(fee.getId())
+                        .feeType(fee.getFeeType().name())
+                        .originalAmount(baseAmount.toPlainString())
+                        .paidAmount(totalPaid.toPlainString())
+                        .status(statusStr)
+                        .appliedDiscount(discountTotal.toPlainString())
+                        .build());
+            }
+            if (!feesForMonth.isEmpty()) {
+                result.add(new FeePreviewItem(Month.of(monthFinal).name(), feesForMonth));
+            }
+        }
+        return result;
+    }
+
+    /** Now: fees of the year level, discounts grouped per fee, paid amounts grouped per (fee, month). */
+    @Benchmark
+    public List<FeePreviewItem> setBasedPreview() {
+        List<FeeStructure> fees = query(yearLevelFees);
+
+        Map<Long, BigDecimal> discounts = query(discountByFee);
+        Map<Long, BigDecimal> byFee = new HashMap<>();
+        for (FeeStructure fee : fees) {
+            byFee.put(fee.getId(), discounts.getOrDefault(fee.getId(), BigDecimal.ZERO));
+        }
+
+        Map<Long, BigDecimal[]> paid = StudentFeeServiceImpl.indexPaidByFeeMonth(query(paidRows));
+        return StudentFeeServiceImpl.buildPreviewGrid(fees, byFee, paid);
+    }
+
+    private static String render(List<FeePreviewItem> preview) {
+        StringBuilder sb = new StringBuilder();
+        for (FeePreviewItem item : preview) {
+            sb.append(item.getMonth()).append('\n');
+            for (FeePreviewItem.FeeBrief b : item.getFees()) {
+                sb.append(b.getFeeId()).append(' ').append(b.getFeeType()).append(' ').append(b.getOriginalAmount())
+                        .append(' ').append(b.getPaidAmount()).append(' ').append(b.getStatus())
+                        .append(' ').append(b.getAppliedDiscount()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private <T> T query(T result) {
+        if (roundTripMicros > 0) LockSupport.parkNanos(roundTripMicros * 1_000L);
+        return result;
+    }
+}
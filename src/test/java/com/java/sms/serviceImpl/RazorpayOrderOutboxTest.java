@@ -0,0 +1,328 @@
+package com.java.sms.serviceImpl;
+
+import com.java.sms.model.FeePayment;
+import com.java.sms.model.RazorpayOrderRequest;
+import com.java.sms.model.enums.PaymentStatus;
+import com.java.sms.repository.FeePaymentRepository;
+import com.java.sms.repository.RazorpayOrderRequestRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static com.java.sms.serviceImpl.ScriptedJdbcTemplate.row;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the outbox against the local Razorpay HTTP stub and a scripted JdbcTemplate that keeps the
+ * razorpay_order_request rows in memory (next_attempt_at is ignored: a sweep retries at once).
+ */
+class RazorpayOrderOutboxTest {
+
+    private static final long CALL_TIMEOUT_MS = 1000;
+
+    private final RazorpayOrderRequestRepository requestRepo = mock(RazorpayOrderRequestRepository.class);
+    private final FeePaymentRepository feePaymentRepo = mock(FeePaymentRepository.class);
+    private final OnlinePaymentCreditor creditor = mock(OnlinePaymentCreditor.class);
+    private final Map<Long, OrderRow> rows = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final List<RazorpayOrderOutbox> nodes = new ArrayList<>();
+    private RazorpayStub razorpay;
+    private ScriptedJdbcTemplate jdbc;
+
+    // one razorpay_order_request row
+    private static final class OrderRow {
+        final long id;
+        final String receipt;
+        volatile String status = "PENDING";
+        volatile int attempts;
+        LocalDateTime claimedAt;
+        volatile String orderId;
+
+        OrderRow(long id, String receipt) {
+            this.id = id;
+            this.receipt = receipt;
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        razorpay = new RazorpayStub();
+        jdbc = new ScriptedJdbcTemplate()
+                .on("SET status = 'PROCESSING'", args -> claim((Long) args[0]))
+                .on("SELECT receipt, amount_paise", args -> {
+                    OrderRow r = rows.get((Long) args[0]);
+                    return List.<Object[]>of(row(r.receipt, 25000L, "INR", r.attempts));
+                })
+                .on("SET status = 'CREATED'", args -> {
+                    OrderRow r = rows.get((Long) args[1]);
+                    synchronized (r) {
+                        r.status = "CREATED";
+                        r.orderId = (String) args[0];
+                        r.claimedAt = null;
+                    }
+                    return 1;
+                })
+                .on("attempts = attempts + 1", args -> {
+                    OrderRow r = rows.get((Long) args[3]);
+                    synchronized (r) {
+                        r.status = (String) args[0];
+                        r.attempts++;
+                        r.claimedAt = null;
+                    }
+                    return 1;
+                })
+                .on("SET status = 'PENDING', claimed_at = NULL", args -> {
+                    LocalDateTime before = ((Timestamp) args[0]).toLocalDateTime();
+                    int released = 0;
+                    for (OrderRow r : rows.values()) {
+                        synchronized (r) {
+                            if (r.status.equals("PROCESSING") && r.claimedAt.isBefore(before)) {
+                                r.status = "PENDING";
+                                r.claimedAt = null;
+                                released++;
+                            }
+                        }
+                    }
+                    return released;
+                })
+                .on("SELECT id FROM razorpay_order_request", args -> rows.values().stream()
+                        .filter(r -> r.status.equals("PENDING"))
+                        .map(r -> r.id)
+                        .sorted()
+                        .toList());
+        when(requestRepo.save(any(RazorpayOrderRequest.class))).thenAnswer(inv -> {
+            RazorpayOrderRequest request = inv.getArgument(0);
+            request.setId(ids.incrementAndGet());
+            rows.put(request.getId(), new OrderRow(request.getId(), request.getReceipt()));
+            return request;
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        nodes.forEach(RazorpayOrderOutbox::shutdown);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        razorpay.close();
+    }
+
+    @Test
+    void onlyOneOfTwoNodesRacingForARowCallsRazorpay() throws Exception {
+        OrderRow row = pendingRow("REC-1");
+        RazorpayOrderOutbox nodeA = node(8);
+        RazorpayOrderOutbox nodeB = node(8);
+        // both nodes see the row as due before either claims it
+        CyclicBarrier bothRead = new CyclicBarrier(2);
+        jdbc.on("SELECT id FROM razorpay_order_request", args -> {
+            try {
+                bothRead.await(5, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return List.of(row.id);
+        });
+
+        CountDownLatch start = new CountDownLatch(1);
+        Thread a = new Thread(() -> sweepAfter(start, nodeA));
+        Thread b = new Thread(() -> sweepAfter(start, nodeB));
+        a.start();
+        b.start();
+        start.countDown();
+        a.join();
+        b.join();
+
+        eventually(() -> "CREATED".equals(row.status));
+        assertEquals(2, jdbc.calls("SET status = 'PROCESSING'").size());
+        assertEquals(1, razorpay.ordersCreated());
+        assertEquals(1, razorpay.paths().stream().filter("/v1/orders"::equals).count());
+        assertEquals(1, jdbc.calls("SET status = 'CREATED'").size());
+        assertEquals("order_REC1", row.orderId);
+    }
+
+    @Test
+    void timedOutCreateIsRecoveredByReceiptOnTheRetry() throws Exception {
+        RazorpayOrderOutbox outbox = node(8);
+        razorpay.delayOrderCreation(CALL_TIMEOUT_MS + 500); // answers after we gave up, but creates the order
+
+        RazorpayOrderRequest request = outbox.enqueue(25000L, "INR", "REC-2", 42L);
+        OrderRow row = rows.get(request.getId());
+        eventually(() -> row.attempts == 1);
+        assertEquals("PENDING", row.status);
+        assertEquals(1L, outbox.stats().get("timeouts"));
+
+        eventually(() -> razorpay.ordersCreated() == 1);
+        outbox.sweep();
+
+        eventually(() -> "CREATED".equals(row.status));
+        assertEquals("order_REC2", row.orderId);
+        assertEquals(1L, outbox.stats().get("recovered_by_receipt"));
+        // the retry looked the order up instead of creating a second one
+        assertEquals(1, razorpay.paths().stream().filter("/v1/orders"::equals).count());
+        assertTrue(razorpay.paths().contains("/v1/orders?receipt=REC-2"), razorpay.paths()::toString);
+        assertEquals(1, jdbc.calls("UPDATE fee_payment SET razorpay_order_id").size());
+    }
+
+    @Test
+    void givingUpExpiresTheWaitingPayments() throws Exception {
+        RazorpayOrderOutbox outbox = node(1);
+        razorpay.failWith("/v1/orders", 500);
+        List<FeePayment> pending = List.of(FeePayment.builder().id(9L).status(PaymentStatus.PENDING).build());
+        when(feePaymentRepo.findByRazorpayOrderRequestIdAndStatusWithStudentFee(anyLong(), eq(PaymentStatus.PENDING)))
+                .thenReturn(pending);
+
+        RazorpayOrderRequest request = outbox.enqueue(25000L, "INR", "REC-3", 42L);
+        OrderRow row = rows.get(request.getId());
+
+        eventually(() -> "FAILED".equals(row.status));
+        eventually(() -> (long) outbox.stats().get("failed") == 1L);
+        verify(feePaymentRepo).findByRazorpayOrderRequestIdAndStatusWithStudentFee(request.getId(), PaymentStatus.PENDING);
+        verify(creditor).expire(pending);
+        assertEquals(1L, outbox.stats().get("payments_expired"));
+    }
+
+    @Test
+    void retryBeforeGivingUpLeavesThePaymentsPending() throws Exception {
+        RazorpayOrderOutbox outbox = node(8);
+        razorpay.failWith("/v1/orders", 500);
+
+        RazorpayOrderRequest request = outbox.enqueue(25000L, "INR", "REC-4", 42L);
+        OrderRow row = rows.get(request.getId());
+
+        eventually(() -> row.attempts == 1);
+        assertEquals("PENDING", row.status);
+        verify(creditor, never()).expire(any());
+    }
+
+    @Test
+    void sweepReleasesStaleProcessingRowsOnly() throws Exception {
+        OrderRow stale = pendingRow("REC-5");
+        stale.status = "PROCESSING";
+        stale.claimedAt = LocalDateTime.now().minusHours(1); // its node died mid-call
+        OrderRow busy = pendingRow("REC-6");
+        busy.status = "PROCESSING";
+        busy.claimedAt = LocalDateTime.now(); // still being worked on
+        RazorpayOrderOutbox outbox = node(8);
+
+        outbox.sweep();
+
+        eventually(() -> "CREATED".equals(stale.status));
+        assertEquals("PROCESSING", busy.status);
+        assertEquals(1L, outbox.stats().get("swept"));
+        assertEquals(1, razorpay.ordersCreated());
+    }
+
+    @Test
+    void waiterGetsTheOrderIdAndLeavesNoEntryBehind() throws Exception {
+        RazorpayOrderOutbox outbox = node(8);
+
+        TransactionSynchronizationManager.initSynchronization();
+        outbox.enqueue(25000L, "INR", "REC-7", 42L);
+        List<TransactionSynchronization> afterCommit = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        assertEquals(1, outbox.stats().get("waiters"));
+        afterCommit.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        assertEquals("order_REC7", outbox.await("REC-7", 5000));
+        assertEquals(0, outbox.stats().get("waiters"));
+    }
+
+    @Test
+    void waiterThatTimesOutRemovesItsEntry() throws Exception {
+        RazorpayOrderOutbox outbox = node(8);
+        razorpay.delayOrderCreation(500);
+
+        TransactionSynchronizationManager.initSynchronization();
+        RazorpayOrderRequest request = outbox.enqueue(25000L, "INR", "REC-8", 42L);
+        List<TransactionSynchronization> afterCommit = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        afterCommit.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        assertNull(outbox.await("REC-8", 50));
+        assertEquals(0, outbox.stats().get("waiters"));
+        eventually(() -> "CREATED".equals(rows.get(request.getId()).status));
+    }
+
+    @Test
+    void rolledBackEnqueueLeavesNoWaiter() {
+        RazorpayOrderOutbox outbox = node(8);
+
+        TransactionSynchronizationManager.initSynchronization();
+        outbox.enqueue(25000L, "INR", "REC-9", 42L);
+        List<TransactionSynchronization> afterCompletion = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        afterCompletion.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertEquals(0, outbox.stats().get("waiters"));
+        assertTrue(jdbc.calls("SET status = 'PROCESSING'").isEmpty());
+    }
+
+    private RazorpayOrderOutbox node(int maxAttempts) {
+        try {
+            RazorpayOrderOutbox outbox = new RazorpayOrderOutbox(requestRepo, razorpay.service(), feePaymentRepo,
+                    creditor, jdbc, mock(PlatformTransactionManager.class), 2, 10, CALL_TIMEOUT_MS, maxAttempts, 1, 100);
+            nodes.add(outbox);
+            return outbox;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private OrderRow pendingRow(String receipt) {
+        OrderRow row = new OrderRow(ids.incrementAndGet(), receipt);
+        rows.put(row.id, row);
+        return row;
+    }
+
+    // the conditional UPDATE ... WHERE status = 'PENDING'
+    private int claim(long id) {
+        OrderRow r = rows.get(id);
+        synchronized (r) {
+            if (!r.status.equals("PENDING")) return 0;
+            r.status = "PROCESSING";
+            r.claimedAt = LocalDateTime.now();
+            return 1;
+        }
+    }
+
+    private static void sweepAfter(CountDownLatch start, RazorpayOrderOutbox node) {
+        try {
+            start.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        node.sweep();
+    }
+
+    private static void eventually(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) throw new AssertionError("condition not met within 10s");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.java.sms.serviceImpl;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local stand-in for api.razorpay.com, serving order and payment JSON the way Razorpay does, so a real
+ * {@link RazorpayServiceImpl} (SDK, HTTP, JSON parsing, error mapping) runs against it.
+ *
+ * <p>The SDK has the host compiled in; its shared OkHttpClient is swapped for one that sends every request
+ * to this server instead, and put back on {@link #close()}.
+ */
+final class RazorpayStub implements AutoCloseable {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final MockWebServer server = new MockWebServer();
+    private final Map<String, List<Map<String, Object>>> paymentsByOrder = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Object>> ordersByReceipt = new ConcurrentHashMap<>();
+    private final Map<String, Integer> statusByPath = new ConcurrentHashMap<>();
+    private final List<RecordedRequest> requests = new CopyOnWriteArrayList<>();
+    private volatile long createDelayMillis;
+    private volatile int ordersCreated;
+
+    private Field sdkClientField;
+    private Object originalSdkClient;
+
+    RazorpayStub() throws IOException {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                requests.add(request);
+                return answer(request);
+            }
+        });
+        server.start();
+    }
+
+    /** A RazorpayServiceImpl whose SDK calls land on this stub. */
+    RazorpayServiceImpl service() throws Exception {
+        RazorpayServiceImpl service = new RazorpayServiceImpl("rzp_test_key", "rzp_test_secret", "");
+        redirectSdk(); // after the constructor: RazorpayClient creates a fresh shared client
+        return service;
+    }
+
+    /** Payments Razorpay lists for the order; an order never given payments has none. */
+    @SafeVarargs
+    final RazorpayStub orderPayments(String orderId, Map<String, Object>... payments) {
+        paymentsByOrder.put(orderId, List.of(payments));
+        return this;
+    }
+
+    /** Answer every request to this path (e.g. "/v1/orders/order_1/payments") with an HTTP error. */
+    RazorpayStub failWith(String path, int status) {
+        statusByPath.put(path, status);
+        return this;
+    }
+
+    /** Hold each order creation this long before answering (a slow Razorpay). */
+    RazorpayStub delayOrderCreation(long millis) {
+        this.createDelayMillis = millis;
+        return this;
+    }
+
+    int ordersCreated() {
+        return ordersCreated;
+    }
+
+    List<String> paths() {
+        return requests.stream().map(RecordedRequest::getPath).toList();
+    }
+
+    /** A payment entity as Razorpay returns it (amount in paise, created_at in epoch seconds). */
+    static Map<String, Object> payment(String id, String orderId, String status, long amountPaise, long createdAt) {
+        Map<String, Object> p = new LinkedHashMap<>();
+        p.put("id", id);
+        p.put("entity", "payment");
+        p.put("amount", amountPaise);
+        p.put("currency", "INR");
+        p.put("status", status);
+        p.put("order_id", orderId);
+        p.put("method", "upi");
+        p.put("captured", "captured".equals(status));
+        p.put("created_at", createdAt);
+        return p;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (sdkClientField != null) sdkClientField.set(null, originalSdkClient);
+        server.shutdown();
+    }
+
+    private MockResponse answer(RecordedRequest request) {
+        try {
+            return route(request);
+        } catch (JsonProcessingException e) {
+            return error(400, "BAD_REQUEST_ERROR", "Malformed JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private MockResponse route(RecordedRequest request) throws JsonProcessingException {
+        HttpUrl url = request.getRequestUrl();
+        String path = url.encodedPath();
+
+        Integer status = statusByPath.get(path);
+        if (status != null) {
+            return error(status, status >= 500 ? "SERVER_ERROR" : "BAD_REQUEST_ERROR", "Stubbed failure");
+        }
+
+        // GET /v1/orders/{id}/payments
+        if ("GET".equals(request.getMethod()) && path.startsWith("/v1/orders/") && path.endsWith("/payments")) {
+            String orderId = path.substring("/v1/orders/".length(), path.length() - "/payments".length());
+            List<Map<String, Object>> items = paymentsByOrder.get(orderId);
+            if (items == null) {
+                // what Razorpay answers for an order id it does not know
+                return error(400, "BAD_REQUEST_ERROR", "The id provided does not exist");
+            }
+            return json(200, collection(items));
+        }
+
+        // POST /v1/orders
+        if ("POST".equals(request.getMethod()) && path.equals("/v1/orders")) {
+            sleep(createDelayMillis);
+            Map<?, ?> body = JSON.readValue(request.getBody().readUtf8(), Map.class);
+            String receipt = String.valueOf(body.get("receipt"));
+            Map<String, Object> order = ordersByReceipt.computeIfAbsent(receipt, r -> {
+                ordersCreated++;
+                Map<String, Object> o = new LinkedHashMap<>();
+                o.put("id", "order_" + r.replaceAll("[^A-Za-z0-9]", ""));
+                o.put("entity", "order");
+                o.put("amount", ((Number) body.get("amount")).longValue());
+                o.put("currency", body.get("currency"));
+                o.put("receipt", r);
+                o.put("status", "created");
+                o.put("created_at", System.currentTimeMillis() / 1000);
+                return o;
+            });
+            return json(200, order);
+        }
+
+        // GET /v1/orders?receipt=...
+        if ("GET".equals(request.getMethod()) && path.equals("/v1/orders")) {
+            Map<String, Object> order = ordersByReceipt.get(String.valueOf(url.queryParameter("receipt")));
+            return json(200, collection(order != null ? List.of(order) : List.of()));
+        }
+
+        return error(404, "NOT_FOUND", "No stub for " + request.getMethod() + " " + path);
+    }
+
+    private static Map<String, Object> collection(List<Map<String, Object>> items) {
+        return Map.of("entity", "collection", "count", items.size(), "items", items);
+    }
+
+    private static MockResponse json(int status, Map<String, Object> body) {
+        try {
+            return new MockResponse()
+                    .setResponseCode(status)
+                    .setHeader("Content-Type", "application/json; charset=utf-8")
+                    .setBody(JSON.writeValueAsString(body));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MockResponse error(int status, String code, String description) {
+        return json(status, Map.of("error", Map.of("code", code, "description", description)));
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void redirectSdk() throws Exception {
+        HttpUrl base = server.url("/");
+        OkHttpClient redirected = new OkHttpClient.Builder()
+                .readTimeout(5, TimeUnit.SECONDS)
+                .addInterceptor(chain -> {
+                    HttpUrl original = chain.request().url();
+                    HttpUrl local = original.newBuilder()
+                            .scheme(base.scheme())
+                            .host(base.host())
+                            .port(base.port())
+                            .build();
+                    return chain.proceed(chain.request().newBuilder().url(local).build());
+                })
+                .build();
+
+        Field field = Class.forName("com.razorpay.ApiUtils").getDeclaredField("client");
+        field.setAccessible(true);
+        if (sdkClientField == null) {
+            sdkClientField = field;
+            originalSdkClient = field.get(null);
+        }
+        field.set(null, redirected);
+    }
+}
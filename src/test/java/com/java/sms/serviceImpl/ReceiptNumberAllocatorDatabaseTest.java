@@ -0,0 +1,178 @@
+package com.java.sms.serviceImpl;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Block reservation against a real database: H2 in MySQL mode, with the receipt_sequence / student_fee
+ * columns the allocator touches. Every test gets a fresh database.
+ */
+class ReceiptNumberAllocatorDatabaseTest {
+
+    private static final String TODAY = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyyMMdd"));
+    private static int databases;
+
+    private HikariDataSource appPool;
+    private final List<ReceiptNumberAllocator> allocators = new ArrayList<>();
+    private String url;
+
+    @BeforeEach
+    void createSchema() {
+        url = "jdbc:h2:mem:receipts" + (++databases) + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        appPool = pool("app", 1);
+        JdbcTemplate jdbc = new JdbcTemplate(appPool);
+        jdbc.execute("CREATE TABLE receipt_sequence (seq_day VARCHAR(8) PRIMARY KEY, next_value BIGINT NOT NULL)");
+        jdbc.execute("CREATE TABLE student_fee (id BIGINT AUTO_INCREMENT PRIMARY KEY, receipt_number VARCHAR(50) NOT NULL UNIQUE)");
+        // MySQL bits of the seed query that H2 does not have
+        jdbc.execute("CREATE DOMAIN IF NOT EXISTS UNSIGNED AS BIGINT");
+        jdbc.execute("CREATE ALIAS IF NOT EXISTS SUBSTRING_INDEX FOR '" + MySqlFunctions.class.getName() + ".substringIndex'");
+    }
+
+    @AfterEach
+    void close() {
+        allocators.forEach(ReceiptNumberAllocator::shutdown);
+        appPool.close();
+    }
+
+    @Test
+    void firstBlockOfTheDayStartsAfterTheHighestStoredReceipt() {
+        JdbcTemplate jdbc = new JdbcTemplate(appPool);
+        jdbc.update("INSERT INTO student_fee (receipt_number) VALUES (?), (?), (?), (?)",
+                "REC-" + TODAY + "-00012-ABCD", "REC-" + TODAY + "-99999", "REC-" + TODAY + "-00420",
+                "REC-20000101-500000");
+        ReceiptNumberAllocator allocator = allocator(10);
+
+        assertEquals(List.of(receipt(100000), receipt(100001)), allocator.next(2));
+        assertEquals(100010L, jdbc.queryForObject(
+                "SELECT next_value FROM receipt_sequence WHERE seq_day = ?", Long.class, TODAY));
+        assertEquals(1L, allocator.stats().get("day_seeds"));
+    }
+
+    @Test
+    void theReservationCommitsOnItsOwnSoARolledBackCallerLeavesAGap() {
+        ReceiptNumberAllocator allocator = allocator(5);
+        TransactionTemplate callerTx = new TransactionTemplate(new DataSourceTransactionManager(appPool));
+        JdbcTemplate callerJdbc = new JdbcTemplate(appPool);
+
+        callerTx.executeWithoutResult(status -> {
+            // the caller holds the only app connection the whole time: the allocator must not need it
+            callerJdbc.update("INSERT INTO student_fee (receipt_number) VALUES (?)", allocator.next());
+            status.setRollbackOnly();
+        });
+
+        assertEquals(0, callerJdbc.queryForObject("SELECT COUNT(*) FROM student_fee", Integer.class));
+        assertEquals(6L, callerJdbc.queryForObject(
+                "SELECT next_value FROM receipt_sequence WHERE seq_day = ?", Long.class, TODAY));
+        // a new node never gets the rolled-back number again
+        assertEquals(receipt(6), allocator(5).next());
+    }
+
+    @Test
+    void twoNodesWithManyThreadsNeverShareANumber() throws Exception {
+        ReceiptNumberAllocator nodeA = allocator(20);
+        ReceiptNumberAllocator nodeB = allocator(20);
+        int threadsPerNode = 16;
+        int callsPerThread = 100;
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2 * threadsPerNode);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < 2 * threadsPerNode; t++) {
+                ReceiptNumberAllocator node = t % 2 == 0 ? nodeA : nodeB;
+                int batch = 1 + t % 3;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    int duplicates = 0;
+                    for (int i = 0; i < callsPerThread; i++) {
+                        for (String receipt : node.next(batch)) {
+                            if (!seen.add(receipt)) duplicates++;
+                        }
+                    }
+                    return duplicates;
+                }));
+            }
+            start.countDown();
+            int duplicates = 0;
+            for (Future<Integer> f : futures) duplicates += f.get(60, TimeUnit.SECONDS);
+
+            assertEquals(0, duplicates);
+            long issued = (long) nodeA.stats().get("issued") + (long) nodeB.stats().get("issued");
+            assertEquals(issued, seen.size());
+            long reservations = (long) nodeA.stats().get("reservations") + (long) nodeB.stats().get("reservations");
+            long nextValue = new JdbcTemplate(appPool).queryForObject(
+                    "SELECT next_value FROM receipt_sequence WHERE seq_day = ?", Long.class, TODAY);
+            // every reserved block moved the shared counter exactly once
+            assertEquals(1 + 20 * reservations, nextValue);
+            assertTrue(reservations < issued, "most numbers must come from memory");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void blockSizeOneStillWorksAndNothingIsLeftInTheBlock() {
+        ReceiptNumberAllocator allocator = allocator(1);
+
+        assertEquals(receipt(1), allocator.next());
+        assertEquals(receipt(2), allocator.next());
+        assertEquals(0L, allocator.stats().get("left_in_block"));
+        assertFalse(allocator.next(3).isEmpty());
+    }
+
+    private ReceiptNumberAllocator allocator(int blockSize) {
+        ReceiptNumberAllocator allocator = new ReceiptNumberAllocator(pool("receipt-sequence", 1), blockSize);
+        allocators.add(allocator);
+        return allocator;
+    }
+
+    private HikariDataSource pool(String name, int size) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl(url);
+        pool.setPoolName(name);
+        pool.setMaximumPoolSize(size);
+        pool.setConnectionTimeout(5_000);
+        return pool;
+    }
+
+    private static String receipt(long n) {
+        return ReceiptNumberAllocator.format(TODAY, n);
+    }
+
+    // public, so H2 may call it
+    public static final class MySqlFunctions {
+
+        // MySQL SUBSTRING_INDEX for a positive count
+        public static String substringIndex(String value, String delimiter, int count) {
+            if (value == null) return null;
+            int at = -1;
+            for (int i = 0; i < count; i++) {
+                at = value.indexOf(delimiter, at + 1);
+                if (at < 0) return value;
+            }
+            return value.substring(0, at);
+        }
+    }
+}
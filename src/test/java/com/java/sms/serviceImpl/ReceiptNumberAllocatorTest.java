@@ -0,0 +1,148 @@
+package com.java.sms.serviceImpl;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * The in-memory handout between blocks; {@link ReceiptNumberAllocatorDatabaseTest} covers the reservation itself.
+ */
+class ReceiptNumberAllocatorTest {
+
+    private static final String TODAY = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyyMMdd"));
+
+    @Test
+    void formatPadsToFiveDigitsAndGrowsPastThem() {
+        assertEquals("REC-20251201-00001", ReceiptNumberAllocator.format("20251201", 1));
+        assertEquals("REC-20251201-00420", ReceiptNumberAllocator.format("20251201", 420));
+        assertEquals("REC-20251201-99999", ReceiptNumberAllocator.format("20251201", 99999));
+        assertEquals("REC-20251201-100000", ReceiptNumberAllocator.format("20251201", 100000));
+    }
+
+    @Test
+    void numbersComeFromMemoryUntilTheBlockRunsOut() {
+        CountingAllocator allocator = new CountingAllocator(10);
+
+        assertEquals(List.of(receipt(1), receipt(2), receipt(3)), allocator.next(3));
+        for (int i = 4; i <= 10; i++) assertEquals(receipt(i), allocator.next());
+        assertEquals(1, allocator.reservations.get());
+
+        assertEquals(receipt(11), allocator.next());
+        assertEquals(2, allocator.reservations.get());
+    }
+
+    @Test
+    void aBatchThatDoesNotFitSkipsTheRestOfTheBlock() {
+        CountingAllocator allocator = new CountingAllocator(10);
+        allocator.next(8);
+
+        // 9 and 10 are left behind (a gap), the batch stays consecutive
+        assertEquals(List.of(receipt(11), receipt(12), receipt(13)), allocator.next(3));
+    }
+
+    @Test
+    void aBatchLargerThanTheBlockGetsABlockOfItsOwn() {
+        CountingAllocator allocator = new CountingAllocator(10);
+
+        List<String> got = allocator.next(25);
+
+        assertEquals(25, got.size());
+        assertEquals(receipt(1), got.get(0));
+        assertEquals(receipt(25), got.get(24));
+        assertEquals(1, allocator.reservations.get());
+    }
+
+    @Test
+    void sixtyFourThreadsShareBlocksWithoutDuplicatesOrConcurrentRefills() throws Exception {
+        CountingAllocator allocator = new CountingAllocator(50);
+        int threads = 64;
+        int callsPerThread = 200;
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int batch = 1 + t % 4;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    int duplicates = 0;
+                    for (int i = 0; i < callsPerThread; i++) {
+                        List<String> got = allocator.next(batch);
+                        assertEquals(batch, got.size());
+                        for (String receipt : got) {
+                            if (!seen.add(receipt)) duplicates++;
+                        }
+                    }
+                    return duplicates;
+                }));
+            }
+            start.countDown();
+            int duplicates = 0;
+            for (Future<Integer> f : futures) duplicates += f.get(60, TimeUnit.SECONDS);
+
+            int expected = 0;
+            for (int t = 0; t < threads; t++) expected += callsPerThread * (1 + t % 4);
+            assertEquals(0, duplicates);
+            assertEquals(expected, seen.size());
+            assertEquals(1, allocator.maxConcurrentRefills.get());
+            // at most 3 numbers per block are skipped by batches that did not fit
+            assertTrue(allocator.reservations.get() <= expected / 47 + 1, "reservations: " + allocator.reservations);
+            assertEquals((long) expected, allocator.stats().get("issued"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static String receipt(long n) {
+        return ReceiptNumberAllocator.format(TODAY, n);
+    }
+
+    /**
+     * receipt_sequence as a plain counter; records how many reservations ran at the same time.
+     */
+    private static final class CountingAllocator extends ReceiptNumberAllocator {
+        private final AtomicLong counter = new AtomicLong(1);
+        private final AtomicInteger reservations = new AtomicInteger();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxConcurrentRefills = new AtomicInteger();
+
+        CountingAllocator(int blockSize) {
+            super(mock(DataSource.class), blockSize);
+        }
+
+        @Override
+        long reserve(String day, long size) {
+            int now = running.incrementAndGet();
+            maxConcurrentRefills.accumulateAndGet(now, Math::max);
+            try {
+                Thread.sleep(1); // a database round trip, so waiting threads really pile up behind the refill
+                reservations.incrementAndGet();
+                return counter.addAndGet(size);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+    }
+}
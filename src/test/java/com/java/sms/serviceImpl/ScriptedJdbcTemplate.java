@@ -0,0 +1,113 @@
+package com.java.sms.serviceImpl;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * JdbcTemplate without a database for the JDBC-heavy workers: statements are answered by the first registered
+ * SQL fragment they contain, and every call is recorded. Rows for {@code query} are given as Object[] columns
+ * (1-based like JDBC) and fed through the caller's RowMapper. Safe to call from worker threads; register the
+ * answers before starting them.
+ */
+class ScriptedJdbcTemplate extends JdbcTemplate {
+
+    record Call(String sql, Object[] args) {
+    }
+
+    private final Map<String, Function<Object[], Object>> answers = new LinkedHashMap<>();
+    final List<Call> calls = new CopyOnWriteArrayList<>();
+
+    ScriptedJdbcTemplate on(String sqlFragment, Function<Object[], Object> answer) {
+        answers.put(sqlFragment, answer);
+        return this;
+    }
+
+    List<Call> calls(String sqlFragment) {
+        return calls.stream().filter(c -> c.sql().contains(sqlFragment)).toList();
+    }
+
+    private Object answer(String sql, Object[] args, Object fallback) {
+        calls.add(new Call(sql, args));
+        for (Map.Entry<String, Function<Object[], Object>> e : answers.entrySet()) {
+            if (sql.contains(e.getKey())) return e.getValue().apply(args);
+        }
+        return fallback;
+    }
+
+    @Override
+    public int update(String sql, Object... args) {
+        return (Integer) answer(sql, args, 1);
+    }
+
+    @Override
+    public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+        int[] out = new int[batchArgs.size()];
+        for (int i = 0; i < out.length; i++) {
+            Object n = answer(sql, batchArgs.get(i), 1);
+            out[i] = (Integer) n;
+        }
+        return out;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+        return (List<T>) answer(sql, args, List.of());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T queryForObject(String sql, Class<T> requiredType) {
+        return (T) answer(sql, new Object[0], null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+        List<Object[]> rows = (List<Object[]>) answer(sql, args, List.of());
+        List<T> out = new ArrayList<>(rows.size());
+        try {
+            for (int i = 0; i < rows.size(); i++) {
+                out.add(rowMapper.mapRow(resultSet(rows.get(i)), i));
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        return out;
+    }
+
+    static Object[] row(Object... columns) {
+        return columns;
+    }
+
+    private static ResultSet resultSet(Object[] row) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong(anyInt())).thenAnswer(inv -> ((Number) row[(int) inv.getArgument(0) - 1]).longValue());
+        when(rs.getInt(anyInt())).thenAnswer(inv -> ((Number) row[(int) inv.getArgument(0) - 1]).intValue());
+        when(rs.getString(anyInt())).thenAnswer(inv -> (String) row[(int) inv.getArgument(0) - 1]);
+        when(rs.getBigDecimal(anyInt())).thenAnswer(inv -> (BigDecimal) row[(int) inv.getArgument(0) - 1]);
+        when(rs.getTimestamp(anyInt())).thenAnswer(inv -> (Timestamp) row[(int) inv.getArgument(0) - 1]);
+        return rs;
+    }
+
+    @Override
+    public String toString() {
+        return calls.stream().map(c -> c.sql() + " " + Arrays.toString(c.args())).toList().toString();
+    }
+}
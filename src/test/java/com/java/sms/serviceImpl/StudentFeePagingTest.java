@@ -0,0 +1,215 @@
+package com.java.sms.serviceImpl;
+
+import com.java.sms.openFeignClient.SchoolYearClient;
+import com.java.sms.openFeignClient.StudentYearLevelCache;
+import com.java.sms.openFeignClient.YearLevelDirectory;
+import com.java.sms.repository.AppliedFeeDiscountRepository;
+import com.java.sms.repository.FeePaymentRepository;
+import com.java.sms.repository.FeeStructureRepository;
+import com.java.sms.repository.JpaSliceConfiguration;
+import com.java.sms.repository.StudentFeeLedgerRepository;
+import com.java.sms.repository.StudentFeeRepository;
+import com.java.sms.response.KeysetPageResponse;
+import com.java.sms.response.StudentUnpaidFeesPageResponse;
+import com.java.sms.response.StudentUnpaidFeesResponse;
+import com.java.sms.service.RazorpayService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Keyset paging of the fee reports through the real StudentFee queries, on H2 in MySQL mode.
+ * Student info is not available (the cache mock returns nothing), so every student-year is its own entry.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ContextConfiguration(classes = JpaSliceConfiguration.class)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:jpaslice;MODE=MySQL;DB_CLOSE_DELAY=-1;NON_KEYWORDS=TIMESTAMP,MONTH,YEAR,VALUE",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class StudentFeePagingTest {
+
+    private static final long SCHOOL_YEAR_ID = 7L;
+
+    @Autowired
+    private StudentFeeRepository studentFeeRepo;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private StudentFeeServiceImpl service;
+    private long nextFeeId = 1;
+
+    @BeforeEach
+    void setUp() {
+        AppliedFeeDiscountRepository discountRepo = mock(AppliedFeeDiscountRepository.class);
+        service = new StudentFeeServiceImpl(studentFeeRepo, mock(FeeStructureRepository.class), discountRepo,
+                mock(FeePaymentRepository.class), mock(StudentYearLevelCache.class), mock(SchoolYearClient.class),
+                mock(RazorpayService.class), mock(YearLevelDirectory.class), mock(FeeBatchWriter.class),
+                mock(ReceiptNumberAllocator.class), new FeeDiscountResolver(discountRepo, 100, 600),
+                mock(FeeLedgerUpdater.class), mock(StudentFeeLedgerRepository.class),
+                mock(FeeCollectionRollupWriter.class), mock(FeeLedgerExporter.class),
+                mock(PaymentIdempotencyGuard.class), mock(RazorpayOrderOutbox.class),
+                mock(OnlinePaymentCreditor.class));
+
+        jdbc.update("INSERT INTO master_fee (id, payment_structure) VALUES (1, 'MONTHLY')");
+        jdbc.update("INSERT INTO fee_structure (id, master_fee_id, fee_type, fee_amount) VALUES (1, 1, 'TUITION_FEE', 1000)");
+    }
+
+    @Test
+    void unpaidPagesWalkTheStudentYearsWithoutGapsOrRepeats() {
+        seedUnpaid();
+
+        StudentUnpaidFeesPageResponse first = service.getStudentUnpaidFees(null, 2);
+        assertEquals(List.of(101L, 102L), studentYearIds(first));
+        assertTrue(first.isHasMore());
+        assertEquals(102L, first.getNextCursor());
+
+        StudentUnpaidFeesPageResponse second = service.getStudentUnpaidFees(first.getNextCursor(), 2);
+        assertEquals(List.of(103L, 104L), studentYearIds(second));
+        assertTrue(second.isHasMore());
+
+        StudentUnpaidFeesPageResponse last = service.getStudentUnpaidFees(second.getNextCursor(), 2);
+        assertEquals(List.of(105L), studentYearIds(last));
+        assertFalse(last.isHasMore());
+        assertNull(last.getNextCursor());
+    }
+
+    @Test
+    void unpaidPageThatEndsExactlyOnTheLastStudentYearHasNoNextPage() {
+        seedUnpaid();
+
+        StudentUnpaidFeesPageResponse page = service.getStudentUnpaidFees(null, 5);
+
+        assertEquals(5, page.getSize());
+        assertFalse(page.isHasMore());
+        assertNull(page.getNextCursor());
+        assertTrue(service.getStudentUnpaidFees(105L, 5).getUnpaidFees().isEmpty());
+    }
+
+    @Test
+    void unpaidTotalsLeaveOutPaidFees() {
+        seedUnpaid();
+
+        StudentUnpaidFeesResponse entry = service.getStudentUnpaidFees(102L, 1).getUnpaidFees().get(0);
+
+        // 103 has two unpaid fees and one paid one
+        assertEquals(103L, entry.getStudent().getId());
+        assertEquals(0, new BigDecimal("2000.00").compareTo(new BigDecimal(entry.getTotalAmount())));
+        assertEquals(0, new BigDecimal("400.00").compareTo(new BigDecimal(entry.getPaidAmount())));
+        assertEquals(2, entry.getYearLevelFeesGrouped().get(0).getFees().size());
+    }
+
+    @Test
+    void overduePagesWalkTheFeeIdsWithoutGapsOrRepeats() {
+        List<Long> overdue = seedOverdue();
+
+        KeysetPageResponse<Map<String, Object>> first = service.getOverdueFees(null, null, null, null, 2);
+        assertEquals(overdue.subList(0, 2), feeIds(first));
+        assertTrue(first.isHasMore());
+        assertEquals(overdue.get(1), first.getNextCursor());
+
+        KeysetPageResponse<Map<String, Object>> second = service.getOverdueFees(null, null, null, first.getNextCursor(), 2);
+        assertEquals(overdue.subList(2, 4), feeIds(second));
+        assertTrue(second.isHasMore());
+
+        KeysetPageResponse<Map<String, Object>> last = service.getOverdueFees(null, null, null, second.getNextCursor(), 2);
+        assertEquals(overdue.subList(4, 5), feeIds(last));
+        assertFalse(last.isHasMore());
+        assertNull(last.getNextCursor());
+    }
+
+    @Test
+    void overduePageThatEndsExactlyOnTheLastFeeHasNoNextPage() {
+        List<Long> overdue = seedOverdue();
+
+        KeysetPageResponse<Map<String, Object>> page = service.getOverdueFees(null, null, null, null, overdue.size());
+
+        assertEquals(overdue, feeIds(page));
+        assertFalse(page.isHasMore());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void overdueFiltersCombineWithTheCursor() {
+        List<Long> overdue = seedOverdue();
+        int lateMonth = LocalDate.now().minusDays(45).getMonthValue();
+
+        // 203's two overdue fees, one per page
+        KeysetPageResponse<Map<String, Object>> first = service.getOverdueFees(203L, null, SCHOOL_YEAR_ID, null, 1);
+        assertEquals(overdue.subList(3, 4), feeIds(first));
+        assertTrue(first.isHasMore());
+        KeysetPageResponse<Map<String, Object>> second =
+                service.getOverdueFees(203L, null, SCHOOL_YEAR_ID, first.getNextCursor(), 1);
+        assertEquals(overdue.subList(4, 5), feeIds(second));
+        assertFalse(second.isHasMore());
+
+        // month of the due date: the fees 45 days late, after the first one
+        assertEquals(List.of(overdue.get(3)), feeIds(service.getOverdueFees(null, lateMonth, null, overdue.get(0), 10)));
+        assertTrue(feeIds(service.getOverdueFees(null, null, SCHOOL_YEAR_ID + 1, null, 10)).isEmpty());
+    }
+
+    // student-years 101..105 owe two fees each; 106 has paid everything
+    private void seedUnpaid() {
+        for (long studentYearId = 101; studentYearId <= 105; studentYearId++) {
+            fee(studentYearId, 4, "PENDING", "0.00");
+            fee(studentYearId, 5, "PARTIAL", "400.00");
+        }
+        fee(103, 6, "PAID", "1000.00");
+        fee(106, 4, "PAID", "1000.00");
+    }
+
+    // overdue fee ids in id order; paid and not-yet-due fees are mixed in between
+    private List<Long> seedOverdue() {
+        LocalDate today = LocalDate.now();
+        long a = fee(201, 4, "PENDING", "0.00", today.minusDays(45));
+        long b = fee(201, 5, "PARTIAL", "400.00", today.minusDays(5));
+        fee(201, 6, "PENDING", "0.00", today.plusDays(5));
+        fee(202, 4, "PAID", "1000.00", today.minusDays(45));
+        long c = fee(202, 5, "PENDING", "0.00", today.minusDays(5));
+        long d = fee(203, 4, "PENDING", "0.00", today.minusDays(45));
+        fee(203, 5, "PENDING", "0.00", today);
+        long e = fee(203, 6, "PARTIAL", "900.00", today.minusDays(5));
+        return List.of(a, b, c, d, e);
+    }
+
+    private long fee(long studentYearId, int month, String status, String paid) {
+        return fee(studentYearId, month, status, paid, LocalDate.of(2026, month, 10));
+    }
+
+    private long fee(long studentYearId, int month, String status, String paid, LocalDate dueDate) {
+        long id = nextFeeId++;
+        BigDecimal due = new BigDecimal("1000.00").subtract(new BigDecimal(paid));
+        jdbc.update("INSERT INTO student_fee (id, student_year_id, fee_structure_id, month, school_year_id, due_date, " +
+                        "original_amount, paid_amount, due_amount, penalty_amount, applied_discount, status, created_at, " +
+                        "receipt_number) VALUES (?, ?, 1, ?, ?, ?, 1000.00, ?, ?, 0, FALSE, ?, CURRENT_TIMESTAMP, ?)",
+                id, studentYearId, month, SCHOOL_YEAR_ID, dueDate,
+                new BigDecimal(paid), due, status, "REC-" + id);
+        return id;
+    }
+
+    private static List<Long> feeIds(KeysetPageResponse<Map<String, Object>> page) {
+        return page.getItems().stream().map(m -> (Long) m.get("fee_id")).toList();
+    }
+
+    private static List<Long> studentYearIds(StudentUnpaidFeesPageResponse page) {
+        return page.getUnpaidFees().stream().map(e -> e.getStudent().getId()).toList();
+    }
+}
@@ -0,0 +1,269 @@
+package com.java.sms.serviceImpl;
+
+import com.java.sms.DataClass.ConfirmPaymentRequest;
+import com.java.sms.DataClass.SubmitFeeRequest;
+import com.java.sms.exception.ApiException;
+import com.java.sms.model.FeePayment;
+import com.java.sms.model.FeeStructure;
+import com.java.sms.model.StudentFee;
+import com.java.sms.model.enums.FeeStatus;
+import com.java.sms.model.enums.FeeType;
+import com.java.sms.model.enums.PaymentMethod;
+import com.java.sms.model.enums.PaymentStatus;
+import com.java.sms.openFeignClient.SchoolYearClient;
+import com.java.sms.openFeignClient.StudentYearLevelCache;
+import com.java.sms.openFeignClient.YearLevelDirectory;
+import com.java.sms.repository.AppliedFeeDiscountRepository;
+import com.java.sms.repository.FeePaymentRepository;
+import com.java.sms.repository.FeeStructureRepository;
+import com.java.sms.repository.StudentFeeLedgerRepository;
+import com.java.sms.repository.StudentFeeRepository;
+import com.java.sms.response.ConfirmPaymentResponse;
+import com.java.sms.response.StudentYearLevelResponse;
+import com.java.sms.service.RazorpayService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpStatus;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StudentFeeServiceImplTest {
+
+    private static final long STUDENT_YEAR_ID = 42L;
+
+    private final StudentFeeRepository studentFeeRepo = mock(StudentFeeRepository.class);
+    private final FeeStructureRepository feeStructureRepo = mock(FeeStructureRepository.class);
+    private final FeePaymentRepository feePaymentRepo = mock(FeePaymentRepository.class);
+    private final StudentYearLevelCache studentYearLevelCache = mock(StudentYearLevelCache.class);
+    private final RazorpayService razorpayService = mock(RazorpayService.class);
+    private final FeeLedgerUpdater feeLedgerUpdater = mock(FeeLedgerUpdater.class);
+    private final FeeCollectionRollupWriter rollupWriter = mock(FeeCollectionRollupWriter.class);
+    private final PaymentIdempotencyGuard guard = mock(PaymentIdempotencyGuard.class);
+    private final OnlinePaymentCreditor creditor = mock(OnlinePaymentCreditor.class);
+    private final FeeBatchWriter feeBatchWriter = mock(FeeBatchWriter.class);
+    private final ReceiptNumberAllocator receiptNumberAllocator = mock(ReceiptNumberAllocator.class);
+    private final AppliedFeeDiscountRepository discountRepo = mock(AppliedFeeDiscountRepository.class);
+    private StudentFeeServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        service = new StudentFeeServiceImpl(studentFeeRepo, feeStructureRepo, discountRepo,
+                feePaymentRepo, studentYearLevelCache, mock(SchoolYearClient.class), razorpayService,
+                mock(YearLevelDirectory.class), feeBatchWriter, receiptNumberAllocator,
+                new FeeDiscountResolver(discountRepo, 100, 600), feeLedgerUpdater, mock(StudentFeeLedgerRepository.class),
+                rollupWriter, mock(FeeLedgerExporter.class), guard, mock(RazorpayOrderOutbox.class), creditor);
+
+        when(guard.replay(any())).thenReturn(Optional.empty());
+        when(guard.claim(any())).thenReturn(Optional.empty());
+        when(razorpayService.verifyPaymentSignature("order_1", "pay_1", "sig")).thenReturn(true);
+        when(studentYearLevelCache.get(anyLong())).thenReturn(new StudentYearLevelResponse());
+        when(receiptNumberAllocator.next(anyInt())).thenAnswer(inv -> {
+            int count = inv.getArgument(0);
+            return IntStream.range(0, count).mapToObj(i -> "REC-" + i).toList();
+        });
+    }
+
+    @Test
+    void submitBatchesNewFeesAndAggregatesPaidAmountsPerFee() throws Exception {
+        FeeStructure tuition = FeeStructure.builder().id(5L).feeType(FeeType.values()[0])
+                .feeAmount(new BigDecimal("1000.00")).build();
+        FeeStructure transport = FeeStructure.builder().id(6L).feeType(FeeType.values()[0])
+                .feeAmount(new BigDecimal("800.00")).build();
+        StudentFee existing = StudentFee.builder()
+                .id(100L)
+                .studentYearId(STUDENT_YEAR_ID)
+                .feeStructure(tuition)
+                .schoolYearId(7L)
+                .month(4)
+                .originalAmount(new BigDecimal("1000.00"))
+                .paidAmount(new BigDecimal("200.00"))
+                .dueAmount(new BigDecimal("800.00"))
+                .status(FeeStatus.PARTIAL)
+                .build();
+        when(feeStructureRepo.findAllByIdInWithYearLevels(Set.of(5L, 6L))).thenReturn(List.of(tuition, transport));
+        when(studentFeeRepo.findByStudentYearIdAndFeeStructureIdIn(STUDENT_YEAR_ID, Set.of(5L, 6L)))
+                .thenReturn(List.of(existing));
+        when(feePaymentRepo.sumAmountByStudentFeeIdIn(Set.of(100L)))
+                .thenReturn(List.of(new Paid(100L, new BigDecimal("200.00"))));
+
+        // existing April tuition, then the same new May transport fee twice in one request
+        Map<String, Object> result = castMap(service.submitFee(submit(
+                line(5, 4, "300"), line(6, 5, "500"), line(6, 5, "100"))));
+
+        // one new StudentFee in one batch, with a receipt number; all three payments in one batch
+        ArgumentCaptor<List<StudentFee>> newFees = listCaptor();
+        verify(feeBatchWriter).insertStudentFees(newFees.capture());
+        assertEquals(1, newFees.getValue().size());
+        StudentFee may = newFees.getValue().get(0);
+        assertSame(transport, may.getFeeStructure());
+        assertEquals("REC-0", may.getReceiptNumber());
+
+        ArgumentCaptor<List<FeePayment>> payments = listCaptor();
+        verify(feeBatchWriter).insertFeePayments(payments.capture());
+        assertEquals(3, payments.getValue().size());
+        assertSame(existing, payments.getValue().get(0).getStudentFee());
+        assertSame(may, payments.getValue().get(1).getStudentFee());
+        assertSame(may, payments.getValue().get(2).getStudentFee());
+        verify(rollupWriter, times(3)).paymentAdded(any());
+
+        // paid = what was recorded before + every line of this request
+        assertEquals(0, new BigDecimal("500.00").compareTo(existing.getPaidAmount()));
+        assertEquals(0, new BigDecimal("500.00").compareTo(existing.getDueAmount()));
+        assertEquals(FeeStatus.PARTIAL, existing.getStatus());
+        assertEquals(0, new BigDecimal("600.00").compareTo(may.getPaidAmount()));
+        assertEquals(0, new BigDecimal("200.00").compareTo(may.getDueAmount()));
+        assertEquals(FeeStatus.PARTIAL, may.getStatus());
+        assertEquals("900.00", result.get("total_amount_paid"));
+
+        // the existing fee is a managed entity, updated at commit; nothing goes through save()
+        verify(studentFeeRepo, never()).save(any());
+        verify(feeLedgerUpdater).touch(STUDENT_YEAR_ID);
+    }
+
+    @Test
+    void submitOverTheDueAmountAcrossLinesWritesNothing() {
+        FeeStructure tuition = FeeStructure.builder().id(5L).feeType(FeeType.values()[0])
+                .feeAmount(new BigDecimal("1000.00")).build();
+        when(feeStructureRepo.findAllByIdInWithYearLevels(Set.of(5L))).thenReturn(List.of(tuition));
+
+        // each line alone fits, together they exceed the fee
+        ApiException ex = assertThrows(ApiException.class,
+                () -> service.submitFee(submit(line(5, 4, "600"), line(5, 4, "600"))));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatus());
+        verify(feeBatchWriter, never()).insertStudentFees(any());
+        verify(feeBatchWriter, never()).insertFeePayments(any());
+        verify(rollupWriter, never()).paymentAdded(any());
+    }
+
+    @Test
+    void confirmOfAnInitiatedOrderSettlesItsPendingPayments() {
+        List<FeePayment> pending = List.of(pendingPayment(STUDENT_YEAR_ID));
+        when(feePaymentRepo.findByRazorpayOrderIdInAndStatusWithStudentFee(List.of("order_1"), PaymentStatus.PENDING))
+                .thenReturn(pending);
+        ConfirmPaymentResponse settled = ConfirmPaymentResponse.builder().message("Payment confirmed successfully.").build();
+        when(creditor.credit(eq(pending), eq("pay_1"), eq("order_1"), any())).thenReturn(settled);
+
+        assertSame(settled, service.confirmPayment(request()));
+
+        // no second SUCCESS row, no second paid amount: the reconciler has nothing left to report
+        verify(feePaymentRepo, never()).save(any());
+        verify(studentFeeRepo, never()).save(any());
+        verify(guard, never()).claim(any());
+        verify(guard, never()).complete(any(), any());
+    }
+
+    @Test
+    void pendingPaymentsOfAnotherStudentAreRejected() {
+        when(feePaymentRepo.findByRazorpayOrderIdInAndStatusWithStudentFee(anyCollection(), eq(PaymentStatus.PENDING)))
+                .thenReturn(List.of(pendingPayment(7L)));
+
+        ApiException ex = assertThrows(ApiException.class, () -> service.confirmPayment(request()));
+
+        assertEquals(HttpStatus.CONFLICT, ex.getStatus());
+        verify(creditor, never()).credit(any(), any(), any(), any());
+    }
+
+    @Test
+    void orderWithoutPendingPaymentsRecordsTheSelectedFees() {
+        when(feePaymentRepo.findByRazorpayOrderIdInAndStatusWithStudentFee(anyCollection(), eq(PaymentStatus.PENDING)))
+                .thenReturn(List.of());
+        FeeStructure tuition = FeeStructure.builder().id(5L).feeType(FeeType.values()[0]).build();
+        StudentFee fee = StudentFee.builder()
+                .studentYearId(STUDENT_YEAR_ID)
+                .feeStructure(tuition)
+                .month(4)
+                .originalAmount(new BigDecimal("1000"))
+                .paidAmount(BigDecimal.ZERO)
+                .dueAmount(new BigDecimal("1000"))
+                .status(FeeStatus.PENDING)
+                .build();
+        when(feeStructureRepo.findById(5L)).thenReturn(Optional.of(tuition));
+        when(studentFeeRepo.findByStudentYearIdAndFeeStructureId(STUDENT_YEAR_ID, 5L)).thenReturn(List.of(fee));
+
+        ConfirmPaymentResponse response = service.confirmPayment(request());
+
+        assertEquals(1, response.getPayments().size());
+        assertEquals(FeeStatus.PAID, fee.getStatus());
+        verify(feePaymentRepo).save(any(FeePayment.class));
+        verify(guard).complete(any(), eq(response));
+        verify(creditor, never()).credit(any(), any(), any(), any());
+    }
+
+    private record Paid(Long studentFeeId, BigDecimal amount) implements FeePaymentRepository.StudentFeePaid {
+        public Long getStudentFeeId() {
+            return studentFeeId;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+    }
+
+    @SafeVarargs
+    private static SubmitFeeRequest submit(Map<String, Object>... lines) {
+        return SubmitFeeRequest.builder()
+                .studentYearId(STUDENT_YEAR_ID)
+                .schoolYearId(7L)
+                .paymentMethod(PaymentMethod.CASH)
+                .fees(List.of(lines))
+                .build();
+    }
+
+    private static Map<String, Object> line(long feeId, int month, String amount) {
+        return Map.of("fee_id", feeId, "month", month, "amount", amount);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> castMap(Object response) {
+        return (Map<String, Object>) response;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> ArgumentCaptor<List<T>> listCaptor() {
+        return (ArgumentCaptor) ArgumentCaptor.forClass(List.class);
+    }
+
+    private static FeePayment pendingPayment(long studentYearId) {
+        StudentFee fee = StudentFee.builder().studentYearId(studentYearId).month(4).build();
+        return FeePayment.builder()
+                .id(1L)
+                .studentFee(fee)
+                .amount(new BigDecimal("1000"))
+                .razorpayOrderId("order_1")
+                .status(PaymentStatus.PENDING)
+                .build();
+    }
+
+    private static ConfirmPaymentRequest request() {
+        return ConfirmPaymentRequest.builder()
+                .studentYearId(STUDENT_YEAR_ID)
+                .selectedFees(List.of(Map.of("fee_id", 5, "month", 4, "paid_amount", "1000")))
+                .paymentMode("online")
+                .receivedBy(1L)
+                .razorpayOrderId("order_1")
+                .razorpayPaymentId("pay_1")
+                .razorpaySignature("sig")
+                .build();
+    }
+}
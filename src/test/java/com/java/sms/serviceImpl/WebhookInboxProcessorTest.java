@@ -0,0 +1,131 @@
+package com.java.sms.serviceImpl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.java.sms.exception.ApiException;
+import com.java.sms.model.FeePayment;
+import com.java.sms.model.enums.PaymentStatus;
+import com.java.sms.repository.FeePaymentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.java.sms.serviceImpl.ScriptedJdbcTemplate.row;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WebhookInboxProcessorTest {
+
+    private final FeePaymentRepository feePaymentRepo = mock(FeePaymentRepository.class);
+    private final OnlinePaymentCreditor creditor = mock(OnlinePaymentCreditor.class);
+    private final List<Object[]> inbox = new ArrayList<>();
+    private ScriptedJdbcTemplate jdbc;
+    private WebhookInboxProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        jdbc = new ScriptedJdbcTemplate()
+                .on("SELECT id FROM razorpay_webhook_event", args -> inbox.stream().map(r -> (Long) r[0]).toList())
+                .on("SELECT id, event_id, payload, attempts", args -> inbox);
+        processor = new WebhookInboxProcessor(jdbc, mock(PlatformTransactionManager.class), new ObjectMapper(),
+                feePaymentRepo, creditor, 100, 1, 3, 300);
+        when(feePaymentRepo.findByRazorpayPaymentIdInWithStudentFee(anyCollection())).thenReturn(List.of());
+    }
+
+    @Test
+    void capturedPaymentCreditsThePendingFeePayments() {
+        List<FeePayment> pending = pending("order_1", "250.00");
+        when(feePaymentRepo.findByRazorpayOrderIdInAndStatusWithStudentFee(anyCollection(), eq(PaymentStatus.PENDING)))
+                .thenReturn(pending);
+        event(1L, "payment.captured", "pay_1", "order_1", 25000);
+
+        processor.poll();
+
+        verify(creditor).credit(eq(pending), eq("pay_1"), eq("order_1"), any());
+        assertFinished("PROCESSED", "Credited 1 fee payment(s)");
+    }
+
+    @Test
+    void amountMismatchIsNeverCredited() {
+        when(feePaymentRepo.findByRazorpayOrderIdInAndStatusWithStudentFee(anyCollection(), eq(PaymentStatus.PENDING)))
+                .thenReturn(pending("order_1", "250.00"));
+        event(1L, "payment.captured", "pay_1", "order_1", 10000);
+
+        processor.poll();
+
+        verify(creditor, never()).credit(any(), any(), any(), any());
+        assertFinished("FAILED", "Amount mismatch");
+    }
+
+    @Test
+    void paymentClaimedByConfirmPaymentIsNotRetried() {
+        when(feePaymentRepo.findByRazorpayOrderIdInAndStatusWithStudentFee(anyCollection(), eq(PaymentStatus.PENDING)))
+                .thenReturn(pending("order_1", "250.00"));
+        doThrow(new ApiException("Payment pay_1 was already confirmed", HttpStatus.CONFLICT))
+                .when(creditor).credit(any(), eq("pay_1"), eq("order_1"), any());
+        event(1L, "order.paid", "pay_1", "order_1", 25000);
+
+        processor.poll();
+
+        assertFinished("PROCESSED", "Already confirmed");
+        assertTrue(jdbc.calls("attempts = attempts + 1").isEmpty());
+    }
+
+    @Test
+    void captureAfterExpiryIsFlaggedForAHuman() {
+        when(feePaymentRepo.findByRazorpayOrderIdInAndStatusWithStudentFee(anyCollection(), eq(PaymentStatus.PENDING)))
+                .thenReturn(List.of());
+        when(feePaymentRepo.existsByRazorpayOrderIdAndStatus("order_1", PaymentStatus.FAILED)).thenReturn(true);
+        event(1L, "payment.captured", "pay_1", "order_1", 25000);
+
+        processor.poll();
+
+        verify(creditor, never()).credit(any(), any(), any(), any());
+        assertFinished("FAILED", "Captured after the fee payments of order order_1 were expired");
+    }
+
+    @Test
+    void unreadablePayloadFailsWithoutTouchingPayments() {
+        inbox.add(row(1L, "evt_1", "{not json", 0));
+
+        processor.poll();
+
+        verify(creditor, never()).credit(any(), any(), any(), any());
+        assertEquals("FAILED", jdbc.calls("SET status = ?, event_type").get(0).args()[0]);
+    }
+
+    private void event(long id, String type, String paymentId, String orderId, long amountPaise) {
+        String payload = "{\"event\":\"" + type + "\",\"payload\":{\"payment\":{\"entity\":{\"id\":\"" + paymentId
+                + "\",\"order_id\":\"" + orderId + "\",\"amount\":" + amountPaise + ",\"status\":\"captured\","
+                + "\"created_at\":1700000000}}}}";
+        inbox.add(row(id, "evt_" + id, payload, 0));
+    }
+
+    private static List<FeePayment> pending(String orderId, String amount) {
+        return List.of(FeePayment.builder()
+                .id(10L)
+                .amount(new BigDecimal(amount))
+                .razorpayOrderId(orderId)
+                .status(PaymentStatus.PENDING)
+                .build());
+    }
+
+    private void assertFinished(String status, String outcome) {
+        List<ScriptedJdbcTemplate.Call> finished = jdbc.calls("SET status = ?, event_type");
+        assertEquals(1, finished.size(), jdbc::toString);
+        assertEquals(status, finished.get(0).args()[0]);
+        assertTrue(((String) finished.get(0).args()[2]).startsWith(outcome), () -> (String) finished.get(0).args()[2]);
+    }
+}